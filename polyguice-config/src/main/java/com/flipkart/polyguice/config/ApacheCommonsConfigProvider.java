@@ -17,66 +17,348 @@
 package com.flipkart.polyguice.config;
 
 import java.io.File;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.util.Locale;
-import java.util.Properties;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import org.apache.commons.configuration.AbstractConfiguration;
 import org.apache.commons.configuration.CompositeConfiguration;
-import org.apache.commons.configuration.PropertiesConfiguration;
-import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.flipkart.polyguice.core.ConfigurationProvider;
+import com.flipkart.polyguice.core.BulkConfigurationProvider;
+import com.flipkart.polyguice.core.ConfigurationChangeListener;
+import com.flipkart.polyguice.core.FreezableConfigurationProvider;
+import com.flipkart.polyguice.core.ObservableConfigurationProvider;
+import com.flipkart.polyguice.core.support.ConverterRegistry;
 
 /**
- * @author indroneel.das
+ * Provides configuration values from properties, XML, JSON and YAML files,
+ * using Apache Commons Configuration. Files added earlier take precedence.
+ * Files may be given as paths, URLs or <tt>classpath:</tt> resources; several
+ * files added together are loaded in parallel.
+ * <p>
+ *
+ * Placeholders such as <tt>${env:NAME}</tt>, <tt>${sys:name}</tt> and
+ * <tt>${path:default}</tt> in any file are resolved once, across all files,
+ * after files are added and on every reload; reads never interpolate. See
+ * {@link PlaceholderResolver} for the syntax.
+ * <p>
+ *
+ * The files can be reloaded, either explicitly or automatically on change by
+ * calling {@link #watch(long)}. A reload builds a complete new snapshot of all
+ * files and swaps it in atomically, so reads never block and never see a
+ * partially reloaded configuration. Registered change listeners are notified
+ * of the paths whose values changed.
+ * <p>
+ *
+ * Once frozen, which Polyguice does at the end of startup, values are read
+ * from an immutable map of pre-converted values instead of the composite
+ * configuration. A reload of a frozen provider rebuilds the frozen view.
+ * <p>
  *
+ * Bulk lookups read all values from the same snapshot of the configuration.
+ * Subtrees are taken from the key tries of JSON, YAML and mapped properties
+ * files, or of the frozen view, without scanning other keys.
+ * <p>
+ *
+ * @author indroneel.das
  */
 
-public class ApacheCommonsConfigProvider implements ConfigurationProvider {
+public class ApacheCommonsConfigProvider
+        implements ObservableConfigurationProvider, FreezableConfigurationProvider, BulkConfigurationProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ApacheCommonsConfigProvider.class);
 
-    private CompositeConfiguration rootConfig;
+    private volatile CompositeConfiguration   rootConfig;
+    private volatile FrozenConfiguration      frozen;
+    private volatile boolean                  pending;
+    private List<AbstractConfiguration>       sources;
+    private List<String>                      locations;
+    private int                               mergedCount;
+    private List<Integer>                     pendingEnds;
+    private List<ConfigurationChangeListener> listeners;
+    private ConfigurationWatcher              watcher;
+    private ConfigurationLoader               loader;
 
     public ApacheCommonsConfigProvider() {
         rootConfig = new CompositeConfiguration();
+        sources = new ArrayList<>();
+        locations = new ArrayList<>();
+        pendingEnds = new ArrayList<>();
+        listeners = new CopyOnWriteArrayList<>();
+        loader = new ConfigurationLoader();
+    }
+
+    public synchronized ApacheCommonsConfigProvider location(String loc) {
+        return locations(loc);
+    }
+
+/**
+ * Adds several configuration locations at once. A location is a file path, a
+ * <tt>file:</tt> or other URL, or a <tt>classpath:</tt> resource. The files are
+ * read and parsed in parallel, and then merged in the given order; the result
+ * is the same as adding each location in turn with {@link #location(String)}.
+ * A location that cannot be loaded is logged and skipped.
+ * <p>
+ *
+ * The files added by consecutive calls are merged, and their placeholders
+ * resolved, once, when the configuration is first read or frozen. If the
+ * placeholders then refer to each other in a cycle, the locations of the call
+ * that introduced the cycle are logged and dropped.
+ * <p>
+ *
+ * @param	locs the configuration locations, highest precedence first.
+ * @return	this object.
+ */
+
+    public synchronized ApacheCommonsConfigProvider locations(String... locs) {
+        List<Future<AbstractConfiguration>> results = loader.loadAll(Arrays.asList(locs));
+        List<AbstractConfiguration> newSources = new ArrayList<>(sources);
+        List<String> newLocations = new ArrayList<>(locations);
+        for(int i = 0; i < locs.length; i++) {
+            try {
+                AbstractConfiguration config = results.get(i).get();
+                if(config != null) {
+                    newSources.add(config);
+                    newLocations.add(locs[i]);
+                }
+            }
+            catch(ExecutionException exep) {
+                LOGGER.error("unable to load configuration from " + locs[i], exep.getCause());
+            }
+            catch(InterruptedException exep) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("interrupted loading configuration from " + locs[i]);
+                break;
+            }
+        }
+        if(newSources.size() == sources.size()) {
+            return this;
+        }
+        if(watcher != null) {
+            watchFiles(newLocations.subList(locations.size(), newLocations.size()));
+        }
+        sources = newSources;
+        locations = newLocations;
+        pendingEnds.add(newSources.size());
+        pending = true;
+        if(frozen != null) {
+            mergePending();
+        }
+        return this;
+    }
+
+/**
+ * Watches the configuration files for changes and reloads them automatically.
+ * Changes are debounced: a reload happens once no further change has been seen
+ * for the specified interval. Files of locations added later are watched as
+ * well.
+ * <p>
+ *
+ * @param	debounceMillis the quiet period, in milliseconds, before reloading.
+ * @return	this object.
+ */
+
+    public synchronized ApacheCommonsConfigProvider watch(long debounceMillis) {
+        if(watcher != null) {
+            LOGGER.warn("configuration files are already being watched. Ignoring.");
+            return this;
+        }
+        mergePending();
+        try {
+            watcher = new ConfigurationWatcher(toFiles(locations), debounceMillis, new Runnable() {
+                @Override
+                public void run() {
+                    reload();
+                }
+            });
+        }
+        catch(IOException exep) {
+            LOGGER.error("unable to watch configuration files", exep);
+        }
+        return this;
     }
 
-    public ApacheCommonsConfigProvider location(String loc) {
+    public synchronized void stopWatching() {
+        if(watcher == null) {
+            return;
+        }
         try {
-            if(loc.toLowerCase(Locale.getDefault()).endsWith(".properties")) {
-                PropertiesConfiguration config = new PropertiesConfiguration(new File(loc));
-                rootConfig.addConfiguration(config);
-                LOGGER.debug("properties configuration from {}", loc);
+            watcher.close();
+        }
+        catch(IOException exep) {
+            LOGGER.warn("error closing configuration watcher: {}", exep.toString());
+        }
+        watcher = null;
+    }
+
+/**
+ * Loads all configuration files again and swaps in the new values. If any file
+ * fails to load, the current configuration is retained.
+ * <p>
+ *
+ * @return	<tt>true</tt> if the configuration was reloaded.
+ */
+
+    public synchronized boolean reload() {
+        mergePending();
+        List<AbstractConfiguration> newSources = new ArrayList<>();
+        List<Future<AbstractConfiguration>> results = loader.loadAll(locations);
+        for(int i = 0; i < results.size(); i++) {
+            String loc = locations.get(i);
+            try {
+                newSources.add(results.get(i).get());
             }
-            else if(loc.toLowerCase(Locale.getDefault()).endsWith(".xml")) {
-                XMLConfiguration config = new XMLConfiguration(new File(loc));
-                rootConfig.addConfiguration(config);
-                LOGGER.debug("xml configuration from {}", loc);
+            catch(ExecutionException exep) {
+                LOGGER.error("unable to reload configuration from " + loc + ", keeping current values", exep.getCause());
+                return false;
             }
-            else if(loc.toLowerCase(Locale.getDefault()).endsWith(".json")) {
-                JsonConfiguration config = new JsonConfiguration(new File(loc));
-                rootConfig.addConfiguration(config);
-                LOGGER.debug("json configuration from {}", loc);
+            catch(InterruptedException exep) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("interrupted reloading configuration from {}, keeping current values", loc);
+                return false;
             }
-            else if(loc.toLowerCase(Locale.getDefault()).endsWith(".yml")) {
-                YamlConfiguration config = new YamlConfiguration(loc);
-                rootConfig.addConfiguration(config);
-                LOGGER.debug("yaml configuration from {}", loc);
+        }
+        CompositeConfiguration newConfig;
+        try {
+            newConfig = PlaceholderResolver.merge(newSources);
+        }
+        catch(RuntimeException exep) {
+            LOGGER.error("unable to resolve configuration placeholders, keeping current values", exep);
+            return false;
+        }
+        CompositeConfiguration oldConfig = rootConfig;
+        if(frozen != null) {
+            frozen = new FrozenConfiguration(newConfig);
+        }
+        rootConfig = newConfig;
+        sources = newSources;
+        mergedCount = newSources.size();
+        Set<String> changed = diff(oldConfig, newConfig);
+        LOGGER.info("configuration reloaded, {} paths changed", changed.size());
+        if(!changed.isEmpty()) {
+            for(ConfigurationChangeListener listener : listeners) {
+                listener.configurationChanged(this, changed);
             }
-            else if(loc.toLowerCase(Locale.getDefault()).endsWith(".yaml")) {
-                YamlConfiguration config = new YamlConfiguration(loc);
-                rootConfig.addConfiguration(config);
-                LOGGER.debug("yaml configuration from {}", loc);
+        }
+        return true;
+    }
+
+/**
+ * Retrieves the prefix itself, if it is a path, and all paths nested under it,
+ * including the indexed paths of array elements. Once the provider is frozen,
+ * the paths are enumerated from the prefix node of the frozen view without
+ * scanning other paths.
+ * <p>
+ *
+ * @param	prefix the path prefix. An empty prefix matches all paths.
+ * @return	the matching paths.
+ */
+
+    public List<String> keysUnder(String prefix) {
+        FrozenConfiguration view = frozen;
+        if(view != null) {
+            return view.keysUnder(prefix);
+        }
+        Set<String> paths = new LinkedHashSet<>();
+        Iterator<String> keys = keysOf(root(), prefix);
+        while(keys.hasNext()) {
+            paths.add(keys.next());
+        }
+        return new ArrayList<>(paths);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface BulkConfigurationProvider
+
+    @Override
+    public Map<String, Object> getSubtree(String prefix) {
+        FrozenConfiguration view = frozen;
+        if(view != null) {
+            return view.getSubtree(prefix);
+        }
+        CompositeConfiguration config = root();
+        Map<String, Object> subtree = new LinkedHashMap<>();
+        for(int i = 0; i < config.getNumberOfConfigurations(); i++) {
+            Configuration child = config.getConfiguration(i);
+            Map<String, Object> values;
+            if(child instanceof JsonConfiguration) {
+                values = ((JsonConfiguration) child).getSubtree(prefix);
+            }
+            else if(child instanceof YamlConfiguration) {
+                values = ((YamlConfiguration) child).getSubtree(prefix);
+            }
+            else if(child instanceof MappedPropertiesConfiguration) {
+                values = ((MappedPropertiesConfiguration) child).getSubtree(prefix);
+            }
+            else {
+                values = new LinkedHashMap<>();
+                Iterator<String> keys = keysOf(child, prefix);
+                while(keys.hasNext()) {
+                    String key = keys.next();
+                    values.put(key, child.getProperty(key));
+                }
+            }
+            for(Map.Entry<String, Object> entry : values.entrySet()) {
+                if(!subtree.containsKey(entry.getKey())) {
+                    subtree.put(entry.getKey(), entry.getValue());
+                }
             }
         }
-        catch(Exception exep) {
-            LOGGER.error("unable to load configuration from " + loc.toString(), exep);
+        return subtree;
+    }
+
+    @Override
+    public Map<String, Object> getValues(Map<String, Class<?>> paths) {
+        FrozenConfiguration view = frozen;
+        CompositeConfiguration config = root();
+        Map<String, Object> values = new HashMap<>();
+        for(Map.Entry<String, Class<?>> entry : paths.entrySet()) {
+            Object value = (view != null)
+                    ? view.getValue(entry.getKey(), entry.getValue())
+                    : convert(config, entry.getKey(), entry.getValue());
+            if(value != null) {
+                values.put(entry.getKey(), value);
+            }
         }
-        return this;
+        return values;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface FreezableConfigurationProvider
+
+    @Override
+    public synchronized void freeze() {
+        long start = System.nanoTime();
+        frozen = new FrozenConfiguration(root());
+        LOGGER.debug("configuration frozen: {} paths in {} us", frozen.size(), (System.nanoTime() - start) / 1000);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface ObservableConfigurationProvider
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        listeners.remove(listener);
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -84,57 +366,134 @@ public class ApacheCommonsConfigProvider implements ConfigurationProvider {
 
     @Override
     public boolean contains(String path) {
-        return rootConfig.containsKey(path);
+        FrozenConfiguration view = frozen;
+        if(view != null) {
+            return view.contains(path);
+        }
+        return root().containsKey(path);
     }
 
     @Override
     public Object getValue(String path, Class<?> type) {
-        if(!rootConfig.containsKey(path)) {
-            return null;
-        }
-        if(type.equals(Byte.TYPE) || type.equals(Byte.class)) {
-            return rootConfig.getByte(path, null);
+        FrozenConfiguration view = frozen;
+        if(view != null) {
+            return view.getValue(path, type);
         }
-        else if(type.equals(Short.TYPE) || type.equals(Short.class)) {
-            return rootConfig.getShort(path, null);
-        }
-        else if(type.equals(Integer.TYPE) || type.equals(Integer.class)) {
-            return rootConfig.getInteger(path, null);
-        }
-        else if(type.equals(Long.TYPE) || type.equals(Long.class)) {
-            return rootConfig.getLong(path, null);
+        return convert(root(), path, type);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private CompositeConfiguration root() {
+        if(pending) {
+            mergePending();
         }
-        else if(type.equals(Float.TYPE) || type.equals(Float.class)) {
-            return rootConfig.getFloat(path, null);
+        return rootConfig;
+    }
+
+/**
+ * Merges the sources added since the last merge into a new composite. If their
+ * placeholders cannot be resolved, the calls that added them are merged again
+ * one at a time, and the sources of each call that fails are dropped along
+ * with their locations.
+ */
+
+    private synchronized void mergePending() {
+        if(!pending) {
+            return;
         }
-        else if(type.equals(Double.TYPE) || type.equals(Double.class)) {
-            return rootConfig.getDouble(path, null);
+        try {
+            commit(PlaceholderResolver.merge(sources));
         }
-        else if(type.equals(Boolean.TYPE) || type.equals(Boolean.class)) {
-            return rootConfig.getBoolean(path, null);
+        catch(RuntimeException exep) {
+            List<AbstractConfiguration> allSources = sources;
+            List<String> allLocations = locations;
+            sources = new ArrayList<>(allSources.subList(0, mergedCount));
+            locations = new ArrayList<>(allLocations.subList(0, mergedCount));
+            int start = mergedCount;
+            for(int end : pendingEnds) {
+                List<AbstractConfiguration> newSources = new ArrayList<>(sources);
+                newSources.addAll(allSources.subList(start, end));
+                try {
+                    CompositeConfiguration newConfig = PlaceholderResolver.merge(newSources);
+                    sources = newSources;
+                    locations.addAll(allLocations.subList(start, end));
+                    commit(newConfig);
+                }
+                catch(RuntimeException batchExep) {
+                    LOGGER.error("unable to resolve configuration placeholders, locations not added: "
+                            + allLocations.subList(start, end), batchExep);
+                }
+                start = end;
+            }
         }
-        else if(type.equals(String.class)) {
-            return rootConfig.getString(path);
+        pendingEnds.clear();
+        pending = false;
+    }
+
+    private void watchFiles(List<String> locs) {
+        for(File file : toFiles(locs)) {
+            try {
+                watcher.watch(file);
+            }
+            catch(IOException exep) {
+                LOGGER.error("unable to watch configuration file " + file, exep);
+            }
         }
-        else if(type.equals(BigInteger.class)) {
-            return rootConfig.getBigInteger(path);
+    }
+
+    private static List<File> toFiles(List<String> locs) {
+        List<File> files = new ArrayList<>();
+        for(String loc : locs) {
+            File file = ConfigurationLoader.toFile(loc);
+            if(file != null) {
+                files.add(file);
+            }
         }
-        else if(type.equals(BigDecimal.class)) {
-            return rootConfig.getBigDecimal(path);
+        return files;
+    }
+
+    private void commit(CompositeConfiguration newConfig) {
+        if(frozen != null) {
+            frozen = new FrozenConfiguration(newConfig);
         }
-        else if(type.equals(Properties.class)) {
-            return rootConfig.getProperties(path);
+        rootConfig = newConfig;
+        mergedCount = sources.size();
+    }
+
+/**
+ * Commons Configuration matches no key with an empty prefix, where an empty
+ * prefix should match all keys.
+ */
+
+    private static Iterator<String> keysOf(Configuration config, String prefix) {
+        if(prefix == null || prefix.isEmpty()) {
+            return config.getKeys();
         }
-        else if(type.equals(String[].class)) {
-            return rootConfig.getStringArray(path);
+        return config.getKeys(prefix);
+    }
+
+    private static Object convert(CompositeConfiguration config, String path, Class<?> type) {
+        return ConverterRegistry.getDefault().convert(config.getProperty(path), type);
+    }
+
+    private static Set<String> diff(CompositeConfiguration oldConfig, CompositeConfiguration newConfig) {
+        Set<String> changed = new HashSet<>();
+        Iterator<String> keys = oldConfig.getKeys();
+        while(keys.hasNext()) {
+            String key = keys.next();
+            if(!Objects.equals(oldConfig.getProperty(key), newConfig.getProperty(key))) {
+                changed.add(key);
+            }
         }
-        else if(type.equals(TimeInterval.class)) {
-            String interval = rootConfig.getString(path);
-            if(interval == null) {
-                return null;
+        keys = newConfig.getKeys();
+        while(keys.hasNext()) {
+            String key = keys.next();
+            if(!oldConfig.containsKey(key)) {
+                changed.add(key);
             }
-            return new TimeInterval(interval);
         }
-        return null;
+        return changed;
     }
 }
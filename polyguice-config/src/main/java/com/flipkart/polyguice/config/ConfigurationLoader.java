@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.FileConfiguration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads configuration files from locations given as plain file paths,
+ * <tt>file:</tt> or other URLs, or <tt>classpath:</tt> resources. The format of
+ * a file is chosen by its extension: <tt>.properties</tt>, <tt>.xml</tt>,
+ * <tt>.json</tt>, <tt>.yml</tt> or <tt>.yaml</tt>.
+ * <p>
+ *
+ * Several locations are loaded in parallel, on a pool of daemon threads shared
+ * by all loaders, whose threads exit when idle. Each file is opened inside its
+ * loading task, using NIO for files on the local file system, and streamed
+ * through a buffer into the parser, so that a file is never held in memory as
+ * a whole besides its parsed form. The results are returned in the order of the locations, so that
+ * the caller can merge them in their declared precedence.
+ * <p>
+ *
+ * Local properties files of 1 MiB or more are memory-mapped and parsed in place
+ * by {@link MappedPropertiesConfiguration}, unless they contain include
+ * directives. JSON and YAML files are read as UTF-8.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class ConfigurationLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationLoader.class);
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final int    BUFFER_SIZE      = 8192;
+    private static final long   MAPPED_THRESHOLD = 1L << 20;
+    private static final long   IDLE_SECONDS     = 30;
+
+/**
+ * Loads the configurations at the specified locations, in parallel if there
+ * are several.
+ * <p>
+ *
+ * @param	locs the configuration locations.
+ * @return	for each location in order, the outcome of loading it. The loaded
+ *          configuration is <tt>null</tt> if the file format is not supported.
+ */
+
+    public List<Future<AbstractConfiguration>> loadAll(List<String> locs) {
+        List<Future<AbstractConfiguration>> results = new ArrayList<>(locs.size());
+        if(locs.size() == 1) {
+            FutureTask<AbstractConfiguration> task = new FutureTask<>(new LoadTask(locs.get(0)));
+            task.run();
+            results.add(task);
+            return results;
+        }
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        for(String loc : locs) {
+            results.add(ExecutorHolder.EXECUTOR.submit(new LoadTask(loc, loader)));
+        }
+        return results;
+    }
+
+/**
+ * @return	the local file of a location, or <tt>null</tt> if the location is
+ *          not on the local file system.
+ */
+
+    public static File toFile(String loc) {
+        if(loc.startsWith(CLASSPATH_PREFIX)) {
+            return null;
+        }
+        try {
+            URL url = toURL(loc);
+            return "file".equals(url.getProtocol()) ? new File(url.toURI()) : null;
+        }
+        catch(IOException | URISyntaxException | IllegalArgumentException exep) {
+            return null;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static URL toURL(String loc) throws IOException {
+        if(loc.startsWith(CLASSPATH_PREFIX)) {
+            String name = loc.substring(CLASSPATH_PREFIX.length());
+            if(name.startsWith("/")) {
+                name = name.substring(1);
+            }
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if(loader == null) {
+                loader = ConfigurationLoader.class.getClassLoader();
+            }
+            URL url = loader.getResource(name);
+            if(url == null) {
+                throw new IOException("classpath resource not found: " + name);
+            }
+            return url;
+        }
+        int colon = loc.indexOf(':');
+        if(colon > 1 && loc.substring(0, colon).matches("[a-zA-Z][a-zA-Z0-9+.-]*")) {
+            return new URL(loc);
+        }
+        return new File(loc).toURI().toURL();
+    }
+
+    private static InputStream open(URL url) throws IOException {
+        if("file".equals(url.getProtocol())) {
+            try {
+                return new BufferedInputStream(Files.newInputStream(Paths.get(url.toURI())), BUFFER_SIZE);
+            }
+            catch(URISyntaxException exep) {
+                throw new IOException("invalid file url " + url, exep);
+            }
+        }
+        return new BufferedInputStream(url.openStream(), BUFFER_SIZE);
+    }
+
+    private static AbstractConfiguration load(String loc) throws ConfigurationException, IOException {
+        String lowerLoc = loc.toLowerCase(Locale.getDefault());
+        if(lowerLoc.endsWith(".properties")) {
+            File file = toFile(loc);
+            if(file != null && file.length() >= MAPPED_THRESHOLD) {
+                LOGGER.debug("mapped properties configuration from {}", loc);
+                MappedPropertiesConfiguration mapped = new MappedPropertiesConfiguration(file);
+                if(!mapped.hasIncludes()) {
+                    return mapped;
+                }
+                LOGGER.debug("{} has includes, loading without mapping", loc);
+            }
+            LOGGER.debug("properties configuration from {}", loc);
+            PropertiesConfiguration config = new PropertiesConfiguration();
+            loadFile(config, toURL(loc));
+            return config;
+        }
+        else if(lowerLoc.endsWith(".xml")) {
+            LOGGER.debug("xml configuration from {}", loc);
+            XMLConfiguration config = new XMLConfiguration();
+            loadFile(config, toURL(loc));
+            return config;
+        }
+        else if(lowerLoc.endsWith(".json")) {
+            LOGGER.debug("json configuration from {}", loc);
+            URL url = toURL(loc);
+            Reader in = toReader(open(url));
+            try {
+                return new JsonConfiguration(url, in);
+            }
+            finally {
+                in.close();
+            }
+        }
+        else if(lowerLoc.endsWith(".yml") || lowerLoc.endsWith(".yaml")) {
+            LOGGER.debug("yaml configuration from {}", loc);
+            URL url = toURL(loc);
+            Reader in = toReader(open(url));
+            try {
+                return new YamlConfiguration(url, in);
+            }
+            finally {
+                in.close();
+            }
+        }
+        return null;
+    }
+
+    private static void loadFile(FileConfiguration config, URL url) throws ConfigurationException, IOException {
+        config.setURL(url);
+        InputStream in = open(url);
+        try {
+            config.load(in);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static Reader toReader(InputStream in) {
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+/**
+ * Holds the shared loader pool, created on the first parallel load.
+ */
+
+    private static class ExecutorHolder {
+
+        private static final ExecutorService EXECUTOR = createExecutor();
+
+        private static ExecutorService createExecutor() {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable task) {
+                            Thread thread = new Thread(task, "polyguice-config-loader");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+/**
+ * Loads one location. On a pool thread, the context class loader of the caller
+ * is used to find <tt>classpath:</tt> resources.
+ */
+
+    private static class LoadTask implements Callable<AbstractConfiguration> {
+
+        private String      loc;
+        private ClassLoader loader;
+
+        LoadTask(String loc) {
+            this(loc, Thread.currentThread().getContextClassLoader());
+        }
+
+        LoadTask(String loc, ClassLoader loader) {
+            this.loc = loc;
+            this.loader = loader;
+        }
+
+        @Override
+        public AbstractConfiguration call() throws ConfigurationException, IOException {
+            Thread thread = Thread.currentThread();
+            ClassLoader oldLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            try {
+                return load(loc);
+            }
+            finally {
+                thread.setContextClassLoader(oldLoader);
+            }
+        }
+    }
+}
@@ -0,0 +1,787 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Binary format of a precompiled configuration snapshot. A snapshot holds the
+ * flattened paths of a configuration, with precedence and placeholders
+ * already resolved, and their values in typed form. It is read in place from a
+ * buffer, normally a memory-mapped file, without decoding it up front.
+ * <p>
+ *
+ * All numbers are big-endian. The file starts with a header of eight ints:
+ * magic, version, entry count, slot count, offset of the entry table, offset of
+ * the data section, total length, and a reserved zero. The header is followed
+ * by the hash slots, the entry table and the data section.
+ * <p>
+ *
+ * <ul>
+ * <li>Each hash slot holds an entry number plus one, or zero if empty. Paths
+ * are placed by their <tt>String.hashCode()</tt> with linear probing.</li>
+ * <li>The entries are sorted by path. Each holds the path hash, the data offset
+ * of the path, the value type and a long payload: the value itself for
+ * numbers and booleans, or the data offset of a string or a list.</li>
+ * <li>The data section holds strings, as a length and UTF-16 chars, each
+ * distinct string stored once; and lists, as a length and elements of a type
+ * and a payload each.</li>
+ * </ul>
+ *
+ * @author indroneel.das
+ */
+
+class ConfigurationSnapshot {
+
+    static final int MAGIC   = 0x50474353;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE  = 32;
+    private static final int ENTRY_SIZE   = 20;
+    private static final int ELEMENT_SIZE = 12;
+
+    private static final int INT         = 1;
+    private static final int LONG        = 2;
+    private static final int FLOAT       = 3;
+    private static final int DOUBLE      = 4;
+    private static final int BOOLEAN     = 5;
+    private static final int STRING      = 6;
+    private static final int BIG_INTEGER = 7;
+    private static final int BIG_DECIMAL = 8;
+    private static final int LIST        = 9;
+
+    private static final String[] TRUE_WORDS  = {"true", "yes", "on", "y", "t"};
+    private static final String[] FALSE_WORDS = {"false", "no", "off", "n", "f"};
+
+    private static final double   TWO_TO_63     = 0x1p63;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private ByteBuffer buffer;
+    private int        count;
+    private int        slotCount;
+    private int        entries;
+    private int        data;
+
+    ConfigurationSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new RuntimeException("not a configuration snapshot");
+        }
+        if(buffer.getInt(4) != VERSION) {
+            throw new RuntimeException("unsupported configuration snapshot version " + buffer.getInt(4));
+        }
+        count = buffer.getInt(8);
+        slotCount = buffer.getInt(12);
+        entries = buffer.getInt(16);
+        data = buffer.getInt(20);
+        if(buffer.getInt(24) != buffer.limit()) {
+            throw new RuntimeException("truncated configuration snapshot");
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+/**
+ * @return	the entry of the path, or <tt>-1</tt> if the path is missing.
+ */
+
+    public int find(String path) {
+        int hash = path.hashCode();
+        int mask = slotCount - 1;
+        for(int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = buffer.getInt(HEADER_SIZE + slot * 4) - 1;
+            if(entry < 0) {
+                return -1;
+            }
+            int pos = entries + entry * ENTRY_SIZE;
+            if(buffer.getInt(pos) == hash && compareString(buffer.getInt(pos + 4), path) == 0) {
+                return entry;
+            }
+        }
+    }
+
+    public String getPath(int entry) {
+        return readString(pathRef(entry));
+    }
+
+    public Object getValue(int entry) {
+        int pos = entries + entry * ENTRY_SIZE;
+        return readValue(buffer.getInt(pos + 8), buffer.getLong(pos + 12));
+    }
+
+/**
+ * Retrieves the prefix itself, if it is a path, and all paths nested under it,
+ * along with their values. The paths are found by a binary search of the sorted
+ * entry table.
+ * <p>
+ *
+ * @param	prefix the path prefix. An empty prefix matches all paths.
+ * @return	the values keyed by their full paths, in path order.
+ */
+
+    public Map<String, Object> subtree(String prefix) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for(int entry = lowerBound(prefix); entry < count; entry++) {
+            int keyRef = pathRef(entry);
+            if(!startsWith(keyRef, prefix)) {
+                break;
+            }
+            int length = buffer.getInt(data + keyRef);
+            if(prefix.isEmpty() || length == prefix.length() || isSeparator(keyRef, prefix.length())) {
+                result.put(readString(keyRef), getValue(entry));
+            }
+        }
+        return result;
+    }
+
+    public List<String> keysUnder(String prefix) {
+        return new ArrayList<>(subtree(prefix).keySet());
+    }
+
+/**
+ * Reads a whole number without boxing it. Numbers stored as strings, as from
+ * properties files, or as big numbers are parsed in place. Of a list, the first
+ * element is read, as the converter registry does.
+ * <p>
+ *
+ * @param	entry the entry of the value.
+ * @param	missing the value to return if the value is not a whole number that
+ *          fits in a long.
+ * @return	the value.
+ */
+
+    public long getLong(int entry, long missing) {
+        int pos = entries + entry * ENTRY_SIZE;
+        return longValue(buffer.getInt(pos + 8), buffer.getLong(pos + 12), missing);
+    }
+
+/**
+ * Reads a numeric value without boxing it. Numbers stored as strings or as big
+ * numbers are parsed in place; only numbers with more than fifteen significant
+ * digits or a large exponent are parsed through a string. Of a list, the first
+ * element is read.
+ * <p>
+ *
+ * @param	entry the entry of the value.
+ * @param	missing the value to return if the value is not a number.
+ * @return	the value as a double.
+ */
+
+    public double getDouble(int entry, double missing) {
+        int pos = entries + entry * ENTRY_SIZE;
+        return doubleValue(buffer.getInt(pos + 8), buffer.getLong(pos + 12), missing);
+    }
+
+/**
+ * Reads a boolean value without boxing it. A string is compared in place with
+ * the words accepted by the
+ * {@link com.flipkart.polyguice.core.support.ConverterRegistry}, ignoring case.
+ * Of a list, the first element is read.
+ * <p>
+ *
+ * @param	entry the entry of the value.
+ * @param	missing the value to return if the value is not a boolean.
+ * @return	the value.
+ */
+
+    public boolean getBoolean(int entry, boolean missing) {
+        int pos = entries + entry * ENTRY_SIZE;
+        return booleanValue(buffer.getInt(pos + 8), buffer.getLong(pos + 12), missing);
+    }
+
+/**
+ * Finds the paths whose values differ between this snapshot and another one,
+ * including the paths present in only one of them. Both entry tables are
+ * walked in path order and compared in place; only the differing paths are
+ * decoded.
+ * <p>
+ *
+ * @param	other the snapshot to compare with.
+ * @return	the differing paths.
+ */
+
+    public Set<String> diff(ConfigurationSnapshot other) {
+        Set<String> changed = new HashSet<>();
+        int i = 0;
+        int j = 0;
+        while(i < count || j < other.count) {
+            int cmp;
+            if(i == count) {
+                cmp = 1;
+            }
+            else if(j == other.count) {
+                cmp = -1;
+            }
+            else {
+                cmp = compareStrings(pathRef(i), other, other.pathRef(j));
+            }
+            if(cmp < 0) {
+                changed.add(getPath(i++));
+            }
+            else if(cmp > 0) {
+                changed.add(other.getPath(j++));
+            }
+            else {
+                int pos = entries + i * ENTRY_SIZE;
+                int otherPos = other.entries + j * ENTRY_SIZE;
+                if(!valueEquals(buffer.getInt(pos + 8), buffer.getLong(pos + 12),
+                        other, other.buffer.getInt(otherPos + 8), other.buffer.getLong(otherPos + 12))) {
+                    changed.add(getPath(i));
+                }
+                i++;
+                j++;
+            }
+        }
+        return changed;
+    }
+
+/**
+ * Writes a snapshot of the specified values.
+ * <p>
+ *
+ * @param	values the values keyed by path, sorted by path.
+ * @param	out the stream to write to.
+ * @throws	IOException if the snapshot cannot be written.
+ */
+
+    public static void write(SortedMap<String, Object> values, OutputStream out) throws IOException {
+        ByteArrayOutputStream dataBytes = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(dataBytes);
+        Map<String, Integer> strings = new HashMap<>();
+        int count = values.size();
+        int[] hashes = new int[count];
+        int[] keyRefs = new int[count];
+        int[] types = new int[count];
+        long[] payloads = new long[count];
+        int index = 0;
+        for(Map.Entry<String, Object> entry : values.entrySet()) {
+            hashes[index] = entry.getKey().hashCode();
+            keyRefs[index] = writeString(entry.getKey(), dataOut, strings);
+            Object value = entry.getValue();
+            if(value instanceof List) {
+                List<?> list = (List<?>) value;
+                int[] elementTypes = new int[list.size()];
+                long[] elementPayloads = new long[list.size()];
+                for(int i = 0; i < list.size(); i++) {
+                    elementTypes[i] = typeOf(list.get(i));
+                    elementPayloads[i] = payloadOf(elementTypes[i], list.get(i), dataOut, strings);
+                }
+                types[index] = LIST;
+                payloads[index] = dataOut.size();
+                dataOut.writeInt(list.size());
+                for(int i = 0; i < list.size(); i++) {
+                    dataOut.writeInt(elementTypes[i]);
+                    dataOut.writeLong(elementPayloads[i]);
+                }
+            }
+            else {
+                types[index] = typeOf(value);
+                payloads[index] = payloadOf(types[index], value, dataOut, strings);
+            }
+            index++;
+        }
+        dataOut.flush();
+
+        int slotCount = Integer.highestOneBit(Math.max(count, 1) * 2) * 2;
+        int[] slots = new int[slotCount];
+        for(int i = 0; i < count; i++) {
+            int slot = spread(hashes[i]) & (slotCount - 1);
+            while(slots[slot] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[slot] = i + 1;
+        }
+        int entriesOffset = HEADER_SIZE + slotCount * 4;
+        int dataOffset = entriesOffset + count * ENTRY_SIZE;
+        DataOutputStream fileOut = new DataOutputStream(out);
+        fileOut.writeInt(MAGIC);
+        fileOut.writeInt(VERSION);
+        fileOut.writeInt(count);
+        fileOut.writeInt(slotCount);
+        fileOut.writeInt(entriesOffset);
+        fileOut.writeInt(dataOffset);
+        fileOut.writeInt(dataOffset + dataBytes.size());
+        fileOut.writeInt(0);
+        for(int slot : slots) {
+            fileOut.writeInt(slot);
+        }
+        for(int i = 0; i < count; i++) {
+            fileOut.writeInt(hashes[i]);
+            fileOut.writeInt(keyRefs[i]);
+            fileOut.writeInt(types[i]);
+            fileOut.writeLong(payloads[i]);
+        }
+        dataBytes.writeTo(fileOut);
+        fileOut.flush();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private int pathRef(int entry) {
+        return buffer.getInt(entries + entry * ENTRY_SIZE + 4);
+    }
+
+    private int compareStrings(int ref, ConfigurationSnapshot other, int otherRef) {
+        int pos = data + ref;
+        int otherPos = other.data + otherRef;
+        int length = buffer.getInt(pos);
+        int otherLength = other.buffer.getInt(otherPos);
+        int common = Math.min(length, otherLength);
+        for(int i = 0; i < common; i++) {
+            int diff = buffer.getChar(pos + 4 + i * 2) - other.buffer.getChar(otherPos + 4 + i * 2);
+            if(diff != 0) {
+                return diff;
+            }
+        }
+        return length - otherLength;
+    }
+
+    private boolean valueEquals(int type, long payload, ConfigurationSnapshot other, int otherType,
+            long otherPayload) {
+        if(type != otherType) {
+            return false;
+        }
+        switch(type) {
+        case STRING:
+        case BIG_INTEGER:
+        case BIG_DECIMAL:
+            return compareStrings((int) payload, other, (int) otherPayload) == 0;
+        case LIST:
+            int pos = data + (int) payload;
+            int otherPos = other.data + (int) otherPayload;
+            int length = buffer.getInt(pos);
+            if(length != other.buffer.getInt(otherPos)) {
+                return false;
+            }
+            for(int i = 0; i < length; i++) {
+                int element = pos + 4 + i * ELEMENT_SIZE;
+                int otherElement = otherPos + 4 + i * ELEMENT_SIZE;
+                if(!valueEquals(buffer.getInt(element), buffer.getLong(element + 4),
+                        other, other.buffer.getInt(otherElement), other.buffer.getLong(otherElement + 4))) {
+                    return false;
+                }
+            }
+            return true;
+        default:
+            return payload == otherPayload;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int typeOf(Object value) {
+        if(value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return INT;
+        }
+        else if(value instanceof Long) {
+            return LONG;
+        }
+        else if(value instanceof Float) {
+            return FLOAT;
+        }
+        else if(value instanceof Double) {
+            return DOUBLE;
+        }
+        else if(value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        else if(value instanceof BigInteger) {
+            return BIG_INTEGER;
+        }
+        else if(value instanceof BigDecimal) {
+            return BIG_DECIMAL;
+        }
+        return STRING;
+    }
+
+    private static long payloadOf(int type, Object value, DataOutputStream dataOut, Map<String, Integer> strings)
+            throws IOException {
+        switch(type) {
+        case INT:
+        case LONG:
+            return ((Number) value).longValue();
+        case FLOAT:
+            return Float.floatToRawIntBits((Float) value);
+        case DOUBLE:
+            return Double.doubleToRawLongBits((Double) value);
+        case BOOLEAN:
+            return ((Boolean) value) ? 1 : 0;
+        default:
+            return writeString(String.valueOf(value), dataOut, strings);
+        }
+    }
+
+    private static int writeString(String value, DataOutputStream dataOut, Map<String, Integer> strings)
+            throws IOException {
+        Integer offset = strings.get(value);
+        if(offset == null) {
+            offset = dataOut.size();
+            dataOut.writeInt(value.length());
+            dataOut.writeChars(value);
+            strings.put(value, offset);
+        }
+        return offset;
+    }
+
+    private Object readValue(int type, long payload) {
+        switch(type) {
+        case INT:
+            return (int) payload;
+        case LONG:
+            return payload;
+        case FLOAT:
+            return Float.intBitsToFloat((int) payload);
+        case DOUBLE:
+            return Double.longBitsToDouble(payload);
+        case BOOLEAN:
+            return payload != 0;
+        case STRING:
+            return readString((int) payload);
+        case BIG_INTEGER:
+            return new BigInteger(readString((int) payload));
+        case BIG_DECIMAL:
+            return new BigDecimal(readString((int) payload));
+        case LIST:
+            int pos = data + (int) payload;
+            int length = buffer.getInt(pos);
+            List<Object> list = new ArrayList<>(length);
+            for(int i = 0; i < length; i++) {
+                int element = pos + 4 + i * ELEMENT_SIZE;
+                list.add(readValue(buffer.getInt(element), buffer.getLong(element + 4)));
+            }
+            return Collections.unmodifiableList(list);
+        default:
+            throw new RuntimeException("unknown value type " + type + " in configuration snapshot");
+        }
+    }
+
+    private long longValue(int type, long payload, long missing) {
+        switch(type) {
+        case INT:
+        case LONG:
+            return payload;
+        case FLOAT:
+            return toLong(Float.intBitsToFloat((int) payload), missing);
+        case DOUBLE:
+            return toLong(Double.longBitsToDouble(payload), missing);
+        case STRING:
+        case BIG_INTEGER:
+        case BIG_DECIMAL:
+            return parseLong((int) payload, missing);
+        case LIST:
+            int element = firstElement(payload);
+            return (element >= 0) ? longValue(buffer.getInt(element), buffer.getLong(element + 4), missing) : missing;
+        default:
+            return missing;
+        }
+    }
+
+    private double doubleValue(int type, long payload, double missing) {
+        switch(type) {
+        case INT:
+        case LONG:
+            return payload;
+        case FLOAT:
+            return Float.intBitsToFloat((int) payload);
+        case DOUBLE:
+            return Double.longBitsToDouble(payload);
+        case STRING:
+        case BIG_INTEGER:
+        case BIG_DECIMAL:
+            return parseDouble((int) payload, missing);
+        case LIST:
+            int element = firstElement(payload);
+            return (element >= 0) ? doubleValue(buffer.getInt(element), buffer.getLong(element + 4), missing) : missing;
+        default:
+            return missing;
+        }
+    }
+
+    private boolean booleanValue(int type, long payload, boolean missing) {
+        switch(type) {
+        case BOOLEAN:
+            return payload != 0;
+        case STRING:
+            for(String word : TRUE_WORDS) {
+                if(equalsIgnoreCase((int) payload, word)) {
+                    return true;
+                }
+            }
+            for(String word : FALSE_WORDS) {
+                if(equalsIgnoreCase((int) payload, word)) {
+                    return false;
+                }
+            }
+            return missing;
+        case LIST:
+            int element = firstElement(payload);
+            return (element >= 0) ? booleanValue(buffer.getInt(element), buffer.getLong(element + 4), missing) : missing;
+        default:
+            return missing;
+        }
+    }
+
+/**
+ * @return	the position of the first element of a list, or <tt>-1</tt> if the
+ *          list is empty.
+ */
+
+    private int firstElement(long payload) {
+        int pos = data + (int) payload;
+        return (buffer.getInt(pos) > 0) ? pos + 4 : -1;
+    }
+
+    private static long toLong(double value, long missing) {
+        if(value != Math.rint(value) || value < -TWO_TO_63 || value >= TWO_TO_63) {
+            return missing;
+        }
+        return (long) value;
+    }
+
+/**
+ * Parses a stored string as a whole number. Plain integers are read digit by
+ * digit; other numbers are parsed as doubles and must be whole.
+ */
+
+    private long parseLong(int ref, long missing) {
+        int pos = data + ref + 4;
+        int end = pos + buffer.getInt(data + ref) * 2;
+        while(pos < end && Character.isWhitespace(buffer.getChar(pos))) {
+            pos += 2;
+        }
+        while(end > pos && Character.isWhitespace(buffer.getChar(end - 2))) {
+            end -= 2;
+        }
+        boolean negative = false;
+        if(pos < end && (buffer.getChar(pos) == '-' || buffer.getChar(pos) == '+')) {
+            negative = (buffer.getChar(pos) == '-');
+            pos += 2;
+        }
+        if(pos == end) {
+            return missing;
+        }
+        long value = 0;
+        for(int i = pos; i < end; i += 2) {
+            char ch = buffer.getChar(i);
+            if(ch < '0' || ch > '9') {
+                return toLong(parseDouble(ref, Double.NaN), missing);
+            }
+            if(value < (Long.MIN_VALUE + (ch - '0')) / 10) {
+                return missing;
+            }
+            value = value * 10 - (ch - '0');
+        }
+        if(!negative && value == Long.MIN_VALUE) {
+            return missing;
+        }
+        return negative ? value : -value;
+    }
+
+/**
+ * Parses a stored string as a decimal number. Numbers of up to fifteen
+ * significant digits with a decimal exponent of at most 22 are computed exactly
+ * from a long and a power of ten; others fall back to <tt>BigDecimal</tt>, as
+ * the converter registry does.
+ */
+
+    private double parseDouble(int ref, double missing) {
+        int pos = data + ref + 4;
+        int end = pos + buffer.getInt(data + ref) * 2;
+        while(pos < end && Character.isWhitespace(buffer.getChar(pos))) {
+            pos += 2;
+        }
+        while(end > pos && Character.isWhitespace(buffer.getChar(end - 2))) {
+            end -= 2;
+        }
+        boolean negative = false;
+        if(pos < end && (buffer.getChar(pos) == '-' || buffer.getChar(pos) == '+')) {
+            negative = (buffer.getChar(pos) == '-');
+            pos += 2;
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean point = false;
+        for(; pos < end; pos += 2) {
+            char ch = buffer.getChar(pos);
+            if(ch == '.' && !point) {
+                point = true;
+                continue;
+            }
+            if(ch < '0' || ch > '9') {
+                break;
+            }
+            digits++;
+            if(mantissa != 0 || ch != '0') {
+                significant++;
+            }
+            if(significant <= 15) {
+                mantissa = mantissa * 10 + (ch - '0');
+                exponent -= point ? 1 : 0;
+            }
+            else {
+                exponent += point ? 0 : 1;
+            }
+        }
+        if(digits == 0) {
+            return missing;
+        }
+        if(pos < end && (buffer.getChar(pos) == 'e' || buffer.getChar(pos) == 'E')) {
+            pos += 2;
+            boolean negativeExp = false;
+            if(pos < end && (buffer.getChar(pos) == '-' || buffer.getChar(pos) == '+')) {
+                negativeExp = (buffer.getChar(pos) == '-');
+                pos += 2;
+            }
+            int exp = 0;
+            int expDigits = 0;
+            for(; pos < end && buffer.getChar(pos) >= '0' && buffer.getChar(pos) <= '9'; pos += 2) {
+                exp = Math.min(exp * 10 + (buffer.getChar(pos) - '0'), 10000);
+                expDigits++;
+            }
+            if(expDigits == 0) {
+                return missing;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+        if(pos != end) {
+            return missing;
+        }
+        if(significant > 15 || exponent > 22 || exponent < -22) {
+            try {
+                return new BigDecimal(readString(ref).trim()).doubleValue();
+            }
+            catch(NumberFormatException exep) {
+                return missing;
+            }
+        }
+        double value = (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+/**
+ * Compares a stored string, without surrounding whitespace, with a lowercase
+ * word, ignoring case.
+ */
+
+    private boolean equalsIgnoreCase(int ref, String word) {
+        int pos = data + ref + 4;
+        int end = pos + buffer.getInt(data + ref) * 2;
+        while(pos < end && Character.isWhitespace(buffer.getChar(pos))) {
+            pos += 2;
+        }
+        while(end > pos && Character.isWhitespace(buffer.getChar(end - 2))) {
+            end -= 2;
+        }
+        if((end - pos) / 2 != word.length()) {
+            return false;
+        }
+        for(int i = 0; i < word.length(); i++) {
+            if(Character.toLowerCase(buffer.getChar(pos + i * 2)) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readString(int ref) {
+        int pos = data + ref;
+        int length = buffer.getInt(pos);
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(pos + 4 + i * 2);
+        }
+        return new String(chars);
+    }
+
+/**
+ * Compares a stored string with the specified one, char by char as
+ * <tt>String.compareTo</tt> does.
+ */
+
+    private int compareString(int ref, String value) {
+        int pos = data + ref;
+        int length = buffer.getInt(pos);
+        int common = Math.min(length, value.length());
+        for(int i = 0; i < common; i++) {
+            int diff = buffer.getChar(pos + 4 + i * 2) - value.charAt(i);
+            if(diff != 0) {
+                return diff;
+            }
+        }
+        return length - value.length();
+    }
+
+    private boolean startsWith(int ref, String prefix) {
+        int pos = data + ref;
+        if(buffer.getInt(pos) < prefix.length()) {
+            return false;
+        }
+        for(int i = 0; i < prefix.length(); i++) {
+            if(buffer.getChar(pos + 4 + i * 2) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSeparator(int ref, int index) {
+        char ch = buffer.getChar(data + ref + 4 + index * 2);
+        return ch == '.' || ch == '[';
+    }
+
+/**
+ * @return	the first entry whose path is not less than the specified one.
+ */
+
+    private int lowerBound(String path) {
+        int low = 0;
+        int high = count;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(compareString(pathRef(mid), path) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact store for flattened configuration keys. Keys are split into their
+ * segments at dots and at array indexes, so that <tt>service.db.pool</tt> and
+ * <tt>servers[0].host</tt> are stored as paths of three segments each. Every
+ * segment string is stored once per trie, however many keys share it, and
+ * boolean and numeric values are kept unboxed in the nodes.
+ * <p>
+ *
+ * Lookups walk the key in place without allocating. All keys under a prefix are
+ * enumerated from the node of the prefix, without scanning the other keys.
+ * <p>
+ *
+ * A trie is filled once and then only read; it must be safely published before
+ * it is read from other threads. It is not safe for concurrent updates.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class ConfigurationTrie {
+
+    private static final byte NONE    = 0;
+    private static final byte OBJECT  = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG    = 4;
+    private static final byte FLOAT   = 5;
+    private static final byte DOUBLE  = 6;
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private Node                root;
+    private int                 size;
+    private Map<String, String> segments;
+
+    ConfigurationTrie() {
+        root = new Node(null);
+        segments = new HashMap<>();
+    }
+
+    public void put(String key, Object value) {
+        Node node = root;
+        int start = 0;
+        int length = key.length();
+        while(start < length) {
+            int end = segmentEnd(key, start);
+            node = node.getOrAddChild(key, start, end, this);
+            start = (end < length && key.charAt(end) == '.') ? end + 1 : end;
+        }
+        if(node.kind == NONE) {
+            size++;
+        }
+        node.setValue(value);
+    }
+
+    public Object get(String key) {
+        Node node = find(key);
+        return (node != null) ? node.getValue() : null;
+    }
+
+    public boolean containsKey(String key) {
+        Node node = find(key);
+        return node != null && node.kind != NONE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+/**
+ * @return	all keys in this trie.
+ */
+
+    public List<String> keys() {
+        List<String> result = new ArrayList<>(size);
+        collectFrom(root, new StringBuilder(), result);
+        return result;
+    }
+
+/**
+ * Retrieves the prefix itself, if it is a key, and all keys nested under it,
+ * including those of the elements of an array at the prefix.
+ * <p>
+ *
+ * @param	prefix the key prefix. An empty prefix matches all keys.
+ * @return	the matching keys.
+ */
+
+    public List<String> keysUnder(String prefix) {
+        if(prefix == null || prefix.isEmpty()) {
+            return keys();
+        }
+        List<String> result = new ArrayList<>();
+        Node node = find(prefix);
+        if(node != null) {
+            collectFrom(node, new StringBuilder(prefix.length() + 32).append(prefix), result);
+        }
+        return result;
+    }
+
+/**
+ * Retrieves the prefix itself, if it is a key, and all keys nested under it,
+ * along with their values.
+ * <p>
+ *
+ * @param	prefix the key prefix. An empty prefix matches all keys.
+ * @return	the values keyed by their full keys, in key order.
+ */
+
+    public Map<String, Object> subtree(String prefix) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Node node = (prefix != null) ? find(prefix) : root;
+        if(node != null) {
+            StringBuilder buffer = new StringBuilder((prefix != null) ? prefix : "");
+            collectFrom(node, buffer, result);
+        }
+        return result;
+    }
+
+/**
+ * Trims the internal arrays once the trie has been filled.
+ */
+
+    public void compact() {
+        root.compact();
+        segments = new HashMap<>();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private Node find(String key) {
+        Node node = root;
+        int start = 0;
+        int length = key.length();
+        while(start < length) {
+            int end = segmentEnd(key, start);
+            node = node.findChild(key, start, end);
+            if(node == null) {
+                return null;
+            }
+            start = (end < length && key.charAt(end) == '.') ? end + 1 : end;
+        }
+        return node;
+    }
+
+    private String intern(String key, int start, int end) {
+        String segment = key.substring(start, end);
+        String existing = segments.get(segment);
+        if(existing != null) {
+            return existing;
+        }
+        segments.put(segment, segment);
+        return segment;
+    }
+
+    private static void collect(Node node, StringBuilder buffer, Object result) {
+        int mark = buffer.length();
+        if(mark > 0 && !node.segment.startsWith("[")) {
+            buffer.append('.');
+        }
+        buffer.append(node.segment);
+        collectFrom(node, buffer, result);
+        buffer.setLength(mark);
+    }
+
+/**
+ * Adds the keys of the node and its descendants to the result, which is either
+ * a list of keys or a map of keys to values.
+ */
+
+    @SuppressWarnings("unchecked")
+    private static void collectFrom(Node node, StringBuilder buffer, Object result) {
+        if(node.kind != NONE) {
+            if(result instanceof List) {
+                ((List<String>) result).add(buffer.toString());
+            }
+            else {
+                ((Map<String, Object>) result).put(buffer.toString(), node.getValue());
+            }
+        }
+        for(int i = 0; i < node.childCount; i++) {
+            collect(node.children[i], buffer, result);
+        }
+    }
+
+/**
+ * Finds the end of the segment starting at the specified index. An array index
+ * is a segment of its own, as is the name that precedes it.
+ */
+
+    private static int segmentEnd(String key, int start) {
+        int length = key.length();
+        if(key.charAt(start) == '[') {
+            int close = key.indexOf(']', start);
+            return (close < 0) ? length : close + 1;
+        }
+        for(int i = start; i < length; i++) {
+            char ch = key.charAt(i);
+            if(ch == '.' || (ch == '[' && i > start)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+/**
+ * Orders segments by their characters, except that array indexes are ordered
+ * numerically by comparing lengths first.
+ */
+
+    private static int compare(String key, int start, int end, String segment) {
+        int length = end - start;
+        if(length != segment.length() && length > 0 && key.charAt(start) == '[' && segment.startsWith("[")) {
+            return length - segment.length();
+        }
+        int count = Math.min(length, segment.length());
+        for(int i = 0; i < count; i++) {
+            int diff = key.charAt(start + i) - segment.charAt(i);
+            if(diff != 0) {
+                return diff;
+            }
+        }
+        return length - segment.length();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    private static class Node {
+
+        private String segment;
+        private Node[] children;
+        private int    childCount;
+        private byte   kind;
+        private long   bits;
+        private Object ref;
+
+        Node(String segment) {
+            this.segment = segment;
+            children = NO_CHILDREN;
+        }
+
+        public Node findChild(String key, int start, int end) {
+            int index = search(key, start, end);
+            return (index >= 0) ? children[index] : null;
+        }
+
+        public Node getOrAddChild(String key, int start, int end, ConfigurationTrie trie) {
+            int index = search(key, start, end);
+            if(index >= 0) {
+                return children[index];
+            }
+            index = -(index + 1);
+            if(childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+            }
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            Node child = new Node(trie.intern(key, start, end));
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+
+        public void setValue(Object value) {
+            ref = null;
+            bits = 0;
+            if(value instanceof Boolean) {
+                kind = BOOLEAN;
+                bits = ((Boolean) value) ? 1 : 0;
+            }
+            else if(value instanceof Integer) {
+                kind = INTEGER;
+                bits = (Integer) value;
+            }
+            else if(value instanceof Long) {
+                kind = LONG;
+                bits = (Long) value;
+            }
+            else if(value instanceof Float) {
+                kind = FLOAT;
+                bits = Float.floatToRawIntBits((Float) value);
+            }
+            else if(value instanceof Double) {
+                kind = DOUBLE;
+                bits = Double.doubleToRawLongBits((Double) value);
+            }
+            else {
+                kind = OBJECT;
+                ref = value;
+            }
+        }
+
+        public Object getValue() {
+            switch(kind) {
+            case BOOLEAN:
+                return bits != 0;
+            case INTEGER:
+                return (int) bits;
+            case LONG:
+                return bits;
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                return ref;
+            }
+        }
+
+        public void compact() {
+            if(childCount < children.length) {
+                children = (childCount > 0) ? Arrays.copyOf(children, childCount) : NO_CHILDREN;
+            }
+            for(int i = 0; i < childCount; i++) {
+                children[i].compact();
+            }
+        }
+
+        private int search(String key, int start, int end) {
+            // Keys are mostly added in order, so check the last child first.
+            if(childCount > 0) {
+                int cmp = compare(key, start, end, children[childCount - 1].segment);
+                if(cmp > 0) {
+                    return -(childCount + 1);
+                }
+                if(cmp == 0) {
+                    return childCount - 1;
+                }
+            }
+            int low = 0;
+            int high = childCount - 2;
+            while(low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(key, start, end, children[mid].segment);
+                if(cmp < 0) {
+                    high = mid - 1;
+                }
+                else if(cmp > 0) {
+                    low = mid + 1;
+                }
+                else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
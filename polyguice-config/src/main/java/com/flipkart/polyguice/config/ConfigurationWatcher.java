@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a set of configuration files for changes using a {@link WatchService}
+ * on their parent directories, and runs a callback once the changes settle. A
+ * burst of events (like an editor writing a file in several steps, or a number
+ * of files being replaced together) results in a single callback, issued after
+ * no further change has been seen for the debounce interval.
+ * <p>
+ *
+ * More files can be watched at any time until the watcher is closed. Once
+ * closed, changes seen by the watch thread are ignored.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ConfigurationWatcher implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationWatcher.class);
+
+    private WatchService             watchService;
+    private Map<Path, Set<Path>>     watchedFiles;
+    private long                     debounceMillis;
+    private Runnable                 callback;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?>       pending;
+    private Thread                   watchThread;
+    private boolean                  closed;
+
+    public ConfigurationWatcher(Collection<File> files, long debounceMillis, Runnable callback) throws IOException {
+        this.debounceMillis = debounceMillis;
+        this.callback = callback;
+        watchService = FileSystems.getDefault().newWatchService();
+        watchedFiles = new ConcurrentHashMap<>();
+        for(File file : files) {
+            watch(file);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "polyguice-config-reload");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        watchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchLoop();
+            }
+        }, "polyguice-config-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+/**
+ * Adds a file to those being watched.
+ * <p>
+ *
+ * @param	file the file to watch.
+ * @throws	IOException if the directory of the file cannot be watched.
+ */
+
+    public synchronized void watch(File file) throws IOException {
+        if(closed) {
+            throw new IOException("configuration watcher is closed");
+        }
+        Path path = file.getAbsoluteFile().toPath();
+        Path dir = path.getParent();
+        Set<Path> names = watchedFiles.get(dir);
+        if(names == null) {
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            names = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+            watchedFiles.put(dir, names);
+        }
+        if(names.add(path.getFileName())) {
+            LOGGER.debug("watching configuration file {}", path);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized(this) {
+            closed = true;
+            scheduler.shutdownNow();
+        }
+        watchService.close();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private void watchLoop() {
+        try {
+            while(true) {
+                WatchKey key = watchService.take();
+                Set<Path> names = watchedFiles.get((Path) key.watchable());
+                boolean relevant = false;
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        relevant = true;
+                    }
+                    else if(names != null && names.contains((Path) event.context())) {
+                        relevant = true;
+                    }
+                }
+                key.reset();
+                if(relevant) {
+                    schedule();
+                }
+            }
+        }
+        catch(InterruptedException exep) {
+            Thread.currentThread().interrupt();
+        }
+        catch(ClosedWatchServiceException exep) {
+            //NOOP, watcher closed
+        }
+        LOGGER.debug("configuration watcher stopped");
+    }
+
+    private synchronized void schedule() {
+        if(closed) {
+            return;
+        }
+        if(pending != null) {
+            pending.cancel(false);
+        }
+        try {
+            pending = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        callback.run();
+                    }
+                    catch(RuntimeException exep) {
+                        LOGGER.error("error reloading configuration", exep);
+                    }
+                }
+            }, debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        catch(RejectedExecutionException exep) {
+            LOGGER.debug("configuration watcher closed, change ignored");
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.flipkart.polyguice.core.DataSize;
+import com.flipkart.polyguice.core.Rate;
+import com.flipkart.polyguice.core.TimeSpan;
+import com.flipkart.polyguice.core.support.ConverterRegistry;
+
+/**
+ * Immutable, flattened view of a configuration. Precedence across the source
+ * configurations is resolved once, and the raw value of each key is held in a
+ * {@link ConfigurationTrie}, so that lookups do not synchronize. Placeholders
+ * must already have been resolved in the configuration.
+ * <p>
+ *
+ * Values are converted by the shared {@link ConverterRegistry} when first read
+ * as one of the common types, including the quantity types {@link TimeSpan},
+ * {@link DataSize} and {@link Rate}. The result, or the fact that the value
+ * cannot be converted, is cached for the key and type, so that later lookups
+ * neither parse nor allocate. Only keys that are read carry such a cache.
+ * Other target types are converted from the raw value on each lookup, since
+ * the results may be mutable.
+ * <p>
+ *
+ * Values of mutable types (<tt>Properties</tt>, <tt>String[]</tt> and
+ * {@link TimeInterval}) are copied on each lookup, to keep the view immutable.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class FrozenConfiguration {
+
+    private static final int BYTE         = 0;
+    private static final int SHORT        = 1;
+    private static final int INTEGER      = 2;
+    private static final int LONG         = 3;
+    private static final int FLOAT        = 4;
+    private static final int DOUBLE       = 5;
+    private static final int BOOLEAN      = 6;
+    private static final int STRING       = 7;
+    private static final int BIG_INTEGER  = 8;
+    private static final int BIG_DECIMAL  = 9;
+    private static final int PROPERTIES   = 10;
+    private static final int STRING_ARRAY = 11;
+    private static final int TIME_SPAN    = 12;
+    private static final int DATA_SIZE    = 13;
+    private static final int RATE         = 14;
+    private static final int TYPE_COUNT   = 15;
+
+/**
+ * Marks a cached conversion that failed, to tell it apart from one not yet
+ * attempted.
+ */
+
+    private static final Object NOT_CONVERTIBLE = new Object();
+
+    private static final Class<?>[]             SLOT_TYPES;
+    private static final Map<Class<?>, Integer> SLOTS;
+
+    static {
+        SLOT_TYPES = new Class<?>[] {Byte.class, Short.class, Integer.class, Long.class, Float.class,
+                Double.class, Boolean.class, String.class, BigInteger.class, BigDecimal.class,
+                Properties.class, String[].class, TimeSpan.class, DataSize.class, Rate.class};
+        Class<?>[] primitives = {Byte.TYPE, Short.TYPE, Integer.TYPE, Long.TYPE, Float.TYPE,
+                Double.TYPE, Boolean.TYPE};
+        SLOTS = new IdentityHashMap<>();
+        for(int i = 0; i < TYPE_COUNT; i++) {
+            SLOTS.put(SLOT_TYPES[i], i);
+        }
+        for(int i = 0; i < primitives.length; i++) {
+            SLOTS.put(primitives[i], i);
+        }
+        SLOTS.put(TimeInterval.class, TIME_SPAN);
+    }
+
+    private ConfigurationTrie                                   entries;
+    private ConcurrentMap<String, AtomicReferenceArray<Object>> converted;
+
+    FrozenConfiguration(Configuration config) {
+        entries = new ConfigurationTrie();
+        Iterator<String> keys = config.getKeys();
+        while(keys.hasNext()) {
+            String key = keys.next();
+            entries.put(key, config.getProperty(key));
+        }
+        entries.compact();
+        converted = new ConcurrentHashMap<>();
+    }
+
+    public boolean contains(String path) {
+        return entries.containsKey(path);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<String> keysUnder(String prefix) {
+        return entries.keysUnder(prefix);
+    }
+
+/**
+ * @return	the unconverted values of the prefix and all paths nested under it.
+ */
+
+    public Map<String, Object> getSubtree(String prefix) {
+        return entries.subtree(prefix);
+    }
+
+    public Object getValue(String path, Class<?> type) {
+        Integer slot = SLOTS.get(type);
+        if(slot == null) {
+            Object raw = entries.get(path);
+            return (raw != null) ? ConverterRegistry.getDefault().convert(raw, type) : null;
+        }
+        AtomicReferenceArray<Object> values = converted.get(path);
+        if(values == null) {
+            if(!entries.containsKey(path)) {
+                return null;
+            }
+            values = new AtomicReferenceArray<>(TYPE_COUNT);
+            AtomicReferenceArray<Object> existing = converted.putIfAbsent(path, values);
+            if(existing != null) {
+                values = existing;
+            }
+        }
+        Object value = values.get(slot);
+        if(value == null) {
+            value = ConverterRegistry.getDefault().convert(entries.get(path), SLOT_TYPES[slot]);
+            values.compareAndSet(slot, null, (value != null) ? value : NOT_CONVERTIBLE);
+        }
+        if(value == null || value == NOT_CONVERTIBLE) {
+            return null;
+        }
+        else if(slot == PROPERTIES) {
+            return ((Properties) value).clone();
+        }
+        else if(slot == STRING_ARRAY) {
+            return ((String[]) value).clone();
+        }
+        else if(type == TimeInterval.class) {
+            return new TimeInterval((TimeSpan) value);
+        }
+        return value;
+    }
+}
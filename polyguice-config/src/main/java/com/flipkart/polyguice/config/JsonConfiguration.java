@@ -16,28 +16,31 @@
 
 package com.flipkart.polyguice.config;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.URL;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.configuration.AbstractConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonStreamParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 /**
  * Provides a configuration source for Apache Commons configuration that loads
- * values from a JSON encoded file.
+ * values from a JSON encoded file. The file is read token by token and flattened
+ * directly into the key table, without building an intermediate document tree.
  * <p>
  *
  * @author indroneel.das
@@ -47,24 +50,63 @@ public class JsonConfiguration extends AbstractConfiguration {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JsonConfiguration.class);
 
-    private Map<String, Object> configTab;
+    private URL                          source;
+    private volatile ConfigurationTrie   configTab;
 
     public JsonConfiguration(String path) throws IOException {
-        FileReader reader = new FileReader(path);
-        load(reader);
-        reader.close();
+        this(new File(path));
     }
 
     public JsonConfiguration(File file) throws IOException {
-        FileReader reader = new FileReader(file);
-        load(reader);
-        reader.close();
+        this(file.toURI().toURL());
     }
 
     public JsonConfiguration(URL url) throws IOException {
-        InputStreamReader reader = new InputStreamReader(url.openStream());
-        load(reader);
-        reader.close();
+        source = url;
+        reload();
+    }
+
+/**
+ * Creates a configuration for the source URL from a reader already opened on
+ * it by the caller, who remains responsible for closing it. The source is read
+ * again only on {@link #reload()}.
+ */
+
+    JsonConfiguration(URL url, Reader in) throws IOException {
+        source = url;
+        load(in);
+    }
+
+/**
+ * Reads the configuration source again. The new values replace the current
+ * ones atomically; readers see either the old or the new values, never a mix.
+ * If the source cannot be read, the current values are retained.
+ * <p>
+ *
+ * @throws	IOException if the source cannot be read.
+ */
+
+    public void reload() throws IOException {
+        InputStreamReader reader = new InputStreamReader(source.openStream());
+        try {
+            load(reader);
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+/**
+ * Retrieves the prefix itself, if it is a key, and all keys nested under it,
+ * along with their values, from a single walk of the key trie.
+ * <p>
+ *
+ * @param	prefix the key prefix.
+ * @return	the values keyed by their full keys.
+ */
+
+    public Map<String, Object> getSubtree(String prefix) {
+        return configTab.subtree(prefix);
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -92,44 +134,100 @@ public class JsonConfiguration extends AbstractConfiguration {
 
     @Override
     public Iterator<String> getKeys() {
-        return configTab.keySet().iterator();
+        return configTab.keys().iterator();
+    }
+
+    @Override
+    public Iterator<String> getKeys(String prefix) {
+        return configTab.keysUnder(prefix).iterator();
     }
 
     ////////////////////////////////////////////////////////////////////////////
     // Helper methods
 
-    private void load(Reader in) {
-        configTab = new HashMap<>();
-        JsonStreamParser parser = new JsonStreamParser(in);
-        JsonElement root = null;
-        if(parser.hasNext()) {
-            root = parser.next();
+    private void load(Reader in) throws IOException {
+        ConfigurationTrie table = new ConfigurationTrie();
+        JsonReader reader = new JsonReader(in);
+        reader.setLenient(true);
+        JsonToken first;
+        try {
+            first = reader.peek();
+        }
+        catch(EOFException exep) {
+            first = JsonToken.END_DOCUMENT; //empty document
         }
-        if(root != null && root.isJsonObject()) {
-            flatten(null, root);
+        if(first == JsonToken.BEGIN_OBJECT) {
+            flatten(null, reader, table);
         }
-        LOGGER.debug("json configuration loaded: {}", configTab);
+        table.compact();
+        configTab = table;
+        LOGGER.debug("json configuration loaded: {} keys", table.size());
     }
 
-    private void flatten(String prefix, JsonElement element) {
-        if(element.isJsonPrimitive()) {
-            JsonPrimitive jsonPrim = element.getAsJsonPrimitive();
-            if(jsonPrim.isBoolean()) {
-                configTab.put(prefix, jsonPrim.getAsBoolean());
+/**
+ * Flattens the next value from the reader into the table. Object members are
+ * joined with a dot, and array elements are keyed by their index, as in
+ * <tt>servers[0].host</tt>. The scalar elements of an array are also stored
+ * together as a list under the key of the array itself.
+ * <p>
+ *
+ * @return	the value if it is a scalar, <tt>null</tt> otherwise.
+ */
+
+    private Object flatten(String prefix, JsonReader reader, ConfigurationTrie table) throws IOException {
+        switch(reader.peek()) {
+        case BEGIN_OBJECT:
+            reader.beginObject();
+            while(reader.hasNext()) {
+                String name = reader.nextName();
+                flatten((prefix != null) ? prefix + "." + name : name, reader, table);
             }
-            else if(jsonPrim.isNumber()) {
-                configTab.put(prefix, jsonPrim.getAsNumber());
+            reader.endObject();
+            return null;
+        case BEGIN_ARRAY:
+            List<Object> scalars = new ArrayList<>();
+            reader.beginArray();
+            for(int index = 0; reader.hasNext(); index++) {
+                Object value = flatten(prefix + "[" + index + "]", reader, table);
+                if(value != null) {
+                    scalars.add(value);
+                }
             }
-            else if(jsonPrim.isString()) {
-                configTab.put(prefix, jsonPrim.getAsString());
+            reader.endArray();
+            if(!scalars.isEmpty()) {
+                table.put(prefix, Collections.unmodifiableList(scalars));
             }
+            return null;
+        case BOOLEAN:
+            return put(prefix, reader.nextBoolean(), table);
+        case NUMBER:
+            return put(prefix, toNumber(reader.nextString()), table);
+        case STRING:
+            return put(prefix, reader.nextString(), table);
+        default:
+            reader.skipValue();
+            return null;
         }
-        else if(element.isJsonObject()) {
-            JsonObject jsonObj = element.getAsJsonObject();
-            for (Map.Entry<String, JsonElement> entry : jsonObj.entrySet()) {
-                String prefix1 = ((prefix != null) ? prefix + "." : "") + entry.getKey();
-                flatten(prefix1, entry.getValue());
+    }
+
+    private static Object put(String name, Object value, ConfigurationTrie table) {
+        table.put(name, value);
+        return value;
+    }
+
+    private static Number toNumber(String value) {
+        if(value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0) {
+            try {
+                long number = Long.parseLong(value);
+                if(number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                    return (int) number;
+                }
+                return number;
+            }
+            catch(NumberFormatException exep) {
+                return new BigInteger(value);
             }
         }
+        return new BigDecimal(value);
     }
 }
@@ -0,0 +1,813 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a configuration source for Apache Commons configuration that loads a
+ * properties file by memory-mapping it and parsing it in place. Intended for
+ * very large files, where reading through <tt>PropertiesConfiguration</tt> is
+ * slow and creates several strings for each line.
+ * <p>
+ *
+ * Parsing creates no objects per entry. Keys and values are recorded as byte
+ * ranges of the mapped file, and keys are indexed in an open-addressing hash
+ * table of entry numbers. For prefix lookups, the entry numbers are also sorted
+ * by key on first use, comparing the keys in place. A value is decoded on first
+ * access, and a key string only when the keys are enumerated.
+ * <p>
+ *
+ * The file is read as ISO-8859-1 with the escapes, comments and line
+ * continuations of the properties format. As with
+ * <tt>PropertiesConfiguration</tt>, values are split into lists at unescaped
+ * commas, list elements are trimmed, and the values of a repeated key are
+ * collected into a list. A line holding only a key gives that key an empty
+ * value, as with <tt>java.util.Properties</tt>; <tt>PropertiesConfiguration</tt>
+ * instead files the values of such lines under the empty key. Include
+ * directives are not processed; {@link #hasIncludes()} reports whether the
+ * file contains any.
+ * <p>
+ *
+ * The file stays mapped while its values are in use. It should be replaced,
+ * rather than rewritten in place, when it changes.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class MappedPropertiesConfiguration extends AbstractConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedPropertiesConfiguration.class);
+
+    private static final String INCLUDE_KEY = "include";
+
+    private File           file;
+    private volatile Table table;
+
+    public MappedPropertiesConfiguration(String path) throws IOException {
+        this(new File(path));
+    }
+
+    public MappedPropertiesConfiguration(File file) throws IOException {
+        this.file = file;
+        reload();
+    }
+
+/**
+ * Maps and parses the file again. The new values replace the current ones
+ * atomically. If the file cannot be read, the current values are retained.
+ * <p>
+ *
+ * @throws	IOException if the file cannot be read.
+ */
+
+    public void reload() throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer data;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("file too large to map: " + file);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally {
+            raf.close();
+        }
+        Table newTable = new Table(data);
+        newTable.parse();
+        table = newTable;
+        LOGGER.debug("mapped properties loaded: {} keys in {} us", newTable.size,
+                (System.nanoTime() - start) / 1000);
+    }
+
+/**
+ * @return	<tt>true</tt> if the file contains include directives, which are
+ *          not processed by this class.
+ */
+
+    public boolean hasIncludes() {
+        return table.includes;
+    }
+
+/**
+ * Retrieves the keys whose raw values may contain placeholders, found while
+ * parsing without decoding any value. A raw value qualifies if it contains
+ * <tt>${</tt>, or escapes that could decode to it; the decoded value of such a
+ * key need not contain a placeholder.
+ * <p>
+ *
+ * @return	the candidate keys, in file order.
+ */
+
+    public Set<String> getPlaceholderKeys() {
+        Table current = table;
+        Set<String> keys = new LinkedHashSet<>();
+        for(int i = current.placeholders.nextSetBit(0); i >= 0; i = current.placeholders.nextSetBit(i + 1)) {
+            keys.add(current.getKey(i));
+        }
+        return keys;
+    }
+
+/**
+ * Retrieves the prefix itself, if it is a key, and all keys nested under it,
+ * along with their values, in file order. The keys are found by a binary search
+ * of the sorted keys, and only the matching ones are decoded.
+ * <p>
+ *
+ * @param	prefix the key prefix.
+ * @return	the values keyed by their full keys.
+ */
+
+    public Map<String, Object> getSubtree(String prefix) {
+        Table current = table;
+        Map<String, Object> subtree = new LinkedHashMap<>();
+        for(int index : current.entriesUnder(prefix)) {
+            String key = current.getKey(index);
+            subtree.put(key, current.getValue(current.lookup(key)));
+        }
+        return subtree;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of base class AbstractConfiguration
+
+    @Override
+    protected void addPropertyDirect(String s, Object o) {
+
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.size == 0;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return table.lookup(key) >= 0;
+    }
+
+    @Override
+    public Object getProperty(String key) {
+        Table current = table;
+        int index = current.lookup(key);
+        return (index >= 0) ? current.getValue(index) : null;
+    }
+
+    @Override
+    public Iterator<String> getKeys() {
+        return getKeys(null);
+    }
+
+    @Override
+    public Iterator<String> getKeys(String prefix) {
+        Table current = table;
+        List<String> keys = new ArrayList<>();
+        if(prefix == null) {
+            for(int i = 0; i < current.count; i++) {
+                if(current.isFirst(i)) {
+                    keys.add(current.getKey(i));
+                }
+            }
+        }
+        else {
+            for(int index : current.entriesUnder(prefix)) {
+                keys.add(current.getKey(index));
+            }
+        }
+        return keys.iterator();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static boolean isWhitespace(int ch) {
+        return ch == ' ' || ch == '\t' || ch == '\f';
+    }
+
+    private static boolean isLineEnd(int ch) {
+        return ch == '\n' || ch == '\r';
+    }
+
+    private static char unescape(int ch) {
+        switch(ch) {
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 'f':
+            return '\f';
+        default:
+            return (char) ch;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+/**
+ * The parsed entries of one mapping of the file, in file order. Entry <tt>i</tt>
+ * has its key in the byte range <tt>[keyStarts[i], keyEnds[i])</tt> and its raw
+ * value in <tt>[valueStarts[i], valueEnds[i])</tt>. A key containing escapes is
+ * also kept decoded in <tt>escapedKeys</tt>. <tt>previous[i]</tt> is the earlier
+ * entry of the same key, or <tt>-1</tt>; the hash table holds the last entry
+ * of each key, and only that entry caches the decoded value. <tt>sorted</tt>
+ * holds the first entry of each key, ordered by key, and is built on the first
+ * prefix lookup.
+ */
+
+    private static class Table {
+
+        private ByteBuffer                   data;
+        private int                          limit;
+        private int[]                        keyStarts;
+        private int[]                        keyEnds;
+        private int[]                        valueStarts;
+        private int[]                        valueEnds;
+        private int[]                        hashes;
+        private int[]                        previous;
+        private String[]                     escapedKeys;
+        private int[]                        slots;
+        private int                          count;
+        private int                          size;
+        private boolean                      includes;
+        private BitSet                       placeholders;
+        private AtomicReferenceArray<Object> decoded;
+        private char[]                       keyChars;
+        private volatile int[]               sorted;
+
+        Table(ByteBuffer data) {
+            this.data = data;
+            limit = data.limit();
+            int capacity = Math.max(16, limit / 32);
+            keyStarts = new int[capacity];
+            keyEnds = new int[capacity];
+            valueStarts = new int[capacity];
+            valueEnds = new int[capacity];
+            hashes = new int[capacity];
+            previous = new int[capacity];
+            slots = new int[Integer.highestOneBit(capacity) * 4];
+            keyChars = new char[64];
+            placeholders = new BitSet();
+        }
+
+        public void parse() {
+            int pos = 0;
+            while(pos < limit) {
+                int ch = byteAt(pos);
+                if(isWhitespace(ch) || isLineEnd(ch)) {
+                    pos++;
+                }
+                else if(ch == '#' || ch == '!') {
+                    while(pos < limit && !isLineEnd(byteAt(pos))) {
+                        pos++;
+                    }
+                }
+                else {
+                    pos = parseEntry(pos);
+                }
+            }
+            decoded = new AtomicReferenceArray<>(count);
+            keyChars = null;
+        }
+
+/**
+ * @return	the last entry of the key, or <tt>-1</tt> if the key is missing.
+ */
+
+        public int lookup(String key) {
+            int hash = 0;
+            for(int i = 0; i < key.length(); i++) {
+                hash = 31 * hash + key.charAt(i);
+            }
+            int mask = slots.length - 1;
+            for(int slot = spread(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int index = slots[slot] - 1;
+                if(hashes[index] == hash && keyEquals(index, key)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+/**
+ * @return	<tt>true</tt> if the entry is the first one of its key.
+ */
+
+        public boolean isFirst(int index) {
+            return previous[index] < 0;
+        }
+
+/**
+ * @return	<tt>true</tt> if the key of the entry is the prefix itself, or is
+ *          nested under it.
+ */
+
+        public boolean isUnder(int index, String prefix) {
+            if(!startsWith(index, prefix)) {
+                return false;
+            }
+            if(keyLength(index) == prefix.length() || prefix.isEmpty()) {
+                return true;
+            }
+            char next = keyChar(index, prefix.length());
+            return next == '.' || next == '[';
+        }
+
+/**
+ * Finds the keys that are the prefix itself or are nested under it. The range
+ * of keys starting with the prefix is located by a binary search of the sorted
+ * keys; keys in that range that merely extend the last segment of the prefix
+ * are skipped.
+ * <p>
+ *
+ * @return	the first entries of the matching keys, in file order.
+ */
+
+        public int[] entriesUnder(String prefix) {
+            int[] order = sortedKeys();
+            int low = 0;
+            int high = order.length;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if(compareKey(order[mid], prefix) < 0) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            int[] matches = new int[16];
+            int found = 0;
+            for(int i = low; i < order.length && startsWith(order[i], prefix); i++) {
+                if(isUnder(order[i], prefix)) {
+                    if(found == matches.length) {
+                        matches = Arrays.copyOf(matches, found * 2);
+                    }
+                    matches[found++] = order[i];
+                }
+            }
+            matches = Arrays.copyOf(matches, found);
+            Arrays.sort(matches);
+            return matches;
+        }
+
+        public String getKey(int index) {
+            if(escapedKeys != null && escapedKeys[index] != null) {
+                return escapedKeys[index];
+            }
+            int length = keyLength(index);
+            char[] chars = new char[length];
+            for(int i = 0; i < length; i++) {
+                chars[i] = (char) byteAt(keyStarts[index] + i);
+            }
+            return new String(chars);
+        }
+
+        public Object getValue(int index) {
+            Object value = decoded.get(index);
+            if(value == null) {
+                if(previous[index] < 0) {
+                    value = decode(index);
+                }
+                else {
+                    List<Object> values = new ArrayList<>();
+                    for(int i = index; i >= 0; i = previous[i]) {
+                        values.add(decode(i));
+                    }
+                    Collections.reverse(values);
+                    List<Object> flat = new ArrayList<>();
+                    for(Object item : values) {
+                        if(item instanceof List) {
+                            flat.addAll((List<?>) item);
+                        }
+                        else {
+                            flat.add(item);
+                        }
+                    }
+                    value = Collections.unmodifiableList(flat);
+                }
+                decoded.compareAndSet(index, null, value);
+                value = decoded.get(index);
+            }
+            return value;
+        }
+
+        ////////////////////////////////////////////////////////////////////////
+        // Helper methods
+
+        private int byteAt(int pos) {
+            return data.get(pos) & 0xFF;
+        }
+
+/**
+ * @return	the first entry of each key, ordered by key. Concurrent callers may
+ *          each build the array, with the same result.
+ */
+
+        private int[] sortedKeys() {
+            int[] order = sorted;
+            if(order == null) {
+                order = new int[size];
+                int next = 0;
+                for(int i = 0; i < count; i++) {
+                    if(previous[i] < 0) {
+                        order[next++] = i;
+                    }
+                }
+                mergeSort(order, new int[order.length], 0, order.length);
+                sorted = order;
+            }
+            return order;
+        }
+
+        private void mergeSort(int[] order, int[] buffer, int from, int to) {
+            if(to - from < 2) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            mergeSort(order, buffer, from, mid);
+            mergeSort(order, buffer, mid, to);
+            if(compareKeys(order[mid - 1], order[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, buffer, from, to - from);
+            int left = from;
+            int right = mid;
+            for(int i = from; i < to; i++) {
+                if(right >= to || (left < mid && compareKeys(buffer[left], buffer[right]) <= 0)) {
+                    order[i] = buffer[left++];
+                }
+                else {
+                    order[i] = buffer[right++];
+                }
+            }
+        }
+
+        private int compareKeys(int first, int second) {
+            int firstLength = keyLength(first);
+            int secondLength = keyLength(second);
+            int length = Math.min(firstLength, secondLength);
+            for(int i = 0; i < length; i++) {
+                int diff = keyChar(first, i) - keyChar(second, i);
+                if(diff != 0) {
+                    return diff;
+                }
+            }
+            return firstLength - secondLength;
+        }
+
+        private int compareKey(int index, String key) {
+            int keyLength = keyLength(index);
+            int length = Math.min(keyLength, key.length());
+            for(int i = 0; i < length; i++) {
+                int diff = keyChar(index, i) - key.charAt(i);
+                if(diff != 0) {
+                    return diff;
+                }
+            }
+            return keyLength - key.length();
+        }
+
+        private boolean startsWith(int index, String prefix) {
+            if(keyLength(index) < prefix.length()) {
+                return false;
+            }
+            for(int i = 0; i < prefix.length(); i++) {
+                if(keyChar(index, i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int keyLength(int index) {
+            if(escapedKeys != null && escapedKeys[index] != null) {
+                return escapedKeys[index].length();
+            }
+            return keyEnds[index] - keyStarts[index];
+        }
+
+        private char keyChar(int index, int pos) {
+            if(escapedKeys != null && escapedKeys[index] != null) {
+                return escapedKeys[index].charAt(pos);
+            }
+            return (char) byteAt(keyStarts[index] + pos);
+        }
+
+        private boolean keyEquals(int index, String key) {
+            if(keyLength(index) != key.length()) {
+                return false;
+            }
+            for(int i = 0; i < key.length(); i++) {
+                if(keyChar(index, i) != key.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean keyEquals(int index, char[] chars, int length) {
+            if(keyLength(index) != length) {
+                return false;
+            }
+            for(int i = 0; i < length; i++) {
+                if(keyChar(index, i) != chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+/**
+ * Parses the key and the extent of the value of an entry.
+ * <p>
+ *
+ * @return	the position after the entry.
+ */
+
+        private int parseEntry(int pos) {
+            int keyStart = pos;
+            int length = 0;
+            int hash = 0;
+            boolean escaped = false;
+            while(pos < limit) {
+                int ch = byteAt(pos);
+                if(ch == '\\') {
+                    escaped = true;
+                    pos++;
+                    if(pos >= limit) {
+                        break;
+                    }
+                    ch = byteAt(pos);
+                    if(isLineEnd(ch)) {
+                        pos = skipContinuation(pos);
+                        continue;
+                    }
+                    if(ch == 'u') {
+                        ch = parseUnicode(pos + 1);
+                        pos += 4;
+                    }
+                    else {
+                        ch = unescape(ch);
+                    }
+                }
+                else if(ch == '=' || ch == ':' || isWhitespace(ch) || isLineEnd(ch)) {
+                    break;
+                }
+                if(length == keyChars.length) {
+                    keyChars = Arrays.copyOf(keyChars, length * 2);
+                }
+                keyChars[length++] = (char) ch;
+                hash = 31 * hash + ch;
+                pos++;
+            }
+            int keyEnd = pos;
+            while(pos < limit && isWhitespace(byteAt(pos))) {
+                pos++;
+            }
+            if(pos < limit && (byteAt(pos) == '=' || byteAt(pos) == ':')) {
+                pos++;
+                while(pos < limit && isWhitespace(byteAt(pos))) {
+                    pos++;
+                }
+            }
+            int valueStart = pos;
+            int slashes = 0;
+            int last = 0;
+            boolean placeholder = false;
+            while(pos < limit) {
+                int ch = byteAt(pos);
+                if((last == '$' && (ch == '{' || ch == '\\')) || (last == '\\' && (ch == 'u' || ch == '{'))) {
+                    placeholder = true;
+                }
+                last = ch;
+                if(isLineEnd(ch)) {
+                    if((slashes & 1) == 0) {
+                        break;
+                    }
+                    if(ch == '\r' && pos + 1 < limit && byteAt(pos + 1) == '\n') {
+                        pos++;
+                    }
+                    slashes = 0;
+                }
+                else {
+                    slashes = (ch == '\\') ? slashes + 1 : 0;
+                }
+                pos++;
+            }
+            if(placeholder) {
+                placeholders.set(count);
+            }
+            addEntry(keyStart, keyEnd, escaped ? new String(keyChars, 0, length) : null,
+                    hash, length, valueStart, pos);
+            return pos;
+        }
+
+        private void addEntry(int keyStart, int keyEnd, String escapedKey, int hash, int length,
+                int valueStart, int valueEnd) {
+            if(count == keyStarts.length) {
+                int capacity = count * 2;
+                keyStarts = Arrays.copyOf(keyStarts, capacity);
+                keyEnds = Arrays.copyOf(keyEnds, capacity);
+                valueStarts = Arrays.copyOf(valueStarts, capacity);
+                valueEnds = Arrays.copyOf(valueEnds, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+                previous = Arrays.copyOf(previous, capacity);
+                if(escapedKeys != null) {
+                    escapedKeys = Arrays.copyOf(escapedKeys, capacity);
+                }
+            }
+            if(escapedKey != null) {
+                if(escapedKeys == null) {
+                    escapedKeys = new String[keyStarts.length];
+                }
+                escapedKeys[count] = escapedKey;
+            }
+            keyStarts[count] = keyStart;
+            keyEnds[count] = keyEnd;
+            valueStarts[count] = valueStart;
+            valueEnds[count] = valueEnd;
+            hashes[count] = hash;
+            previous[count] = -1;
+            int mask = slots.length - 1;
+            int slot = spread(hash) & mask;
+            while(slots[slot] != 0) {
+                int index = slots[slot] - 1;
+                if(hashes[index] == hash && keyEquals(index, keyChars, length)) {
+                    previous[count] = index;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = count + 1;
+            count++;
+            if(previous[count - 1] < 0) {
+                size++;
+                if(size * 2 > slots.length) {
+                    rehash();
+                }
+            }
+            if(length == INCLUDE_KEY.length() && keyEquals(count - 1, INCLUDE_KEY)) {
+                includes = true;
+            }
+        }
+
+        private void rehash() {
+            int[] newSlots = new int[slots.length * 2];
+            int mask = newSlots.length - 1;
+            for(int entry : slots) {
+                if(entry != 0) {
+                    int slot = spread(hashes[entry - 1]) & mask;
+                    while(newSlots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newSlots[slot] = entry;
+                }
+            }
+            slots = newSlots;
+        }
+
+/**
+ * Skips the line end at the specified position and the leading whitespace of
+ * the continuation line.
+ */
+
+        private int skipContinuation(int pos) {
+            if(byteAt(pos) == '\r' && pos + 1 < limit && byteAt(pos + 1) == '\n') {
+                pos++;
+            }
+            pos++;
+            while(pos < limit && isWhitespace(byteAt(pos))) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private int parseUnicode(int pos) {
+            if(pos + 4 > limit) {
+                throw new IllegalArgumentException("malformed \\uxxxx encoding at offset " + pos);
+            }
+            int value = 0;
+            for(int i = pos; i < pos + 4; i++) {
+                int digit = Character.digit(byteAt(i), 16);
+                if(digit < 0) {
+                    throw new IllegalArgumentException("malformed \\uxxxx encoding at offset " + pos);
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        }
+
+/**
+ * Decodes the raw value of an entry, splitting it into a list at unescaped
+ * commas. Whitespace around the elements is trimmed, except where it was
+ * escaped.
+ */
+
+        private Object decode(int index) {
+            int end = valueEnds[index];
+            StringBuilder buffer = new StringBuilder(end - valueStarts[index]);
+            List<String> items = null;
+            int kept = 0;
+            int pos = valueStarts[index];
+            while(pos < end) {
+                int ch = byteAt(pos);
+                boolean escaped = false;
+                if(ch == '\\' && pos + 1 < end) {
+                    ch = byteAt(++pos);
+                    if(isLineEnd(ch)) {
+                        pos = skipContinuation(pos);
+                        continue;
+                    }
+                    escaped = true;
+                    if(ch == 'u') {
+                        ch = parseUnicode(pos + 1);
+                        pos += 4;
+                    }
+                    else {
+                        ch = unescape(ch);
+                    }
+                }
+                else if(ch == ',') {
+                    if(items == null) {
+                        items = new ArrayList<>();
+                    }
+                    items.add(trim(buffer, kept));
+                    buffer.setLength(0);
+                    kept = 0;
+                    pos++;
+                    continue;
+                }
+                pos++;
+                if(!escaped && ch <= ' ' && buffer.length() == 0) {
+                    continue;
+                }
+                buffer.append((char) ch);
+                if(escaped) {
+                    kept = buffer.length();
+                }
+            }
+            String last = trim(buffer, kept);
+            if(items == null) {
+                return last;
+            }
+            items.add(last);
+            return Collections.unmodifiableList(items);
+        }
+
+/**
+ * Trims trailing whitespace from the buffer, but not from before the specified
+ * length.
+ */
+
+        private static String trim(StringBuilder buffer, int kept) {
+            int length = buffer.length();
+            while(length > kept && buffer.charAt(length - 1) <= ' ') {
+                length--;
+            }
+            return buffer.substring(0, length);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.MapConfiguration;
+
+/**
+ * Resolves the placeholders in configuration values once, when the
+ * configuration is loaded, so that reads never interpolate. The placeholders
+ * are:
+ * <ul>
+ * <li><tt>${env:NAME}</tt>, the value of an environment variable;</li>
+ * <li><tt>${sys:name}</tt>, the value of a system property;</li>
+ * <li><tt>${path}</tt>, the value of another configuration path, itself
+ * resolved; the first element if the value is a list.</li>
+ * </ul>
+ *
+ * Each placeholder may give a default after a colon, as in
+ * <tt>${env:PORT:8080}</tt> or <tt>${db.host:localhost}</tt>, which may
+ * itself contain placeholders. A placeholder that cannot be resolved and has
+ * no default is left as it is. A path that refers back to itself, directly or
+ * through other paths, is an error.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class PlaceholderResolver {
+
+    private static final String START      = "${";
+    private static final char   END        = '}';
+    private static final char   SEPARATOR  = ':';
+    private static final String ENV_PREFIX = "env:";
+    private static final String SYS_PREFIX = "sys:";
+
+    private Configuration       source;
+    private Map<String, Object> resolved;
+    private Set<String>         resolving;
+
+    PlaceholderResolver(Configuration source) {
+        this.source = source;
+        resolved = new HashMap<>();
+        resolving = new LinkedHashSet<>();
+    }
+
+/**
+ * Merges configurations, earlier ones taking precedence, and resolves their
+ * placeholders. The resolved values are held in the first member of the
+ * returned composite, ahead of the configurations themselves.
+ * <p>
+ *
+ * @param	sources the configurations, highest precedence first.
+ * @return	the merged configuration.
+ * @throws	RuntimeException if the placeholders refer to each other in a
+ *          cycle.
+ */
+
+    public static CompositeConfiguration merge(List<? extends Configuration> sources) {
+        CompositeConfiguration merged = new CompositeConfiguration();
+        for(Configuration config : sources) {
+            merged.addConfiguration(config);
+        }
+        Map<String, Object> values = new PlaceholderResolver(merged).resolveAll();
+        if(values.isEmpty()) {
+            return merged;
+        }
+        MapConfiguration resolvedConfig = new MapConfiguration(values);
+        resolvedConfig.setDelimiterParsingDisabled(true);
+        CompositeConfiguration result = new CompositeConfiguration();
+        result.addConfiguration(resolvedConfig);
+        for(Configuration config : sources) {
+            result.addConfiguration(config);
+        }
+        return result;
+    }
+
+/**
+ * Resolves the values of all paths that contain placeholders. If the source is
+ * a composite, the paths are taken from each member in turn, skipping those
+ * shadowed by an earlier member. A memory-mapped properties file is asked for
+ * the keys whose raw values may hold placeholders, so that its other values
+ * are never decoded.
+ * <p>
+ *
+ * @return	the resolved values of those paths.
+ */
+
+    public Map<String, Object> resolveAll() {
+        List<Configuration> members = new ArrayList<>();
+        if(source instanceof CompositeConfiguration) {
+            CompositeConfiguration composite = (CompositeConfiguration) source;
+            for(int i = 0; i < composite.getNumberOfConfigurations(); i++) {
+                members.add(composite.getConfiguration(i));
+            }
+        }
+        else {
+            members.add(source);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        for(int i = 0; i < members.size(); i++) {
+            Configuration member = members.get(i);
+            Iterator<String> keys;
+            if(member instanceof MappedPropertiesConfiguration) {
+                keys = ((MappedPropertiesConfiguration) member).getPlaceholderKeys().iterator();
+            }
+            else {
+                keys = member.getKeys();
+            }
+            while(keys.hasNext()) {
+                String key = keys.next();
+                if(!result.containsKey(key) && !isShadowed(members, i, key)
+                        && hasPlaceholder(member.getProperty(key))) {
+                    result.put(key, resolvePath(key));
+                }
+            }
+        }
+        return result;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static boolean isShadowed(List<Configuration> members, int index, String key) {
+        for(int i = 0; i < index; i++) {
+            if(members.get(i).containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasPlaceholder(Object value) {
+        if(value instanceof String) {
+            return ((String) value).contains(START);
+        }
+        if(value instanceof List) {
+            for(Object item : (List<?>) value) {
+                if(hasPlaceholder(item)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Object resolvePath(String path) {
+        if(resolved.containsKey(path)) {
+            return resolved.get(path);
+        }
+        if(!resolving.add(path)) {
+            StringBuilder chain = new StringBuilder();
+            for(String item : resolving) {
+                chain.append(item).append(" -> ");
+            }
+            throw new RuntimeException("cyclic placeholder reference: " + chain + path);
+        }
+        Object value = resolveValue(source.getProperty(path));
+        resolving.remove(path);
+        resolved.put(path, value);
+        return value;
+    }
+
+    private Object resolveValue(Object value) {
+        if(value instanceof String) {
+            return resolveText((String) value);
+        }
+        if(value instanceof List && hasPlaceholder(value)) {
+            List<Object> result = new ArrayList<>();
+            for(Object item : (List<?>) value) {
+                result.add(resolveValue(item));
+            }
+            return Collections.unmodifiableList(result);
+        }
+        return value;
+    }
+
+    private String resolveText(String text) {
+        int start = text.indexOf(START);
+        if(start < 0) {
+            return text;
+        }
+        StringBuilder buffer = new StringBuilder(text.length());
+        int pos = 0;
+        while(start >= 0) {
+            int end = findEnd(text, start + START.length());
+            if(end < 0) {
+                break;
+            }
+            buffer.append(text, pos, start);
+            String value = resolveExpression(text.substring(start + START.length(), end));
+            if(value != null) {
+                buffer.append(value);
+            }
+            else {
+                buffer.append(text, start, end + 1);
+            }
+            pos = end + 1;
+            start = text.indexOf(START, pos);
+        }
+        buffer.append(text, pos, text.length());
+        return buffer.toString();
+    }
+
+/**
+ * @return	the position of the brace closing a placeholder, allowing for
+ *          placeholders nested in its default, or <tt>-1</tt>.
+ */
+
+    private static int findEnd(String text, int pos) {
+        int depth = 0;
+        for(int i = pos; i < text.length(); i++) {
+            if(text.startsWith(START, i)) {
+                depth++;
+                i++;
+            }
+            else if(text.charAt(i) == END) {
+                if(depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private String resolveExpression(String expr) {
+        String name = expr;
+        String prefix = null;
+        if(expr.startsWith(ENV_PREFIX) || expr.startsWith(SYS_PREFIX)) {
+            prefix = expr.substring(0, ENV_PREFIX.length());
+            name = expr.substring(ENV_PREFIX.length());
+        }
+        String defaultValue = null;
+        int index = indexOfSeparator(name);
+        if(index >= 0) {
+            defaultValue = name.substring(index + 1);
+            name = name.substring(0, index);
+        }
+        String value;
+        if(ENV_PREFIX.equals(prefix)) {
+            value = System.getenv(name);
+        }
+        else if(SYS_PREFIX.equals(prefix)) {
+            value = System.getProperty(name);
+        }
+        else {
+            value = source.containsKey(name) ? toText(resolvePath(name)) : null;
+        }
+        if(value == null && defaultValue != null) {
+            value = resolveText(defaultValue);
+        }
+        return value;
+    }
+
+/**
+ * @return	the position of the first colon outside nested placeholders, or
+ *          <tt>-1</tt>.
+ */
+
+    private static int indexOfSeparator(String text) {
+        int depth = 0;
+        for(int i = 0; i < text.length(); i++) {
+            if(text.startsWith(START, i)) {
+                depth++;
+                i++;
+            }
+            else if(text.charAt(i) == END) {
+                depth--;
+            }
+            else if(text.charAt(i) == SEPARATOR && depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String toText(Object value) {
+        if(value instanceof List) {
+            List<?> list = (List<?>) value;
+            return list.isEmpty() ? null : String.valueOf(list.get(0));
+        }
+        return (value != null) ? value.toString() : null;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles a set of configuration locations into a binary snapshot, to be
+ * served by {@link SnapshotConfigProvider}. The locations are loaded and merged
+ * as by {@link ApacheCommonsConfigProvider#locations(String...)}, earlier ones
+ * taking precedence, and placeholders are resolved. Unlike the
+ * provider, the compiler fails if any location cannot be loaded.
+ * <p>
+ *
+ * The compiler can be run from the command line, or from a build through the
+ * exec plugin:
+ * <pre>
+ * java com.flipkart.polyguice.config.SnapshotCompiler &lt;output&gt; &lt;location&gt;...
+ * </pre>
+ *
+ * The snapshot is written to a temporary file that then replaces the output
+ * file, so that processes mapping the previous snapshot are not affected.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public final class SnapshotCompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotCompiler.class);
+
+    private SnapshotCompiler() {
+        //NOOP
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("usage: " + SnapshotCompiler.class.getName() + " <output> <location>...");
+            System.exit(2);
+        }
+        compile(new File(args[0]), Arrays.copyOfRange(args, 1, args.length));
+    }
+
+/**
+ * Compiles the configuration locations into a snapshot file.
+ * <p>
+ *
+ * @param	output the snapshot file to write.
+ * @param	locs the configuration locations, highest precedence first.
+ * @return	the number of paths in the snapshot.
+ * @throws	IOException if a location cannot be loaded or the snapshot cannot be
+ *          written.
+ */
+
+    public static int compile(File output, String... locs) throws IOException {
+        List<AbstractConfiguration> sources = new ArrayList<>();
+        List<Future<AbstractConfiguration>> results = new ConfigurationLoader().loadAll(Arrays.asList(locs));
+        for(int i = 0; i < locs.length; i++) {
+            try {
+                AbstractConfiguration loaded = results.get(i).get();
+                if(loaded == null) {
+                    throw new IOException("unsupported configuration format: " + locs[i]);
+                }
+                sources.add(loaded);
+            }
+            catch(ExecutionException exep) {
+                throw new IOException("unable to load configuration from " + locs[i], exep.getCause());
+            }
+            catch(InterruptedException exep) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted loading configuration from " + locs[i]);
+            }
+        }
+        CompositeConfiguration config = PlaceholderResolver.merge(sources);
+        SortedMap<String, Object> values = new TreeMap<>();
+        Iterator<String> keys = config.getKeys();
+        while(keys.hasNext()) {
+            String key = keys.next();
+            Object value = config.getProperty(key);
+            if(value != null) {
+                values.put(key, value);
+            }
+        }
+        File target = output.getAbsoluteFile();
+        File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+            try {
+                ConfigurationSnapshot.write(values, out);
+            }
+            finally {
+                out.close();
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        LOGGER.info("configuration snapshot written to {}: {} paths", target, values.size());
+        return values.size();
+    }
+}
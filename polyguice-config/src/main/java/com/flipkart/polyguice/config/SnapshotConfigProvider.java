@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.polyguice.core.BulkConfigurationProvider;
+import com.flipkart.polyguice.core.ConfigurationChangeListener;
+import com.flipkart.polyguice.core.ObservableConfigurationProvider;
+import com.flipkart.polyguice.core.support.ConverterRegistry;
+
+/**
+ * Provides configuration values from a precompiled binary snapshot, as written
+ * by {@link SnapshotCompiler}. The snapshot file is memory-mapped and values
+ * are read from it in place: a lookup is a probe of the open-addressing hash
+ * slots in the file, and only the requested value is decoded. Paths and values
+ * are held off the heap, so that tables of millions of paths cost neither heap
+ * space nor garbage collection time. Precedence and placeholders were
+ * resolved when the snapshot was compiled.
+ * <p>
+ *
+ * Reads are lock-free. The typed accessors, such as
+ * {@link #getLong(String, long)}, do not allocate; {@link #getValue(String,
+ * Class)} allocates only the returned value.
+ * <p>
+ *
+ * To update the values, compile a new snapshot to the same file, which
+ * atomically replaces it, and call {@link #reload()}, or let {@link
+ * #watch(long)} do so. The new file is mapped and swapped in as a whole, and
+ * listeners are notified of the changed paths. As the file is mapped
+ * read-only, all processes that use the same snapshot share its pages in the
+ * operating system's page cache. A snapshot must never be rewritten in place
+ * while it is in use.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class SnapshotConfigProvider implements ObservableConfigurationProvider, BulkConfigurationProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotConfigProvider.class);
+
+    private File                              file;
+    private volatile ConfigurationSnapshot    snapshot;
+    private List<ConfigurationChangeListener> listeners;
+    private ConfigurationWatcher              watcher;
+
+    public SnapshotConfigProvider(String path) throws IOException {
+        this(new File(path));
+    }
+
+    public SnapshotConfigProvider(File file) throws IOException {
+        this.file = file;
+        listeners = new CopyOnWriteArrayList<>();
+        snapshot = map(file);
+        LOGGER.debug("configuration snapshot mapped from {}: {} paths", file, snapshot.size());
+    }
+
+/**
+ * Maps the snapshot file again and swaps in the new values. If the file cannot
+ * be mapped, the current values are retained.
+ * <p>
+ *
+ * @return	<tt>true</tt> if the snapshot was reloaded.
+ */
+
+    public synchronized boolean reload() {
+        ConfigurationSnapshot newSnapshot;
+        try {
+            newSnapshot = map(file);
+        }
+        catch(IOException | RuntimeException exep) {
+            LOGGER.error("unable to reload configuration snapshot from " + file + ", keeping current values", exep);
+            return false;
+        }
+        Set<String> changed = snapshot.diff(newSnapshot);
+        snapshot = newSnapshot;
+        LOGGER.info("configuration snapshot reloaded, {} paths changed", changed.size());
+        if(!changed.isEmpty()) {
+            Set<String> paths = Collections.unmodifiableSet(changed);
+            for(ConfigurationChangeListener listener : listeners) {
+                listener.configurationChanged(this, paths);
+            }
+        }
+        return true;
+    }
+
+/**
+ * Watches the snapshot file for replacement and reloads it automatically.
+ * <p>
+ *
+ * @param	debounceMillis the quiet period, in milliseconds, before reloading.
+ * @return	this object.
+ */
+
+    public synchronized SnapshotConfigProvider watch(long debounceMillis) {
+        if(watcher != null) {
+            LOGGER.warn("configuration snapshot is already being watched. Ignoring.");
+            return this;
+        }
+        try {
+            watcher = new ConfigurationWatcher(Collections.singletonList(file), debounceMillis, new Runnable() {
+                @Override
+                public void run() {
+                    reload();
+                }
+            });
+        }
+        catch(IOException exep) {
+            LOGGER.error("unable to watch configuration snapshot", exep);
+        }
+        return this;
+    }
+
+    public synchronized void stopWatching() {
+        if(watcher == null) {
+            return;
+        }
+        try {
+            watcher.close();
+        }
+        catch(IOException exep) {
+            LOGGER.warn("error closing configuration watcher: {}", exep.toString());
+        }
+        watcher = null;
+    }
+
+/**
+ * Reads a whole number without allocating.
+ * <p>
+ *
+ * @param	path the configuration path.
+ * @param	defaultValue the value to return if the path is missing or its value
+ *          is not a whole number that fits in an int.
+ * @return	the value, or the default.
+ */
+
+    public int getInt(String path, int defaultValue) {
+        long value = getLong(path, Long.MIN_VALUE);
+        return (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) ? (int) value : defaultValue;
+    }
+
+/**
+ * Reads a whole number without allocating. Numbers stored as strings, as from
+ * properties files, are parsed in place.
+ * <p>
+ *
+ * @param	path the configuration path.
+ * @param	defaultValue the value to return if the path is missing or its value
+ *          is not a whole number that fits in a long.
+ * @return	the value, or the default.
+ */
+
+    public long getLong(String path, long defaultValue) {
+        ConfigurationSnapshot current = snapshot;
+        int entry = current.find(path);
+        return (entry >= 0) ? current.getLong(entry, defaultValue) : defaultValue;
+    }
+
+    public double getDouble(String path, double defaultValue) {
+        ConfigurationSnapshot current = snapshot;
+        int entry = current.find(path);
+        return (entry >= 0) ? current.getDouble(entry, defaultValue) : defaultValue;
+    }
+
+    public boolean getBoolean(String path, boolean defaultValue) {
+        ConfigurationSnapshot current = snapshot;
+        int entry = current.find(path);
+        return (entry >= 0) ? current.getBoolean(entry, defaultValue) : defaultValue;
+    }
+
+/**
+ * Retrieves the prefix itself, if it is a path, and all paths nested under it.
+ * <p>
+ *
+ * @param	prefix the path prefix.
+ * @return	the matching paths, in path order.
+ */
+
+    public List<String> keysUnder(String prefix) {
+        return snapshot.keysUnder(prefix);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface ObservableConfigurationProvider
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface BulkConfigurationProvider
+
+    @Override
+    public Map<String, Object> getSubtree(String prefix) {
+        return snapshot.subtree(prefix);
+    }
+
+    @Override
+    public Map<String, Object> getValues(Map<String, Class<?>> paths) {
+        ConfigurationSnapshot current = snapshot;
+        ConverterRegistry registry = ConverterRegistry.getDefault();
+        Map<String, Object> values = new HashMap<>();
+        for(Map.Entry<String, Class<?>> entry : paths.entrySet()) {
+            int index = current.find(entry.getKey());
+            Object value = (index >= 0) ? registry.convert(current.getValue(index), entry.getValue()) : null;
+            if(value != null) {
+                values.put(entry.getKey(), value);
+            }
+        }
+        return values;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface ConfigurationProvider
+
+    @Override
+    public boolean contains(String path) {
+        return snapshot.find(path) >= 0;
+    }
+
+    @Override
+    public Object getValue(String path, Class<?> type) {
+        ConfigurationSnapshot current = snapshot;
+        int entry = current.find(path);
+        if(entry < 0) {
+            return null;
+        }
+        return ConverterRegistry.getDefault().convert(current.getValue(entry), type);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static ConfigurationSnapshot map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("configuration snapshot too large to map: " + file);
+            }
+            return new ConfigurationSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally {
+            raf.close();
+        }
+    }
+}
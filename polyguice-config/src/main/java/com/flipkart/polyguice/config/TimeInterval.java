@@ -16,18 +16,22 @@
 
 package com.flipkart.polyguice.config;
 
-import org.apache.commons.lang3.StringUtils;
+import com.flipkart.polyguice.core.TimeSpan;
 
 /**
  * This class encapsulates a time interval value as a delta between two events.
  * Internally, the value is always stored in milliseconds.
  * <p>
  *
- * At the time of creation, the time interval is always specified as a string
- * input. The input contains a numeric part suffixed with a 's', 'm', 'h' or 'd'
- * to signify that the numeric value is in seconds, minutes, hours or days. Note
- * that there should not be any whitespace between the numeric part and the
- * suffix.
+ * The time interval is specified as a string input in the form of a
+ * {@link TimeSpan}: one or more numeric parts, each suffixed with a unit such as
+ * 'ms', 's', 'm', 'h' or 'd', for example <tt>250ms</tt> or <tt>1h30m</tt>. A
+ * numeric part without a suffix is in milliseconds.
+ * <p>
+ *
+ * Being mutable, a time interval cannot be shared. Code that reads an interval
+ * often should use the immutable {@link TimeSpan} instead, which configuration
+ * providers convert once and return as is.
  * <p>
  *
  * @author indroneel.das
@@ -59,6 +63,17 @@ public class TimeInterval {
         parseInterval(timeValue);
     }
 
+/**
+ * Creates a time interval of the same length as the specified time span.
+ * <p>
+ *
+ * @param	span the time span.
+ */
+
+    public TimeInterval(TimeSpan span) {
+        interval = span.toMillis();
+    }
+
 /**
  * Populates the time interval with information from the specified string value.
  * <p>
@@ -85,36 +100,15 @@ public class TimeInterval {
     // Helper methods
 
     private void parseInterval(String timeValue) {
-
-        if(StringUtils.isBlank(timeValue)) {
+        if(timeValue == null) {
             return;
         }
-        timeValue = timeValue.toLowerCase();
-        long factor = 1;
-        if(timeValue.endsWith("s")) {
-            factor = 1000;
-        }
-        if(timeValue.endsWith("m")) {
-            factor = 60*1000;
-        }
-        if(timeValue.endsWith("h")) {
-            factor = 60*60*1000;
-        }
-        if(timeValue.endsWith("d")) {
-            factor = 24*60*60*1000;
-        }
-
-        if(timeValue.endsWith("s") || timeValue.endsWith("m")
-                || timeValue.endsWith("h") || timeValue.endsWith("d")) {
-            timeValue = timeValue.substring(0, timeValue.length() - 1);
-        }
-
-        try {
-            double value = Double.parseDouble(timeValue);
-            interval = (long) (value * factor);
+        TimeSpan span = TimeSpan.tryParse(timeValue);
+        if(span != null) {
+            interval = span.toMillis();
         }
-        catch(NumberFormatException exep)
-        {	interval = -1;
+        else if(timeValue.trim().length() > 0) {
+            interval = -1;
         }
     }
 }
@@ -17,24 +17,22 @@
 package com.flipkart.polyguice.config;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.configuration.AbstractConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.yaml.snakeyaml.Yaml;
 
 /**
  * Provides a configuration source for Apache Commons configuration that loads
- * values from a YAML file.
+ * values from a YAML file. The file is read as a stream of parser events and
+ * flattened directly into the key table; see {@link YamlEventLoader} for the
+ * naming of nested mappings and sequences.
  *
  * @author indroneel.das
  *
@@ -44,24 +42,63 @@ public class YamlConfiguration extends AbstractConfiguration {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(YamlConfiguration.class);
 
-    private Map<String, Object> configTab;
+    private URL                          source;
+    private volatile ConfigurationTrie   configTab;
 
     public YamlConfiguration(String path) throws IOException {
-        FileReader reader = new FileReader(path);
-        load(reader);
-        reader.close();
+        this(new File(path));
     }
 
     public YamlConfiguration(File file) throws IOException {
-        FileReader reader = new FileReader(file);
-        load(reader);
-        reader.close();
+        this(file.toURI().toURL());
     }
 
     public YamlConfiguration(URL url) throws IOException {
-        InputStreamReader reader = new InputStreamReader(url.openStream());
-        load(reader);
-        reader.close();
+        source = url;
+        reload();
+    }
+
+/**
+ * Creates a configuration for the source URL from a reader already opened on
+ * it by the caller, who remains responsible for closing it. The source is read
+ * again only on {@link #reload()}.
+ */
+
+    YamlConfiguration(URL url, Reader in) throws IOException {
+        source = url;
+        load(in);
+    }
+
+/**
+ * Reads the configuration source again. The new values replace the current
+ * ones atomically; readers see either the old or the new values, never a mix.
+ * If the source cannot be read, the current values are retained.
+ * <p>
+ *
+ * @throws	IOException if the source cannot be read.
+ */
+
+    public void reload() throws IOException {
+        InputStreamReader reader = new InputStreamReader(source.openStream());
+        try {
+            load(reader);
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+/**
+ * Retrieves the prefix itself, if it is a key, and all keys nested under it,
+ * along with their values, from a single walk of the key trie.
+ * <p>
+ *
+ * @param	prefix the key prefix.
+ * @return	the values keyed by their full keys.
+ */
+
+    public Map<String, Object> getSubtree(String prefix) {
+        return configTab.subtree(prefix);
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -84,7 +121,12 @@ public class YamlConfiguration extends AbstractConfiguration {
 
     @Override
     public Iterator<String> getKeys() {
-        return configTab.keySet().iterator();
+        return configTab.keys().iterator();
+    }
+
+    @Override
+    public Iterator<String> getKeys(String prefix) {
+        return configTab.keysUnder(prefix).iterator();
     }
 
     @Override
@@ -97,24 +139,9 @@ public class YamlConfiguration extends AbstractConfiguration {
     // Helper methods
 
     private void load(Reader in) {
-        Yaml yaml = new Yaml();
-        Map<?, ?> dom = (Map<?, ?>) yaml.load(in);
-        configTab = new HashMap<>();
-        flatten(null, dom);
-        LOGGER.debug("yaml configuration loaded: {}", configTab);
-    }
-
-    private void flatten(String prefix, Map<?, ?> dom) {
-        Set<?> keys = dom.keySet();
-        for(Object key : keys) {
-            String name = (prefix != null) ? (prefix + "." + key.toString()) : key.toString();
-            Object value = dom.get(key);
-            if(value instanceof Map) {
-                flatten(name, (Map<?, ?>) value);
-            }
-            else {
-                configTab.put(name, value);
-            }
-        }
+        ConfigurationTrie table = new YamlEventLoader().load(in);
+        table.compact();
+        configTab = table;
+        LOGGER.debug("yaml configuration loaded: {} keys", table.size());
     }
 }
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Construct;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Flattens a YAML document into a key trie directly from the SnakeYAML event
+ * stream, without building the document object model. Nested mappings are
+ * joined with a dot, and sequence elements are keyed by their index, as in
+ * <tt>servers[0].host</tt>. The scalar elements of a sequence are also stored
+ * together as a list under the key of the sequence itself.
+ * <p>
+ *
+ * Scalars are typed exactly as when loading the document model. Anchors,
+ * aliases and merge keys (<tt>&lt;&lt;</tt>) are supported; the entries of an
+ * anchored collection are recorded as they are flattened and replayed for each
+ * alias. Only the first document of the stream is read, and a document that is
+ * not a mapping yields an empty table.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class YamlEventLoader {
+
+    private ConfigurationTrie      table;
+    private Resolver               resolver;
+    private ScalarConstructor      constructor;
+    private Deque<Frame>           frames;
+    private List<Recording>        recordings;
+    private Map<String, Recording> anchors;
+
+    YamlEventLoader() {
+        resolver = new Resolver();
+        constructor = new ScalarConstructor();
+    }
+
+    public ConfigurationTrie load(Reader in) {
+        table = new ConfigurationTrie();
+        frames = new ArrayDeque<>();
+        recordings = new ArrayList<>();
+        anchors = new HashMap<>();
+        try {
+            boolean started = false;
+            for(Event event : new Yaml().parse(in)) {
+                if(event.is(Event.ID.DocumentEnd) && started) {
+                    break;
+                }
+                if(event.is(Event.ID.MappingStart)) {
+                    if(!started) {
+                        started = true;
+                        frames.push(new Frame(null, false, false));
+                    }
+                    else {
+                        startCollection((CollectionStartEvent) event, false);
+                    }
+                }
+                else if(!started) {
+                    if(event.is(Event.ID.Scalar) || event.is(Event.ID.SequenceStart) || event.is(Event.ID.Alias)) {
+                        break;
+                    }
+                }
+                else if(event.is(Event.ID.SequenceStart)) {
+                    startCollection((CollectionStartEvent) event, true);
+                }
+                else if(event.is(Event.ID.MappingEnd) || event.is(Event.ID.SequenceEnd)) {
+                    endCollection();
+                }
+                else if(event.is(Event.ID.Scalar)) {
+                    ScalarEvent scalar = (ScalarEvent) event;
+                    Object value = constructScalar(scalar);
+                    if(scalar.getAnchor() != null) {
+                        anchors.put(scalar.getAnchor(), new Recording(value));
+                    }
+                    addValue(value);
+                }
+                else if(event.is(Event.ID.Alias)) {
+                    addAlias(((AliasEvent) event).getAnchor());
+                }
+            }
+            return table;
+        }
+        finally {
+            frames = null;
+            recordings = null;
+            anchors = null;
+            table = null;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private void startCollection(CollectionStartEvent event, boolean sequence) {
+        Frame parent = frames.peek();
+        if(parent.expectsKey()) {
+            throw new RuntimeException("complex keys are not supported: " + event.getStartMark());
+        }
+        Frame frame;
+        if(parent.isMergeKey()) {
+            frame = new Frame(parent.prefix, sequence, true);
+            frame.mergeSequence = sequence;
+            parent.key = null;
+        }
+        else if(parent.mergeSequence) {
+            frame = new Frame(parent.prefix, sequence, true);
+        }
+        else {
+            frame = new Frame(nextName(parent), sequence, parent.merge);
+        }
+        if(event.getAnchor() != null) {
+            frame.recording = new Recording(frame.prefix, event.getAnchor());
+            recordings.add(frame.recording);
+        }
+        frames.push(frame);
+    }
+
+    private void endCollection() {
+        Frame frame = frames.pop();
+        if(frame.scalars != null && !frame.scalars.isEmpty()) {
+            put(frame.prefix, Collections.unmodifiableList(frame.scalars), frame.merge);
+        }
+        if(frame.recording != null) {
+            recordings.remove(frame.recording);
+            anchors.put(frame.recording.anchor, frame.recording);
+        }
+    }
+
+    private void addValue(Object value) {
+        Frame frame = frames.peek();
+        if(frame.expectsKey()) {
+            frame.key = (value instanceof Tag) ? value : String.valueOf(value);
+            return;
+        }
+        if(frame.isMergeKey()) {
+            throw new RuntimeException("merge key must refer to a mapping");
+        }
+        String name = nextName(frame);
+        put(name, value, frame.merge);
+        if(frame.scalars != null) {
+            frame.scalars.add(value);
+        }
+    }
+
+    private void addAlias(String anchor) {
+        Recording rec = anchors.get(anchor);
+        if(rec == null) {
+            throw new RuntimeException("undefined alias: " + anchor);
+        }
+        if(rec.isScalar()) {
+            addValue(rec.values.get(0));
+            return;
+        }
+        Frame frame = frames.peek();
+        if(frame.expectsKey()) {
+            throw new RuntimeException("complex keys are not supported: *" + anchor);
+        }
+        if(frame.isMergeKey()) {
+            frame.key = null;
+            replay(rec, frame.prefix, true);
+        }
+        else if(frame.mergeSequence) {
+            replay(rec, frame.prefix, true);
+        }
+        else {
+            replay(rec, nextName(frame), frame.merge);
+        }
+    }
+
+    private void replay(Recording rec, String prefix, boolean merge) {
+        for(int i = 0; i < rec.suffixes.size(); i++) {
+            String suffix = rec.suffixes.get(i);
+            String name;
+            if(prefix != null) {
+                name = prefix + suffix;
+            }
+            else {
+                name = suffix.startsWith(".") ? suffix.substring(1) : suffix;
+            }
+            put(name, rec.values.get(i), merge);
+        }
+    }
+
+    private String nextName(Frame frame) {
+        if(frame.mergeSequence) {
+            throw new RuntimeException("merge key must refer to a mapping");
+        }
+        if(frame.sequence) {
+            return frame.prefix + "[" + (frame.index++) + "]";
+        }
+        String key = (String) frame.key;
+        frame.key = null;
+        return (frame.prefix != null) ? frame.prefix + "." + key : key;
+    }
+
+    private void put(String name, Object value, boolean merge) {
+        if(merge && table.containsKey(name)) {
+            return;
+        }
+        table.put(name, value);
+        for(Recording rec : recordings) {
+            rec.record(name, value);
+        }
+    }
+
+    private Object constructScalar(ScalarEvent event) {
+        Tag tag;
+        if(event.getTag() == null || event.getTag().equals("!")) {
+            tag = resolver.resolve(NodeId.scalar, event.getValue(), event.getImplicit().canOmitTagInPlainScalar());
+        }
+        else {
+            tag = new Tag(event.getTag());
+        }
+        if(tag.equals(Tag.MERGE)) {
+            return Tag.MERGE;
+        }
+        return constructor.construct(new ScalarNode(tag, event.getValue(), null, null, event.getStyle()));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    private static class Frame {
+
+        private String       prefix;
+        private boolean      sequence;
+        private boolean      merge;
+        private boolean      mergeSequence;
+        private int          index;
+        private Object       key;
+        private List<Object> scalars;
+        private Recording    recording;
+
+        Frame(String prefix, boolean sequence, boolean merge) {
+            this.prefix = prefix;
+            this.sequence = sequence;
+            this.merge = merge;
+            if(sequence) {
+                scalars = new ArrayList<>();
+            }
+        }
+
+        public boolean expectsKey() {
+            return !sequence && key == null;
+        }
+
+        public boolean isMergeKey() {
+            return Tag.MERGE.equals(key);
+        }
+    }
+
+/**
+ * Entries flattened under an anchored node, keyed relative to the node.
+ */
+
+    private static class Recording {
+
+        private String       anchor;
+        private String       base;
+        private List<String> suffixes;
+        private List<Object> values;
+
+        Recording(String base, String anchor) {
+            this.base = (base != null) ? base : "";
+            this.anchor = anchor;
+            suffixes = new ArrayList<>();
+            values = new ArrayList<>();
+        }
+
+        Recording(Object value) {
+            this(null, null);
+            suffixes.add("");
+            values.add(value);
+        }
+
+        public boolean isScalar() {
+            return suffixes.size() == 1 && suffixes.get(0).isEmpty();
+        }
+
+        public void record(String name, Object value) {
+            String suffix = name.substring(base.length());
+            suffixes.add(base.isEmpty() ? "." + suffix : suffix);
+            values.add(value);
+        }
+    }
+
+/**
+ * Converts scalars exactly as the safe constructor does when building the
+ * document model, without keeping track of the constructed objects.
+ */
+
+    private static class ScalarConstructor extends SafeConstructor {
+
+        public Object construct(ScalarNode node) {
+            Construct construct = yamlConstructors.get(node.getTag());
+            if(construct == null) {
+                return node.getValue();
+            }
+            return construct.construct(node);
+        }
+    }
+}
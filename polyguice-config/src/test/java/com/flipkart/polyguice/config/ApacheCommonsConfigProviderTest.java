@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.flipkart.polyguice.core.DataSize;
+import com.flipkart.polyguice.core.TimeSpan;
+
+/**
+ * Reads subtrees and bulk values across several configuration files, before and
+ * after the provider is frozen.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ApacheCommonsConfigProviderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSubtreePrecedence() throws IOException {
+        ApacheCommonsConfigProvider provider = load();
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("db.host", "primary");
+        expected.put("db.port", "5432");
+        expected.put("db.pool", 8);
+        Map<String, Object> subtree = provider.getSubtree("db");
+        Assert.assertEquals(expected, subtree);
+        Assert.assertFalse(subtree.containsKey("dbx.host"));
+        Assert.assertTrue(provider.getSubtree("missing").isEmpty());
+
+        provider.freeze();
+        Assert.assertEquals(expected, provider.getSubtree("db"));
+    }
+
+    @Test
+    public void testEmptyPrefixMatchesAll() throws IOException {
+        ApacheCommonsConfigProvider provider = load();
+        Map<String, Object> all = provider.getSubtree("");
+        Assert.assertEquals(7, all.size());
+        Assert.assertEquals("primary", all.get("db.host"));
+        Assert.assertEquals("other", all.get("dbx.host"));
+        Assert.assertEquals("1m", all.get("cache.ttl"));
+        Assert.assertEquals(7, provider.keysUnder("").size());
+        Assert.assertTrue(provider.keysUnder("").containsAll(all.keySet()));
+
+        provider.freeze();
+        Assert.assertEquals(all.keySet(), provider.getSubtree("").keySet());
+        Assert.assertEquals(7, provider.keysUnder("").size());
+    }
+
+    @Test
+    public void testKeysUnder() throws IOException {
+        ApacheCommonsConfigProvider provider = load();
+        Assert.assertEquals(3, provider.keysUnder("db").size());
+        Assert.assertTrue(provider.keysUnder("db").containsAll(Arrays.asList("db.host", "db.port", "db.pool")));
+        Assert.assertEquals(Arrays.asList("dbx.host"), provider.keysUnder("dbx"));
+        provider.freeze();
+        Assert.assertEquals(Arrays.asList("db.host", "db.pool", "db.port"), provider.keysUnder("db"));
+    }
+
+    @Test
+    public void testGetValues() throws IOException {
+        ApacheCommonsConfigProvider provider = load();
+        checkValues(provider);
+        provider.freeze();
+        checkValues(provider);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private void checkValues(ApacheCommonsConfigProvider provider) {
+        Map<String, Class<?>> paths = new HashMap<>();
+        paths.put("db.port", Integer.TYPE);
+        paths.put("db.pool", Long.class);
+        paths.put("db.host", String.class);
+        paths.put("cache.ttl", TimeSpan.class);
+        paths.put("cache.size", DataSize.class);
+        paths.put("cache.enabled", Boolean.class);
+        paths.put("missing", String.class);
+        Map<String, Object> values = provider.getValues(paths);
+        Assert.assertEquals(6, values.size());
+        Assert.assertEquals(5432, values.get("db.port"));
+        Assert.assertEquals(8L, values.get("db.pool"));
+        Assert.assertEquals("primary", values.get("db.host"));
+        Assert.assertEquals(60000L, ((TimeSpan) values.get("cache.ttl")).toMillis());
+        Assert.assertEquals(DataSize.parse("64MB"), values.get("cache.size"));
+        Assert.assertEquals(Boolean.FALSE, values.get("cache.enabled"));
+        Assert.assertFalse(values.containsKey("missing"));
+
+        paths.clear();
+        paths.put("db.host", Integer.class);
+        Assert.assertTrue("unconvertible values are left out", provider.getValues(paths).isEmpty());
+    }
+
+    private ApacheCommonsConfigProvider load() throws IOException {
+        String first = write("app.properties",
+                "db.host = primary",
+                "db.port = 5432",
+                "dbx.host = other");
+        String second = write("defaults.json",
+                "{\"db\": {\"host\": \"fallback\", \"pool\": 8},",
+                " \"cache\": {\"ttl\": \"1m\", \"size\": \"64MB\", \"enabled\": false}}");
+        return new ApacheCommonsConfigProvider().locations(first, second);
+    }
+
+    private String write(String name, String... lines) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            for(String line : lines) {
+                out.println(line);
+            }
+        }
+        finally {
+            out.close();
+        }
+        return file.getPath();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Loads configuration files of each supported format, singly and in parallel,
+ * checking the order of the results and the outcome of locations that cannot
+ * be loaded.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ConfigurationLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResultsFollowLocations() throws Exception {
+        List<String> locs = new ArrayList<>();
+        int count = Runtime.getRuntime().availableProcessors() * 2 + 3;
+        for(int i = 0; i < count; i++) {
+            switch(i % 3) {
+            case 0:
+                locs.add(write("file" + i + ".properties", "index = " + i));
+                break;
+            case 1:
+                locs.add(write("file" + i + ".json", "{\"index\": " + i + "}"));
+                break;
+            default:
+                locs.add(write("file" + i + ".yml", "index: " + i));
+                break;
+            }
+        }
+        for(int round = 0; round < 2; round++) {
+            List<Future<AbstractConfiguration>> results = new ConfigurationLoader().loadAll(locs);
+            Assert.assertEquals(count, results.size());
+            for(int i = 0; i < count; i++) {
+                Assert.assertEquals(i, results.get(i).get().getInt("index"));
+            }
+        }
+    }
+
+    @Test
+    public void testFormats() throws Exception {
+        List<Future<AbstractConfiguration>> results = new ConfigurationLoader().loadAll(Arrays.asList(
+                write("app.properties", "server.port = 8080"),
+                write("app.json", "{\"server\": {\"port\": 8081}}"),
+                write("app.yaml", "server:", "  port: 8082"),
+                write("app.txt", "server.port = 8083"),
+                write("empty.json")));
+        for(int i = 0; i < 3; i++) {
+            Assert.assertEquals(8080 + i, results.get(i).get().getInt("server.port"));
+        }
+        Assert.assertNull("unsupported format", results.get(3).get());
+        Assert.assertTrue(results.get(4).get().isEmpty());
+    }
+
+    @Test
+    public void testUtf8Decoding() throws Exception {
+        String greeting = "gr\u00fc\u00df dich \u4f60\u597d";
+        List<Future<AbstractConfiguration>> results = new ConfigurationLoader().loadAll(Arrays.asList(
+                write("app.json", "{\"greeting\": \"" + greeting + "\"}"),
+                write("app.yml", "greeting: " + greeting)));
+        Assert.assertEquals(greeting, results.get(0).get().getString("greeting"));
+        Assert.assertEquals(greeting, results.get(1).get().getString("greeting"));
+    }
+
+    @Test
+    public void testFailuresAreReportedPerLocation() throws Exception {
+        String good = write("good.json", "{\"a\": 1}");
+        String missing = new File(folder.getRoot(), "missing.json").getPath();
+        String malformed = write("malformed.json", "{\"a\": ");
+        List<Future<AbstractConfiguration>> results = new ConfigurationLoader().loadAll(
+                Arrays.asList(good, missing, malformed, good));
+        Assert.assertEquals(1, results.get(0).get().getInt("a"));
+        assertFails(results.get(1));
+        assertFails(results.get(2));
+        Assert.assertEquals(1, results.get(3).get().getInt("a"));
+
+        assertFails(new ConfigurationLoader().loadAll(Arrays.asList(missing)).get(0));
+        assertFails(new ConfigurationLoader().loadAll(Arrays.asList("classpath:no/such/file.json")).get(0));
+    }
+
+    @Test
+    public void testClasspathLocationsUseCallerLoader() throws Exception {
+        File resDir = folder.newFolder("resources");
+        File resFile = new File(resDir, "sample/app.yml");
+        Assert.assertTrue(resFile.getParentFile().mkdirs());
+        writeTo(resFile, "source: classpath");
+        String other = write("other.yml", "source: file");
+
+        Thread thread = Thread.currentThread();
+        ClassLoader oldLoader = thread.getContextClassLoader();
+        URLClassLoader loader = new URLClassLoader(new URL[] {resDir.toURI().toURL()}, oldLoader);
+        thread.setContextClassLoader(loader);
+        try {
+            List<Future<AbstractConfiguration>> results = new ConfigurationLoader().loadAll(
+                    Arrays.asList("classpath:/sample/app.yml", other));
+            Assert.assertEquals("classpath", results.get(0).get().getString("source"));
+            Assert.assertEquals("file", results.get(1).get().getString("source"));
+        }
+        finally {
+            thread.setContextClassLoader(oldLoader);
+            loader.close();
+        }
+        Assert.assertNull(ConfigurationLoader.toFile("classpath:/sample/app.yml"));
+        Assert.assertEquals(new File(other).getAbsoluteFile(), ConfigurationLoader.toFile(other));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static void assertFails(Future<AbstractConfiguration> result) throws InterruptedException {
+        try {
+            result.get();
+            Assert.fail("location loaded without error");
+        }
+        catch(ExecutionException exep) {
+            Assert.assertNotNull(exep.getCause());
+        }
+    }
+
+    private String write(String name, String... lines) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        writeTo(file, lines);
+        return file.getPath();
+    }
+
+    private static void writeTo(File file, String... lines) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            for(String line : lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.flipkart.polyguice.config.sample.FixedSettings;
+import com.flipkart.polyguice.config.sample.ReloadableSettings;
+import com.flipkart.polyguice.core.ConfigurationChangeListener;
+import com.flipkart.polyguice.core.ConfigurationProvider;
+import com.flipkart.polyguice.core.support.Polyguice;
+
+/**
+ * Reloads configuration files, explicitly and on change, checking the reported
+ * change sets and the re-injection of {@link com.flipkart.polyguice.core.Reloadable}
+ * components.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ConfigurationReloadTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ApacheCommonsConfigProvider provider;
+    private BlockingQueue<Set<String>>  changes;
+
+    @Before
+    public void setUp() {
+        provider = new ApacheCommonsConfigProvider();
+        changes = new LinkedBlockingQueue<>();
+        provider.addChangeListener(new ConfigurationChangeListener() {
+            @Override
+            public void configurationChanged(ConfigurationProvider source, Set<String> paths) {
+                changes.add(paths);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        provider.stopWatching();
+    }
+
+    @Test
+    public void testReloadReportsChanges() throws IOException {
+        String loc = write("app.properties", "server.port = 8080", "server.host = alpha", "server.debug = true");
+        provider.location(loc);
+        Assert.assertEquals(8080, provider.getValue("server.port", Integer.class));
+
+        Assert.assertTrue(provider.reload());
+        Assert.assertTrue("unchanged files must not be reported", changes.isEmpty());
+
+        write("app.properties", "server.port = 9090", "server.host = alpha", "server.name = main");
+        Assert.assertTrue(provider.reload());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("server.port", "server.debug", "server.name")), changes.poll());
+        Assert.assertEquals(9090, provider.getValue("server.port", Integer.class));
+        Assert.assertFalse(provider.contains("server.debug"));
+        Assert.assertEquals("main", provider.getValue("server.name", String.class));
+    }
+
+    @Test
+    public void testFailedReloadKeepsValues() throws IOException {
+        String loc = write("app.properties", "server.port = 8080");
+        String other = write("other.properties", "server.host = alpha");
+        provider.locations(loc, other);
+        Assert.assertEquals(8080, provider.getValue("server.port", Integer.class));
+
+        write("app.properties", "server.port = 9090");
+        Assert.assertTrue(new File(other).delete());
+        Assert.assertFalse(provider.reload());
+        Assert.assertEquals(8080, provider.getValue("server.port", Integer.class));
+        Assert.assertEquals("alpha", provider.getValue("server.host", String.class));
+        Assert.assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void testFrozenReload() throws IOException {
+        String loc = write("app.properties", "server.port = 8080");
+        provider.location(loc);
+        provider.freeze();
+        write("app.properties", "server.port = 9090");
+        Assert.assertTrue(provider.reload());
+        Assert.assertEquals(9090, provider.getValue("server.port", Integer.class));
+        Assert.assertEquals(Collections.singleton("server.port"), changes.poll());
+    }
+
+    @Test
+    public void testWatchReloadsOnChange() throws Exception {
+        String loc = write("app.properties", "server.port = 8080");
+        provider.location(loc).watch(50);
+
+        write("app.properties", "server.port = 9090");
+        Set<String> changed = changes.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull("change not detected", changed);
+        Assert.assertEquals(Collections.singleton("server.port"), changed);
+        Assert.assertEquals(9090, provider.getValue("server.port", Integer.class));
+    }
+
+    @Test
+    public void testLaterLocationIsWatched() throws Exception {
+        String loc = write("app.properties", "server.port = 8080");
+        provider.location(loc).watch(50);
+        File subDir = folder.newFolder("more");
+        String later = write("more/later.properties", "server.host = alpha");
+        provider.location(later);
+        Assert.assertEquals("alpha", provider.getValue("server.host", String.class));
+
+        write("more/later.properties", "server.host = beta");
+        Set<String> changed = changes.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull("change in " + subDir + " not detected", changed);
+        Assert.assertEquals(Collections.singleton("server.host"), changed);
+        Assert.assertEquals("beta", provider.getValue("server.host", String.class));
+    }
+
+    @Test
+    public void testStopWatching() throws Exception {
+        String loc = write("app.properties", "server.port = 8080");
+        provider.location(loc).watch(50);
+        provider.stopWatching();
+        write("app.properties", "server.port = 9090");
+        Assert.assertNull(changes.poll(500, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(8080, provider.getValue("server.port", Integer.class));
+    }
+
+    @Test
+    public void testWatcherDebouncesAndCloses() throws Exception {
+        File file = new File(write("app.properties", "a = 1"));
+        final AtomicInteger count = new AtomicInteger();
+        final BlockingQueue<Integer> calls = new LinkedBlockingQueue<>();
+        ConfigurationWatcher watcher = new ConfigurationWatcher(Collections.singleton(file), 200, new Runnable() {
+            @Override
+            public void run() {
+                calls.add(count.incrementAndGet());
+            }
+        });
+        try {
+            for(int i = 2; i < 6; i++) {
+                write("app.properties", "a = " + i);
+                Thread.sleep(20);
+            }
+            Assert.assertEquals(Integer.valueOf(1), calls.poll(10, TimeUnit.SECONDS));
+            Assert.assertNull("burst not debounced", calls.poll(500, TimeUnit.MILLISECONDS));
+        }
+        finally {
+            watcher.close();
+        }
+        write("app.properties", "a = 7");
+        Assert.assertNull(calls.poll(500, TimeUnit.MILLISECONDS));
+        try {
+            watcher.watch(file);
+            Assert.fail("closed watcher accepted a file");
+        }
+        catch(IOException exep) {
+            //NOOP, expected
+        }
+    }
+
+    @Test
+    public void testReloadableComponentsAreReinjected() throws IOException {
+        String loc = write("app.properties", "server.port = 8080", "server.host = alpha");
+        provider.location(loc);
+        Polyguice polyguice = new Polyguice()
+                .registerConfigurationProvider(provider)
+                .scanPackage(ReloadableSettings.class.getPackage().getName())
+                .prepare();
+        try {
+            ReloadableSettings reloadable = (ReloadableSettings) polyguice.getComponentContext()
+                    .getInstance("reloadableSettings");
+            FixedSettings fixed = (FixedSettings) polyguice.getComponentContext().getInstance("fixedSettings");
+            Assert.assertEquals(8080, reloadable.getPort());
+            Assert.assertEquals("alpha", reloadable.getHost());
+            Assert.assertEquals(8080, fixed.getPort());
+
+            write("app.properties", "server.port = 9090", "server.host = alpha");
+            Assert.assertTrue(provider.reload());
+            Assert.assertEquals(9090, reloadable.getPort());
+            Assert.assertEquals("alpha", reloadable.getHost());
+            Assert.assertEquals("not reloadable", 8080, fixed.getPort());
+
+            write("app.properties", "server.port = 9090", "server.host = beta");
+            Assert.assertTrue(provider.reload());
+            Assert.assertEquals("beta", reloadable.getHost());
+        }
+        finally {
+            polyguice.stop();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private String write(String name, String... lines) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            for(String line : lines) {
+                out.println(line);
+            }
+        }
+        finally {
+            out.close();
+        }
+        return file.getPath();
+    }
+}
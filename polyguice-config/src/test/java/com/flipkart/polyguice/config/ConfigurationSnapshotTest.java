@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Writes configuration snapshots and reads them back in place, through both the
+ * boxed and the unboxed accessors.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ConfigurationSnapshotTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        SortedMap<String, Object> values = sampleValues();
+        ConfigurationSnapshot snapshot = toSnapshot(values);
+        Assert.assertEquals(values.size(), snapshot.size());
+        for(Map.Entry<String, Object> entry : values.entrySet()) {
+            int index = snapshot.find(entry.getKey());
+            Assert.assertTrue("missing " + entry.getKey(), index >= 0);
+            Assert.assertEquals(entry.getKey(), snapshot.getPath(index));
+            Assert.assertEquals(entry.getKey(), entry.getValue(), snapshot.getValue(index));
+        }
+        Assert.assertEquals(-1, snapshot.find("db.missing"));
+    }
+
+    @Test
+    public void testSubtree() throws IOException {
+        ConfigurationSnapshot snapshot = toSnapshot(sampleValues());
+        Map<String, Object> subtree = snapshot.subtree("db");
+        Assert.assertEquals(Arrays.asList("db.host", "db.pool.max", "db.port"),
+                Arrays.asList(subtree.keySet().toArray()));
+        Assert.assertTrue(snapshot.subtree("d").isEmpty());
+        Assert.assertEquals(sampleValues().size(), snapshot.keysUnder("").size());
+    }
+
+    @Test
+    public void testUnboxedLong() throws IOException {
+        SortedMap<String, Object> values = new TreeMap<>();
+        values.put("int", 42);
+        values.put("long", 1L << 40);
+        values.put("double.whole", 7.0);
+        values.put("double.fraction", 7.5);
+        values.put("string", " -123 ");
+        values.put("string.exponent", "1.5e3");
+        values.put("string.overflow", "9223372036854775808");
+        values.put("string.max", "9223372036854775807");
+        values.put("string.text", "abc");
+        values.put("big.integer", BigInteger.valueOf(Long.MIN_VALUE));
+        values.put("big.decimal", new BigDecimal("12.000"));
+        values.put("boolean", true);
+        ConfigurationSnapshot snapshot = toSnapshot(values);
+        Assert.assertEquals(42, snapshot.getLong(snapshot.find("int"), -1));
+        Assert.assertEquals(1L << 40, snapshot.getLong(snapshot.find("long"), -1));
+        Assert.assertEquals(7, snapshot.getLong(snapshot.find("double.whole"), -1));
+        Assert.assertEquals(-1, snapshot.getLong(snapshot.find("double.fraction"), -1));
+        Assert.assertEquals(-123, snapshot.getLong(snapshot.find("string"), -1));
+        Assert.assertEquals(1500, snapshot.getLong(snapshot.find("string.exponent"), -1));
+        Assert.assertEquals(-1, snapshot.getLong(snapshot.find("string.overflow"), -1));
+        Assert.assertEquals(Long.MAX_VALUE, snapshot.getLong(snapshot.find("string.max"), -1));
+        Assert.assertEquals(-1, snapshot.getLong(snapshot.find("string.text"), -1));
+        Assert.assertEquals(Long.MIN_VALUE, snapshot.getLong(snapshot.find("big.integer"), -1));
+        Assert.assertEquals(12, snapshot.getLong(snapshot.find("big.decimal"), -1));
+        Assert.assertEquals(-1, snapshot.getLong(snapshot.find("boolean"), -1));
+    }
+
+    @Test
+    public void testUnboxedDouble() throws IOException {
+        SortedMap<String, Object> values = new TreeMap<>();
+        values.put("int", 3);
+        values.put("float", 0.25f);
+        values.put("string", "2.5");
+        values.put("string.exponent", "-1.25E-3");
+        values.put("string.long", "0.1000000000000000055511151231257827");
+        values.put("string.text", "fast");
+        ConfigurationSnapshot snapshot = toSnapshot(values);
+        Assert.assertEquals(3.0, snapshot.getDouble(snapshot.find("int"), Double.NaN), 0.0);
+        Assert.assertEquals(0.25, snapshot.getDouble(snapshot.find("float"), Double.NaN), 0.0);
+        Assert.assertEquals(2.5, snapshot.getDouble(snapshot.find("string"), Double.NaN), 0.0);
+        Assert.assertEquals(-1.25e-3, snapshot.getDouble(snapshot.find("string.exponent"), Double.NaN), 0.0);
+        Assert.assertEquals(0.1, snapshot.getDouble(snapshot.find("string.long"), Double.NaN), 0.0);
+        Assert.assertTrue(Double.isNaN(snapshot.getDouble(snapshot.find("string.text"), Double.NaN)));
+    }
+
+    @Test
+    public void testUnboxedBoolean() throws IOException {
+        SortedMap<String, Object> values = new TreeMap<>();
+        values.put("flag", true);
+        values.put("yes", "Yes");
+        values.put("off", "OFF");
+        values.put("text", "maybe");
+        ConfigurationSnapshot snapshot = toSnapshot(values);
+        Assert.assertTrue(snapshot.getBoolean(snapshot.find("flag"), false));
+        Assert.assertTrue(snapshot.getBoolean(snapshot.find("yes"), false));
+        Assert.assertFalse(snapshot.getBoolean(snapshot.find("off"), true));
+        Assert.assertTrue(snapshot.getBoolean(snapshot.find("text"), true));
+        Assert.assertFalse(snapshot.getBoolean(snapshot.find("text"), false));
+    }
+
+    @Test
+    public void testDiff() throws IOException {
+        SortedMap<String, Object> values = sampleValues();
+        ConfigurationSnapshot before = toSnapshot(values);
+        values.put("db.port", 5433);
+        values.remove("name");
+        values.put("added", "x");
+        ConfigurationSnapshot after = toSnapshot(values);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("added", "db.port", "name")),
+                new TreeSet<>(before.diff(after)));
+        Assert.assertTrue(before.diff(toSnapshot(sampleValues())).isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testTruncated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConfigurationSnapshot.write(sampleValues(), out);
+        byte[] data = out.toByteArray();
+        new ConfigurationSnapshot(ByteBuffer.wrap(Arrays.copyOf(data, data.length - 1)));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static SortedMap<String, Object> sampleValues() {
+        SortedMap<String, Object> values = new TreeMap<>();
+        values.put("name", "polyguice");
+        values.put("alias", "polyguice");
+        values.put("db.host", "localhost");
+        values.put("db.port", 5432);
+        values.put("db.pool.max", 20L);
+        values.put("ratio", 0.75);
+        values.put("scale", 1.5f);
+        values.put("enabled", Boolean.TRUE);
+        values.put("big", new BigInteger("123456789012345678901234567890"));
+        values.put("price", new BigDecimal("19.99"));
+        values.put("tags", Arrays.asList("a", "b", "c"));
+        values.put("mixed", Arrays.<Object>asList(1, "two", 3.0, false));
+        values.put("unicode", "\u00e9t\u00e9 \u2603");
+        return values;
+    }
+
+    private static ConfigurationSnapshot toSnapshot(SortedMap<String, Object> values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConfigurationSnapshot.write(values, out);
+        return new ConfigurationSnapshot(ByteBuffer.wrap(out.toByteArray()));
+    }
+}
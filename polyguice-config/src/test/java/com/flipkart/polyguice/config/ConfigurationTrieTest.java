@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the key order and the prefix lookups of the configuration key trie.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ConfigurationTrieTest {
+
+    @Test
+    public void testKeyOrder() {
+        ConfigurationTrie trie = new ConfigurationTrie();
+        trie.put("b", 1);
+        trie.put("a.z", 2);
+        trie.put("a.b", 3);
+        trie.put("list[10]", "k");
+        trie.put("list[2]", "c");
+        trie.put("list[0]", "a");
+        trie.put("a", "parent");
+        Assert.assertEquals(Arrays.asList("a", "a.b", "a.z", "b", "list[0]", "list[2]", "list[10]"), trie.keys());
+        Assert.assertEquals(7, trie.size());
+    }
+
+    @Test
+    public void testTypedValues() {
+        ConfigurationTrie trie = new ConfigurationTrie();
+        trie.put("flag", true);
+        trie.put("int", 7);
+        trie.put("long", 1L << 40);
+        trie.put("float", 1.5f);
+        trie.put("double", 2.25);
+        trie.put("text", "x");
+        trie.put("int", 8);
+        Assert.assertEquals(Boolean.TRUE, trie.get("flag"));
+        Assert.assertEquals(8, trie.get("int"));
+        Assert.assertEquals(1L << 40, trie.get("long"));
+        Assert.assertEquals(1.5f, trie.get("float"));
+        Assert.assertEquals(2.25, trie.get("double"));
+        Assert.assertEquals("x", trie.get("text"));
+        Assert.assertEquals(6, trie.size());
+    }
+
+    @Test
+    public void testSubtree() {
+        ConfigurationTrie trie = new ConfigurationTrie();
+        trie.put("db.host", "h");
+        trie.put("db.port", 1);
+        trie.put("db.replicas[0].host", "r0");
+        trie.put("db.replicas[1].host", "r1");
+        trie.put("dbx.host", "other");
+        trie.put("cache.size", 5);
+        trie.compact();
+        Map<String, Object> subtree = trie.subtree("db");
+        Assert.assertEquals(Arrays.asList("db.host", "db.port", "db.replicas[0].host", "db.replicas[1].host"),
+                Arrays.asList(subtree.keySet().toArray()));
+        Assert.assertEquals("r1", subtree.get("db.replicas[1].host"));
+        Assert.assertEquals(Arrays.asList("db.replicas[0].host", "db.replicas[1].host"),
+                trie.keysUnder("db.replicas"));
+        Assert.assertEquals(Arrays.asList("db.replicas[1].host"), trie.keysUnder("db.replicas[1]"));
+        Assert.assertTrue(trie.subtree("d").isEmpty());
+        Assert.assertTrue(trie.keysUnder("missing").isEmpty());
+        Assert.assertEquals(6, trie.subtree("").size());
+        Assert.assertFalse(trie.containsKey("db"));
+        Assert.assertNull(trie.get("db"));
+    }
+}
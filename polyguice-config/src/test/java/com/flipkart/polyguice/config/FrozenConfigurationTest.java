@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.DataSize;
+import com.flipkart.polyguice.core.TimeSpan;
+
+/**
+ * Checks the lazily converted and cached values of a frozen configuration, and
+ * that values of mutable types are handed out as copies.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class FrozenConfigurationTest {
+
+    @Test
+    public void testPrecedenceAndKeys() {
+        BaseConfiguration first = new BaseConfiguration();
+        first.addProperty("db.host", "primary");
+        BaseConfiguration second = new BaseConfiguration();
+        second.addProperty("db.host", "secondary");
+        second.addProperty("db.port", "5432");
+        CompositeConfiguration config = new CompositeConfiguration();
+        config.addConfiguration(first);
+        config.addConfiguration(second);
+
+        FrozenConfiguration frozen = new FrozenConfiguration(config);
+        Assert.assertEquals(2, frozen.size());
+        Assert.assertTrue(frozen.contains("db.port"));
+        Assert.assertFalse(frozen.contains("db"));
+        Assert.assertEquals("primary", frozen.getValue("db.host", String.class));
+        Assert.assertEquals(Arrays.asList("db.host", "db.port"), frozen.keysUnder("db"));
+        Assert.assertEquals("5432", frozen.getSubtree("db").get("db.port"));
+
+        first.setProperty("db.host", "changed");
+        Assert.assertEquals("source changes must not show", "primary", frozen.getValue("db.host", String.class));
+    }
+
+    @Test
+    public void testConversionIsLazyAndCached() {
+        BaseConfiguration config = new BaseConfiguration();
+        config.addProperty("amount", "12.50");
+        config.addProperty("timeout", "30s");
+        config.addProperty("broken", "not-a-number");
+
+        FrozenConfiguration frozen = new FrozenConfiguration(config);
+        BigDecimal amount = (BigDecimal) frozen.getValue("amount", BigDecimal.class);
+        Assert.assertEquals(new BigDecimal("12.50"), amount);
+        Assert.assertSame(amount, frozen.getValue("amount", BigDecimal.class));
+        Assert.assertEquals("12.50", frozen.getValue("amount", String.class));
+
+        Assert.assertEquals(30000L, ((TimeSpan) frozen.getValue("timeout", TimeSpan.class)).toMillis());
+        Assert.assertSame(frozen.getValue("timeout", TimeSpan.class), frozen.getValue("timeout", TimeSpan.class));
+        Assert.assertNull(frozen.getValue("timeout", DataSize.class));
+
+        Assert.assertNull(frozen.getValue("broken", Integer.class));
+        Assert.assertNull("failed conversion is cached", frozen.getValue("broken", Integer.TYPE));
+        Assert.assertEquals("not-a-number", frozen.getValue("broken", String.class));
+        Assert.assertNull(frozen.getValue("missing", Integer.class));
+        Assert.assertFalse(frozen.contains("missing"));
+    }
+
+    @Test
+    public void testPrimitivesShareWrapperSlots() {
+        BaseConfiguration config = new BaseConfiguration();
+        config.addProperty("port", "8080");
+        config.addProperty("debug", "true");
+
+        FrozenConfiguration frozen = new FrozenConfiguration(config);
+        Object port = frozen.getValue("port", Integer.TYPE);
+        Assert.assertEquals(8080, port);
+        Assert.assertSame(port, frozen.getValue("port", Integer.class));
+        Assert.assertEquals(8080L, frozen.getValue("port", Long.TYPE));
+        Assert.assertEquals(Boolean.TRUE, frozen.getValue("debug", Boolean.TYPE));
+    }
+
+    @Test
+    public void testMutableValuesAreCopied() {
+        BaseConfiguration config = new BaseConfiguration();
+        config.addProperty("hosts", Arrays.asList("a", "b"));
+        config.addProperty("props", Arrays.asList("x=1", "y=2"));
+        config.addProperty("interval", "2m");
+
+        FrozenConfiguration frozen = new FrozenConfiguration(config);
+        String[] hosts = (String[]) frozen.getValue("hosts", String[].class);
+        Assert.assertArrayEquals(new String[] {"a", "b"}, hosts);
+        hosts[0] = "changed";
+        Assert.assertArrayEquals(new String[] {"a", "b"}, (String[]) frozen.getValue("hosts", String[].class));
+
+        Properties props = (Properties) frozen.getValue("props", Properties.class);
+        Assert.assertEquals("2", props.getProperty("y"));
+        props.setProperty("y", "changed");
+        Assert.assertEquals("2", ((Properties) frozen.getValue("props", Properties.class)).getProperty("y"));
+
+        TimeInterval interval = (TimeInterval) frozen.getValue("interval", TimeInterval.class);
+        Assert.assertEquals(120000L, interval.getValue());
+        interval.setValue("1s");
+        Assert.assertNotSame(interval, frozen.getValue("interval", TimeInterval.class));
+        Assert.assertEquals(120000L, ((TimeInterval) frozen.getValue("interval", TimeInterval.class)).getValue());
+    }
+
+    @Test
+    public void testOtherTypesAreConvertedEachTime() {
+        BaseConfiguration config = new BaseConfiguration();
+        config.addProperty("hosts", Arrays.asList("a", "b"));
+
+        FrozenConfiguration frozen = new FrozenConfiguration(config);
+        List<?> first = (List<?>) frozen.getValue("hosts", List.class);
+        Assert.assertEquals(Arrays.asList("a", "b"), first);
+        Assert.assertNotSame(first, frozen.getValue("hosts", List.class));
+        Assert.assertNull(frozen.getValue("missing", List.class));
+    }
+}
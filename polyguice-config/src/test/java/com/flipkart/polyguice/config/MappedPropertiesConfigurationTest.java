@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Parses properties files in place and checks the keys and values of the mapped
+ * configuration, against those read by Commons Configuration where the formats
+ * agree, and its prefix lookups.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class MappedPropertiesConfigurationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSeparators() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "equals=1",
+                "colon:2",
+                "spaced   =   3   ",
+                "whitespace 4",
+                "tabbed\t5",
+                "emptyValue =",
+                "  indented = 6",
+                "repeated = =7");
+        Assert.assertEquals("1", config.getProperty("equals"));
+        Assert.assertEquals("2", config.getProperty("colon"));
+        Assert.assertEquals("3", config.getProperty("spaced"));
+        Assert.assertEquals("4", config.getProperty("whitespace"));
+        Assert.assertEquals("5", config.getProperty("tabbed"));
+        Assert.assertEquals("", config.getProperty("emptyValue"));
+        Assert.assertEquals("6", config.getProperty("indented"));
+        Assert.assertEquals("=7", config.getProperty("repeated"));
+        assertMatchesCommons(config);
+    }
+
+    @Test
+    public void testKeyOnlyLines() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "keyOnly",
+                "trailing   ",
+                "   indented",
+                "escaped\\ ",
+                "last");
+        Assert.assertEquals(Arrays.asList("keyOnly", "trailing", "indented", "escaped ", "last"), keys(config, null));
+        for(String key : keys(config, null)) {
+            Assert.assertEquals(key, "", config.getProperty(key));
+        }
+        Assert.assertFalse(config.containsKey(""));
+    }
+
+    @Test
+    public void testEscapes() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "key\\=with\\=equals = a",
+                "key\\:colon = b",
+                "key\\ space = c",
+                "tab = x\\ty",
+                "newline = x\\ny",
+                "unicode = \\u00e9t\\u00E9",
+                "backslash = c:\\\\temp",
+                "kept\\ = \\ padded\\ ",
+                "other = \\q");
+        Assert.assertEquals("a", config.getProperty("key=with=equals"));
+        Assert.assertEquals("b", config.getProperty("key:colon"));
+        Assert.assertEquals("c", config.getProperty("key space"));
+        Assert.assertEquals("x\ty", config.getProperty("tab"));
+        Assert.assertEquals("x\ny", config.getProperty("newline"));
+        Assert.assertEquals("\u00e9t\u00e9", config.getProperty("unicode"));
+        Assert.assertEquals("c:\\temp", config.getProperty("backslash"));
+        Assert.assertEquals(" padded ", config.getProperty("kept "));
+        Assert.assertEquals("q", config.getProperty("other"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedUnicodeKey() throws IOException {
+        load("bad\\u00zz = value");
+    }
+
+    @Test
+    public void testContinuations() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "joined = first, \\",
+                "         second, \\",
+                "\tthird",
+                "next = value",
+                "literal = ends with backslash\\\\",
+                "after = literal",
+                "long\\",
+                "   key = continued key");
+        Assert.assertEquals(Arrays.asList("first", "second", "third"), config.getProperty("joined"));
+        Assert.assertEquals("value", config.getProperty("next"));
+        Assert.assertEquals("ends with backslash\\", config.getProperty("literal"));
+        Assert.assertEquals("literal", config.getProperty("after"));
+        Assert.assertEquals("continued key", config.getProperty("longkey"));
+    }
+
+    @Test
+    public void testCrLfLineEnds() throws IOException {
+        File file = new File(folder.getRoot(), "crlf.properties");
+        PrintWriter out = new PrintWriter(file, "ISO-8859-1");
+        try {
+            out.print("a = 1\r\nb = 2, \\\r\n    3\r\n# c = 4\r\nd = 5");
+        }
+        finally {
+            out.close();
+        }
+        MappedPropertiesConfiguration config = new MappedPropertiesConfiguration(file);
+        Assert.assertEquals("1", config.getProperty("a"));
+        Assert.assertEquals(Arrays.asList("2", "3"), config.getProperty("b"));
+        Assert.assertFalse(config.containsKey("c"));
+        Assert.assertEquals("5", config.getProperty("d"));
+    }
+
+    @Test
+    public void testComments() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "# a comment",
+                "! another comment",
+                "   # indented comment",
+                "",
+                "value = not # a comment",
+                "bang = not ! a comment",
+                "# commented = out",
+                "last = 1");
+        Assert.assertEquals(Arrays.asList("value", "bang", "last"), keys(config, null));
+        Assert.assertEquals("not # a comment", config.getProperty("value"));
+        Assert.assertEquals("not ! a comment", config.getProperty("bang"));
+        assertMatchesCommons(config);
+    }
+
+    @Test
+    public void testListsAndRepeatedKeys() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "hosts = alpha, beta ,gamma",
+                "escaped = one\\, two, three",
+                "port = 1",
+                "port = 2, 3",
+                "single = 4",
+                "single = 5");
+        Assert.assertEquals(Arrays.asList("alpha", "beta", "gamma"), config.getProperty("hosts"));
+        Assert.assertEquals(Arrays.asList("one, two", "three"), config.getProperty("escaped"));
+        Assert.assertEquals(Arrays.asList("1", "2", "3"), config.getProperty("port"));
+        Assert.assertEquals(Arrays.asList("4", "5"), config.getProperty("single"));
+        Assert.assertEquals(Arrays.asList("hosts", "escaped", "port", "single"), keys(config, null));
+        Assert.assertFalse(config.isEmpty());
+        assertMatchesCommons(config);
+    }
+
+    @Test
+    public void testIncludesAndPlaceholders() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "include = other.properties",
+                "url = http://${host}/",
+                "plain = value");
+        Assert.assertTrue(config.hasIncludes());
+        Assert.assertEquals(Arrays.asList("url"), new ArrayList<>(config.getPlaceholderKeys()));
+        Assert.assertFalse(load("included = other.properties").hasIncludes());
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        MappedPropertiesConfiguration config = load();
+        Assert.assertTrue(config.isEmpty());
+        Assert.assertFalse(config.getKeys().hasNext());
+        Assert.assertNull(config.getProperty("any"));
+        Assert.assertTrue(config.getSubtree("").isEmpty());
+    }
+
+    @Test
+    public void testPrefixLookups() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "dbx.host = other",
+                "db.port = 5432",
+                "cache.size = 5",
+                "db = main",
+                "db-pool = 4",
+                "db[1] = second",
+                "db.host = primary",
+                "db[0] = first",
+                "d = short",
+                "db.port = 6543");
+        Assert.assertEquals(Arrays.asList("db.port", "db", "db[1]", "db.host", "db[0]"), keys(config, "db"));
+        Map<String, Object> subtree = config.getSubtree("db");
+        Assert.assertEquals(Arrays.asList("db.port", "db", "db[1]", "db.host", "db[0]"),
+                new ArrayList<>(subtree.keySet()));
+        Assert.assertEquals(Arrays.asList("5432", "6543"), subtree.get("db.port"));
+        Assert.assertEquals("main", subtree.get("db"));
+
+        Assert.assertEquals(Arrays.asList("dbx.host"), keys(config, "dbx"));
+        Assert.assertTrue(keys(config, "db.p").isEmpty());
+        Assert.assertTrue(keys(config, "zzz").isEmpty());
+        Assert.assertTrue(keys(config, "a").isEmpty());
+        Assert.assertTrue(config.getSubtree("missing").isEmpty());
+        Assert.assertEquals(9, keys(config, "").size());
+        Assert.assertEquals(keys(config, null), keys(config, ""));
+    }
+
+    @Test
+    public void testPrefixLookupOfEscapedKeys() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "a\\u002eb = dotted",
+                "a\\ c = spaced",
+                "a.a = plain");
+        Assert.assertEquals(Arrays.asList("a.b", "a.a"), keys(config, "a"));
+        Assert.assertEquals("dotted", config.getSubtree("a.b").get("a.b"));
+        Assert.assertEquals(Arrays.asList("a c"), keys(config, "a c"));
+    }
+
+    @Test
+    public void testPrefixLookupDecodesMatchesOnly() throws IOException {
+        MappedPropertiesConfiguration config = load(
+                "bad = \\uZZZZ",
+                "good.value = fine");
+        Assert.assertEquals("fine", config.getSubtree("good").get("good.value"));
+        try {
+            config.getSubtree("bad");
+            Assert.fail("malformed escape decoded without error");
+        }
+        catch(IllegalArgumentException exep) {
+            //NOOP, expected
+        }
+    }
+
+    @Test
+    public void testPrefixLookupAfterReload() throws IOException {
+        File file = write("app.properties", "old.key = 1");
+        MappedPropertiesConfiguration config = new MappedPropertiesConfiguration(file);
+        Assert.assertEquals(Arrays.asList("old.key"), keys(config, "old"));
+        Assert.assertTrue(file.delete());
+        write("app.properties", "new.key = 2");
+        config.reload();
+        Assert.assertTrue(keys(config, "old").isEmpty());
+        Assert.assertEquals(Arrays.asList("new.key"), keys(config, "new"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private MappedPropertiesConfiguration load(String... lines) throws IOException {
+        return new MappedPropertiesConfiguration(write("test.properties", lines));
+    }
+
+/**
+ * Checks that Commons Configuration reads the same keys and values from the
+ * file.
+ */
+
+    private void assertMatchesCommons(MappedPropertiesConfiguration config) {
+        PropertiesConfiguration commons = new PropertiesConfiguration();
+        try {
+            commons.load(new File(folder.getRoot(), "test.properties"));
+        }
+        catch(ConfigurationException exep) {
+            throw new AssertionError(exep);
+        }
+        Assert.assertEquals(keys(commons), keys(config, null));
+        for(String key : keys(commons)) {
+            Assert.assertEquals(key, commons.getProperty(key), config.getProperty(key));
+        }
+    }
+
+    private File write(String name, String... lines) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        PrintWriter out = new PrintWriter(file, "ISO-8859-1");
+        try {
+            for(String line : lines) {
+                out.println(line);
+            }
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static List<String> keys(Configuration config) {
+        List<String> keys = new ArrayList<>();
+        Iterator<String> iter = config.getKeys();
+        while(iter.hasNext()) {
+            keys.add(iter.next());
+        }
+        return keys;
+    }
+
+    private static List<String> keys(MappedPropertiesConfiguration config, String prefix) {
+        List<String> keys = new ArrayList<>();
+        Iterator<String> iter = (prefix != null) ? config.getKeys(prefix) : config.getKeys();
+        while(iter.hasNext()) {
+            keys.add(iter.next());
+        }
+        return keys;
+    }
+}
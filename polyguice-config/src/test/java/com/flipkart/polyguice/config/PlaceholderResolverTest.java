@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.MapConfiguration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Resolves placeholders across merged configurations: references to other
+ * paths, system properties, defaults, precedence and cycles.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class PlaceholderResolverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPathReferences() {
+        Configuration config = merge(map(
+                "host", "localhost",
+                "port", "8080",
+                "url", "http://${host}:${port}/api",
+                "alias", "${url}",
+                "hosts", Arrays.asList("${host}", "remote"),
+                "first", "${hosts}"));
+        Assert.assertEquals("http://localhost:8080/api", config.getProperty("url"));
+        Assert.assertEquals("http://localhost:8080/api", config.getProperty("alias"));
+        Assert.assertEquals(Arrays.asList("localhost", "remote"), config.getProperty("hosts"));
+        Assert.assertEquals("localhost", config.getProperty("first"));
+    }
+
+    @Test
+    public void testDefaults() {
+        System.setProperty("polyguice.test.name", "fromsys");
+        try {
+            Configuration config = merge(map(
+                    "fallback", "backup",
+                    "sys", "${sys:polyguice.test.name}",
+                    "sysDefault", "${sys:polyguice.test.missing:none}",
+                    "pathDefault", "${missing.path:8080}",
+                    "nestedDefault", "${missing.path:${fallback}}",
+                    "emptyDefault", "[${missing.path:}]",
+                    "envDefault", "${env:POLYGUICE_TEST_MISSING_VARIABLE:dflt}",
+                    "unresolved", "${missing.path}",
+                    "unclosed", "${host"));
+            Assert.assertEquals("fromsys", config.getProperty("sys"));
+            Assert.assertEquals("none", config.getProperty("sysDefault"));
+            Assert.assertEquals("8080", config.getProperty("pathDefault"));
+            Assert.assertEquals("backup", config.getProperty("nestedDefault"));
+            Assert.assertEquals("[]", config.getProperty("emptyDefault"));
+            Assert.assertEquals("dflt", config.getProperty("envDefault"));
+            Assert.assertEquals("${missing.path}", config.getProperty("unresolved"));
+            Assert.assertEquals("${host", config.getProperty("unclosed"));
+        }
+        finally {
+            System.clearProperty("polyguice.test.name");
+        }
+    }
+
+    @Test
+    public void testPrecedence() {
+        Configuration config = merge(
+                map("host", "override", "shadowed", "plain"),
+                map("host", "base", "url", "http://${host}", "shadowed", "${host}"));
+        Assert.assertEquals("http://override", config.getProperty("url"));
+        Assert.assertEquals("plain", config.getProperty("shadowed"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCycle() {
+        merge(map("a", "${b}", "b", "x${c}", "c", "${a}"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSelfReference() {
+        merge(map("a", "${a:default}"));
+    }
+
+    @Test
+    public void testMappedProperties() throws IOException {
+        File file = folder.newFile("mapped.properties");
+        PrintWriter out = new PrintWriter(file, "ISO-8859-1");
+        try {
+            out.println("host = localhost");
+            out.println("url = http://${host}/x");
+            out.println("escaped = $\\{host}");
+            out.println("unicode = \\u0024{host}");
+            out.println("plain = value");
+        }
+        finally {
+            out.close();
+        }
+        MappedPropertiesConfiguration mapped = new MappedPropertiesConfiguration(file);
+        Assert.assertEquals(Arrays.asList("url", "escaped", "unicode"),
+                Arrays.asList(mapped.getPlaceholderKeys().toArray()));
+        Configuration config = PlaceholderResolver.merge(Arrays.asList(mapped));
+        Assert.assertEquals("http://localhost/x", config.getProperty("url"));
+        Assert.assertEquals("localhost", config.getProperty("escaped"));
+        Assert.assertEquals("localhost", config.getProperty("unicode"));
+        Assert.assertEquals("value", config.getProperty("plain"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static Configuration merge(MapConfiguration... configs) {
+        return PlaceholderResolver.merge(Arrays.asList(configs));
+    }
+
+    private static MapConfiguration map(Object... keysAndValues) {
+        Map<String, Object> values = new HashMap<>();
+        for(int i = 0; i < keysAndValues.length; i += 2) {
+            values.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        MapConfiguration config = new MapConfiguration(values);
+        config.setDelimiterParsingDisabled(true);
+        return config;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.flipkart.polyguice.core.DataSize;
+import com.flipkart.polyguice.core.Rate;
+import com.flipkart.polyguice.core.TimeSpan;
+
+/**
+ * Parses time spans, data sizes and rates, both directly and as configuration
+ * values converted by the provider.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class QuantityParsingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTimeSpan() {
+        Assert.assertEquals(250, TimeSpan.parse("250ms").toMillis());
+        Assert.assertEquals(1500, TimeSpan.parse("1.5s").toMillis());
+        Assert.assertEquals(TimeUnit.MINUTES.toNanos(90), TimeSpan.parse("1h 30m").toNanos());
+        Assert.assertEquals(TimeUnit.MINUTES.toNanos(90), TimeSpan.parse("1H30M").toNanos());
+        Assert.assertEquals(3, TimeSpan.parse("3us").toNanos() / 1000);
+        Assert.assertEquals(7, TimeSpan.parse("7ns").toNanos());
+        Assert.assertEquals(2, TimeSpan.parse("2d").to(TimeUnit.DAYS));
+        Assert.assertEquals(40, TimeSpan.parse("40").toMillis());
+        Assert.assertSame(TimeSpan.parse("30s"), TimeSpan.parse("30000ms"));
+        Assert.assertEquals(TimeUnit.SECONDS, TimeSpan.parse("30s").getUnit());
+        Assert.assertEquals(TimeSpan.parse("90s"), TimeSpan.parse("1m30s"));
+        Assert.assertNull(TimeSpan.tryParse(""));
+        Assert.assertNull(TimeSpan.tryParse("5x"));
+        Assert.assertNull(TimeSpan.tryParse("-5s"));
+        Assert.assertNull(TimeSpan.tryParse("s"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTimeSpan() {
+        TimeSpan.parse("ten seconds");
+    }
+
+    @Test
+    public void testDataSize() {
+        Assert.assertEquals(64, DataSize.parse("64").toBytes());
+        Assert.assertEquals(1024, DataSize.parse("1kb").toBytes());
+        Assert.assertEquals(1024, DataSize.parse("1K").toBytes());
+        Assert.assertEquals(1024, DataSize.parse("1 KiB").toBytes());
+        Assert.assertEquals(1536L * 1024, DataSize.parse("1.5 MB").toBytes());
+        Assert.assertEquals(2L << 30, DataSize.parse("2g").toBytes());
+        Assert.assertEquals(1L << 40, DataSize.parse("1TiB").toBytes());
+        Assert.assertSame(DataSize.parse("4KiB"), DataSize.parse("4096"));
+        Assert.assertEquals(DataSize.parse("2048k"), DataSize.parse("2m"));
+        Assert.assertNull(DataSize.tryParse(""));
+        Assert.assertNull(DataSize.tryParse("12q"));
+        Assert.assertNull(DataSize.tryParse("-1k"));
+        Assert.assertNull(DataSize.tryParse("100000000P"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDataSize() {
+        DataSize.parse("lots");
+    }
+
+    @Test
+    public void testRate() {
+        Assert.assertEquals(500.0, Rate.parse("500/s").perSecond(), 0.0);
+        Assert.assertEquals(2500.0, Rate.parse("2.5 / ms").perSecond(), 1e-9);
+        Assert.assertEquals(100.0, Rate.parse("100/10m").per(TimeUnit.MINUTES) * 10, 1e-9);
+        Assert.assertEquals(TimeUnit.MINUTES.toNanos(10), Rate.parse("100/10m").getPer().toNanos());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(2), Rate.parse("500/s").getIntervalNanos());
+        Assert.assertEquals(Rate.of(60, TimeUnit.MINUTES), Rate.parse("60/m"));
+        Assert.assertNull(Rate.tryParse("500"));
+        Assert.assertNull(Rate.tryParse("500/"));
+        Assert.assertNull(Rate.tryParse("/s"));
+        Assert.assertNull(Rate.tryParse("5/0s"));
+        Assert.assertNull(Rate.tryParse("-5/s"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        Rate.parse("fast");
+    }
+
+    @Test
+    public void testConfigurationValues() throws IOException {
+        File file = folder.newFile("quantities.properties");
+        PrintWriter out = new PrintWriter(file, "ISO-8859-1");
+        try {
+            out.println("timeout = 1m 30s");
+            out.println("buffer = 8 MiB");
+            out.println("limit = 200/s");
+            out.println("broken = soon");
+        }
+        finally {
+            out.close();
+        }
+        ApacheCommonsConfigProvider provider = new ApacheCommonsConfigProvider().location(file.getPath());
+        for(int i = 0; i < 2; i++) {
+            Assert.assertEquals(TimeSpan.parse("90s"), provider.getValue("timeout", TimeSpan.class));
+            Assert.assertEquals(8L << 20, ((DataSize) provider.getValue("buffer", DataSize.class)).toBytes());
+            Assert.assertEquals(200.0, ((Rate) provider.getValue("limit", Rate.class)).perSecond(), 0.0);
+            Assert.assertNull(provider.getValue("broken", TimeSpan.class));
+            provider.freeze();
+        }
+    }
+}
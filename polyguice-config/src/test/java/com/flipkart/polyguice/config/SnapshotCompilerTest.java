@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compiles configuration files into a snapshot with {@link SnapshotCompiler},
+ * and checks that {@link SnapshotConfigProvider} serves the same values as
+ * {@link ApacheCommonsConfigProvider} does for the files themselves.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class SnapshotCompilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        String props = write("app.properties",
+                "server.port = 9090",
+                "server.host = ${sys:polyguice.test.host:localhost}",
+                "server.url = http://${server.host}:${server.port}",
+                "tags = a, b, c");
+        String yaml = write("app.yml",
+                "server:",
+                "  port: 8080",
+                "  secure: true",
+                "pool:",
+                "  max: 20",
+                "  ratio: 0.75",
+                "replicas:",
+                "  - host: r0",
+                "  - host: r1");
+        String json = write("app.json",
+                "{\"pool\": {\"max\": 5, \"name\": \"main\"}, \"big\": 12345678901}");
+        File output = new File(folder.getRoot(), "app.snapshot");
+        int count = SnapshotCompiler.compile(output, props, yaml, json);
+
+        ApacheCommonsConfigProvider files = new ApacheCommonsConfigProvider().locations(props, yaml, json);
+        SnapshotConfigProvider snapshot = new SnapshotConfigProvider(output);
+        List<String> paths = snapshot.keysUnder("");
+        Assert.assertEquals(count, paths.size());
+        for(String path : paths) {
+            Assert.assertEquals(path, files.getValue(path, String.class), snapshot.getValue(path, String.class));
+        }
+
+        Assert.assertEquals("http://localhost:9090", snapshot.getValue("server.url", String.class));
+        Assert.assertEquals(9090, snapshot.getInt("server.port", -1));
+        Assert.assertEquals(20, snapshot.getValue("pool.max", Integer.class));
+        Assert.assertEquals(20, snapshot.getLong("pool.max", -1));
+        Assert.assertEquals(0.75, snapshot.getDouble("pool.ratio", Double.NaN), 0.0);
+        Assert.assertTrue(snapshot.getBoolean("server.secure", false));
+        Assert.assertEquals(12345678901L, snapshot.getLong("big", -1));
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), snapshot.getValue("tags", List.class));
+        Assert.assertEquals("r1", snapshot.getValue("replicas[1].host", String.class));
+        Assert.assertEquals(Arrays.asList("pool.max", "pool.name", "pool.ratio"),
+                Arrays.asList(snapshot.getSubtree("pool").keySet().toArray()));
+        Assert.assertFalse(snapshot.contains("pool"));
+        Assert.assertNull(snapshot.getValue("missing", String.class));
+        Assert.assertEquals(-1, snapshot.getLong("missing", -1));
+    }
+
+    @Test
+    public void testRecompileReplacesFile() throws IOException {
+        File output = new File(folder.getRoot(), "app.snapshot");
+        SnapshotCompiler.compile(output, write("one.properties", "a = 1"));
+        SnapshotConfigProvider first = new SnapshotConfigProvider(output);
+        SnapshotCompiler.compile(output, write("two.properties", "a = 2"));
+        Assert.assertEquals(1, first.getLong("a", -1));
+        Assert.assertEquals(2, new SnapshotConfigProvider(output).getLong("a", -1));
+        Assert.assertEquals(1, folder.getRoot().listFiles().length - 2);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedFormat() throws IOException {
+        SnapshotCompiler.compile(new File(folder.getRoot(), "app.snapshot"), write("app.ini", "a = 1"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingLocation() throws IOException {
+        SnapshotCompiler.compile(new File(folder.getRoot(), "app.snapshot"),
+                new File(folder.getRoot(), "missing.properties").getPath());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private String write(String name, String... lines) throws IOException {
+        File file = folder.newFile(name);
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            for(String line : lines) {
+                out.println(line);
+            }
+        }
+        finally {
+            out.close();
+        }
+        return file.getPath();
+    }
+}
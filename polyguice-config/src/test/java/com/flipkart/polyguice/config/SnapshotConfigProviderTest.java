@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.flipkart.polyguice.core.ConfigurationChangeListener;
+import com.flipkart.polyguice.core.ConfigurationProvider;
+
+/**
+ * Reads a compiled configuration snapshot through the unboxed accessors, and
+ * reloads it when it is replaced.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class SnapshotConfigProviderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File                       output;
+    private SnapshotConfigProvider     provider;
+    private BlockingQueue<Set<String>> changes;
+
+    @Before
+    public void setUp() throws IOException {
+        output = new File(folder.getRoot(), "app.snapshot");
+        compile("server.port = 8080", "server.host = alpha", "server.debug = true");
+        provider = new SnapshotConfigProvider(output);
+        changes = new LinkedBlockingQueue<>();
+        provider.addChangeListener(new ConfigurationChangeListener() {
+            @Override
+            public void configurationChanged(ConfigurationProvider source, Set<String> paths) {
+                changes.add(paths);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        provider.stopWatching();
+    }
+
+    @Test
+    public void testStringTypedAccessors() throws IOException {
+        compile("int = 8080",
+                "negative = -5",
+                "long = 12345678901",
+                "overflow = 99999999999999999999",
+                "fraction = 1.5",
+                "whole = 2.0",
+                "exponent = 1e3",
+                "text = abc",
+                "empty =",
+                "yes = yes",
+                "on = ON",
+                "off = false",
+                "list = 7, 8",
+                "flags = yes, no");
+        SnapshotConfigProvider strings = new SnapshotConfigProvider(output);
+        Assert.assertEquals(8080, strings.getInt("int", -1));
+        Assert.assertEquals(-5, strings.getInt("negative", -1));
+        Assert.assertEquals(-1, strings.getInt("long", -1));
+        Assert.assertEquals(12345678901L, strings.getLong("long", -1));
+        Assert.assertEquals(-1, strings.getLong("overflow", -1));
+        Assert.assertEquals(-1, strings.getLong("fraction", -1));
+        Assert.assertEquals(2, strings.getInt("whole", -1));
+        Assert.assertEquals(1000, strings.getLong("exponent", -1));
+        Assert.assertEquals(-1, strings.getInt("text", -1));
+        Assert.assertEquals(-1, strings.getInt("empty", -1));
+        Assert.assertEquals(-1, strings.getInt("missing", -1));
+        Assert.assertEquals(1.5, strings.getDouble("fraction", Double.NaN), 0.0);
+        Assert.assertEquals(8080.0, strings.getDouble("int", Double.NaN), 0.0);
+        Assert.assertTrue(Double.isNaN(strings.getDouble("text", Double.NaN)));
+
+        Assert.assertTrue(strings.getBoolean("yes", false));
+        Assert.assertTrue(strings.getBoolean("on", false));
+        Assert.assertFalse(strings.getBoolean("off", true));
+        Assert.assertTrue(strings.getBoolean("text", true));
+        Assert.assertFalse(strings.getBoolean("text", false));
+        Assert.assertTrue(strings.getBoolean("missing", true));
+
+        for(String path : Arrays.asList("int", "negative", "long", "whole", "exponent")) {
+            Assert.assertEquals(path, strings.getValue(path, Long.class), strings.getLong(path, -1));
+        }
+        Assert.assertEquals(Boolean.TRUE, strings.getValue("yes", Boolean.class));
+        Assert.assertEquals(7, strings.getInt("list", -1));
+        Assert.assertEquals(7, strings.getValue("list", Integer.class));
+        Assert.assertEquals(7.0, strings.getDouble("list", Double.NaN), 0.0);
+        Assert.assertTrue(strings.getBoolean("flags", false));
+        Assert.assertEquals(Boolean.TRUE, strings.getValue("flags", Boolean.class));
+    }
+
+    @Test
+    public void testReloadReportsChanges() throws IOException {
+        Assert.assertTrue(provider.reload());
+        Assert.assertTrue("unchanged snapshot must not be reported", changes.isEmpty());
+
+        compile("server.port = 9090", "server.host = alpha", "server.name = main");
+        Assert.assertEquals("old mapping still served", 8080, provider.getInt("server.port", -1));
+        Assert.assertTrue(provider.reload());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("server.port", "server.debug", "server.name")), changes.poll());
+        Assert.assertEquals(9090, provider.getInt("server.port", -1));
+        Assert.assertFalse(provider.contains("server.debug"));
+        Assert.assertTrue(provider.getBoolean("server.debug", true));
+        Assert.assertEquals("main", provider.getValue("server.name", String.class));
+    }
+
+    @Test
+    public void testFailedReloadKeepsValues() throws IOException {
+        Assert.assertTrue(output.delete());
+        Assert.assertFalse(provider.reload());
+        Assert.assertEquals(8080, provider.getInt("server.port", -1));
+
+        FileOutputStream out = new FileOutputStream(output);
+        try {
+            out.write(new byte[] {1, 2, 3});
+        }
+        finally {
+            out.close();
+        }
+        Assert.assertFalse("corrupt snapshot loaded", provider.reload());
+
+        compile("server.port = 9090");
+        RandomAccessFile raf = new RandomAccessFile(output, "rw");
+        try {
+            raf.setLength(raf.length() - 1);
+        }
+        finally {
+            raf.close();
+        }
+        Assert.assertFalse("truncated snapshot loaded", provider.reload());
+        Assert.assertEquals(8080, provider.getInt("server.port", -1));
+        Assert.assertEquals("alpha", provider.getValue("server.host", String.class));
+        Assert.assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void testWatchReloadsOnReplacement() throws Exception {
+        provider.watch(50);
+        compile("server.port = 9090", "server.host = alpha", "server.debug = true");
+        Set<String> changed = changes.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull("replacement not detected", changed);
+        Assert.assertEquals(Collections.singleton("server.port"), changed);
+        Assert.assertEquals(9090, provider.getInt("server.port", -1));
+
+        provider.stopWatching();
+        compile("server.port = 7070", "server.host = alpha", "server.debug = true");
+        Assert.assertNull(changes.poll(500, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(9090, provider.getInt("server.port", -1));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private void compile(String... lines) throws IOException {
+        File file = new File(folder.getRoot(), "app.properties");
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            for(String line : lines) {
+                out.println(line);
+            }
+        }
+        finally {
+            out.close();
+        }
+        SnapshotCompiler.compile(output, file.getPath());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Flattens YAML documents from the event stream, with emphasis on anchors,
+ * aliases and merge keys.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class YamlEventLoaderTest {
+
+    @Test
+    public void testFlattening() {
+        ConfigurationTrie trie = load(
+                "server:\n"
+              + "  host: example.com\n"
+              + "  port: 8080\n"
+              + "  secure: true\n"
+              + "  ratio: 0.5\n"
+              + "tags: [a, b]\n"
+              + "servers:\n"
+              + "  - name: s1\n"
+              + "  - name: s2\n");
+        Assert.assertEquals("example.com", trie.get("server.host"));
+        Assert.assertEquals(8080, trie.get("server.port"));
+        Assert.assertEquals(Boolean.TRUE, trie.get("server.secure"));
+        Assert.assertEquals(0.5, trie.get("server.ratio"));
+        Assert.assertEquals(Arrays.asList("a", "b"), trie.get("tags"));
+        Assert.assertEquals("b", trie.get("tags[1]"));
+        Assert.assertEquals("s2", trie.get("servers[1].name"));
+    }
+
+    @Test
+    public void testAliases() {
+        ConfigurationTrie trie = load(
+                "defaults: &defaults\n"
+              + "  timeout: 30\n"
+              + "  retry:\n"
+              + "    count: 3\n"
+              + "name: &name primary\n"
+              + "ports: &ports [80, 443]\n"
+              + "service:\n"
+              + "  settings: *defaults\n"
+              + "  label: *name\n"
+              + "  ports: *ports\n");
+        Assert.assertEquals(30, trie.get("service.settings.timeout"));
+        Assert.assertEquals(3, trie.get("service.settings.retry.count"));
+        Assert.assertEquals("primary", trie.get("service.label"));
+        Assert.assertEquals(443, trie.get("service.ports[1]"));
+        Assert.assertEquals(30, trie.get("defaults.timeout"));
+    }
+
+    @Test
+    public void testMergeKeys() {
+        ConfigurationTrie trie = load(
+                "base: &base\n"
+              + "  host: localhost\n"
+              + "  port: 5432\n"
+              + "  pool:\n"
+              + "    max: 10\n"
+              + "extra: &extra\n"
+              + "  port: 6000\n"
+              + "  user: admin\n"
+              + "first:\n"
+              + "  <<: *base\n"
+              + "  port: 5433\n"
+              + "second:\n"
+              + "  port: 5434\n"
+              + "  <<: *base\n"
+              + "third:\n"
+              + "  <<: [*extra, *base]\n"
+              + "inline:\n"
+              + "  <<: {host: remote}\n"
+              + "  port: 1\n");
+        Assert.assertEquals("localhost", trie.get("first.host"));
+        Assert.assertEquals(5433, trie.get("first.port"));
+        Assert.assertEquals(10, trie.get("first.pool.max"));
+        Assert.assertEquals(5434, trie.get("second.port"));
+        Assert.assertEquals("localhost", trie.get("second.host"));
+        Assert.assertEquals(6000, trie.get("third.port"));
+        Assert.assertEquals("admin", trie.get("third.user"));
+        Assert.assertEquals("localhost", trie.get("third.host"));
+        Assert.assertEquals("remote", trie.get("inline.host"));
+        Assert.assertEquals(1, trie.get("inline.port"));
+        Assert.assertFalse(trie.containsKey("first.<<"));
+    }
+
+    @Test
+    public void testNonMappingDocument() {
+        Assert.assertTrue(load("- a\n- b\n").isEmpty());
+        Assert.assertTrue(load("just text\n").isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUndefinedAlias() {
+        load("a: *missing\n");
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static ConfigurationTrie load(String yaml) {
+        return new YamlEventLoader().load(new StringReader(yaml));
+    }
+}
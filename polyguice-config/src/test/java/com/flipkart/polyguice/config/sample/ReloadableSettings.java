@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.config.sample;
+
+import com.flipkart.polyguice.core.Component;
+import com.flipkart.polyguice.core.Configuration;
+import com.flipkart.polyguice.core.Reloadable;
+import com.google.inject.Singleton;
+
+/**
+ * @author indroneel.das
+ */
+
+@Reloadable
+@Singleton
+@Component("reloadableSettings")
+public class ReloadableSettings {
+
+    @Configuration("server.port")
+    private volatile int port;
+
+    private volatile String host;
+
+    @Configuration("server.host")
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Restricts a {@link ComponentProcessor} to the components it cares about. The
+ * processor is applied to a component if the component is assignable to any of
+ * the listed types, or is annotated with any of the listed annotations.
+ * <p>
+ *
+ * A processor without this annotation is applied to every object provisioned
+ * by Guice. Restricting processors allows Polyguice to skip lifecycle handling
+ * altogether for types that need none.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+@Retention(RUNTIME)
+@Target({TYPE})
+public @interface AppliesTo {
+
+/**
+ * @return	the component types this processor applies to.
+ */
+
+    Class<?>[] value() default {};
+
+/**
+ * @return	the annotations that components this processor applies to carry.
+ */
+
+    Class<? extends Annotation>[] annotatedWith() default {};
+}
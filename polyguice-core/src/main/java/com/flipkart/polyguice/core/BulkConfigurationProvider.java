@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+import java.util.Map;
+
+/**
+ * A configuration provider that can return many values in one call. Polyguice
+ * uses it to resolve all configuration members of a component together, and to
+ * inject a whole configuration section into a member of type <tt>Map</tt>.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public interface BulkConfigurationProvider extends ConfigurationProvider {
+
+/**
+ * Retrieves the prefix itself, if it is a path, and all paths nested under it,
+ * along with their values as stored by this provider. A path is nested under
+ * the prefix if it continues the prefix with a dot or an array index.
+ * <p>
+ *
+ * @param	prefix the path prefix. An empty prefix matches all paths.
+ * @return	the values keyed by their full paths; empty if there are none.
+ */
+
+    Map<String, Object> getSubtree(String prefix);
+
+/**
+ * Retrieves the values of many paths, each as the requested type. Paths that
+ * are not found, or not convertible to the requested type, are left out of
+ * the result.
+ * <p>
+ *
+ * @param	paths the paths to look up, mapped to their requested types.
+ * @return	the values found, keyed by path.
+ */
+
+    Map<String, Object> getValues(Map<String, Class<?>> paths);
+}
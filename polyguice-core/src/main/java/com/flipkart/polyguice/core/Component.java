@@ -57,4 +57,14 @@ public @interface Component {
     String name() default "";
 
     boolean namedOnly() default false;
+
+/**
+ * Determines when the component is created, if it is also annotated as a
+ * singleton. Non-singleton components are always created on demand.
+ * <p>
+ *
+ * @return	the startup mode for this component.
+ */
+
+    StartupMode startup() default StartupMode.EAGER;
 }
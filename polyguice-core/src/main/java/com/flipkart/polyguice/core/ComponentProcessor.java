@@ -22,6 +22,9 @@ package com.flipkart.polyguice.core;
  * the scan package paths and apply them to any components subsequently created.
  * <p>
  *
+ * Use {@link AppliesTo} to restrict a processor to the components it handles.
+ * <p>
+ *
  * @author indroneel.das
  */
 
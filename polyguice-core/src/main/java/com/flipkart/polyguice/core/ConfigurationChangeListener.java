@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.flipkart.polyguice.core;
+
+import java.util.Set;
+
+/**
+ * Receives notifications of changes in an {@link ObservableConfigurationProvider}.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public interface ConfigurationChangeListener {
+
+/**
+ * Called after the configuration held by a provider has changed.
+ * <p>
+ *
+ * @param	source the provider whose configuration changed.
+ * @param	paths the changed configuration paths, or <tt>null</tt> if the set of
+ *          changes is not known and any path may have changed.
+ */
+
+    void configurationChanged(ConfigurationProvider source, Set<String> paths);
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface whose methods read the values of a configuration section.
+ * Polyguice binds each such interface found in the scanned packages to an
+ * implementation backed by the configuration under the given path prefix, for
+ * example:
+ * <pre>
+ * &#64;ConfigurationSection("db.pool")
+ * public interface DbPoolConfig {
+ *     int max();
+ *     TimeSpan idle();
+ * }
+ * </pre>
+ *
+ * Each method must take no parameters. It reads the path formed by the prefix
+ * and the method name, or the name given by a {@link Configuration} annotation
+ * on the method. Values are resolved and converted when the section is
+ * created; a method call only reads the stored value. Methods whose value is
+ * missing return <tt>null</tt>, or the default of their primitive type.
+ * <p>
+ *
+ * When an {@link ObservableConfigurationProvider} reports a change under the
+ * prefix, all values of the section are resolved again and replaced at once,
+ * so a caller never sees a mix of old and new values within one replacement.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+@Retention(RUNTIME)
+@Target({TYPE})
+public @interface ConfigurationSection {
+
+/**
+ * @return	the path prefix of the section.
+ */
+
+    String value();
+}
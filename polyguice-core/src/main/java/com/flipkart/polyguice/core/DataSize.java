@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+/**
+ * An immutable amount of data, stored in bytes. A data size is specified as a
+ * number with an optional unit: <tt>b</tt>, <tt>k</tt>, <tt>m</tt>, <tt>g</tt>,
+ * <tt>t</tt> or <tt>p</tt>, optionally followed by <tt>b</tt> or <tt>ib</tt>, in
+ * any case and with optional whitespace before the unit. All units are binary
+ * multiples, so that <tt>1kb</tt>, <tt>1K</tt> and <tt>1 KiB</tt> are all 1024
+ * bytes. A number without a unit is in bytes.
+ * <p>
+ *
+ * The text is parsed in place without intermediate strings, and sizes that are
+ * powers of two, such as <tt>4KiB</tt> or <tt>64MiB</tt>, are shared instances.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public final class DataSize {
+
+    private static final long KILO = 1024L;
+
+    private static final String[]   UNITS = {"B", "KiB", "MiB", "GiB", "TiB", "PiB"};
+    private static final DataSize[] POWERS_OF_TWO;
+
+    public static final DataSize ZERO = new DataSize(0);
+
+    static {
+        POWERS_OF_TWO = new DataSize[Long.SIZE - 1];
+        for(int i = 0; i < POWERS_OF_TWO.length; i++) {
+            POWERS_OF_TWO[i] = new DataSize(1L << i);
+        }
+    }
+
+    private final long bytes;
+
+    private DataSize(long bytes) {
+        this.bytes = bytes;
+    }
+
+/**
+ * @param	bytes the number of bytes.
+ * @return	the data size, a shared instance if it is a power of two.
+ * @throws	IllegalArgumentException if the number of bytes is negative.
+ */
+
+    public static DataSize ofBytes(long bytes) {
+        if(bytes < 0) {
+            throw new IllegalArgumentException("negative data size: " + bytes);
+        }
+        if(bytes == 0) {
+            return ZERO;
+        }
+        return (Long.bitCount(bytes) == 1) ? POWERS_OF_TWO[Long.numberOfTrailingZeros(bytes)] : new DataSize(bytes);
+    }
+
+/**
+ * Parses a data size.
+ * <p>
+ *
+ * @param	text the data size, for example <tt>64</tt> or <tt>1.5 MB</tt>.
+ * @return	the parsed data size.
+ * @throws	IllegalArgumentException if the text is not a valid data size.
+ */
+
+    public static DataSize parse(CharSequence text) {
+        DataSize size = tryParse(text);
+        if(size == null) {
+            throw new IllegalArgumentException("invalid data size: " + text);
+        }
+        return size;
+    }
+
+/**
+ * Parses a data size, without failing on invalid text.
+ * <p>
+ *
+ * @param	text the data size, for example <tt>64</tt> or <tt>1.5 MB</tt>.
+ * @return	the parsed data size, or <tt>null</tt> if the text is not a valid
+ *          data size.
+ */
+
+    public static DataSize tryParse(CharSequence text) {
+        int end = text.length();
+        int pos = Quantities.skipSpace(text, 0, end);
+        long whole = 0;
+        long fraction = 0;
+        long scale = 1;
+        int digits = 0;
+        while(pos < end && Quantities.isDigit(text.charAt(pos))) {
+            if(whole > Long.MAX_VALUE / 10 - 1) {
+                return null;
+            }
+            whole = whole * 10 + (text.charAt(pos++) - '0');
+            digits++;
+        }
+        if(pos < end && text.charAt(pos) == '.') {
+            pos++;
+            while(pos < end && Quantities.isDigit(text.charAt(pos))) {
+                if(scale < Quantities.MAX_SCALE) {
+                    fraction = fraction * 10 + (text.charAt(pos) - '0');
+                    scale *= 10;
+                }
+                pos++;
+                digits++;
+            }
+        }
+        if(digits == 0) {
+            return null;
+        }
+        int unitStart = Quantities.skipSpace(text, pos, end);
+        int unitEnd = Quantities.skipLetters(text, unitStart, end);
+        if(Quantities.skipSpace(text, unitEnd, end) != end) {
+            return null;
+        }
+        long unit = unitBytes(text, unitStart, unitEnd);
+        long bytes = (unit > 0) ? Quantities.multiply(whole, fraction, scale, unit) : -1;
+        return (bytes < 0) ? null : ofBytes(bytes);
+    }
+
+    public long toBytes() {
+        return bytes;
+    }
+
+    public long toKilobytes() {
+        return bytes / KILO;
+    }
+
+    public long toMegabytes() {
+        return bytes / (KILO * KILO);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return (obj instanceof DataSize) && ((DataSize) obj).bytes == bytes;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (bytes ^ (bytes >>> 32));
+    }
+
+/**
+ * @return	the size in the largest unit that it is a whole number of, such as
+ *          <tt>64MiB</tt>.
+ */
+
+    @Override
+    public String toString() {
+        int unit = 0;
+        long amount = bytes;
+        while(amount != 0 && amount % KILO == 0 && unit < UNITS.length - 1) {
+            amount /= KILO;
+            unit++;
+        }
+        return amount + UNITS[unit];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+/**
+ * @return	the number of bytes in the unit named by the region of the text, or
+ *          -1 if it is not a data size unit.
+ */
+
+    private static long unitBytes(CharSequence text, int start, int end) {
+        if(start == end || Quantities.matches(text, start, end, "b")) {
+            return 1;
+        }
+        int suffix = end;
+        if(end - start > 2 && Quantities.matches(text, end - 2, end, "ib")) {
+            suffix -= 2;
+        }
+        else if(end - start > 1 && Quantities.matches(text, end - 1, end, "b")) {
+            suffix -= 1;
+        }
+        if(suffix - start != 1) {
+            return -1;
+        }
+        switch(Character.toLowerCase(text.charAt(start))) {
+        case 'k':
+            return KILO;
+        case 'm':
+            return KILO * KILO;
+        case 'g':
+            return KILO * KILO * KILO;
+        case 't':
+            return KILO * KILO * KILO * KILO;
+        case 'p':
+            return KILO * KILO * KILO * KILO * KILO;
+        default:
+            return -1;
+        }
+    }
+}
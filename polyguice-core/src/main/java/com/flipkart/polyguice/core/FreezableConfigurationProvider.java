@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+/**
+ * A configuration provider that can switch to an immutable, pre-resolved view
+ * of its values once the application has started. Polyguice freezes all such
+ * registered providers at the end of <tt>prepare()</tt>.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public interface FreezableConfigurationProvider extends ConfigurationProvider {
+
+/**
+ * Resolves all values into an immutable view used by subsequent reads. Calling
+ * this method again rebuilds the view.
+ */
+
+    void freeze();
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.flipkart.polyguice.core;
+
+/**
+ * A configuration provider whose values can change after it is registered.
+ * Polyguice caches resolved configuration values; values obtained from
+ * providers that do not implement this interface are assumed never to change.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public interface ObservableConfigurationProvider extends ConfigurationProvider {
+
+    void addChangeListener(ConfigurationChangeListener listener);
+
+    void removeChangeListener(ConfigurationChangeListener listener);
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+/**
+ * Scanning helpers shared by the parsers of the quantity types. The parsers
+ * read the text in place, one character at a time, and allocate nothing but
+ * the parsed value itself.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+final class Quantities {
+
+/**
+ * Number of fraction digits retained; further digits are ignored.
+ */
+
+    static final long MAX_SCALE = 1000000000L;
+
+    private Quantities() {
+        //NOOP
+    }
+
+    static int skipSpace(CharSequence text, int pos, int end) {
+        while(pos < end && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    static int skipLetters(CharSequence text, int pos, int end) {
+        while(pos < end && Character.isLetter(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+/**
+ * @return	<tt>true</tt> if the region of the text is the specified lowercase
+ *          word, ignoring case.
+ */
+
+    static boolean matches(CharSequence text, int start, int end, String word) {
+        if(end - start != word.length()) {
+            return false;
+        }
+        for(int i = start; i < end; i++) {
+            if(Character.toLowerCase(text.charAt(i)) != word.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+/**
+ * Computes <tt>(whole + fraction / scale) * unit</tt> in integer arithmetic.
+ * <p>
+ *
+ * @param	whole the integral part of the amount.
+ * @param	fraction the fraction digits of the amount, as an integer.
+ * @param	scale the power of ten that the fraction digits are divided by, at
+ *          most {@link #MAX_SCALE}.
+ * @param	unit the multiplier of the unit.
+ * @return	the product, or -1 if it overflows.
+ */
+
+    static long multiply(long whole, long fraction, long scale, long unit) {
+        if(whole > Long.MAX_VALUE / unit) {
+            return -1;
+        }
+        long result = whole * unit;
+        long part = (unit / scale) * fraction + (unit % scale) * fraction / scale;
+        return (result > Long.MAX_VALUE - part) ? -1 : result + part;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable rate: an amount of events per span of time. A rate is specified
+ * as a number, a <tt>/</tt>, and either a unit or a {@link TimeSpan}, for
+ * example <tt>500/s</tt>, <tt>2.5 / ms</tt> or <tt>100/10m</tt>. The units are
+ * those of a time span.
+ * <p>
+ *
+ * The text is parsed in place without intermediate strings.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public final class Rate {
+
+    private final double   amount;
+    private final TimeSpan per;
+
+    private Rate(double amount, TimeSpan per) {
+        this.amount = amount;
+        this.per = per;
+    }
+
+/**
+ * @param	amount the number of events.
+ * @param	per the span of time in which the events occur.
+ * @return	the rate.
+ * @throws	IllegalArgumentException if the amount is negative or not a
+ *          number, or the span is zero.
+ */
+
+    public static Rate of(double amount, TimeSpan per) {
+        if(!(amount >= 0) || Double.isInfinite(amount) || per.toNanos() == 0) {
+            throw new IllegalArgumentException("invalid rate: " + amount + "/" + per);
+        }
+        return new Rate(amount, per);
+    }
+
+    public static Rate of(double amount, TimeUnit unit) {
+        return of(amount, TimeSpan.of(1, unit));
+    }
+
+/**
+ * Parses a rate.
+ * <p>
+ *
+ * @param	text the rate, for example <tt>500/s</tt>.
+ * @return	the parsed rate.
+ * @throws	IllegalArgumentException if the text is not a valid rate.
+ */
+
+    public static Rate parse(CharSequence text) {
+        Rate rate = tryParse(text);
+        if(rate == null) {
+            throw new IllegalArgumentException("invalid rate: " + text);
+        }
+        return rate;
+    }
+
+/**
+ * Parses a rate, without failing on invalid text.
+ * <p>
+ *
+ * @param	text the rate, for example <tt>500/s</tt>.
+ * @return	the parsed rate, or <tt>null</tt> if the text is not a valid rate.
+ */
+
+    public static Rate tryParse(CharSequence text) {
+        int end = text.length();
+        int pos = Quantities.skipSpace(text, 0, end);
+        double value = 0;
+        double scale = 1;
+        int digits = 0;
+        while(pos < end && Quantities.isDigit(text.charAt(pos))) {
+            value = value * 10 + (text.charAt(pos++) - '0');
+            digits++;
+        }
+        if(pos < end && text.charAt(pos) == '.') {
+            pos++;
+            while(pos < end && Quantities.isDigit(text.charAt(pos))) {
+                scale /= 10;
+                value += (text.charAt(pos++) - '0') * scale;
+                digits++;
+            }
+        }
+        pos = Quantities.skipSpace(text, pos, end);
+        if(digits == 0 || pos == end || text.charAt(pos) != '/') {
+            return null;
+        }
+        pos = Quantities.skipSpace(text, pos + 1, end);
+        long nanos;
+        if(pos < end && Character.isLetter(text.charAt(pos))) {
+            int unitEnd = Quantities.skipLetters(text, pos, end);
+            nanos = (Quantities.skipSpace(text, unitEnd, end) == end) ? TimeSpan.unitNanos(text, pos, unitEnd) : -1;
+        }
+        else {
+            nanos = TimeSpan.parseNanos(text, pos, end);
+        }
+        if(nanos <= 0 || Double.isInfinite(value)) {
+            return null;
+        }
+        return new Rate(value, TimeSpan.ofNanos(nanos));
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public TimeSpan getPer() {
+        return per;
+    }
+
+/**
+ * @param	unit the unit of time.
+ * @return	the number of events per one of the unit.
+ */
+
+    public double per(TimeUnit unit) {
+        return amount * unit.toNanos(1) / per.toNanos();
+    }
+
+    public double perSecond() {
+        return per(TimeUnit.SECONDS);
+    }
+
+/**
+ * @return	the mean time between two events in nanoseconds, or
+ *          <tt>Long.MAX_VALUE</tt> for a zero rate.
+ */
+
+    public long getIntervalNanos() {
+        return (amount > 0) ? (long) (per.toNanos() / amount) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return (obj instanceof Rate) && ((Rate) obj).perSecond() == perSecond();
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(perSecond());
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+/**
+ * @return	the rate in the form accepted by {@link #parse}, such as
+ *          <tt>500/s</tt>.
+ */
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        if(amount == Math.rint(amount) && amount < Long.MAX_VALUE) {
+            buffer.append((long) amount);
+        }
+        else {
+            buffer.append(amount);
+        }
+        buffer.append('/');
+        String span = per.toString();
+        boolean single = (per.to(per.getUnit()) == 1);
+        return buffer.append(single ? span.substring(1) : span).toString();
+    }
+}
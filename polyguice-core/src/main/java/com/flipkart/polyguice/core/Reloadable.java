@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a component whose {@link Configuration} fields and methods should be
+ * injected again whenever an {@link ObservableConfigurationProvider} reports a
+ * change to any of the configuration paths they refer to.
+ * <p>
+ *
+ * Re-injection happens on the thread that reports the change. Fields that are
+ * re-injected should therefore be volatile, or the component should use
+ * configuration setters that publish the new values safely.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+@Retention(RUNTIME)
+@Target({TYPE})
+public @interface Reloadable {
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ComponentContext} that also reports on singletons started in
+ * {@link StartupMode#BACKGROUND} mode. The context returned by Polyguice
+ * implements this interface.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public interface StartupAwareComponentContext extends ComponentContext {
+
+/**
+ * Checks whether all singletons started in {@link StartupMode#BACKGROUND} mode
+ * have been created successfully.
+ * <p>
+ *
+ * @return	<tt>true</tt> if all background singletons are available.
+ */
+
+    boolean isReady();
+
+/**
+ * Waits for the singletons started in {@link StartupMode#BACKGROUND} mode to be
+ * created.
+ * <p>
+ *
+ * @param	timeout the maximum time to wait.
+ * @param	unit the unit of the timeout argument.
+ * @return	<tt>true</tt> if all background singletons are available,
+ *          <tt>false</tt> if the wait timed out or any of them failed to load.
+ * @throws	InterruptedException if interrupted while waiting.
+ */
+
+    boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+/**
+ * Determines when a singleton {@link Component} is created.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public enum StartupMode {
+
+/**
+ * The singleton is created while Polyguice is prepared. This is the default.
+ */
+
+    EAGER,
+
+/**
+ * The singleton is created on first lookup or injection.
+ */
+
+    LAZY,
+
+/**
+ * The singleton is created asynchronously, after Polyguice is prepared. Use
+ * {@link StartupAwareComponentContext#isReady()} or
+ * {@link StartupAwareComponentContext#awaitReady(long, java.util.concurrent.TimeUnit)} to
+ * find out when all such singletons are available.
+ */
+
+    BACKGROUND
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable, non-negative span of time, stored in nanoseconds. A time span
+ * is specified as one or more components, each a number followed by a unit:
+ * <tt>ns</tt>, <tt>us</tt> (or <tt>&micro;s</tt>), <tt>ms</tt>, <tt>s</tt>,
+ * <tt>m</tt>, <tt>h</tt> or <tt>d</tt>, in any case, for example <tt>250ms</tt>,
+ * <tt>1.5s</tt> or <tt>1h 30m</tt>. A single number without a unit is in
+ * milliseconds.
+ * <p>
+ *
+ * The text is parsed in place without intermediate strings, and commonly used
+ * spans such as <tt>100ms</tt>, <tt>30s</tt> or <tt>1h</tt> are shared
+ * instances, so that parsing a typical configuration value allocates nothing.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public final class TimeSpan {
+
+    private static final long MICROS  = 1000L;
+    private static final long MILLIS  = 1000L * MICROS;
+    private static final long SECONDS = 1000L * MILLIS;
+    private static final long MINUTES = 60L * SECONDS;
+    private static final long HOURS   = 60L * MINUTES;
+    private static final long DAYS    = 24L * HOURS;
+
+    private static final long[]     COMMON_NANOS;
+    private static final TimeSpan[] COMMON;
+
+    public static final TimeSpan ZERO;
+
+    static {
+        COMMON_NANOS = new long[] {0, MILLIS, 5 * MILLIS, 10 * MILLIS, 20 * MILLIS, 50 * MILLIS,
+                100 * MILLIS, 200 * MILLIS, 250 * MILLIS, 500 * MILLIS, SECONDS, 2 * SECONDS,
+                3 * SECONDS, 5 * SECONDS, 10 * SECONDS, 15 * SECONDS, 20 * SECONDS, 30 * SECONDS,
+                45 * SECONDS, MINUTES, 2 * MINUTES, 3 * MINUTES, 5 * MINUTES, 10 * MINUTES,
+                15 * MINUTES, 30 * MINUTES, HOURS, 2 * HOURS, 3 * HOURS, 6 * HOURS, 12 * HOURS,
+                DAYS, 7 * DAYS};
+        COMMON = new TimeSpan[COMMON_NANOS.length];
+        for(int i = 0; i < COMMON.length; i++) {
+            COMMON[i] = new TimeSpan(COMMON_NANOS[i]);
+        }
+        ZERO = COMMON[0];
+    }
+
+    private final long nanos;
+
+    private TimeSpan(long nanos) {
+        this.nanos = nanos;
+    }
+
+/**
+ * @param	nanos the length of the span in nanoseconds.
+ * @return	the time span, a shared instance if it is a common one.
+ * @throws	IllegalArgumentException if the length is negative.
+ */
+
+    public static TimeSpan ofNanos(long nanos) {
+        if(nanos < 0) {
+            throw new IllegalArgumentException("negative time span: " + nanos + "ns");
+        }
+        int index = Arrays.binarySearch(COMMON_NANOS, nanos);
+        return (index >= 0) ? COMMON[index] : new TimeSpan(nanos);
+    }
+
+    public static TimeSpan ofMillis(long millis) {
+        return of(millis, TimeUnit.MILLISECONDS);
+    }
+
+/**
+ * @param	amount the length of the span in the specified unit.
+ * @param	unit the unit of the amount.
+ * @return	the time span; a span too long to represent is saturated.
+ */
+
+    public static TimeSpan of(long amount, TimeUnit unit) {
+        return ofNanos(unit.toNanos(amount));
+    }
+
+/**
+ * Parses a time span.
+ * <p>
+ *
+ * @param	text the time span, for example <tt>250ms</tt> or <tt>1h30m</tt>.
+ * @return	the parsed time span.
+ * @throws	IllegalArgumentException if the text is not a valid time span.
+ */
+
+    public static TimeSpan parse(CharSequence text) {
+        TimeSpan span = tryParse(text);
+        if(span == null) {
+            throw new IllegalArgumentException("invalid time span: " + text);
+        }
+        return span;
+    }
+
+/**
+ * Parses a time span, without failing on invalid text.
+ * <p>
+ *
+ * @param	text the time span, for example <tt>250ms</tt> or <tt>1h30m</tt>.
+ * @return	the parsed time span, or <tt>null</tt> if the text is not a valid
+ *          time span.
+ */
+
+    public static TimeSpan tryParse(CharSequence text) {
+        long nanos = parseNanos(text, 0, text.length());
+        return (nanos < 0) ? null : ofNanos(nanos);
+    }
+
+    public long toNanos() {
+        return nanos;
+    }
+
+    public long toMillis() {
+        return nanos / MILLIS;
+    }
+
+/**
+ * @param	unit the target unit.
+ * @return	the length of the span in the unit, truncated.
+ */
+
+    public long to(TimeUnit unit) {
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+/**
+ * @return	the coarsest unit in which the length of the span is a whole
+ *          number, for use with APIs that take an amount and a unit.
+ */
+
+    public TimeUnit getUnit() {
+        if(nanos % MILLIS != 0) {
+            return (nanos % MICROS == 0) ? TimeUnit.MICROSECONDS : TimeUnit.NANOSECONDS;
+        }
+        if(nanos % MINUTES != 0) {
+            return (nanos % SECONDS == 0) ? TimeUnit.SECONDS : TimeUnit.MILLISECONDS;
+        }
+        if(nanos % HOURS != 0) {
+            return TimeUnit.MINUTES;
+        }
+        return (nanos % DAYS == 0) ? TimeUnit.DAYS : TimeUnit.HOURS;
+    }
+
+/**
+ * Converts the span to a <tt>java.time.Duration</tt>. This method requires the
+ * <tt>java.time</tt> package, available from Java 8.
+ * <p>
+ *
+ * @return	the equivalent duration.
+ */
+
+    public java.time.Duration toDuration() {
+        return java.time.Duration.ofNanos(nanos);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return (obj instanceof TimeSpan) && ((TimeSpan) obj).nanos == nanos;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (nanos ^ (nanos >>> 32));
+    }
+
+/**
+ * @return	the span in the compound form accepted by {@link #parse}, such as
+ *          <tt>1h30m</tt>.
+ */
+
+    @Override
+    public String toString() {
+        if(nanos == 0) {
+            return "0ms";
+        }
+        StringBuilder buffer = new StringBuilder();
+        long rest = nanos;
+        rest = append(buffer, rest, DAYS, "d");
+        rest = append(buffer, rest, HOURS, "h");
+        rest = append(buffer, rest, MINUTES, "m");
+        rest = append(buffer, rest, SECONDS, "s");
+        rest = append(buffer, rest, MILLIS, "ms");
+        rest = append(buffer, rest, MICROS, "us");
+        append(buffer, rest, 1, "ns");
+        return buffer.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+/**
+ * Parses a region of the text as a time span.
+ * <p>
+ *
+ * @return	the length of the span in nanoseconds, or -1 if the region is not a
+ *          valid time span or the span is too long to represent.
+ */
+
+    static long parseNanos(CharSequence text, int start, int end) {
+        int pos = Quantities.skipSpace(text, start, end);
+        if(pos == end) {
+            return -1;
+        }
+        long total = 0;
+        boolean first = true;
+        while(pos < end) {
+            long whole = 0;
+            long fraction = 0;
+            long scale = 1;
+            int digits = 0;
+            while(pos < end && Quantities.isDigit(text.charAt(pos))) {
+                if(whole > Long.MAX_VALUE / 10 - 1) {
+                    return -1;
+                }
+                whole = whole * 10 + (text.charAt(pos++) - '0');
+                digits++;
+            }
+            if(pos < end && text.charAt(pos) == '.') {
+                pos++;
+                while(pos < end && Quantities.isDigit(text.charAt(pos))) {
+                    if(scale < Quantities.MAX_SCALE) {
+                        fraction = fraction * 10 + (text.charAt(pos) - '0');
+                        scale *= 10;
+                    }
+                    pos++;
+                    digits++;
+                }
+            }
+            if(digits == 0) {
+                return -1;
+            }
+            int unitStart = Quantities.skipSpace(text, pos, end);
+            pos = Quantities.skipLetters(text, unitStart, end);
+            long unit;
+            if(pos == unitStart) {
+                if(!first || Quantities.skipSpace(text, pos, end) != end) {
+                    return -1;
+                }
+                unit = MILLIS;
+            }
+            else {
+                unit = unitNanos(text, unitStart, pos);
+            }
+            long amount = (unit > 0) ? Quantities.multiply(whole, fraction, scale, unit) : -1;
+            if(amount < 0 || total > Long.MAX_VALUE - amount) {
+                return -1;
+            }
+            total += amount;
+            pos = Quantities.skipSpace(text, pos, end);
+            first = false;
+        }
+        return total;
+    }
+
+/**
+ * @return	the length of the unit named by the region of the text in
+ *          nanoseconds, or -1 if it is not a time unit.
+ */
+
+    static long unitNanos(CharSequence text, int start, int end) {
+        if(end - start == 1) {
+            switch(Character.toLowerCase(text.charAt(start))) {
+            case 's':
+                return SECONDS;
+            case 'm':
+                return MINUTES;
+            case 'h':
+                return HOURS;
+            case 'd':
+                return DAYS;
+            default:
+                return -1;
+            }
+        }
+        if(Quantities.matches(text, start, end, "ms")) {
+            return MILLIS;
+        }
+        else if(Quantities.matches(text, start, end, "us") || Quantities.matches(text, start, end, "\u00b5s")) {
+            return MICROS;
+        }
+        else if(Quantities.matches(text, start, end, "ns")) {
+            return 1;
+        }
+        return -1;
+    }
+
+    private static long append(StringBuilder buffer, long rest, long unit, String suffix) {
+        if(rest >= unit) {
+            buffer.append(rest / unit).append(suffix);
+        }
+        return rest % unit;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core;
+
+/**
+ * Converts configuration values, as read from a configuration source, to a
+ * target type. Converters for custom types are registered with the
+ * {@link com.flipkart.polyguice.core.support.ConverterRegistry}, which all
+ * configuration providers share.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public interface ValueConverter<T> {
+
+/**
+ * Converts the specified value.
+ * <p>
+ *
+ * @param	value the value to convert; never <tt>null</tt>.
+ * @return	the converted value, or <tt>null</tt> if the value cannot be
+ *          converted to the target type.
+ */
+
+    T convert(Object value);
+}
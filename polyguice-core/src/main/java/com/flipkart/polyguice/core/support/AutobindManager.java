@@ -19,15 +19,17 @@ package com.flipkart.polyguice.core.support;
 import com.flipkart.polyguice.core.Bindable;
 import com.flipkart.polyguice.core.Component;
 import com.flipkart.polyguice.core.ComponentProcessor;
+import com.flipkart.polyguice.core.ConfigurationSection;
 import com.flipkart.polyguice.core.NonBindable;
+import com.flipkart.polyguice.core.StartupMode;
 import com.google.inject.Binder;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
-import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -43,52 +45,32 @@ class AutobindManager {
 
     private Binder binder;
     private List<String> procNames;
+    private List<Class<?>> procTypes;
     private List<SingletonKey> singletonKeys;
+    private List<Class<?>> sectionTypes;
 
     AutobindManager(Binder binder) {
         this.binder = binder;
     }
 
-    public void autobind(String[] scanPkgNames) {
+    public void autobind(ScanIndex index, String[] scanPkgNames) {
         LOGGER.debug("start_autobind");
         for (String pkgName : scanPkgNames) {
             LOGGER.debug("scan_package {}", pkgName);
         }
 
-/*
- * This is a hack around the Reflections package. FilterBuilder does not
- * seem to work with multiple package names, so the list of packages
- * must be provided in a loop
- */
-
-/* For version 1.0 onwards: with reflections upgraded to 0.9.10, this hack seems
- * no longer necessary. Commenting out the same.
- */
-
-/*
-        FilterBuilder fb = new FilterBuilder();
-        for(String pkgName : scanPkgNames) {
-            fb.includePackage(pkgName);
-        }
-
-        ConfigurationBuilder cb = new ConfigurationBuilder()
-            .filterInputsBy(fb)
-            .setUrls(ClasspathHelper.forClassLoader())
-            .addScanners(new SubTypesScanner(), new TypeAnnotationsScanner());
- */
-        ReflectionsHelper.registerUrlTypes();
-        Reflections reflections = new Reflections((Object[]) scanPkgNames);
-
         procNames = new ArrayList<>();
-        Set<Class<? extends ComponentProcessor>> procClsList = reflections.getSubTypesOf(ComponentProcessor.class);
+        procTypes = new ArrayList<>();
+        Set<Class<? extends ComponentProcessor>> procClsList = index.getSubTypesOf(ComponentProcessor.class, scanPkgNames);
         LOGGER.debug("component processors: {}", procClsList.size());
         for (Class<?> cls : procClsList) {
             String procId = bindComponentProcessor(cls);
             procNames.add(procId);
+            procTypes.add(cls);
         }
 
         singletonKeys = new ArrayList<>();
-        Set<Class<?>> clsList = reflections.getTypesAnnotatedWith(Component.class);
+        Set<Class<?>> clsList = index.getTypesAnnotatedWith(Component.class, scanPkgNames);
         LOGGER.debug("components: {}", clsList.size());
         for (Class<?> cls : clsList) {
             SingletonKey sk = bindComponent(cls);
@@ -96,6 +78,14 @@ class AutobindManager {
                 singletonKeys.add(sk);
             }
         }
+
+        sectionTypes = new ArrayList<>();
+        for (Class<?> cls : index.getTypesAnnotatedWith(ConfigurationSection.class, scanPkgNames)) {
+            if (cls.isInterface() && cls.isAnnotationPresent(ConfigurationSection.class)) {
+                sectionTypes.add(cls);
+            }
+        }
+        LOGGER.debug("configuration sections: {}", sectionTypes.size());
         LOGGER.debug("end_autobind");
     }
 
@@ -103,17 +93,25 @@ class AutobindManager {
         return procNames;
     }
 
+    public List<Class<?>> getComponentProcessorTypes() {
+        return procTypes;
+    }
+
     public List<SingletonKey> getSingletons() {
         return singletonKeys;
     }
 
+    public List<Class<?>> getSectionTypes() {
+        return sectionTypes;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Helper methods
 
     private String bindComponentProcessor(Class<?> cmpCls) {
         String objId = cmpCls.getName() + "#" + Long.toString(System.currentTimeMillis(), 36);
         Named named = Names.named(objId);
-        createBindings(cmpCls, null, named);
+        createBindings(cmpCls, null, named, StartupMode.EAGER);
         LOGGER.debug("bound component processor: {} to {}", cmpCls.getName(), objId);
         return objId;
     }
@@ -121,6 +119,21 @@ class AutobindManager {
     @SuppressWarnings({"unchecked", "rawtypes"})
     private SingletonKey bindComponent(Class cmpCls) {
         Component ann = (Component) cmpCls.getAnnotation(Component.class);
+        if (ann == null) {
+            /*
+             * A class that extends a component class is found as a component
+             * too, but does not inherit the name of its superclass, which
+             * would clash. It is bound under its class name instead, unless
+             * it is abstract.
+             */
+            if (Modifier.isAbstract(cmpCls.getModifiers())) {
+                LOGGER.debug("skipping abstract component sub-type: {}", cmpCls.getName());
+                return null;
+            }
+            Named named = Names.named(cmpCls.getName());
+            LOGGER.debug("binding component sub-type: type={}", cmpCls.getName());
+            return createBindings(cmpCls, null, named, StartupMode.EAGER);
+        }
         LOGGER.debug("binding component: type={}, name={}, namedOnly={}, value={}",
                 cmpCls.getName(), ann.name(), ann.namedOnly(), ann.value());
 
@@ -135,12 +148,12 @@ class AutobindManager {
         retrieveInterfaces(cmpCls, ifaces);
         Set<Class<?>> bindables = retrieveBindables(ifaces);
         if (ann.namedOnly()) {
-            return createBindings(cmpCls, null, named);
+            return createBindings(cmpCls, null, named, ann.startup());
         } else {
             if (bindables.isEmpty()) {
-                return createBindings(cmpCls, ifaces, named);
+                return createBindings(cmpCls, ifaces, named, ann.startup());
             } else {
-                return createBindings(cmpCls, bindables, named);
+                return createBindings(cmpCls, bindables, named, ann.startup());
             }
         }
     }
@@ -176,7 +189,7 @@ class AutobindManager {
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
-    private SingletonKey createBindings(Class cmpCls, Set<Class<?>> ifaces, Named named) {
+    private SingletonKey createBindings(Class cmpCls, Set<Class<?>> ifaces, Named named, StartupMode mode) {
         boolean hasSingletonAnn = (cmpCls.getAnnotation(Singleton.class) != null);
         SingletonKey sk = null;
         if (ifaces != null && !ifaces.isEmpty()) {
@@ -185,13 +198,13 @@ class AutobindManager {
                     binder.bind(iface).annotatedWith(named).to(cmpCls);
                     LOGGER.debug("bound iface: {}, named: {}, to: {}", iface.getName(), named.value(), cmpCls.getName());
                     if (hasSingletonAnn) {
-                        sk = new SingletonKey(iface, named);
+                        sk = new SingletonKey(iface, named, mode);
                     }
                 } else {
                     binder.bind(iface).to(cmpCls);
                     LOGGER.debug("bound iface: {}, to: {}", iface.getName(), cmpCls.getName());
                     if (hasSingletonAnn) {
-                        sk = new SingletonKey(iface, null);
+                        sk = new SingletonKey(iface, null, mode);
                     }
                 }
             }
@@ -199,14 +212,14 @@ class AutobindManager {
             binder.bind(Object.class).annotatedWith(named).to(cmpCls);
             LOGGER.debug("bound named: {}, to: {}", named.value(), cmpCls.getName());
             if (hasSingletonAnn) {
-                sk = new SingletonKey(null, named);
+                sk = new SingletonKey(null, named, mode);
             }
         } else {
             Named dyname = Names.named(cmpCls.getClass().getName() + "#" + Long.toString(System.currentTimeMillis(), 36));
             binder.bind(Object.class).annotatedWith(dyname).to(cmpCls);
             LOGGER.debug("bound named: {}, to: {}", dyname.value(), cmpCls.getName());
             if (hasSingletonAnn) {
-                sk = new SingletonKey(null, named);
+                sk = new SingletonKey(null, named, mode);
             }
         }
         return sk;
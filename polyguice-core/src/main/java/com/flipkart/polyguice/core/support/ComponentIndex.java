@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compile-time index of components, component processors, bindable interfaces,
+ * configuration section interfaces and other annotated types. The index is
+ * written by the <tt>polyguice-indexer</tt> annotation
+ * processor into every jar (or class directory) built with it, and read back at
+ * startup so that the classpath need not be scanned.
+ * <p>
+ *
+ * Each line of an index file is a tab separated record, one of:
+ * <pre>
+ * component  &lt;class&gt;  &lt;name&gt;  &lt;namedOnly&gt;
+ * processor  &lt;class&gt;
+ * bindable   &lt;interface&gt;
+ * section    &lt;interface&gt;
+ * annotated  &lt;class&gt;  &lt;annotation&gt;
+ * subtype    &lt;class&gt;  &lt;superclass&gt;
+ * </pre>
+ * The <tt>annotated</tt> records cover all other annotations retained in the
+ * class files, such as those marking Jersey resources and servlets, so that
+ * integration modules find them in the {@link ScanIndex} as they would after a
+ * classpath scan. The <tt>subtype</tt> records link each class that extends a
+ * component class, directly or through other classes, to its superclass, so
+ * that such classes are found as components just as a scan finds them.
+ * A name of <tt>-</tt> indicates that the component has no name. Lines starting
+ * with <tt>#</tt> are ignored.
+ * <p>
+ *
+ * An index file stands in only for the classpath root, jar or directory, that
+ * contains it; {@link #getRoots()} lists these roots. The other roots are still
+ * scanned, so that modules built without the indexer contribute their
+ * components as before. The index can be disabled altogether using
+ * {@link #IGNORE_PROPERTY}.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ComponentIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentIndex.class);
+
+/**
+ * Location of the index files on the classpath.
+ */
+
+    public static final String LOCATION = "META-INF/polyguice/components.idx";
+
+/**
+ * System property that, when set to <tt>true</tt>, disables use of the index
+ * even if present, forcing a classpath scan.
+ */
+
+    public static final String IGNORE_PROPERTY = "polyguice.index.ignore";
+
+    public static final String TYPE_COMPONENT = "component";
+    public static final String TYPE_PROCESSOR = "processor";
+    public static final String TYPE_BINDABLE  = "bindable";
+    public static final String TYPE_SECTION   = "section";
+    public static final String TYPE_ANNOTATED = "annotated";
+    public static final String TYPE_SUBTYPE   = "subtype";
+    public static final String NO_NAME        = "-";
+
+    private Map<String, ComponentEntry> components;
+    private Set<String>                 processors;
+    private Set<String>                 bindables;
+    private Set<String>                 sections;
+    private Map<String, Set<String>>    annotated;
+    private Map<String, Set<String>>    subTypes;
+    private Set<String>                 roots;
+
+    private ComponentIndex() {
+        components = new LinkedHashMap<>();
+        processors = new HashSet<>();
+        bindables = new HashSet<>();
+        sections = new HashSet<>();
+        annotated = new HashMap<>();
+        subTypes = new HashMap<>();
+        roots = new LinkedHashSet<>();
+    }
+
+/**
+ * Loads and merges all index files visible to the given class loader.
+ * <p>
+ *
+ * @param	loader the class loader to look up index files from.
+ * @return	the merged index, or <tt>null</tt> if no index files are present or
+ *          use of the index has been disabled.
+ */
+
+    public static ComponentIndex load(ClassLoader loader) {
+        if(Boolean.getBoolean(IGNORE_PROPERTY)) {
+            LOGGER.debug("component index disabled by {}", IGNORE_PROPERTY);
+            return null;
+        }
+        ComponentIndex index = new ComponentIndex();
+        int count = 0;
+        try {
+            Enumeration<URL> urls = loader.getResources(LOCATION);
+            while(urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                LOGGER.debug("reading component index {}", url);
+                index.read(url);
+                String urlStr = url.toExternalForm();
+                if(urlStr.endsWith(LOCATION)) {
+                    index.roots.add(toRoot(urlStr.substring(0, urlStr.length() - LOCATION.length())));
+                }
+                count++;
+            }
+        }
+        catch(IOException exep) {
+            LOGGER.warn("unable to read component index, falling back to scanning", exep);
+            return null;
+        }
+        if(count == 0) {
+            return null;
+        }
+        LOGGER.debug("component index: {} files, {} components, {} processors",
+                count, index.components.size(), index.processors.size());
+        return index;
+    }
+
+/**
+ * Retrieves the components whose classes belong to one of the given packages
+ * (or their sub-packages).
+ * <p>
+ *
+ * @param	pkgNames the packages to filter by.
+ * @return	entries for the matching components.
+ */
+
+    public List<ComponentEntry> getComponents(String[] pkgNames) {
+        List<ComponentEntry> result = new ArrayList<>();
+        for(ComponentEntry entry : components.values()) {
+            if(ScanIndex.inPackages(entry.getClassName(), pkgNames)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+/**
+ * Retrieves the component processor classes that belong to one of the given
+ * packages (or their sub-packages).
+ * <p>
+ *
+ * @param	pkgNames the packages to filter by.
+ * @return	names of the matching processor classes.
+ */
+
+    public List<String> getProcessors(String[] pkgNames) {
+        List<String> result = new ArrayList<>();
+        for(String clsName : processors) {
+            if(ScanIndex.inPackages(clsName, pkgNames)) {
+                result.add(clsName);
+            }
+        }
+        return result;
+    }
+
+/**
+ * Retrieves the configuration section interfaces that belong to one of the
+ * given packages (or their sub-packages).
+ * <p>
+ *
+ * @param	pkgNames the packages to filter by.
+ * @return	names of the matching section interfaces.
+ */
+
+    public List<String> getSections(String[] pkgNames) {
+        List<String> result = new ArrayList<>();
+        for(String clsName : sections) {
+            if(ScanIndex.inPackages(clsName, pkgNames)) {
+                result.add(clsName);
+            }
+        }
+        return result;
+    }
+
+/**
+ * Retrieves the classes recorded with other annotations, keyed by annotation,
+ * that belong to one of the given packages (or their sub-packages).
+ * <p>
+ *
+ * @param	pkgNames the packages to filter by.
+ * @return	names of the matching classes by annotation name.
+ */
+
+    public Map<String, Set<String>> getAnnotated(String[] pkgNames) {
+        Map<String, Set<String>> result = new HashMap<>();
+        for(Map.Entry<String, Set<String>> entry : annotated.entrySet()) {
+            Set<String> clsNames = new LinkedHashSet<>();
+            for(String clsName : entry.getValue()) {
+                if(ScanIndex.inPackages(clsName, pkgNames)) {
+                    clsNames.add(clsName);
+                }
+            }
+            if(!clsNames.isEmpty()) {
+                result.put(entry.getKey(), clsNames);
+            }
+        }
+        return result;
+    }
+
+/**
+ * Retrieves the classes that extend component classes. The classes are not
+ * filtered by package, as the chain from a component class to a sub-type may
+ * pass through classes in other packages.
+ * <p>
+ *
+ * @return	names of the sub-classes by the name of their direct superclass.
+ */
+
+    public Map<String, Set<String>> getSubTypes() {
+        return Collections.unmodifiableMap(subTypes);
+    }
+
+/**
+ * @return	the classpath roots that contain index files, in the form returned
+ *          by {@link #toRoot(String)}.
+ */
+
+    public Set<String> getRoots() {
+        return Collections.unmodifiableSet(roots);
+    }
+
+/**
+ * Normalizes the URL of a classpath root, so that a jar or directory has the
+ * same form whether its URL points into it, as in <tt>jar:file:/x.jar!/</tt>,
+ * or at it, as in <tt>file:/x.jar</tt>.
+ * <p>
+ *
+ * @param	url the URL of the root.
+ * @return	the normalized form of the URL.
+ */
+
+    public static String toRoot(String url) {
+        String root = url;
+        if(root.startsWith("jar:")) {
+            root = root.substring("jar:".length());
+            int sep = root.lastIndexOf("!/");
+            if(sep >= 0) {
+                root = root.substring(0, sep);
+            }
+        }
+        while(root.endsWith("/")) {
+            root = root.substring(0, root.length() - 1);
+        }
+        return root;
+    }
+
+    public Set<String> getBindables() {
+        return Collections.unmodifiableSet(bindables);
+    }
+
+    public boolean isBindable(Class<?> iface) {
+        return bindables.contains(iface.getName());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private void read(URL url) throws IOException {
+        InputStream in = url.openStream();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while((line = reader.readLine()) != null) {
+                line = line.trim();
+                if(line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if(parts[0].equals(TYPE_COMPONENT) && parts.length == 4) {
+                    String name = parts[2].equals(NO_NAME) ? null : parts[2];
+                    ComponentEntry entry = new ComponentEntry(parts[1], name, Boolean.parseBoolean(parts[3]));
+                    components.put(entry.getClassName(), entry);
+                }
+                else if(parts[0].equals(TYPE_PROCESSOR) && parts.length == 2) {
+                    processors.add(parts[1]);
+                }
+                else if(parts[0].equals(TYPE_BINDABLE) && parts.length == 2) {
+                    bindables.add(parts[1]);
+                }
+                else if(parts[0].equals(TYPE_SECTION) && parts.length == 2) {
+                    sections.add(parts[1]);
+                }
+                else if(parts[0].equals(TYPE_ANNOTATED) && parts.length == 3) {
+                    Set<String> clsNames = annotated.get(parts[2]);
+                    if(clsNames == null) {
+                        clsNames = new LinkedHashSet<>();
+                        annotated.put(parts[2], clsNames);
+                    }
+                    clsNames.add(parts[1]);
+                }
+                else if(parts[0].equals(TYPE_SUBTYPE) && parts.length == 3) {
+                    Set<String> clsNames = subTypes.get(parts[2]);
+                    if(clsNames == null) {
+                        clsNames = new LinkedHashSet<>();
+                        subTypes.put(parts[2], clsNames);
+                    }
+                    clsNames.add(parts[1]);
+                }
+                else {
+                    LOGGER.warn("ignoring malformed component index entry in {}: {}", url, line);
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+/**
+ * A single component recorded in the index.
+ */
+
+    public static class ComponentEntry {
+
+        private String  className;
+        private String  name;
+        private boolean namedOnly;
+
+        public ComponentEntry(String className, String name, boolean namedOnly) {
+            this.className = className;
+            this.name = name;
+            this.namedOnly = namedOnly;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+/**
+ * @return	the binding name of the component, or <tt>null</tt> if unnamed.
+ */
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isNamedOnly() {
+            return namedOnly;
+        }
+
+        @Override
+        public String toString() {
+            return TYPE_COMPONENT + "\t" + className + "\t"
+                    + (name != null ? name : NO_NAME) + "\t" + namedOnly;
+        }
+    }
+}
@@ -16,153 +16,410 @@
 
 package com.flipkart.polyguice.core.support;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.flipkart.polyguice.core.BulkConfigurationProvider;
 import com.flipkart.polyguice.core.Configuration;
+import com.flipkart.polyguice.core.ConfigurationChangeListener;
 import com.flipkart.polyguice.core.ConfigurationProvider;
+import com.flipkart.polyguice.core.ConfigurationSection;
+import com.flipkart.polyguice.core.DataSize;
+import com.flipkart.polyguice.core.FreezableConfigurationProvider;
+import com.flipkart.polyguice.core.ObservableConfigurationProvider;
+import com.flipkart.polyguice.core.Rate;
+import com.flipkart.polyguice.core.Reloadable;
+import com.flipkart.polyguice.core.TimeSpan;
 
 /**
- * @author indroneel.das
+ * Injects {@link Configuration} members of components. Values are resolved
+ * across the registered providers in registration order, and the outcome is
+ * memoized per path and target type, including misses. The resolutions for a
+ * class are primed as soon as its injection plan is built. Values missing from
+ * the memo are retrieved for all members of a component together, with one call
+ * per {@link BulkConfigurationProvider}; a member of type <tt>Map</tt> receives
+ * the whole section under its path from such providers. Entries are dropped
+ * when an {@link ObservableConfigurationProvider} reports a change, or when a
+ * provider is registered. Values of mutable types are not memoized, so that no
+ * two components share such a value.
+ * <p>
+ *
+ * Components marked {@link Reloadable} are tracked, without preventing their
+ * garbage collection, and re-injected when any configuration path they refer
+ * to changes. Implementations of {@link ConfigurationSection} interfaces are
+ * refreshed likewise.
+ * <p>
  *
+ * @author indroneel.das
  */
 
 class ConfigurationInjector {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationInjector.class);
 
-    private List<ConfigurationProvider> configProviders;
+    private static final Object MISSING = new Object();
+
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, TimeSpan.class, DataSize.class,
+            Rate.class));
+
+    private List<ConfigurationProvider>            configProviders;
+    private ConcurrentMap<Class<?>, InjectionPlan> plans;
+    private ConcurrentMap<ResolutionKey, Object>   resolutions;
+    private AtomicLong                             generation;
+    private List<WeakReference<Object>>            reloadables;
+    private List<SectionHandler>                   sections;
 
     public ConfigurationInjector() {
         configProviders = new ArrayList<>();
+        plans = new ConcurrentHashMap<>();
+        resolutions = new ConcurrentHashMap<>();
+        generation = new AtomicLong();
+        reloadables = Collections.synchronizedList(new ArrayList<WeakReference<Object>>());
+        sections = new CopyOnWriteArrayList<>();
     }
 
     public void register(ConfigurationProvider provider) {
         configProviders.add(provider);
+        if(provider instanceof ObservableConfigurationProvider) {
+            ((ObservableConfigurationProvider) provider).addChangeListener(new ChangeHandler());
+        }
+        invalidate(null);
+        refreshSections(null);
         LOGGER.debug("registered configuration provider: {}", provider.getClass().getName());
     }
 
+/**
+ * Freezes all registered providers that support it.
+ */
+
+    public void freezeProviders() {
+        for(ConfigurationProvider provider : configProviders) {
+            if(provider instanceof FreezableConfigurationProvider) {
+                LOGGER.debug("freezing configuration provider: {}", provider.getClass().getName());
+                ((FreezableConfigurationProvider) provider).freeze();
+            }
+        }
+    }
+
+/**
+ * Drops memoized resolutions.
+ * <p>
+ *
+ * @param	paths the configuration paths to drop, or <tt>null</tt> to drop all.
+ */
+
+    public void invalidate(Set<String> paths) {
+        generation.incrementAndGet();
+        if(paths == null) {
+            resolutions.clear();
+            return;
+        }
+        Iterator<ResolutionKey> iter = resolutions.keySet().iterator();
+        while(iter.hasNext()) {
+            ResolutionKey key = iter.next();
+            if(isAffected(key.path, key.type, paths)) {
+                iter.remove();
+            }
+        }
+    }
+
     public void injectComponent(Object target) {
-        Field[] fields = target.getClass().getDeclaredFields();
-        for(Field field : fields) {
-            if(!injectField(target, field)) {
-                throw new RuntimeException("preference injection failed on field "
-                        + target.getClass().getName() + "#" + field.getName());
+        InjectionPlan plan = getPlan(target.getClass());
+        List<InjectionPlan.Member> members = plan.getMembers();
+        Object[] values = resolveMembers(members);
+        for(int i = 0; i < values.length; i++) {
+            InjectionPlan.Member member = members.get(i);
+            if(!injectMember(target, member, values[i])) {
+                throw new RuntimeException("preference injection failed on "
+                        + (member.isField() ? "field " : "method ")
+                        + target.getClass().getName() + "#" + member.getName());
             }
         }
-        Method[] methods = target.getClass().getMethods();
-        for(Method method : methods) {
-            if(!injectMethod(target, method)) {
-                throw new RuntimeException("preference injection failed on method "
-                        + target.getClass().getName() + "#" + method.getName());
+        if(plan.isReloadable() && !plan.isEmpty()) {
+            reloadables.add(new WeakReference<Object>(target));
+        }
+    }
+
+/**
+ * Injects again the configuration members of all live {@link Reloadable}
+ * components that refer to any of the given paths. Failures are logged; the
+ * affected members keep their previous values.
+ * <p>
+ *
+ * @param	paths the changed configuration paths, or <tt>null</tt> if all
+ *          members are to be re-injected.
+ */
+
+    public void reinject(Set<String> paths) {
+        List<Object> targets = new ArrayList<>();
+        synchronized(reloadables) {
+            Iterator<WeakReference<Object>> iter = reloadables.iterator();
+            while(iter.hasNext()) {
+                Object target = iter.next().get();
+                if(target == null) {
+                    iter.remove();
+                }
+                else {
+                    targets.add(target);
+                }
+            }
+        }
+        int count = 0;
+        for(Object target : targets) {
+            List<InjectionPlan.Member> members = getPlan(target.getClass()).getMembers();
+            Object[] values = resolveMembers(members);
+            for(int i = 0; i < values.length; i++) {
+                InjectionPlan.Member member = members.get(i);
+                if(!member.isInjectable()
+                        || (paths != null && !isAffected(member.getKey(), member.getType(), paths))) {
+                    continue;
+                }
+                if(injectMember(target, member, values[i])) {
+                    count++;
+                }
+                else {
+                    LOGGER.warn("re-injection failed on {}#{}", target.getClass().getName(), member.getName());
+                }
             }
         }
+        LOGGER.debug("re-injected {} configuration members", count);
     }
 
-    ////////////////////////////////////////////////////////////////////////////
-    // Helper methods
+/**
+ * Creates an implementation of a {@link ConfigurationSection} interface, with
+ * all its values resolved. The section is refreshed whenever a change is
+ * reported under its prefix.
+ * <p>
+ *
+ * @param	iface the section interface.
+ * @return	the section implementation.
+ */
 
-    private boolean injectField(Object target, Field field) {
-        Configuration ann = field.getAnnotation(Configuration.class);
-        if(ann == null) {
-            return true;
+    public <T> T createSection(Class<T> iface) {
+        SectionHandler handler = new SectionHandler(iface);
+        Object[] values = resolveSection(handler);
+        if(values == null) {
+            throw new RuntimeException("configuration section " + iface.getName() + " is missing required values");
         }
-        LOGGER.debug("field {}#{} has {}", field.getDeclaringClass().getName(), field.getName(), ann.toString());
+        handler.setValues(values);
+        sections.add(handler);
+        LOGGER.debug("created configuration section: {}", iface.getName());
+        return iface.cast(Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] {iface}, handler));
+    }
+
+/**
+ * Resolves again the values of all sections affected by the given paths, and
+ * replaces them at once. A section that is missing a required value after the
+ * change keeps its previous values.
+ * <p>
+ *
+ * @param	paths the changed configuration paths, or <tt>null</tt> if all may
+ *          have changed.
+ */
+
+    public void refreshSections(Set<String> paths) {
+        for(SectionHandler handler : sections) {
+            if(!handler.isAffected(paths)) {
+                continue;
+            }
+            Object[] values = resolveSection(handler);
+            if(values != null) {
+                handler.setValues(values);
+                LOGGER.debug("refreshed configuration section: {}", handler.getInterface().getName());
+            }
+            else {
+                LOGGER.warn("configuration section {} is missing required values, keeping current values",
+                        handler.getInterface().getName());
+            }
+        }
+    }
+
+/**
+ * Checks whether instances of the given type have any members to inject.
+ * <p>
+ *
+ * @param	cls the type to check.
+ * @return	<tt>true</tt> if the type has annotated members.
+ */
+
+    public boolean hasInjections(Class<?> cls) {
+        return !getPlan(cls).isEmpty();
+    }
+
+/**
+ * @return	the injection plan of the class, built on first use and shared
+ *          afterwards.
+ */
 
-        boolean required = ann.required();
-        String key = ann.name();
-        if(key == null || key.trim().length() == 0) {
-            key = ann.value();
-            if(key == null || key.trim().length() == 0) {
-                LOGGER.warn("@Configuration on: {}#{} does not have a name",
-                        field.getDeclaringClass().getName(), field.getName());
-                return !required; //return true only if not required.
+    InjectionPlan getPlan(Class<?> cls) {
+        InjectionPlan plan = plans.get(cls);
+        if(plan == null) {
+            plan = InjectionPlan.build(cls, Configuration.class);
+            InjectionPlan existing = plans.putIfAbsent(cls, plan);
+            if(existing != null) {
+                return existing;
             }
+            resolveMembers(plan.getMembers());
+        }
+        return plan;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private boolean injectMember(Object target, InjectionPlan.Member member, Object value) {
+        if(!member.isInjectable()) {
+            return !member.isRequired(); //return true only if not required.
         }
 
-        Object value = retrieveConfig(key, field.getType());
         if(value == null) {
-            LOGGER.warn("configuration {} not found or not of required type", key);
-            return !required; //return true only if not required.
+            LOGGER.warn("configuration {} not found or not of required type", member.getKey());
+            return !member.isRequired(); //return true only if not required.
         }
 
         try {
-            boolean accessible = field.isAccessible();
-            if(!accessible) {
-                field.setAccessible(true);
-            }
-            field.set(target, value);
-            if(!accessible) {
-                field.setAccessible(false);
-            }
+            member.inject(target, value);
         }
         catch(Exception exep) {
-            LOGGER.warn("configuration: {} error injecting on field {}#{}",
-                    key, field.getDeclaringClass().getName(), field.getName());
-            return !required; //return true only if not required.
+            LOGGER.warn("configuration: {} error injecting on {}#{}",
+                    member.getKey(), member.getDeclaringClassName(), member.getName());
+            return !member.isRequired(); //return true only if not required.
         }
         return true;
     }
 
-    private boolean injectMethod(Object target, Method method) {
-        Configuration ann = method.getAnnotation(Configuration.class);
-        if(ann == null) {
-            return true;
-        }
-        LOGGER.debug("method {}#{} has {}", method.getDeclaringClass().getName(), method.getName(), ann.toString());
+/**
+ * Resolves the values of all injectable members in one pass. Memoized values
+ * are used as is; the others are retrieved together, with a single call to
+ * each {@link BulkConfigurationProvider}.
+ * <p>
+ *
+ * @return	the values, aligned with the members; <tt>null</tt> for a member that
+ *          is not injectable or whose value was not found.
+ */
 
-        boolean required = ann.required();
-        String key = ann.name();
-        if(key == null || key.trim().length() == 0) {
-            key = ann.value();
-            if(key == null || key.trim().length() == 0) {
-                LOGGER.warn("@Configuration on: {}#{} does not have a name",
-                        method.getDeclaringClass().getName(), method.getName());
-                return !required; //return true only if not required.
+    private Object[] resolveMembers(List<InjectionPlan.Member> members) {
+        Object[] values = new Object[members.size()];
+        Map<String, Class<?>> misses = new LinkedHashMap<>();
+        for(int i = 0; i < values.length; i++) {
+            InjectionPlan.Member member = members.get(i);
+            if(!member.isInjectable()) {
+                continue;
+            }
+            String path = member.getKey();
+            Class<?> type = member.getType();
+            values[i] = resolutions.get(new ResolutionKey(path, type));
+            if(values[i] != null) {
+                continue;
+            }
+            Class<?> missType = misses.get(path);
+            if(missType == null) {
+                misses.put(path, type);
+            }
+            else if(missType != type) {
+                // Same path as another type; resolve it on its own.
+                values[i] = resolveConfig(path, type);
             }
         }
 
-        int mod = method.getModifiers();
-        if(Modifier.isAbstract(mod) || !Modifier.isPublic(mod)) {
-            LOGGER.warn("method {}#{} must be public and not abstract",
-                    method.getDeclaringClass().getName(), method.getName());
-            return !required; //return true only if not required.
+        if(!misses.isEmpty()) {
+            long gen = generation.get();
+            Map<String, Object> found = retrieveConfigs(misses);
+            for(int i = 0; i < values.length; i++) {
+                InjectionPlan.Member member = members.get(i);
+                if(values[i] != null || !member.isInjectable()) {
+                    continue;
+                }
+                Object value = found.get(member.getKey());
+                values[i] = (value != null) ? value : MISSING;
+                // Do not memoize a value that may have been invalidated meanwhile.
+                if(generation.get() == gen && isMemoizable(member.getType(), values[i])) {
+                    resolutions.putIfAbsent(new ResolutionKey(member.getKey(), member.getType()), values[i]);
+                }
+            }
         }
 
-        if(method.getReturnType() != Void.TYPE) {
-            LOGGER.warn("method {}#{} must not have a return type",
-                    method.getDeclaringClass().getName(), method.getName());
-            return !required; //return true only if not required.
+        for(int i = 0; i < values.length; i++) {
+            if(values[i] == MISSING) {
+                values[i] = null;
+            }
         }
+        return values;
+    }
 
-        Class<?>[] paramTypes = method.getParameterTypes();
-        if(paramTypes.length != 1) {
-            LOGGER.warn("method {}#{} must have exactly one parameter",
-                    method.getDeclaringClass().getName(), method.getName());
-            return !required; //return true only if not required.
-        }
+/**
+ * @return	the values of all accessors of the section, or <tt>null</tt> if a
+ *          required value is missing.
+ */
 
-        Object value = retrieveConfig(key, method.getParameterTypes()[0]);
-        if(value == null) {
-            LOGGER.warn("configuration {} not found or not of required type", key);
-            return !required; //return true only if not required.
+    private Object[] resolveSection(SectionHandler handler) {
+        Map<String, Class<?>> paths = new LinkedHashMap<>();
+        for(int i = 0; i < handler.size(); i++) {
+            if(!paths.containsKey(handler.getPath(i))) {
+                paths.put(handler.getPath(i), handler.getType(i));
+            }
         }
-
-        try {
-            method.invoke(target, value);
+        Map<String, Object> found = retrieveConfigs(paths);
+        Object[] values = new Object[handler.size()];
+        for(int i = 0; i < values.length; i++) {
+            String path = handler.getPath(i);
+            Object value = (paths.get(path) == handler.getType(i))
+                    ? found.get(path) : retrieveConfig(path, handler.getType(i));
+            if(value != null && !handler.isAssignable(i, value)) {
+                value = null;
+            }
+            if(value == null) {
+                if(handler.isRequired(i)) {
+                    LOGGER.warn("configuration {} not found or not of required type", path);
+                    return null;
+                }
+                value = handler.getDefault(i);
+            }
+            values[i] = value;
         }
-        catch(Exception exep) {
-            LOGGER.warn("configuration: {} error injecting on method {}#{}",
-                    key, method.getDeclaringClass().getName(), method.getName());
-            return !required; //return true only if not required.
+        return values;
+    }
+
+/**
+ * @return	the memoized value, or {@link #MISSING} if the value was not found.
+ */
+
+    private Object resolveConfig(String name, Class<?> type) {
+        ResolutionKey key = new ResolutionKey(name, type);
+        Object value = resolutions.get(key);
+        if(value == null) {
+            long gen = generation.get();
+            value = retrieveConfig(name, type);
+            if(value == null) {
+                value = MISSING;
+            }
+            // Do not memoize a value that may have been invalidated meanwhile.
+            if(generation.get() == gen && isMemoizable(type, value)) {
+                resolutions.putIfAbsent(key, value);
+            }
         }
-        return true;
+        return value;
     }
 
     private Object retrieveConfig(String name, Class<?> type) {
@@ -176,6 +433,151 @@ class ConfigurationInjector {
                 return value;
             }
         }
+        if(type == Map.class) {
+            return retrieveSection(name);
+        }
         return null;
     }
+
+    private Map<String, Object> retrieveConfigs(Map<String, Class<?>> paths) {
+        Map<String, Object> found = new HashMap<>();
+        Map<String, Class<?>> pending = new LinkedHashMap<>(paths);
+        for(ConfigurationProvider provider : configProviders) {
+            if(pending.isEmpty()) {
+                break;
+            }
+            if(provider instanceof BulkConfigurationProvider) {
+                Map<String, Object> values = ((BulkConfigurationProvider) provider).getValues(pending);
+                for(Map.Entry<String, Object> entry : values.entrySet()) {
+                    if(entry.getValue() != null && pending.remove(entry.getKey()) != null) {
+                        found.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                continue;
+            }
+            Iterator<Map.Entry<String, Class<?>>> iter = pending.entrySet().iterator();
+            while(iter.hasNext()) {
+                Map.Entry<String, Class<?>> entry = iter.next();
+                if(!provider.contains(entry.getKey())) {
+                    continue;
+                }
+                Object value = provider.getValue(entry.getKey(), entry.getValue());
+                if(value != null) {
+                    found.put(entry.getKey(), value);
+                    iter.remove();
+                }
+            }
+        }
+        for(Map.Entry<String, Class<?>> entry : pending.entrySet()) {
+            if(entry.getValue() == Map.class) {
+                Map<String, Object> section = retrieveSection(entry.getKey());
+                if(section != null) {
+                    found.put(entry.getKey(), section);
+                }
+            }
+        }
+        return found;
+    }
+
+/**
+ * Collects all values under the prefix from the bulk providers, keyed by their
+ * paths relative to the prefix. Values from providers registered earlier take
+ * precedence.
+ */
+
+    private Map<String, Object> retrieveSection(String prefix) {
+        Map<String, Object> section = new LinkedHashMap<>();
+        for(ConfigurationProvider provider : configProviders) {
+            if(!(provider instanceof BulkConfigurationProvider)) {
+                continue;
+            }
+            Map<String, Object> subtree = ((BulkConfigurationProvider) provider).getSubtree(prefix);
+            for(Map.Entry<String, Object> entry : subtree.entrySet()) {
+                String path = entry.getKey();
+                if(path.length() <= prefix.length() || entry.getValue() == null) {
+                    continue;
+                }
+                String relPath = (path.charAt(prefix.length()) == '.')
+                        ? path.substring(prefix.length() + 1) : path.substring(prefix.length());
+                if(!section.containsKey(relPath)) {
+                    section.put(relPath, entry.getValue());
+                }
+            }
+        }
+        return section.isEmpty() ? null : Collections.unmodifiableMap(section);
+    }
+
+/**
+ * Only values that cannot be modified are memoized, since a memoized value is
+ * injected into every component that refers to its path. Values of other
+ * types, like arrays, collections and <tt>Properties</tt>, are retrieved (and
+ * thus created) again for each injection. A miss can always be memoized.
+ */
+
+    private static boolean isMemoizable(Class<?> type, Object value) {
+        return value == MISSING || type.isPrimitive() || type.isEnum() || IMMUTABLE_TYPES.contains(type);
+    }
+
+/**
+ * Checks whether a resolution for the path and type depends on any of the
+ * changed paths. A section, that is a resolution of type <tt>Map</tt>, depends
+ * on all paths nested under it.
+ */
+
+    private static boolean isAffected(String path, Class<?> type, Set<String> changed) {
+        if(changed.contains(path)) {
+            return true;
+        }
+        if(type != Map.class) {
+            return false;
+        }
+        for(String changedPath : changed) {
+            if(changedPath.length() > path.length() && changedPath.startsWith(path)) {
+                char ch = changedPath.charAt(path.length());
+                if(ch == '.' || ch == '[') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    private static class ResolutionKey {
+
+        private String   path;
+        private Class<?> type;
+
+        ResolutionKey(String path, Class<?> type) {
+            this.path = path;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + type.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof ResolutionKey)) {
+                return false;
+            }
+            ResolutionKey other = (ResolutionKey) obj;
+            return path.equals(other.path) && type == other.type;
+        }
+    }
+
+    private class ChangeHandler implements ConfigurationChangeListener {
+
+        @Override
+        public void configurationChanged(ConfigurationProvider source, Set<String> paths) {
+            LOGGER.debug("configuration changed in {}", source.getClass().getName());
+            invalidate(paths);
+            reinject(paths);
+            refreshSections(paths);
+        }
+    }
 }
@@ -0,0 +1,610 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.polyguice.core.DataSize;
+import com.flipkart.polyguice.core.Rate;
+import com.flipkart.polyguice.core.TimeSpan;
+import com.flipkart.polyguice.core.ValueConverter;
+
+/**
+ * Converts configuration values to the types of the members they are injected
+ * into. The converter for a target type is selected once and cached, so that a
+ * conversion is a map lookup followed by the conversion itself. All
+ * configuration providers use the {@link #getDefault() default} registry, which
+ * gives the same coercion rules whatever the source of a value.
+ * <p>
+ *
+ * The choice of converter depends only on the target type, so the cache is
+ * keyed by type rather than by configuration path and type; every path read as
+ * the same type shares one entry. Converted values are cached per path and
+ * type by the callers that can do so safely: the frozen view of the Commons
+ * Configuration provider, and the memoization of immutable values when
+ * configuration is injected.
+ * <p>
+ *
+ * Converters are provided for primitives and their wrappers, strings, big
+ * numbers, enums (by name, ignoring case if there is no exact match),
+ * <tt>java.time.Duration</tt> where available, {@link TimeSpan},
+ * {@link DataSize}, {@link Rate},
+ * <tt>Properties</tt>, string arrays, lists and maps. Any other type with a
+ * public static <tt>valueOf(String)</tt> method or a public constructor taking
+ * a string is converted from the string form of the value. Converters for
+ * further types, or replacing any of the above, can be registered.
+ * <p>
+ *
+ * A value that is already an instance of the target type is returned as is. If
+ * the source value is a list or an array and the target type is a scalar, the
+ * first element is converted.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ConverterRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConverterRegistry.class);
+
+    private static final ConverterRegistry DEFAULT = new ConverterRegistry();
+
+    private static final String DURATION_TYPE      = "java.time.Duration";
+    private static final String DURATION_CONVERTER = "com.flipkart.polyguice.core.support.DurationConverter";
+
+    private ConcurrentMap<Class<?>, ValueConverter<?>> registered;
+    private ConcurrentMap<Class<?>, ValueConverter<?>> resolved;
+
+    public ConverterRegistry() {
+        registered = new ConcurrentHashMap<>();
+        resolved = new ConcurrentHashMap<>();
+        registerDefaults();
+    }
+
+/**
+ * @return	the registry shared by all configuration providers.
+ */
+
+    public static ConverterRegistry getDefault() {
+        return DEFAULT;
+    }
+
+/**
+ * Registers a converter for the specified type, replacing any existing one.
+ * <p>
+ *
+ * @param	type the target type.
+ * @param	converter the converter to the type.
+ */
+
+    public <T> void register(Class<T> type, ValueConverter<? extends T> converter) {
+        registered.put(type, converter);
+        resolved.clear();
+        LOGGER.debug("registered value converter for {}", type.getName());
+    }
+
+/**
+ * Retrieves the converter for the specified type. The converter is selected on
+ * first use and cached.
+ * <p>
+ *
+ * @param	type the target type.
+ * @return	the converter to the type.
+ */
+
+    public ValueConverter<?> getConverter(Class<?> type) {
+        ValueConverter<?> converter = resolved.get(type);
+        if(converter == null) {
+            converter = selectConverter(type);
+            ValueConverter<?> existing = resolved.putIfAbsent(type, converter);
+            if(existing != null) {
+                converter = existing;
+            }
+        }
+        return converter;
+    }
+
+/**
+ * Converts the value to the specified type.
+ * <p>
+ *
+ * @param	value the value to convert.
+ * @param	type the target type.
+ * @return	the converted value, or <tt>null</tt> if the value is <tt>null</tt>
+ *          or cannot be converted.
+ */
+
+    public Object convert(Object value, Class<?> type) {
+        if(value == null) {
+            return null;
+        }
+        try {
+            return getConverter(type).convert(value);
+        }
+        catch(RuntimeException exep) {
+            LOGGER.debug("unable to convert {} to {}: {}", value, type.getName(), exep.toString());
+            return null;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private void registerDefaults() {
+        registered.put(String.class, new StringConverter());
+        registered.put(Boolean.class, new BooleanConverter());
+        registered.put(Character.class, new CharacterConverter());
+        registered.put(Byte.class, new NumberConverter(Byte.class));
+        registered.put(Short.class, new NumberConverter(Short.class));
+        registered.put(Integer.class, new NumberConverter(Integer.class));
+        registered.put(Long.class, new NumberConverter(Long.class));
+        registered.put(Float.class, new NumberConverter(Float.class));
+        registered.put(Double.class, new NumberConverter(Double.class));
+        registered.put(BigInteger.class, new NumberConverter(BigInteger.class));
+        registered.put(BigDecimal.class, new NumberConverter(BigDecimal.class));
+        registered.put(TimeSpan.class, new TimeSpanConverter());
+        registered.put(DataSize.class, new DataSizeConverter());
+        registered.put(Rate.class, new RateConverter());
+        registered.put(String[].class, new StringArrayConverter());
+        registered.put(List.class, new ListConverter());
+        registered.put(Collection.class, new ListConverter());
+        registered.put(Map.class, new MapConverter());
+        registered.put(Properties.class, new PropertiesConverter());
+        try {
+            Class<?> durationType = Class.forName(DURATION_TYPE);
+            registered.put(durationType, (ValueConverter<?>) Class.forName(DURATION_CONVERTER).newInstance());
+        }
+        catch(ReflectiveOperationException | LinkageError exep) {
+            LOGGER.debug("{} not available, no converter registered", DURATION_TYPE);
+        }
+    }
+
+    private ValueConverter<?> selectConverter(Class<?> type) {
+        Class<?> target = MethodType.methodType(type).wrap().returnType();
+        ValueConverter<?> converter = registered.get(target);
+        if(converter != null) {
+            return converter;
+        }
+        if(target.isEnum()) {
+            return new EnumConverter(target);
+        }
+        MethodHandle factory = findStringFactory(target);
+        if(factory != null) {
+            return new StringFactoryConverter(target, factory);
+        }
+        return new InstanceConverter(target);
+    }
+
+    private static MethodHandle findStringFactory(Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodType factoryType = MethodType.methodType(Object.class, String.class);
+        try {
+            return lookup.findStatic(type, "valueOf", MethodType.methodType(type, String.class)).asType(factoryType);
+        }
+        catch(NoSuchMethodException | IllegalAccessException exep) {
+            //NOOP, try a constructor
+        }
+        if(Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        try {
+            return lookup.findConstructor(type, MethodType.methodType(Void.TYPE, String.class)).asType(factoryType);
+        }
+        catch(NoSuchMethodException | IllegalAccessException exep) {
+            return null;
+        }
+    }
+
+/**
+ * @return	the first element if the value is a list or array, the value itself
+ *          otherwise.
+ */
+
+    static Object scalar(Object value) {
+        if(value instanceof List) {
+            List<?> list = (List<?>) value;
+            return list.isEmpty() ? null : list.get(0);
+        }
+        if(value.getClass().isArray()) {
+            return (Array.getLength(value) > 0) ? Array.get(value, 0) : null;
+        }
+        return value;
+    }
+
+    private static List<Object> toList(Object value) {
+        List<Object> list = new ArrayList<>();
+        if(value instanceof Collection) {
+            list.addAll((Collection<?>) value);
+        }
+        else if(value.getClass().isArray()) {
+            for(int i = 0; i < Array.getLength(value); i++) {
+                list.add(Array.get(value, i));
+            }
+        }
+        else {
+            list.add(value);
+        }
+        return list;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    private static class InstanceConverter implements ValueConverter<Object> {
+
+        private Class<?> type;
+
+        InstanceConverter(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public Object convert(Object value) {
+            return type.isInstance(value) ? value : null;
+        }
+    }
+
+    private static class StringConverter implements ValueConverter<String> {
+
+        @Override
+        public String convert(Object value) {
+            Object scalar = scalar(value);
+            return (scalar != null) ? scalar.toString() : null;
+        }
+    }
+
+    private static class BooleanConverter implements ValueConverter<Boolean> {
+
+        @Override
+        public Boolean convert(Object value) {
+            Object scalar = scalar(value);
+            if(scalar == null || scalar instanceof Boolean) {
+                return (Boolean) scalar;
+            }
+            switch(scalar.toString().trim().toLowerCase(Locale.ENGLISH)) {
+            case "true":
+            case "yes":
+            case "on":
+            case "y":
+            case "t":
+                return Boolean.TRUE;
+            case "false":
+            case "no":
+            case "off":
+            case "n":
+            case "f":
+                return Boolean.FALSE;
+            default:
+                return null;
+            }
+        }
+    }
+
+    private static class CharacterConverter implements ValueConverter<Character> {
+
+        @Override
+        public Character convert(Object value) {
+            Object scalar = scalar(value);
+            if(scalar == null || scalar instanceof Character) {
+                return (Character) scalar;
+            }
+            String text = scalar.toString();
+            return (text.length() == 1) ? text.charAt(0) : null;
+        }
+    }
+
+/**
+ * Converts numbers by narrowing or widening, and strings by parsing. Strings
+ * may be in decimal, or in hexadecimal with a <tt>0x</tt> prefix. A value is
+ * converted to an integral type only if it is a whole number within the range
+ * of the type, so that <tt>3.7</tt> is not converted to an int, nor <tt>300</tt>
+ * to a byte. Conversions to <tt>float</tt> and <tt>double</tt> may round.
+ */
+
+    private static class NumberConverter implements ValueConverter<Number> {
+
+        private Class<?> type;
+
+        NumberConverter(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public Number convert(Object value) {
+            Object scalar = scalar(value);
+            if(scalar == null || type.isInstance(scalar)) {
+                return (Number) scalar;
+            }
+            if(scalar instanceof Number) {
+                return narrow((Number) scalar);
+            }
+            return narrow(parse(scalar.toString().trim()));
+        }
+
+        private Number parse(String text) {
+            boolean negative = text.startsWith("-");
+            String digits = (negative || text.startsWith("+")) ? text.substring(1) : text;
+            if(digits.startsWith("0x") || digits.startsWith("0X")) {
+                BigInteger number = new BigInteger(digits.substring(2), 16);
+                return negative ? number.negate() : number;
+            }
+            if(type == Float.class || type == Double.class || type == BigDecimal.class
+                    || text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+                return new BigDecimal(text);
+            }
+            return new BigInteger(text);
+        }
+
+/**
+ * @return	the number in the target type, or <tt>null</tt> if it cannot be
+ *          represented exactly in an integral target type.
+ */
+
+        private Number narrow(Number number) {
+            if(type == Float.class) {
+                return number.floatValue();
+            }
+            else if(type == Double.class) {
+                return number.doubleValue();
+            }
+            long whole;
+            try {
+                if(type == BigDecimal.class) {
+                    return toBigDecimal(number);
+                }
+                else if(type == BigInteger.class) {
+                    return toBigDecimal(number).toBigIntegerExact();
+                }
+                if(number instanceof Long || number instanceof Integer
+                        || number instanceof Short || number instanceof Byte) {
+                    whole = number.longValue();
+                }
+                else {
+                    whole = toBigDecimal(number).longValueExact();
+                }
+            }
+            catch(ArithmeticException | NumberFormatException exep) {
+                return null;
+            }
+            if(type == Byte.class) {
+                return (whole == (byte) whole) ? Byte.valueOf((byte) whole) : null;
+            }
+            else if(type == Short.class) {
+                return (whole == (short) whole) ? Short.valueOf((short) whole) : null;
+            }
+            else if(type == Integer.class) {
+                return (whole == (int) whole) ? Integer.valueOf((int) whole) : null;
+            }
+            return whole;
+        }
+
+        private static BigDecimal toBigDecimal(Number number) {
+            if(number instanceof BigDecimal) {
+                return (BigDecimal) number;
+            }
+            else if(number instanceof BigInteger) {
+                return new BigDecimal((BigInteger) number);
+            }
+            else if(number instanceof Double || number instanceof Float) {
+                return BigDecimal.valueOf(number.doubleValue());
+            }
+            return BigDecimal.valueOf(number.longValue());
+        }
+    }
+
+    private static class EnumConverter implements ValueConverter<Object> {
+
+        private Object[] constants;
+
+        EnumConverter(Class<?> type) {
+            constants = type.getEnumConstants();
+        }
+
+        @Override
+        public Object convert(Object value) {
+            Object scalar = scalar(value);
+            if(scalar == null) {
+                return null;
+            }
+            String name = scalar.toString().trim();
+            for(Object constant : constants) {
+                if(((Enum<?>) constant).name().equals(name)) {
+                    return constant;
+                }
+            }
+            for(Object constant : constants) {
+                if(((Enum<?>) constant).name().equalsIgnoreCase(name)) {
+                    return constant;
+                }
+            }
+            return null;
+        }
+    }
+
+/**
+ * Converts numbers of milliseconds, and strings parsed as time spans.
+ */
+
+    private static class TimeSpanConverter implements ValueConverter<TimeSpan> {
+
+        @Override
+        public TimeSpan convert(Object value) {
+            Object scalar = scalar(value);
+            if(scalar == null || scalar instanceof TimeSpan) {
+                return (TimeSpan) scalar;
+            }
+            if(scalar instanceof Number) {
+                return TimeSpan.ofMillis(((Number) scalar).longValue());
+            }
+            return TimeSpan.tryParse(scalar.toString());
+        }
+    }
+
+/**
+ * Converts numbers of bytes, and strings parsed as data sizes.
+ */
+
+    private static class DataSizeConverter implements ValueConverter<DataSize> {
+
+        @Override
+        public DataSize convert(Object value) {
+            Object scalar = scalar(value);
+            if(scalar == null || scalar instanceof DataSize) {
+                return (DataSize) scalar;
+            }
+            if(scalar instanceof Number) {
+                return DataSize.ofBytes(((Number) scalar).longValue());
+            }
+            return DataSize.tryParse(scalar.toString());
+        }
+    }
+
+/**
+ * Converts numbers of events per second, and strings parsed as rates.
+ */
+
+    private static class RateConverter implements ValueConverter<Rate> {
+
+        @Override
+        public Rate convert(Object value) {
+            Object scalar = scalar(value);
+            if(scalar == null || scalar instanceof Rate) {
+                return (Rate) scalar;
+            }
+            if(scalar instanceof Number) {
+                return Rate.of(((Number) scalar).doubleValue(), TimeUnit.SECONDS);
+            }
+            return Rate.tryParse(scalar.toString());
+        }
+    }
+
+    private static class StringArrayConverter implements ValueConverter<String[]> {
+
+        @Override
+        public String[] convert(Object value) {
+            List<Object> list = toList(value);
+            String[] result = new String[list.size()];
+            for(int i = 0; i < result.length; i++) {
+                result[i] = String.valueOf(list.get(i));
+            }
+            return result;
+        }
+    }
+
+    private static class ListConverter implements ValueConverter<List<Object>> {
+
+        @Override
+        public List<Object> convert(Object value) {
+            return Collections.unmodifiableList(toList(value));
+        }
+    }
+
+    private static class MapConverter implements ValueConverter<Map<Object, Object>> {
+
+        @Override
+        public Map<Object, Object> convert(Object value) {
+            if(!(value instanceof Map)) {
+                return null;
+            }
+            return Collections.unmodifiableMap(new LinkedHashMap<Object, Object>((Map<?, ?>) value));
+        }
+    }
+
+/**
+ * Converts maps, and lists of <tt>key=value</tt> strings as Commons
+ * Configuration does.
+ */
+
+    private static class PropertiesConverter implements ValueConverter<Properties> {
+
+        @Override
+        public Properties convert(Object value) {
+            Properties props = new Properties();
+            if(value instanceof Map) {
+                for(Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    props.setProperty(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+                }
+                return props;
+            }
+            for(Object item : toList(value)) {
+                String text = String.valueOf(item);
+                int index = text.indexOf('=');
+                if(index < 0) {
+                    return null;
+                }
+                props.setProperty(text.substring(0, index).trim(), text.substring(index + 1).trim());
+            }
+            return props;
+        }
+    }
+
+/**
+ * Converts the string form of the value through a <tt>valueOf(String)</tt>
+ * method or a constructor taking a string.
+ */
+
+    private static class StringFactoryConverter implements ValueConverter<Object> {
+
+        private Class<?>     type;
+        private MethodHandle factory;
+
+        StringFactoryConverter(Class<?> type, MethodHandle factory) {
+            this.type = type;
+            this.factory = factory;
+        }
+
+        @Override
+        public Object convert(Object value) {
+            if(type.isInstance(value)) {
+                return value;
+            }
+            Object scalar = scalar(value);
+            if(scalar == null) {
+                return null;
+            }
+            try {
+                return (Object) factory.invokeExact(scalar.toString());
+            }
+            catch(RuntimeException | Error exep) {
+                throw exep;
+            }
+            catch(Throwable exep) {
+                throw new RuntimeException(exep);
+            }
+        }
+    }
+}
@@ -18,11 +18,12 @@ package com.flipkart.polyguice.core.support;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.flipkart.polyguice.core.ComponentContext;
+import com.flipkart.polyguice.core.StartupAwareComponentContext;
 import com.google.inject.Binding;
 import com.google.inject.Injector;
 import com.google.inject.Key;
@@ -34,14 +35,16 @@ import com.google.inject.name.Names;
  *
  */
 
-class DefaultComponentContext implements ComponentContext {
+class DefaultComponentContext implements StartupAwareComponentContext {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultComponentContext.class);
 
-    private Injector injector;
+    private Injector         injector;
+    private ReadinessTracker readiness;
 
-    DefaultComponentContext(Injector injector) {
+    DefaultComponentContext(Injector injector, ReadinessTracker readiness) {
         this.injector = injector;
+        this.readiness = readiness;
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -95,4 +98,17 @@ class DefaultComponentContext implements ComponentContext {
     public void inject(Object target) {
         injector.injectMembers(target);
     }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface StartupAwareComponentContext
+
+    @Override
+    public boolean isReady() {
+        return readiness.isReady();
+    }
+
+    @Override
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return readiness.await(timeout, unit);
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.time.Duration;
+
+import com.flipkart.polyguice.core.TimeSpan;
+import com.flipkart.polyguice.core.ValueConverter;
+
+/**
+ * Converts numbers of milliseconds, ISO-8601 durations such as <tt>PT1M30S</tt>,
+ * {@link TimeSpan time spans}, and strings in the form of a time span such as
+ * <tt>250ms</tt> or <tt>1h30m</tt> to <tt>java.time.Duration</tt>.
+ * <p>
+ *
+ * This class is loaded by the {@link ConverterRegistry} only when the
+ * <tt>java.time</tt> package is available at runtime.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class DurationConverter implements ValueConverter<Duration> {
+
+    @Override
+    public Duration convert(Object value) {
+        Object scalar = ConverterRegistry.scalar(value);
+        if(scalar == null || scalar instanceof Duration) {
+            return (Duration) scalar;
+        }
+        if(scalar instanceof TimeSpan) {
+            return ((TimeSpan) scalar).toDuration();
+        }
+        if(scalar instanceof Number) {
+            return Duration.ofMillis(((Number) scalar).longValue());
+        }
+        String text = scalar.toString().trim();
+        if(text.isEmpty()) {
+            return null;
+        }
+        char first = Character.toUpperCase(text.charAt(0));
+        if(first == 'P' || ((first == '-' || first == '+') && text.length() > 1
+                && Character.toUpperCase(text.charAt(1)) == 'P')) {
+            return Duration.parse(text);
+        }
+        TimeSpan span = TimeSpan.tryParse(text);
+        return (span != null) ? span.toDuration() : null;
+    }
+}
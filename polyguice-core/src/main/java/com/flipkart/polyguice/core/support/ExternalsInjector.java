@@ -16,11 +16,10 @@
 
 package com.flipkart.polyguice.core.support;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,10 +35,12 @@ class ExternalsInjector {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ExternalsInjector.class);
 
-    private Map<String, Object> externals;
+    private Map<String, Object>                    externals;
+    private ConcurrentMap<Class<?>, InjectionPlan> plans;
 
     ExternalsInjector() {
         externals = new HashMap<>();
+        plans = new ConcurrentHashMap<>();
     }
 
     public void register(String name, Object value) {
@@ -48,122 +49,72 @@ class ExternalsInjector {
     }
 
     public void injectComponent(Object target) {
-        Field[] fields = target.getClass().getDeclaredFields();
-        for(Field field : fields) {
-            if(!injectField(target, field)) {
-                throw new RuntimeException("external injection failed on field "
-                        + target.getClass().getName() + "#" + field.getName());
-            }
-        }
-        Method[] methods = target.getClass().getMethods();
-        for(Method method : methods) {
-            if(!injectMethod(target, method)) {
-                throw new RuntimeException("external injection failed on method "
-                        + target.getClass().getName() + "#" + method.getName());
+        InjectionPlan plan = getPlan(target.getClass());
+        for(InjectionPlan.Member member : plan.getMembers()) {
+            if(!injectMember(target, member)) {
+                throw new RuntimeException("external injection failed on "
+                        + (member.isField() ? "field " : "method ")
+                        + target.getClass().getName() + "#" + member.getName());
             }
         }
     }
 
-    ////////////////////////////////////////////////////////////////////////////
-    // Helper methods
-
-    private boolean injectField(Object target, Field field) {
-        External ann = field.getAnnotation(External.class);
-        if(ann == null) {
-            return true;
-        }
-        LOGGER.debug("field {}#{} has {}", field.getDeclaringClass().getName(), field.getName(), ann.toString());
-        boolean required = ann.required();
-        String extName = ann.name();
-        if(extName == null || extName.trim().length() == 0) {
-            extName = ann.value();
-            if(extName == null || extName.trim().length() == 0) {
-                LOGGER.warn("InjectExternal on: {} does not have a name", field.getName());
-                return !required; //return true only if not required.
-            }
-        }
+/**
+ * Checks whether instances of the given type have any members to inject.
+ * <p>
+ *
+ * @param	cls the type to check.
+ * @return	<tt>true</tt> if the type has annotated members.
+ */
 
-        Object value = externals.get(extName);
-        if(value == null) {
-            LOGGER.warn("external variable: {} not found", extName);
-            return !required; //return true only if not required.
-        }
+    public boolean hasInjections(Class<?> cls) {
+        return !getPlan(cls).isEmpty();
+    }
 
-        if(!field.getType().isAssignableFrom(value.getClass())) {
-            LOGGER.warn("external variable: {} type mismatch", extName);
-            return !required; //return true only if not required.
-        }
+/**
+ * @return	the injection plan of the class, built on first use and shared
+ *          afterwards.
+ */
 
-        try {
-            boolean accessible = field.isAccessible();
-            if(!accessible) {
-                field.setAccessible(true);
+    InjectionPlan getPlan(Class<?> cls) {
+        InjectionPlan plan = plans.get(cls);
+        if(plan == null) {
+            plan = InjectionPlan.build(cls, External.class);
+            InjectionPlan existing = plans.putIfAbsent(cls, plan);
+            if(existing != null) {
+                plan = existing;
             }
-            field.set(target, value);
-            if(!accessible) {
-                field.setAccessible(false);
-            }
-        }
-        catch(Exception exep) {
-            LOGGER.warn("global variable: {} error injecting", extName);
-            return !required; //return true only if not required.
         }
-        return true;
+        return plan;
     }
 
-    private boolean injectMethod(Object target, Method method) {
-        External ann = method.getAnnotation(External.class);
-        if(ann == null) {
-            return true;
-        }
-        LOGGER.debug("method {}#{} has {}", method.getDeclaringClass().getName(), method.getName(), ann.toString());
-        boolean required = ann.required();
-        String extName = ann.name();
-        if(extName == null || extName.trim().length() == 0) {
-            extName = ann.value();
-            if(extName == null || extName.trim().length() == 0) {
-                return !required; //return true only if not required.
-            }
-        }
-        Object value = externals.get(extName);
-        if(value == null) {
-            LOGGER.warn("external variable: {} not found", extName);
-            return !required; //return true only if not required.
-        }
-
-        int mod = method.getModifiers();
-        if(Modifier.isAbstract(mod) || !Modifier.isPublic(mod)) {
-            LOGGER.warn("method {}#{} must be public and not abstract",
-                    method.getDeclaringClass().getName(), method.getName());
-            return !required; //return true only if not required.
-        }
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
 
-        if(method.getReturnType() != Void.TYPE) {
-            LOGGER.warn("method {}#{} must not have a return type",
-                    method.getDeclaringClass().getName(), method.getName());
-            return !required; //return true only if not required.
+    private boolean injectMember(Object target, InjectionPlan.Member member) {
+        if(!member.isInjectable()) {
+            return !member.isRequired(); //return true only if not required.
         }
 
-        Class<?>[] paramTypes = method.getParameterTypes();
-        if(paramTypes.length != 1) {
-            LOGGER.warn("method {}#{} must have exactly one parameter",
-                    method.getDeclaringClass().getName(), method.getName());
-            return !required; //return true only if not required.
+        Object value = externals.get(member.getKey());
+        if(value == null) {
+            LOGGER.warn("external variable: {} not found", member.getKey());
+            return !member.isRequired(); //return true only if not required.
         }
 
-        if(!paramTypes[0].isAssignableFrom(value.getClass())) {
-            LOGGER.warn("method {}#{} type mismtach with global variable {}",
-                    method.getDeclaringClass().getName(), method.getName(), extName);
-            return !required; //return true only if not required.
+        if(!member.getType().isAssignableFrom(value.getClass())) {
+            LOGGER.warn("external variable: {} type mismatch on {}#{}",
+                    member.getKey(), member.getDeclaringClassName(), member.getName());
+            return !member.isRequired(); //return true only if not required.
         }
 
         try {
-            method.invoke(target, value);
+            member.inject(target, value);
         }
         catch(Exception exep) {
-            LOGGER.warn("method {}#{} error injecting",
-                    method.getDeclaringClass().getName(), method.getName());
-            return !required; //return true only if not required.
+            LOGGER.warn("external variable: {} error injecting on {}#{}",
+                    member.getKey(), member.getDeclaringClassName(), member.getName());
+            return !member.isRequired(); //return true only if not required.
         }
         return true;
     }
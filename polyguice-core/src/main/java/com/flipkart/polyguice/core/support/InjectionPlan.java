@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.polyguice.core.Configuration;
+import com.flipkart.polyguice.core.External;
+import com.flipkart.polyguice.core.Reloadable;
+
+/**
+ * Immutable list of the members of a class that carry an injection annotation
+ * (either {@link Configuration} or {@link External}), along with the key and
+ * the target type for each. A plan is built once per class; injecting a
+ * component then only walks the plan, without any reflective lookups.
+ * <p>
+ *
+ * Each member is written through a method handle, adapted once to the generic
+ * <tt>(Object, Object)void</tt> shape so that it can be invoked exactly. Static
+ * members ignore the target, as they do with reflective access.
+ * <p>
+ *
+ * As with the original per-instance lookups, only fields declared by the class
+ * itself and public methods (including inherited ones) are considered. Members
+ * that can never be injected, like methods with the wrong signature, are
+ * reported once when the plan is built.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class InjectionPlan {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InjectionPlan.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(Void.TYPE, Object.class, Object.class);
+
+    private List<Member> members;
+    private boolean      reloadable;
+
+    private InjectionPlan(List<Member> members, boolean reloadable) {
+        this.members = Collections.unmodifiableList(members);
+        this.reloadable = reloadable;
+    }
+
+    public static InjectionPlan build(Class<?> cls, Class<? extends Annotation> annType) {
+        List<Member> members = new ArrayList<>();
+        for(Field field : cls.getDeclaredFields()) {
+            Annotation ann = field.getAnnotation(annType);
+            if(ann != null) {
+                LOGGER.debug("field {}#{} has {}", field.getDeclaringClass().getName(), field.getName(), ann.toString());
+                members.add(forField(field, ann));
+            }
+        }
+        for(Method method : cls.getMethods()) {
+            Annotation ann = method.getAnnotation(annType);
+            if(ann != null) {
+                LOGGER.debug("method {}#{} has {}", method.getDeclaringClass().getName(), method.getName(), ann.toString());
+                members.add(forMethod(method, ann));
+            }
+        }
+        return new InjectionPlan(members, cls.isAnnotationPresent(Reloadable.class));
+    }
+
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+/**
+ * @return	<tt>true</tt> if the class is marked {@link Reloadable}.
+ */
+
+    public boolean isReloadable() {
+        return reloadable;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static Member forField(Field field, Annotation ann) {
+        String key = keyOf(ann);
+        boolean required = isRequired(ann);
+        if(key == null) {
+            LOGGER.warn("@{} on: {}#{} does not have a name", ann.annotationType().getSimpleName(),
+                    field.getDeclaringClass().getName(), field.getName());
+            return new Member(field, null, null, null, required, null);
+        }
+        try {
+            field.setAccessible(true);
+            MethodHandle setter = toSetter(MethodHandles.lookup().unreflectSetter(field), field.getModifiers());
+            return new Member(field, null, key, field.getType(), required, setter);
+        }
+        catch(SecurityException | IllegalAccessException | WrongMethodTypeException exep) {
+            LOGGER.warn("field {}#{} cannot be made accessible",
+                    field.getDeclaringClass().getName(), field.getName());
+            return new Member(field, null, key, field.getType(), required, null);
+        }
+    }
+
+    private static Member forMethod(Method method, Annotation ann) {
+        String key = keyOf(ann);
+        boolean required = isRequired(ann);
+        if(key == null) {
+            if(ann instanceof Configuration) {
+                LOGGER.warn("@Configuration on: {}#{} does not have a name",
+                        method.getDeclaringClass().getName(), method.getName());
+            }
+            return new Member(null, method, null, null, required, null);
+        }
+
+        int mod = method.getModifiers();
+        if(Modifier.isAbstract(mod) || !Modifier.isPublic(mod)) {
+            LOGGER.warn("method {}#{} must be public and not abstract",
+                    method.getDeclaringClass().getName(), method.getName());
+            return new Member(null, method, key, null, required, null);
+        }
+
+        if(method.getReturnType() != Void.TYPE) {
+            LOGGER.warn("method {}#{} must not have a return type",
+                    method.getDeclaringClass().getName(), method.getName());
+            return new Member(null, method, key, null, required, null);
+        }
+
+        Class<?>[] paramTypes = method.getParameterTypes();
+        if(paramTypes.length != 1) {
+            LOGGER.warn("method {}#{} must have exactly one parameter",
+                    method.getDeclaringClass().getName(), method.getName());
+            return new Member(null, method, key, null, required, null);
+        }
+        try {
+            method.setAccessible(true);
+            MethodHandle setter = toSetter(MethodHandles.lookup().unreflect(method), mod);
+            return new Member(null, method, key, paramTypes[0], required, setter);
+        }
+        catch(SecurityException | IllegalAccessException | WrongMethodTypeException exep) {
+            LOGGER.warn("method {}#{} cannot be made accessible",
+                    method.getDeclaringClass().getName(), method.getName());
+            return new Member(null, method, key, paramTypes[0], required, null);
+        }
+    }
+
+/**
+ * Adapts the handle of a field or method to the generic setter shape. The
+ * handle of a static member takes no target, so a target argument is added
+ * and ignored, as it is with reflective access.
+ */
+
+    private static MethodHandle toSetter(MethodHandle handle, int mod) {
+        if(Modifier.isStatic(mod)) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return handle.asType(SETTER_TYPE);
+    }
+
+    private static String keyOf(Annotation ann) {
+        String name;
+        String value;
+        if(ann instanceof Configuration) {
+            name = ((Configuration) ann).name();
+            value = ((Configuration) ann).value();
+        }
+        else {
+            name = ((External) ann).name();
+            value = ((External) ann).value();
+        }
+        if(name != null && name.trim().length() > 0) {
+            return name;
+        }
+        if(value != null && value.trim().length() > 0) {
+            return value;
+        }
+        return null;
+    }
+
+    private static boolean isRequired(Annotation ann) {
+        if(ann instanceof Configuration) {
+            return ((Configuration) ann).required();
+        }
+        return ((External) ann).required();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+/**
+ * A single annotated field or method. A member is not injectable if it has no
+ * key, or if it is a method without a valid setter signature; such a member
+ * fails injection only if it is required.
+ */
+
+    static class Member {
+
+        private Field        field;
+        private Method       method;
+        private String       key;
+        private Class<?>     type;
+        private boolean      required;
+        private MethodHandle setter;
+        private Class<?>     boxedType;
+
+        Member(Field field, Method method, String key, Class<?> type, boolean required, MethodHandle setter) {
+            this.field = field;
+            this.method = method;
+            this.key = key;
+            this.type = type;
+            this.required = required;
+            this.setter = setter;
+            if(type != null) {
+                boxedType = MethodType.methodType(type).wrap().returnType();
+            }
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        public boolean isInjectable() {
+            return setter != null;
+        }
+
+        public boolean isField() {
+            return field != null;
+        }
+
+        public String getName() {
+            return (field != null) ? field.getName() : method.getName();
+        }
+
+        public String getDeclaringClassName() {
+            return (field != null) ? field.getDeclaringClass().getName() : method.getDeclaringClass().getName();
+        }
+
+/**
+ * Writes the value to this member of the target. A value that is not of the
+ * exact type of the member, like a <tt>Long</tt> for an <tt>int</tt> member,
+ * is first converted through the default {@link ConverterRegistry}. Any
+ * exception thrown by a setter method, checked or not, is wrapped in an
+ * {@link InvocationTargetException}, as with reflective invocation.
+ * <p>
+ *
+ * @param	target the object to inject.
+ * @param	value the value to inject.
+ * @throws	IllegalArgumentException if the value cannot be converted to the
+ *          type of this member.
+ * @throws	InvocationTargetException if the setter method throws an exception.
+ */
+
+        public void inject(Object target, Object value) throws Exception {
+            Object arg = value;
+            if((value != null && !boxedType.isInstance(value)) || (value == null && type.isPrimitive())) {
+                arg = ConverterRegistry.getDefault().convert(value, type);
+                if(arg == null) {
+                    throw new IllegalArgumentException("cannot inject " + value + " into "
+                            + getDeclaringClassName() + "#" + getName() + " of type " + type.getName());
+                }
+            }
+            try {
+                setter.invokeExact(target, arg);
+            }
+            catch(Throwable exep) {
+                throw new InvocationTargetException(exep);
+            }
+        }
+    }
+}
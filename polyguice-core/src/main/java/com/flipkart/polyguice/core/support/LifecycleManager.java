@@ -16,23 +16,37 @@
 
 package com.flipkart.polyguice.core.support;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.flipkart.polyguice.core.AppliesTo;
+import com.flipkart.polyguice.core.Component;
 import com.flipkart.polyguice.core.ComponentContext;
 import com.flipkart.polyguice.core.ComponentContextAware;
 import com.flipkart.polyguice.core.ComponentProcessor;
 import com.flipkart.polyguice.core.Disposable;
 import com.flipkart.polyguice.core.InitMethod;
 import com.flipkart.polyguice.core.Initializable;
+import com.flipkart.polyguice.core.StartupMode;
 import com.google.inject.Binder;
 import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.spi.ConstructorBinding;
 import com.google.inject.spi.InjectionListener;
 import com.google.inject.spi.ProvisionListener;
 import com.google.inject.spi.TypeEncounter;
@@ -49,28 +63,54 @@ class LifecycleManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(LifecycleManager.class);
 
     private List<String>             procNames;
+    private List<Class<?>>           procTypes;
     private List<SingletonKey>       singletonKeys;
     private ComponentContext         compCtxt;
     private ExternalsInjector        externInject;
     private ConfigurationInjector    confInject;
     private List<ComponentProcessor> processors;
     private List<Disposable>         disposables;
+    private StartupProfiler          profiler;
+    private Provider<Injector>       injectorProvider;
+    private int                      preloadParallelism;
+    private ReadinessTracker         readiness;
+    private ExecutorService          background;
 
-    private boolean startupError;
+    private ConcurrentMap<Class<?>, TypeInfo> typeInfos;
+
+    private volatile boolean startupError;
 
     LifecycleManager(Binder binder) {
         binder.bindListener(new ProvisionMatcher(), new ProvisionHandler());
         binder.bindListener(new InjectionMatcher(), new InjectionTypeHandler());
         procNames = new ArrayList<>();
+        procTypes = new ArrayList<>();
+        typeInfos = new ConcurrentHashMap<>();
         singletonKeys = new ArrayList<>();
-        disposables = new ArrayList<>();
+        disposables = Collections.synchronizedList(new ArrayList<Disposable>());
         processors = new ArrayList<>();
+        injectorProvider = binder.getProvider(Injector.class);
+        preloadParallelism = 1;
+        readiness = new ReadinessTracker();
     }
 
     public void setProcessors(List<String> names) {
         procNames.addAll(names);
     }
 
+/**
+ * Sets the types of component processors, in the same order as the processor
+ * names. These are used to determine, once per type, whether a processor
+ * applies to components of that type.
+ * <p>
+ *
+ * @param	types the component processor types.
+ */
+
+    public void setProcessorTypes(List<Class<?>> types) {
+        procTypes.addAll(types);
+    }
+
     public void setSingletons(List<SingletonKey> keys) {
         singletonKeys.addAll(keys);
     }
@@ -87,6 +127,26 @@ class LifecycleManager {
         confInject = inject;
     }
 
+    public void setProfiler(StartupProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+/**
+ * Sets the number of threads used to preload singletons. With more than one
+ * thread, singletons are preloaded concurrently in dependency order.
+ * <p>
+ *
+ * @param	threads the maximum number of preload threads.
+ */
+
+    public void setPreloadParallelism(int threads) {
+        preloadParallelism = threads;
+    }
+
+    public ReadinessTracker getReadiness() {
+        return readiness;
+    }
+
     public boolean start() {
         LOGGER.debug("starting lifecycle operations");
         startupError = false;
@@ -103,21 +163,39 @@ class LifecycleManager {
             }
         }
 
+        List<SingletonKey> eagerKeys = new ArrayList<>();
+        List<SingletonKey> bgKeys = new ArrayList<>();
         for(SingletonKey key : singletonKeys) {
-            Object ston = key.loadComponent(compCtxt);
-            if(ston == null) {
-                LOGGER.error("failed to load singleton: {}", key);
-                return false;
+            if(key.getMode() == StartupMode.BACKGROUND) {
+                bgKeys.add(key);
             }
+            else if(key.getMode() != StartupMode.LAZY) {
+                eagerKeys.add(key);
+            }
+        }
+
+        Object[] stons = loadSingletons(eagerKeys);
+        if(stons == null || startupError) {
+            return false;
+        }
+        for(Object ston : stons) {
             if(ston instanceof Disposable) {
                 disposables.add((Disposable) ston);
             }
         }
-        return !startupError;
+        startBackground(bgKeys);
+        return true;
     }
 
     public void stop() {
-        for(Disposable disp : disposables) {
+        if(background != null) {
+            background.shutdownNow();
+        }
+        List<Disposable> targets;
+        synchronized(disposables) {
+            targets = new ArrayList<>(disposables);
+        }
+        for(Disposable disp : targets) {
             LOGGER.debug("disposing {}", disp.getClass().getName());
             try {
                 disp.dispose();
@@ -131,7 +209,90 @@ class LifecycleManager {
     ////////////////////////////////////////////////////////////////////////////
     // Helper methods
 
+    private Object[] loadSingletons(List<SingletonKey> keys) {
+        if(preloadParallelism > 1 && keys.size() > 1) {
+            LOGGER.debug("preloading {} singletons using {} threads", keys.size(), preloadParallelism);
+            SingletonPreloader preloader = new SingletonPreloader(injectorProvider.get(), compCtxt, preloadParallelism);
+            return preloader.preload(keys);
+        }
+
+        Object[] stons = new Object[keys.size()];
+        for(int i = 0; i < stons.length; i++) {
+            stons[i] = keys.get(i).loadComponent(compCtxt);
+            if(stons[i] == null) {
+                LOGGER.error("failed to load singleton: {}", keys.get(i));
+                return null;
+            }
+        }
+        return stons;
+    }
+
+    private void startBackground(final List<SingletonKey> keys) {
+        if(keys.isEmpty()) {
+            readiness.complete(true);
+            return;
+        }
+        LOGGER.debug("loading {} singletons in background", keys.size());
+        background = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "polyguice-background");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if(profiler != null) {
+            profiler.beginBackground();
+        }
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = false;
+                StartupProfiler.Mark mark = (profiler != null) ? profiler.start() : null;
+                try {
+                    success = (loadSingletons(keys) != null && !startupError);
+                }
+                catch(RuntimeException exep) {
+                    LOGGER.error("while loading background singletons", exep);
+                }
+                finally {
+                    if(profiler != null) {
+                        profiler.endPhase(StartupReport.PHASE_BACKGROUND, mark);
+                        profiler.endBackground();
+                    }
+                    readiness.complete(success);
+                }
+                if(success) {
+                    LOGGER.info("background singletons loaded: {}", keys.size());
+                }
+                else {
+                    LOGGER.error("failed to load background singletons");
+                }
+            }
+        });
+        background.shutdown();
+    }
+
+/**
+ * Singletons that are not preloaded eagerly are disposable only once created.
+ * These are tracked here as they are provisioned.
+ */
+
+    private void trackDeferred(Binding<?> binding, Object component) {
+        if(!(component instanceof Disposable) || !Scopes.isSingleton(binding)) {
+            return;
+        }
+        Component ann = component.getClass().getAnnotation(Component.class);
+        if(ann != null && ann.startup() != StartupMode.EAGER) {
+            disposables.add((Disposable) component);
+        }
+    }
+
     private void doAfterInjection(Object component) {
+        TypeInfo info = getTypeInfo(component.getClass());
+        if(!info.managed) {
+            return;
+        }
         if(component instanceof ComponentContextAware) {
             LOGGER.debug("component is context aware. Injecting context.");
             ((ComponentContextAware) component).setComponentContext(compCtxt);
@@ -143,41 +304,110 @@ class LifecycleManager {
         LOGGER.debug("injecting external objects on {}", component.getClass().getName());
         externInject.injectComponent(component);
 
-        for(ComponentProcessor proc : processors) {
+        for(ComponentProcessor proc : applicableProcessors(info)) {
             LOGGER.debug("component processor {} => after injection", proc.getClass().getName());
             proc.afterInjection(component);
         }
     }
 
     private void doInitialization(Object component) {
+        TypeInfo info = getTypeInfo(component.getClass());
+        if(!info.managed) {
+            return;
+        }
         if(component instanceof Initializable) {
-            for(ComponentProcessor proc : processors) {
+            List<ComponentProcessor> procs = applicableProcessors(info);
+            for(ComponentProcessor proc : procs) {
                 proc.beforeInitialization(component);
             }
+            StartupProfiler.Mark mark = startMark();
             ((Initializable) component).initialize();
-            for(ComponentProcessor proc : processors) {
+            endMark(component, mark);
+            for(ComponentProcessor proc : procs) {
                 proc.afterInitialization(component);
             }
         }
         else {
-            Method initMthd = findInitMethod(component.getClass());
+            Method initMthd = info.initMethod;
             if(initMthd != null) {
-                for(ComponentProcessor proc : processors) {
+                List<ComponentProcessor> procs = applicableProcessors(info);
+                for(ComponentProcessor proc : procs) {
                     proc.beforeInitialization(component);
                 }
                 try {
+                    StartupProfiler.Mark mark = startMark();
                     initMthd.invoke(component, new Object[]{});
+                    endMark(component, mark);
                 }
                 catch (Exception exep) {
                     throw new RuntimeException("error executing init method", exep);
                 }
-                for(ComponentProcessor proc : processors) {
+                for(ComponentProcessor proc : procs) {
                     proc.afterInitialization(component);
                 }
             }
         }
     }
 
+/**
+ * Retrieves the lifecycle information for the given type, analysing the type
+ * on first use.
+ */
+
+    private TypeInfo getTypeInfo(Class<?> cls) {
+        TypeInfo info = typeInfos.get(cls);
+        if(info == null) {
+            info = new TypeInfo(cls);
+            TypeInfo existing = typeInfos.putIfAbsent(cls, info);
+            if(existing != null) {
+                info = existing;
+            }
+            if(info.managed) {
+                LOGGER.debug("lifecycle managed type: {}", cls.getName());
+            }
+        }
+        return info;
+    }
+
+    private List<ComponentProcessor> applicableProcessors(TypeInfo info) {
+        int count = Math.min(processors.size(), info.procApplies.length);
+        List<ComponentProcessor> result = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            if(info.procApplies[i]) {
+                result.add(processors.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static boolean appliesTo(Class<?> procType, Class<?> cls) {
+        AppliesTo ann = procType.getAnnotation(AppliesTo.class);
+        if(ann == null) {
+            return true;
+        }
+        for(Class<?> type : ann.value()) {
+            if(type.isAssignableFrom(cls)) {
+                return true;
+            }
+        }
+        for(Class<? extends Annotation> annType : ann.annotatedWith()) {
+            if(cls.isAnnotationPresent(annType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private StartupProfiler.Mark startMark() {
+        return (profiler != null && profiler.isActive()) ? profiler.start() : null;
+    }
+
+    private void endMark(Object component, StartupProfiler.Mark mark) {
+        if(mark != null) {
+            profiler.endComponent(component.getClass(), mark);
+        }
+    }
+
     private Method findInitMethod(Class<?> cls) {
         Method[] methods = cls.getMethods();
         for(Method method : methods) {
@@ -201,6 +431,13 @@ class LifecycleManager {
 
         @Override
         public boolean matches(Binding<?> binding) {
+            if(binding instanceof ConstructorBinding) {
+                Class<?> cls = ((ConstructorBinding<?>) binding).getConstructor()
+                        .getDeclaringType().getRawType();
+                return getTypeInfo(cls).managed;
+            }
+            // The provisioned type is known only at runtime; the handler checks
+            // it then.
             return true;
         }
     }
@@ -210,8 +447,12 @@ class LifecycleManager {
         @Override
         public <T> void onProvision(ProvisionInvocation<T> provision) {
             T component = provision.provision();
+            if(component == null) {
+                return;
+            }
             try {
                 doInitialization(component);
+                trackDeferred(provision.getBinding(), component);
                 LOGGER.debug("provisioned {} -> {}", component.getClass().getName(), component);
             }
             catch(Exception exep) {
@@ -226,7 +467,7 @@ class LifecycleManager {
 
         @Override
         public boolean matches(TypeLiteral<?> tl) {
-            return true;
+            return getTypeInfo(tl.getRawType()).managed;
         }
     }
 
@@ -253,4 +494,34 @@ class LifecycleManager {
             }
         }
     }
+
+/**
+ * Lifecycle information about a type, determined once. A type is managed if it
+ * carries Polyguice annotations, implements any of the lifecycle interfaces,
+ * or if any component processor applies to it.
+ */
+
+    private class TypeInfo {
+
+        private boolean   managed;
+        private Method    initMethod;
+        private boolean[] procApplies;
+
+        TypeInfo(Class<?> cls) {
+            initMethod = findInitMethod(cls);
+            procApplies = new boolean[procTypes.size()];
+            boolean anyProc = false;
+            for(int i = 0; i < procApplies.length; i++) {
+                procApplies[i] = appliesTo(procTypes.get(i), cls);
+                anyProc |= procApplies[i];
+            }
+            managed = anyProc
+                    || Initializable.class.isAssignableFrom(cls)
+                    || ComponentContextAware.class.isAssignableFrom(cls)
+                    || Disposable.class.isAssignableFrom(cls)
+                    || initMethod != null
+                    || confInject.hasInjections(cls)
+                    || externInject.hasInjections(cls);
+        }
+    }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.reflections.Reflections;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.scanners.TypeAnnotationsScanner;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scans a set of packages for type annotations and sub-types. Only those
+ * classpath roots (jars and directories) that actually contain one of the
+ * packages are scanned, and multiple roots are scanned in parallel.
+ * <p>
+ *
+ * The Reflections metadata store is discarded as soon as the scan completes;
+ * only the compact {@link ScanIndex} is retained.
+ * <p>
+ *
+ * If a cache directory is provided, either explicitly or through the system
+ * property {@value #CACHE_DIR_PROPERTY}, scan results are persisted there and
+ * reused by later runs as long as the scanned classpath roots are unchanged.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class PackageScanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackageScanner.class);
+
+/**
+ * System property naming the directory for the persistent scan cache. Caching
+ * is disabled when neither this property nor an explicit directory is set.
+ */
+
+    public static final String CACHE_DIR_PROPERTY = "polyguice.scan.cache.dir";
+
+    private int       parallelism;
+    private ScanCache cache;
+
+    PackageScanner() {
+        this(null);
+    }
+
+    PackageScanner(File cacheDir) {
+        parallelism = Runtime.getRuntime().availableProcessors();
+        if(cacheDir == null && System.getProperty(CACHE_DIR_PROPERTY) != null) {
+            cacheDir = new File(System.getProperty(CACHE_DIR_PROPERTY));
+        }
+        if(cacheDir != null) {
+            cache = new ScanCache(cacheDir);
+        }
+    }
+
+    public ScanIndex scan(String[] pkgNames) {
+        return scan(pkgNames, Collections.<String>emptySet());
+    }
+
+/**
+ * Scans the packages in all classpath roots except the specified ones, which
+ * are usually those covered by a {@link ComponentIndex}.
+ * <p>
+ *
+ * @param	pkgNames the packages to scan.
+ * @param	excludedRoots the roots to skip, in the form returned by
+ *          {@link ComponentIndex#toRoot(String)}.
+ * @return	the scan index, empty if no roots remain to be scanned.
+ */
+
+    public ScanIndex scan(String[] pkgNames, Set<String> excludedRoots) {
+        ReflectionsHelper.registerUrlTypes();
+        Set<URL> urls = findUrls(pkgNames);
+        if(!excludedRoots.isEmpty()) {
+            Iterator<URL> iter = urls.iterator();
+            while(iter.hasNext()) {
+                if(excludedRoots.contains(ComponentIndex.toRoot(iter.next().toExternalForm()))) {
+                    iter.remove();
+                }
+            }
+            if(urls.isEmpty()) {
+                LOGGER.debug("all classpath roots are indexed, skipping scan");
+                return new ScanIndex(new HashMap<String, Set<String>>(), new HashMap<String, Set<String>>());
+            }
+        }
+        if(cache == null) {
+            return scanUrls(pkgNames, urls);
+        }
+
+        byte[] fprint = cache.fingerprint(pkgNames, urls);
+        if(fprint == null) {
+            LOGGER.info("scan cache miss: classpath cannot be fingerprinted");
+            return scanUrls(pkgNames, urls);
+        }
+        ScanIndex result = cache.load(pkgNames, fprint);
+        if(result != null) {
+            return result;
+        }
+        long start = System.nanoTime();
+        result = scanUrls(pkgNames, urls);
+        cache.store(pkgNames, fprint, result);
+        LOGGER.info("scan cache rebuilt in {} ms", (System.nanoTime() - start) / 1000000);
+        return result;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private ScanIndex scanUrls(String[] pkgNames, Set<URL> urls) {
+        LOGGER.debug("scanning {} classpath roots for packages", urls.size());
+
+        FilterBuilder fb = new FilterBuilder().includePackage(pkgNames);
+        ConfigurationBuilder cb = new ConfigurationBuilder()
+            .setUrls(urls)
+            .filterInputsBy(fb)
+            .setScanners(new SubTypesScanner(), new TypeAnnotationsScanner());
+
+        ForkJoinPool pool = null;
+        if(urls.size() > 1 && parallelism > 1) {
+            pool = new ForkJoinPool(Math.min(parallelism, urls.size()));
+            cb.setExecutorService(pool);
+        }
+        try {
+            Reflections reflections = new Reflections(cb);
+            return ScanIndex.fromStore(reflections.getStore());
+        }
+        finally {
+            if(pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private Set<URL> findUrls(String[] pkgNames) {
+        Set<URL> urls = new LinkedHashSet<>();
+        for(String pkgName : pkgNames) {
+            Collection<URL> pkgUrls = ClasspathHelper.forPackage(pkgName);
+            if(pkgUrls.isEmpty()) {
+                /*
+                 * Jars built without directory entries cannot be located by
+                 * package name. Fall back to the whole classpath for these.
+                 */
+                LOGGER.debug("no classpath root found for package {}, scanning full classpath", pkgName);
+                pkgUrls = ClasspathHelper.forClassLoader();
+            }
+            urls.addAll(pkgUrls);
+        }
+        return urls;
+    }
+}
@@ -16,12 +16,17 @@
 
 package com.flipkart.polyguice.core.support;
 
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.flipkart.polyguice.core.ComponentContext;
 import com.flipkart.polyguice.core.ConfigurationProvider;
 import com.flipkart.polyguice.core.ExternalEntity;
+import com.flipkart.polyguice.core.StartupAwareComponentContext;
+import com.flipkart.polyguice.core.StartupMode;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Module;
@@ -41,10 +46,14 @@ public class Polyguice {
     private Module[]         xmods;
     private Injector         injector;
     private ComponentContext compCtxt;
+    private ScanIndex        scanIndex;
+    private StartupProfiler  profiler;
     private boolean          prepared;
 
     public Polyguice() {
         pgmod = new PolyguiceModule();
+        profiler = new StartupProfiler();
+        pgmod.setProfiler(profiler);
         prepared = false;
     }
 
@@ -57,6 +66,65 @@ public class Polyguice {
         return this;
     }
 
+/**
+ * Enables the persistent scan cache, storing scan results in the specified
+ * directory. Later runs skip the package scan if the scanned classpath is
+ * unchanged. The same can be achieved by setting the system property
+ * <tt>polyguice.scan.cache.dir</tt>.
+ * <p>
+ *
+ * @param	dir the directory for scan cache files.
+ * @return	this object.
+ */
+
+    public Polyguice scanCache(String dir) {
+        if(prepared) {
+            LOGGER.warn("setting the scan cache after Guice is prepared. Ignoring.");
+            return this;
+        }
+        pgmod.setScanCacheDirectory(new File(dir));
+        return this;
+    }
+
+/**
+ * Preloads eager singletons concurrently, using at most the specified number of
+ * threads. Dependencies between singletons are derived from the injector
+ * bindings and are honoured, so that independent singletons are initialized in
+ * parallel. A value of one (the default) preloads singletons sequentially.
+ * <p>
+ *
+ * @param	threads the maximum number of preload threads.
+ * @return	this object.
+ */
+
+    public Polyguice parallelPreload(int threads) {
+        if(prepared) {
+            LOGGER.warn("setting parallel preload after Guice is prepared. Ignoring.");
+            return this;
+        }
+        pgmod.setPreloadParallelism(threads);
+        return this;
+    }
+
+/**
+ * Adds a package to the shared {@link ScanIndex} without autobinding the
+ * components in it. Integration modules use this to have their own types (like
+ * resources or servlets) discovered by the same, single scan.
+ * <p>
+ *
+ * @param	name the package to index.
+ * @return	this object.
+ */
+
+    public Polyguice indexPackage(String name) {
+        if(prepared) {
+            LOGGER.warn("calling index package after Guice is prepared. Ignoring.");
+            return this;
+        }
+        pgmod.indexPackage(name);
+        return this;
+    }
+
     public Polyguice modules(Module... mods) {
         xmods = mods;
         return this;
@@ -98,28 +166,109 @@ public class Polyguice {
             LOGGER.warn("duplicate call to prepare. Ignoring.");
             return this;
         }
-        if(xmods == null || xmods.length == 0) {
-            injector = Guice.createInjector(pgmod);
-        }
-        else {
-            Module[] allModules = new Module[xmods.length + 1];
-            allModules[0] = pgmod;
-            System.arraycopy(xmods, 0, allModules, 1, xmods.length);
-            injector = Guice.createInjector(allModules);
+        StartupProfiler.Mark prepMark = profiler.start();
+        try {
+            StartupProfiler.Mark mark = profiler.start();
+            scanIndex = pgmod.buildScanIndex();
+            profiler.endPhase(StartupReport.PHASE_SCAN, mark);
+
+            mark = profiler.start();
+            if(xmods == null || xmods.length == 0) {
+                injector = Guice.createInjector(pgmod);
+            }
+            else {
+                Module[] allModules = new Module[xmods.length + 1];
+                allModules[0] = pgmod;
+                System.arraycopy(xmods, 0, allModules, 1, xmods.length);
+                injector = Guice.createInjector(allModules);
+            }
+            profiler.endPhase(StartupReport.PHASE_INJECTOR, mark);
+
+            compCtxt = new DefaultComponentContext(injector, pgmod.getReadiness());
+            mark = profiler.start();
+            boolean started = pgmod.start(compCtxt);
+            profiler.endPhase(StartupReport.PHASE_PRELOAD, mark);
+            if(!started) {
+                throw new RuntimeException("ployguice failed to prepare");
+            }
+            pgmod.freezeConfiguration();
         }
-        compCtxt = new DefaultComponentContext(injector);
-        if(!pgmod.start(compCtxt)) {
-            throw new RuntimeException("ployguice failed to prepare");
+        finally {
+            profiler.endPhase(StartupReport.PHASE_PREPARE, prepMark);
+            profiler.stop();
         }
         prepared = true;
         LOGGER.debug("polyguice prepared");
         return this;
     }
 
+/**
+ * @return	the component context, or <tt>null</tt> if not yet prepared. The
+ *          context also implements {@link StartupAwareComponentContext}.
+ */
+
     public ComponentContext getComponentContext() {
         return compCtxt;
     }
 
+/**
+ * Checks whether all singletons started in {@link StartupMode#BACKGROUND} mode
+ * have been created successfully.
+ * <p>
+ *
+ * @return	<tt>true</tt> if prepared and all background singletons are
+ *          available.
+ */
+
+    public boolean isReady() {
+        return prepared && pgmod.getReadiness().isReady();
+    }
+
+/**
+ * Waits for the singletons started in {@link StartupMode#BACKGROUND} mode to be
+ * created.
+ * <p>
+ *
+ * @param	timeout the maximum time to wait.
+ * @param	unit the unit of the timeout argument.
+ * @return	<tt>true</tt> if all background singletons are available,
+ *          <tt>false</tt> if not prepared, the wait timed out or any of them
+ *          failed to load.
+ * @throws	InterruptedException if interrupted while waiting.
+ */
+
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return prepared && pgmod.getReadiness().await(timeout, unit);
+    }
+
+/**
+ * Retrieves the index of types found in the scanned and indexed packages. Any
+ * further type discovery should be done using this index rather than a fresh
+ * classpath scan.
+ * <p>
+ *
+ * @return	the scan index, or <tt>null</tt> if not yet prepared.
+ */
+
+    public ScanIndex getScanIndex() {
+        return scanIndex;
+    }
+
+/**
+ * Retrieves timings of the startup phases and of the initialization callbacks of
+ * components created while preparing. The report is complete once
+ * {@link #prepare()} returns (or fails) and the singletons started in
+ * {@link StartupMode#BACKGROUND} mode have been created; see
+ * {@link StartupReport#isComplete()}.
+ * <p>
+ *
+ * @return	the startup report.
+ */
+
+    public StartupReport getStartupReport() {
+        return profiler.getReport();
+    }
+
     public void stop() {
         System.out.println("stopping polyguice");
         LOGGER.debug("stopping polyguice");
@@ -16,30 +16,108 @@
 
 package com.flipkart.polyguice.core.support;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.flipkart.polyguice.core.ComponentContext;
 import com.flipkart.polyguice.core.ConfigurationProvider;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
 
 public class PolyguiceModule extends AbstractModule {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(PolyguiceModule.class);
+
     private List<String>          scanPkgNames;
+    private Set<String>           indexPkgNames;
+    private ScanIndex             scanIndex;
     private LifecycleManager      lifeMan;
     private ExternalsInjector     externInject;
     private ConfigurationInjector confInject;
+    private File                  scanCacheDir;
+    private StartupProfiler       profiler;
+    private int                   preloadParallelism;
 
     PolyguiceModule() {
         scanPkgNames = new ArrayList<>();
+        indexPkgNames = new LinkedHashSet<>();
         externInject = new ExternalsInjector();
         confInject = new ConfigurationInjector();
+        preloadParallelism = 1;
     }
 
     public void scanPackage(String name) {
         scanPkgNames.add(name);
     }
 
+    public void indexPackage(String name) {
+        indexPkgNames.add(name);
+    }
+
+    void setProfiler(StartupProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public void setPreloadParallelism(int threads) {
+        preloadParallelism = threads;
+    }
+
+    public void setScanCacheDirectory(File dir) {
+        scanCacheDir = dir;
+    }
+
+/**
+ * Fills the scan index with a single pass over all packages registered for
+ * scanning or indexing. If a compile-time component index is present, it is
+ * used for all these packages in the classpath roots that contain index files,
+ * and the scan packages are scanned in the other roots only. The additional
+ * index packages, if any, are scanned in all roots.
+ * <p>
+ *
+ * @return	the scan index.
+ */
+
+    public ScanIndex buildScanIndex() {
+        Set<String> allPkgNames = new LinkedHashSet<>(scanPkgNames);
+        allPkgNames.addAll(indexPkgNames);
+        String[] allPkgNamesArr = allPkgNames.toArray(new String[allPkgNames.size()]);
+        Set<String> extraPkgNames = new LinkedHashSet<>(indexPkgNames);
+        extraPkgNames.removeAll(scanPkgNames);
+
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if(loader == null) {
+            loader = PolyguiceModule.class.getClassLoader();
+        }
+        ComponentIndex compIndex = ComponentIndex.load(loader);
+        PackageScanner scanner = new PackageScanner(scanCacheDir);
+        if(compIndex != null) {
+            LOGGER.debug("using compile-time component index");
+            scanIndex = ScanIndex.fromComponentIndex(compIndex, allPkgNamesArr);
+            if(!scanPkgNames.isEmpty()) {
+                String[] scanPkgNamesArr = scanPkgNames.toArray(new String[scanPkgNames.size()]);
+                scanIndex = scanIndex.merge(scanner.scan(scanPkgNamesArr, compIndex.getRoots()));
+            }
+            if(!extraPkgNames.isEmpty()) {
+                scanIndex = scanIndex.merge(scanner.scan(extraPkgNames.toArray(new String[extraPkgNames.size()])));
+            }
+        }
+        else {
+            scanIndex = scanner.scan(allPkgNamesArr);
+        }
+        return scanIndex;
+    }
+
+    public ScanIndex getScanIndex() {
+        return scanIndex;
+    }
+
     public void registerExternal(String name, Object value) {
         externInject.register(name, value);
     }
@@ -48,11 +126,19 @@ public class PolyguiceModule extends AbstractModule {
         confInject.register(provider);
     }
 
+    public void freezeConfiguration() {
+        confInject.freezeProviders();
+    }
+
     public boolean start(ComponentContext compCtxt) {
         lifeMan.setComponentContext(compCtxt);
         return lifeMan.start();
     }
 
+    ReadinessTracker getReadiness() {
+        return lifeMan.getReadiness();
+    }
+
     public void stop() {
         lifeMan.stop();
     }
@@ -64,13 +150,55 @@ public class PolyguiceModule extends AbstractModule {
     protected void configure() {
         AutobindManager abm = new AutobindManager(binder());
 
+        if(scanIndex == null) {
+            buildScanIndex();
+        }
         String[] pkgNamesArr = scanPkgNames.toArray(new String[scanPkgNames.size()]);
-        abm.autobind(pkgNamesArr);
+        StartupProfiler.Mark mark = profiler.start();
+        abm.autobind(scanIndex, pkgNamesArr);
+        profiler.endPhase(StartupReport.PHASE_AUTOBIND, mark);
 
         lifeMan = new LifecycleManager(binder());
+        lifeMan.setProfiler(profiler);
+        lifeMan.setPreloadParallelism(preloadParallelism);
         lifeMan.setExternalsInjector(externInject);
         lifeMan.setConfigurationInjector(confInject);
         lifeMan.setProcessors(abm.getComponentProcessors());
+        lifeMan.setProcessorTypes(abm.getComponentProcessorTypes());
         lifeMan.setSingletons(abm.getSingletons());
+
+        for(Class<?> sectionType : abm.getSectionTypes()) {
+            bindSection(sectionType);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private <T> void bindSection(Class<T> sectionType) {
+        bind(sectionType).toProvider(new SectionProvider<T>(sectionType)).in(Scopes.SINGLETON);
+        LOGGER.debug("bound configuration section: {}", sectionType.getName());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+/**
+ * Creates the implementation of a configuration section when it is first
+ * needed, so that all configuration providers are registered by then.
+ */
+
+    private class SectionProvider<T> implements Provider<T> {
+
+        private Class<T> sectionType;
+
+        SectionProvider(Class<T> sectionType) {
+            this.sectionType = sectionType;
+        }
+
+        @Override
+        public T get() {
+            return confInject.createSection(sectionType);
+        }
     }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks completion of the singletons that are started in the background.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class ReadinessTracker {
+
+    private CountDownLatch   latch;
+    private volatile boolean failed;
+
+    ReadinessTracker() {
+        latch = new CountDownLatch(1);
+    }
+
+    public void complete(boolean success) {
+        failed = !success;
+        latch.countDown();
+    }
+
+    public boolean isReady() {
+        return latch.getCount() == 0 && !failed;
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return latch.await(timeout, unit) && !failed;
+    }
+}
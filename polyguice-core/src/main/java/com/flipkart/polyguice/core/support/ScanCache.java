@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent, on-disk cache of package scan results. A cache file is specific
+ * to a set of scanned packages and is valid only as long as the fingerprint of
+ * the scanned classpath roots (paths, sizes and modification times) is
+ * unchanged.
+ * <p>
+ *
+ * The file is a compact binary encoding: a header with the fingerprint, a table
+ * of class names, followed by the annotation and sub-type indexes expressed as
+ * offsets into the name table. It is read using memory-mapped I/O.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class ScanCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScanCache.class);
+
+    private static final int MAGIC   = 0x50475343; // "PGSC"
+    private static final int VERSION = 1;
+
+    private File cacheDir;
+
+    ScanCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+/**
+ * Computes the fingerprint for the given packages and classpath roots.
+ * <p>
+ *
+ * @return	the fingerprint, or <tt>null</tt> if one or more roots cannot be
+ *          fingerprinted, in which case the scan must not be cached.
+ */
+
+    public byte[] fingerprint(String[] pkgNames, Collection<URL> urls) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            String[] sorted = pkgNames.clone();
+            Arrays.sort(sorted);
+            for(String pkgName : sorted) {
+                update(digest, "pkg:" + pkgName);
+            }
+            for(URL url : urls) {
+                File root = toFile(url);
+                if(root == null || !root.exists()) {
+                    LOGGER.debug("scan cache: cannot fingerprint {}", url);
+                    return null;
+                }
+                if(root.isDirectory()) {
+                    update(digest, "dir:" + root.getAbsolutePath());
+                    for(String pkgName : sorted) {
+                        File pkgDir = new File(root, pkgName.replace('.', File.separatorChar));
+                        fingerprintTree(digest, pkgDir);
+                    }
+                }
+                else {
+                    update(digest, "file:" + root.getAbsolutePath() + ":" + root.length() + ":" + root.lastModified());
+                }
+            }
+            return digest.digest();
+        }
+        catch(NoSuchAlgorithmException exep) {
+            LOGGER.warn("scan cache disabled: {}", exep.toString());
+            return null;
+        }
+    }
+
+/**
+ * Reads the cached scan result for the given packages.
+ * <p>
+ *
+ * @return	the cached result, or <tt>null</tt> if there is no cache file or the
+ *          fingerprint does not match.
+ */
+
+    public ScanIndex load(String[] pkgNames, byte[] fprint) {
+        File file = cacheFile(pkgNames);
+        if(!file.isFile()) {
+            LOGGER.info("scan cache miss: {} not found", file);
+            return null;
+        }
+        long start = System.nanoTime();
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                LOGGER.info("scan cache miss: {} has an unknown format", file);
+                return null;
+            }
+            byte[] stored = new byte[buffer.getInt()];
+            buffer.get(stored);
+            if(!Arrays.equals(stored, fprint)) {
+                LOGGER.info("scan cache miss: classpath changed since {} was written", file);
+                return null;
+            }
+            String[] names = new String[buffer.getInt()];
+            for(int i = 0; i < names.length; i++) {
+                names[i] = readString(buffer);
+            }
+            Map<String, Set<String>> annotated = readIndex(buffer, names);
+            Map<String, Set<String>> subTypes = readIndex(buffer, names);
+            LOGGER.info("scan cache hit: {} ({} names) read in {} ms", file, names.length,
+                    (System.nanoTime() - start) / 1000000);
+            return new ScanIndex(annotated, subTypes);
+        }
+        catch(IOException | RuntimeException exep) {
+            LOGGER.warn("scan cache miss: unable to read {}: {}", file, exep.toString());
+            return null;
+        }
+    }
+
+    public void store(String[] pkgNames, byte[] fprint, ScanIndex result) {
+        if(!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            LOGGER.warn("scan cache: unable to create directory {}", cacheDir);
+            return;
+        }
+        File file = cacheFile(pkgNames);
+        Map<String, Integer> names = new LinkedHashMap<>();
+        collectNames(result.getAnnotatedIndex(), names);
+        collectNames(result.getSubTypeIndex(), names);
+
+        File temp = null;
+        try {
+            temp = File.createTempFile(file.getName(), ".tmp", cacheDir);
+            try(DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(fprint.length);
+                out.write(fprint);
+                out.writeInt(names.size());
+                for(String name : names.keySet()) {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(bytes.length);
+                    out.write(bytes);
+                }
+                writeIndex(out, result.getAnnotatedIndex(), names);
+                writeIndex(out, result.getSubTypeIndex(), names);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("scan cache written: {} ({} names)", file, names.size());
+        }
+        catch(IOException exep) {
+            LOGGER.warn("scan cache: unable to write {}: {}", file, exep.toString());
+            if(temp != null && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private File cacheFile(String[] pkgNames) {
+        String[] sorted = pkgNames.clone();
+        Arrays.sort(sorted);
+        String key = Integer.toHexString(Arrays.hashCode(sorted));
+        return new File(cacheDir, "polyguice-scan-" + key + ".bin");
+    }
+
+    private static File toFile(URL url) {
+        try {
+            String protocol = url.getProtocol();
+            if(protocol.equals("file")) {
+                return new File(url.toURI());
+            }
+            if(protocol.equals("jar")) {
+                String spec = url.getFile();
+                int sep = spec.indexOf("!/");
+                if(sep >= 0) {
+                    spec = spec.substring(0, sep);
+                }
+                if(spec.startsWith("file:")) {
+                    return new File(new URI(spec));
+                }
+            }
+        }
+        catch(URISyntaxException | IllegalArgumentException exep) {
+            //NOOP, cannot be fingerprinted
+        }
+        return null;
+    }
+
+    private static void fingerprintTree(MessageDigest digest, File dir) {
+        File[] files = dir.listFiles();
+        if(files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for(File file : files) {
+            if(file.isDirectory()) {
+                fingerprintTree(digest, file);
+            }
+            else {
+                update(digest, file.getPath() + ":" + file.length() + ":" + file.lastModified());
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void collectNames(Map<String, Set<String>> index, Map<String, Integer> names) {
+        for(Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            intern(entry.getKey(), names);
+            for(String value : entry.getValue()) {
+                intern(value, names);
+            }
+        }
+    }
+
+    private static void intern(String name, Map<String, Integer> names) {
+        if(!names.containsKey(name)) {
+            names.put(name, names.size());
+        }
+    }
+
+    private static void writeIndex(DataOutputStream out, Map<String, Set<String>> index,
+            Map<String, Integer> names) throws IOException {
+        out.writeInt(index.size());
+        for(Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            out.writeInt(names.get(entry.getKey()));
+            out.writeInt(entry.getValue().size());
+            for(String value : entry.getValue()) {
+                out.writeInt(names.get(value));
+            }
+        }
+    }
+
+    private static Map<String, Set<String>> readIndex(ByteBuffer buffer, String[] names) {
+        int count = buffer.getInt();
+        Map<String, Set<String>> index = new HashMap<>();
+        for(int i = 0; i < count; i++) {
+            String key = names[buffer.getInt()];
+            int size = buffer.getInt();
+            Set<String> values = new LinkedHashSet<>();
+            for(int j = 0; j < size; j++) {
+                values.add(names[buffer.getInt()]);
+            }
+            index.put(key, values);
+        }
+        return index;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xffff;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.reflections.Store;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.scanners.TypeAnnotationsScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.polyguice.core.Bindable;
+import com.flipkart.polyguice.core.Component;
+import com.flipkart.polyguice.core.ComponentProcessor;
+import com.flipkart.polyguice.core.ConfigurationSection;
+import com.google.common.collect.Multimap;
+
+/**
+ * In-memory index of the types found in the scanned packages, filled once by
+ * {@link Polyguice#prepare()} and shared with integration modules through
+ * {@link Polyguice#getScanIndex()}. Holds only the type annotation and sub-type
+ * relations as class names, detached from the Reflections store (or compile-time
+ * {@link ComponentIndex}) that produced them.
+ * <p>
+ *
+ * Queries follow the same semantics as the corresponding Reflections methods:
+ * types annotated with an annotation include their sub-types, and sub-type
+ * lookups are transitive. The package-filtered variants restrict results to
+ * classes within the given packages (or their sub-packages).
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ScanIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScanIndex.class);
+
+    private Map<String, Set<String>> annotated;
+    private Map<String, Set<String>> subTypes;
+
+    ScanIndex(Map<String, Set<String>> annotated, Map<String, Set<String>> subTypes) {
+        this.annotated = annotated;
+        this.subTypes = subTypes;
+    }
+
+    static ScanIndex fromStore(Store store) {
+        return new ScanIndex(copyIndex(store, TypeAnnotationsScanner.class.getSimpleName()),
+                copyIndex(store, SubTypesScanner.class.getSimpleName()));
+    }
+
+    static ScanIndex fromComponentIndex(ComponentIndex compIndex, String[] pkgNames) {
+        Map<String, Set<String>> annotated = compIndex.getAnnotated(pkgNames);
+        Map<String, Set<String>> subTypes = new HashMap<>();
+        Set<String> components = new LinkedHashSet<>();
+        for(ComponentIndex.ComponentEntry entry : compIndex.getComponents(pkgNames)) {
+            components.add(entry.getClassName());
+        }
+        annotated.put(Component.class.getName(), components);
+        annotated.put(Bindable.class.getName(), new LinkedHashSet<>(compIndex.getBindables()));
+        annotated.put(ConfigurationSection.class.getName(), new LinkedHashSet<>(compIndex.getSections(pkgNames)));
+        subTypes.put(ComponentProcessor.class.getName(), new LinkedHashSet<>(compIndex.getProcessors(pkgNames)));
+        mergeInto(compIndex.getSubTypes(), subTypes);
+        return new ScanIndex(annotated, subTypes);
+    }
+
+/**
+ * Retrieves all types annotated with the given annotation, including their
+ * sub-types.
+ * <p>
+ *
+ * @param	annType the annotation to look for.
+ * @return	the matching types.
+ */
+
+    public Set<Class<?>> getTypesAnnotatedWith(Class<? extends Annotation> annType) {
+        return loadClasses(annotatedNames(annType), null);
+    }
+
+/**
+ * Same as {@link #getTypesAnnotatedWith(Class)}, restricted to the given
+ * packages.
+ * <p>
+ *
+ * @param	annType the annotation to look for.
+ * @param	pkgNames the packages to restrict results to.
+ * @return	the matching types.
+ */
+
+    public Set<Class<?>> getTypesAnnotatedWith(Class<? extends Annotation> annType, String[] pkgNames) {
+        return loadClasses(annotatedNames(annType), pkgNames);
+    }
+
+/**
+ * Retrieves all sub-types of the given type, transitively.
+ * <p>
+ *
+ * @param	type the super type.
+ * @return	the sub-types, excluding the given type itself.
+ */
+
+    public <T> Set<Class<? extends T>> getSubTypesOf(Class<T> type) {
+        return getSubTypesOf(type, null);
+    }
+
+/**
+ * Same as {@link #getSubTypesOf(Class)}, restricted to the given packages.
+ * <p>
+ *
+ * @param	type the super type.
+ * @param	pkgNames the packages to restrict results to.
+ * @return	the sub-types, excluding the given type itself.
+ */
+
+    @SuppressWarnings("unchecked")
+    public <T> Set<Class<? extends T>> getSubTypesOf(Class<T> type, String[] pkgNames) {
+        Set<String> names = new LinkedHashSet<>();
+        closure(subTypes, Collections.singleton(type.getName()), names);
+        Set<?> result = loadClasses(names, pkgNames);
+        return (Set<Class<? extends T>>) result;
+    }
+
+/**
+ * Creates a new index that holds the relations of both this and the given
+ * index.
+ * <p>
+ *
+ * @param	other the index to merge with.
+ * @return	the merged index.
+ */
+
+    public ScanIndex merge(ScanIndex other) {
+        Map<String, Set<String>> mergedAnn = new HashMap<>();
+        Map<String, Set<String>> mergedSub = new HashMap<>();
+        mergeInto(annotated, mergedAnn);
+        mergeInto(other.annotated, mergedAnn);
+        mergeInto(subTypes, mergedSub);
+        mergeInto(other.subTypes, mergedSub);
+        return new ScanIndex(mergedAnn, mergedSub);
+    }
+
+    static boolean inPackages(String clsName, String[] pkgNames) {
+        for(String pkgName : pkgNames) {
+            if(clsName.startsWith(pkgName)
+                    && (clsName.length() == pkgName.length() || clsName.charAt(pkgName.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Map<String, Set<String>> getAnnotatedIndex() {
+        return annotated;
+    }
+
+    Map<String, Set<String>> getSubTypeIndex() {
+        return subTypes;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static Map<String, Set<String>> copyIndex(Store store, String index) {
+        Map<String, Set<String>> result = new HashMap<>();
+        if(!store.keySet().contains(index)) {
+            return result;
+        }
+        Multimap<String, String> mmap = store.get(index);
+        for(Map.Entry<String, Collection<String>> entry : mmap.asMap().entrySet()) {
+            result.put(entry.getKey(), new LinkedHashSet<>(entry.getValue()));
+        }
+        return result;
+    }
+
+/*
+ * Adds to result all values reachable from the given keys, transitively. The
+ * keys themselves are not added unless reachable from another key.
+ */
+
+    private static void closure(Map<String, Set<String>> index, Collection<String> keys, Set<String> result) {
+        Deque<String> pending = new ArrayDeque<>(keys);
+        while(!pending.isEmpty()) {
+            Set<String> values = index.get(pending.poll());
+            if(values == null) {
+                continue;
+            }
+            for(String value : values) {
+                if(result.add(value)) {
+                    pending.add(value);
+                }
+            }
+        }
+    }
+
+    private Set<String> annotatedNames(Class<? extends Annotation> annType) {
+        Set<String> names = new LinkedHashSet<>();
+        closure(annotated, Collections.singleton(annType.getName()), names);
+        closure(subTypes, names, names);
+        return names;
+    }
+
+    private static void mergeInto(Map<String, Set<String>> source, Map<String, Set<String>> target) {
+        for(Map.Entry<String, Set<String>> entry : source.entrySet()) {
+            Set<String> values = target.get(entry.getKey());
+            if(values == null) {
+                values = new LinkedHashSet<>();
+                target.put(entry.getKey(), values);
+            }
+            values.addAll(entry.getValue());
+        }
+    }
+
+    private static Set<Class<?>> loadClasses(Set<String> names, String[] pkgNames) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if(loader == null) {
+            loader = ScanIndex.class.getClassLoader();
+        }
+        Set<Class<?>> result = new LinkedHashSet<>();
+        for(String name : names) {
+            if(pkgNames != null && !inPackages(name, pkgNames)) {
+                continue;
+            }
+            try {
+                result.add(Class.forName(name, false, loader));
+            }
+            catch(ClassNotFoundException | LinkageError exep) {
+                LOGGER.warn("could not load indexed type {}: {}", name, exep.toString());
+            }
+        }
+        return result;
+    }
+}
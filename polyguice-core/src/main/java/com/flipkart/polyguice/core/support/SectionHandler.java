@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.flipkart.polyguice.core.Configuration;
+import com.flipkart.polyguice.core.ConfigurationSection;
+
+/**
+ * Implements the accessor methods of a {@link ConfigurationSection} interface.
+ * Each accessor is assigned a slot when the handler is created; a call looks up
+ * the slot of the method and returns the value stored there. The values
+ * are replaced as a whole array, so that readers always see a consistent set.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class SectionHandler implements InvocationHandler {
+
+    private Class<?>             iface;
+    private String               prefix;
+    private Map<Method, Integer> slots;
+    private String[]             paths;
+    private Class<?>[]           types;
+    private boolean[]            required;
+    private volatile Object[]    values;
+
+    SectionHandler(Class<?> iface) {
+        ConfigurationSection ann = iface.getAnnotation(ConfigurationSection.class);
+        if(ann == null) {
+            throw new RuntimeException(iface.getName() + " is not a configuration section");
+        }
+        this.iface = iface;
+        prefix = ann.value();
+        Method[] methods = iface.getMethods();
+        slots = new HashMap<>();
+        paths = new String[methods.length];
+        types = new Class<?>[methods.length];
+        required = new boolean[methods.length];
+        for(int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            if(method.getParameterTypes().length > 0 || method.getReturnType() == Void.TYPE) {
+                throw new RuntimeException("section method " + iface.getName() + "#" + method.getName()
+                        + " must have no parameters and a return type");
+            }
+            String name = method.getName();
+            Configuration conf = method.getAnnotation(Configuration.class);
+            if(conf != null) {
+                required[i] = conf.required();
+                if(conf.name().trim().length() > 0) {
+                    name = conf.name();
+                }
+                else if(conf.value().trim().length() > 0) {
+                    name = conf.value();
+                }
+            }
+            slots.put(method, i);
+            paths[i] = prefix.isEmpty() ? name : prefix + "." + name;
+            types[i] = method.getReturnType();
+        }
+    }
+
+    public Class<?> getInterface() {
+        return iface;
+    }
+
+    public int size() {
+        return paths.length;
+    }
+
+    public String getPath(int slot) {
+        return paths[slot];
+    }
+
+    public Class<?> getType(int slot) {
+        return types[slot];
+    }
+
+    public boolean isRequired(int slot) {
+        return required[slot];
+    }
+
+/**
+ * @return	<tt>true</tt> if the accessor can return the value.
+ */
+
+    public boolean isAssignable(int slot, Object value) {
+        return MethodType.methodType(types[slot]).wrap().returnType().isInstance(value);
+    }
+
+/**
+ * @return	the value returned for a missing configuration: <tt>null</tt>, or
+ *          the default of a primitive type.
+ */
+
+    public Object getDefault(int slot) {
+        return types[slot].isPrimitive() ? Array.get(Array.newInstance(types[slot], 1), 0) : null;
+    }
+
+    public void setValues(Object[] values) {
+        this.values = values;
+    }
+
+/**
+ * Checks whether any of the changed paths lies within this section.
+ * <p>
+ *
+ * @param	changed the changed paths, or <tt>null</tt> if all may have changed.
+ * @return	<tt>true</tt> if the section needs to be refreshed.
+ */
+
+    public boolean isAffected(Set<String> changed) {
+        if(changed == null || prefix.isEmpty()) {
+            return true;
+        }
+        for(String path : changed) {
+            if(path.length() > prefix.length() && path.startsWith(prefix)
+                    && path.charAt(prefix.length()) == '.') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface InvocationHandler
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        Integer slot = slots.get(method);
+        if(slot != null) {
+            return values[slot];
+        }
+        switch(method.getName()) {
+        case "equals":
+            return proxy == args[0];
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        case "toString":
+            return iface.getSimpleName() + "[" + prefix + "]";
+        default:
+            throw new UnsupportedOperationException(method.toString());
+        }
+    }
+}
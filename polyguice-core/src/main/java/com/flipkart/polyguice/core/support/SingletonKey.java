@@ -22,6 +22,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.flipkart.polyguice.core.ComponentContext;
+import com.flipkart.polyguice.core.StartupMode;
+import com.google.inject.Key;
 import com.google.inject.name.Named;
 
 /**
@@ -34,12 +36,18 @@ class SingletonKey {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SingletonKey.class);
 
-    private Class<?> type;
-    private Named    named;
+    private Class<?>    type;
+    private Named       named;
+    private StartupMode mode;
 
-    SingletonKey(Class<?> type, Named named) {
+    SingletonKey(Class<?> type, Named named, StartupMode mode) {
         this.type = type;
         this.named = named;
+        this.mode = mode;
+    }
+
+    public StartupMode getMode() {
+        return mode;
     }
 
     public Object loadComponent(ComponentContext compCtxt) {
@@ -60,6 +68,26 @@ class SingletonKey {
         }
     }
 
+/**
+ * @return	the Guice key this singleton is bound to, or <tt>null</tt> if there is
+ *          none.
+ */
+
+    public Key<?> toKey() {
+        if(type != null && named != null) {
+            return Key.get(type, named);
+        }
+        else if(type != null) {
+            return Key.get(type);
+        }
+        else if(named != null) {
+            return Key.get(Object.class, named);
+        }
+        else {
+            return null;
+        }
+    }
+
     @Override
     public String toString() {
         return ReflectionToStringBuilder.toString(this, ToStringStyle.SIMPLE_STYLE);
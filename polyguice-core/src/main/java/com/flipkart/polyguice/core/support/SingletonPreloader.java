@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.polyguice.core.ComponentContext;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.ProviderKeyBinding;
+
+/**
+ * Preloads singletons concurrently on a bounded thread pool. The dependencies
+ * between singletons are derived from the injector bindings; a singleton is
+ * loaded only after all singletons it depends upon are loaded, so independent
+ * singletons are initialized in parallel and the overall time is bounded by the
+ * longest dependency chain.
+ * <p>
+ *
+ * Dependencies that are not visible in the bindings (like components looked up
+ * through the component context during initialization) are still resolved
+ * correctly, since Guice guards singleton creation; they merely reduce the
+ * achievable parallelism.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class SingletonPreloader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SingletonPreloader.class);
+
+    private Injector         injector;
+    private ComponentContext compCtxt;
+    private int              parallelism;
+
+    SingletonPreloader(Injector injector, ComponentContext compCtxt, int parallelism) {
+        this.injector = injector;
+        this.compCtxt = compCtxt;
+        this.parallelism = parallelism;
+    }
+
+/**
+ * Loads the specified singletons.
+ * <p>
+ *
+ * @param	keys the singletons to load.
+ * @return	the loaded components, in the order of the keys, or <tt>null</tt> if
+ *          any of the singletons failed to load.
+ */
+
+    public Object[] preload(List<SingletonKey> keys) {
+        int count = keys.size();
+        List<Set<Integer>> deps = findDependencies(keys);
+        List<List<Integer>> dependents = new ArrayList<>(count);
+        int[] pending = new int[count];
+        for(int i = 0; i < count; i++) {
+            dependents.add(new ArrayList<Integer>());
+        }
+        for(int i = 0; i < count; i++) {
+            pending[i] = deps.get(i).size();
+            for(int dep : deps.get(i)) {
+                dependents.get(dep).add(i);
+            }
+        }
+
+        Object[] components = new Object[count];
+        boolean[] done = new boolean[count];
+        boolean failed = false;
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(parallelism, count)), new PreloadThreadFactory());
+        try {
+            CompletionService<Integer> loader = new ExecutorCompletionService<>(executor);
+            int inFlight = 0;
+            for(int i = 0; i < count; i++) {
+                if(pending[i] == 0) {
+                    loader.submit(new LoadTask(keys, i, components));
+                    inFlight++;
+                }
+            }
+            while(inFlight > 0) {
+                int index = loader.take().get();
+                inFlight--;
+                done[index] = true;
+                if(components[index] == null) {
+                    LOGGER.error("failed to load singleton: {}", keys.get(index));
+                    failed = true;
+                    continue;
+                }
+                if(failed) {
+                    continue;
+                }
+                for(int dependent : dependents.get(index)) {
+                    if(--pending[dependent] == 0) {
+                        loader.submit(new LoadTask(keys, dependent, components));
+                        inFlight++;
+                    }
+                }
+            }
+        }
+        catch(InterruptedException exep) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("interrupted while preloading singletons");
+            return null;
+        }
+        catch(ExecutionException exep) {
+            LOGGER.error("error preloading singletons", exep.getCause());
+            return null;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        if(failed) {
+            return null;
+        }
+
+        // Singletons on a dependency cycle (through providers, say) are never
+        // scheduled above. Guice resolves these, so load them one by one.
+        for(int i = 0; i < count; i++) {
+            if(!done[i]) {
+                components[i] = keys.get(i).loadComponent(compCtxt);
+                if(components[i] == null) {
+                    LOGGER.error("failed to load singleton: {}", keys.get(i));
+                    return null;
+                }
+            }
+        }
+        return components;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private List<Set<Integer>> findDependencies(List<SingletonKey> keys) {
+        Map<Key<?>, Integer> targets = new HashMap<>();
+        List<Key<?>> starts = new ArrayList<>(keys.size());
+        for(int i = 0; i < keys.size(); i++) {
+            Key<?> key = keys.get(i).toKey();
+            Key<?> target = (key != null) ? resolveTarget(key) : null;
+            starts.add(target);
+            if(target != null && !targets.containsKey(target)) {
+                targets.put(target, i);
+            }
+        }
+
+        List<Set<Integer>> result = new ArrayList<>(keys.size());
+        for(int i = 0; i < keys.size(); i++) {
+            Set<Integer> deps = new LinkedHashSet<>();
+            Key<?> start = starts.get(i);
+            if(start != null) {
+                Set<Key<?>> visited = new HashSet<>();
+                visited.add(start);
+                collectDependencies(start, targets, visited, deps);
+                deps.remove(i);
+            }
+            result.add(deps);
+        }
+        return result;
+    }
+
+    private void collectDependencies(Key<?> key, Map<Key<?>, Integer> targets,
+            Set<Key<?>> visited, Set<Integer> deps) {
+        Binding<?> binding = injector.getExistingBinding(key);
+        if(binding == null) {
+            return;
+        }
+        List<Key<?>> next = new ArrayList<>();
+        if(binding instanceof LinkedKeyBinding) {
+            next.add(((LinkedKeyBinding<?>) binding).getLinkedKey());
+        }
+        else if(binding instanceof ProviderKeyBinding) {
+            next.add(((ProviderKeyBinding<?>) binding).getProviderKey());
+        }
+        if(binding instanceof HasDependencies) {
+            for(Dependency<?> dep : ((HasDependencies) binding).getDependencies()) {
+                next.add(dep.getKey());
+            }
+        }
+        for(Key<?> nextKey : next) {
+            if(isLazy(nextKey)) {
+                continue;
+            }
+            Key<?> target = resolveTarget(nextKey);
+            if(!visited.add(target)) {
+                continue;
+            }
+            Integer index = targets.get(target);
+            if(index != null) {
+                deps.add(index);
+                continue;
+            }
+            collectDependencies(target, targets, visited, deps);
+        }
+    }
+
+    private Key<?> resolveTarget(Key<?> key) {
+        Set<Key<?>> seen = new HashSet<>();
+        while(seen.add(key)) {
+            Binding<?> binding = injector.getExistingBinding(key);
+            if(!(binding instanceof LinkedKeyBinding)) {
+                break;
+            }
+            key = ((LinkedKeyBinding<?>) binding).getLinkedKey();
+        }
+        return key;
+    }
+
+    private static boolean isLazy(Key<?> key) {
+        Class<?> type = key.getTypeLiteral().getRawType();
+        return type == Provider.class || type == javax.inject.Provider.class || type == Injector.class;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    private class LoadTask implements Callable<Integer> {
+
+        private List<SingletonKey> keys;
+        private int                index;
+        private Object[]           components;
+
+        LoadTask(List<SingletonKey> keys, int index, Object[] components) {
+            this.keys = keys;
+            this.index = index;
+            this.components = components;
+        }
+
+        @Override
+        public Integer call() {
+            try {
+                components[index] = keys.get(index).loadComponent(compCtxt);
+            }
+            catch(RuntimeException exep) {
+                LOGGER.error(exep.toString(), exep);
+            }
+            return index;
+        }
+    }
+
+    private static class PreloadThreadFactory implements ThreadFactory {
+
+        private AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "polyguice-preload-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records startup phase and component initialization timings for a
+ * {@link StartupReport}. Component timings are recorded only while the
+ * profiler is active, that is, until Polyguice has been prepared and any
+ * singletons started in the background have been created.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+class StartupProfiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupProfiler.class);
+
+    private ThreadMXBean               threadBean;
+    private boolean                    cpuTimeEnabled;
+    private List<StartupReport.Timing> phases;
+    private List<StartupReport.Timing> components;
+    private volatile boolean           active;
+    private boolean                    stopped;
+    private int                        pending;
+
+    StartupProfiler() {
+        threadBean = ManagementFactory.getThreadMXBean();
+        cpuTimeEnabled = threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+        phases = new ArrayList<>();
+        components = new ArrayList<>();
+        active = true;
+    }
+
+    public Mark start() {
+        return new Mark(System.nanoTime(), cpuTime());
+    }
+
+    public void endPhase(String name, Mark mark) {
+        StartupReport.Timing timing = timing(name, mark);
+        synchronized(phases) {
+            phases.add(timing);
+        }
+        LOGGER.debug("startup phase {}", timing);
+    }
+
+    public void endComponent(Class<?> type, Mark mark) {
+        if(!active) {
+            return;
+        }
+        StartupReport.Timing timing = timing(type.getName(), mark);
+        synchronized(components) {
+            components.add(timing);
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+/**
+ * Ends recording once all background work registered through
+ * {@link #beginBackground()} has ended.
+ */
+
+    public synchronized void stop() {
+        stopped = true;
+        active = (pending > 0);
+    }
+
+/**
+ * Keeps the profiler active until a matching call to {@link #endBackground()},
+ * even if stopped in the meantime.
+ */
+
+    public synchronized void beginBackground() {
+        pending++;
+    }
+
+    public synchronized void endBackground() {
+        pending--;
+        if(stopped && pending == 0) {
+            active = false;
+        }
+    }
+
+    public StartupReport getReport() {
+        boolean complete;
+        synchronized(this) {
+            complete = (stopped && pending == 0);
+        }
+        synchronized(phases) {
+            synchronized(components) {
+                return new StartupReport(phases, components, complete);
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private StartupReport.Timing timing(String name, Mark mark) {
+        long wall = System.nanoTime() - mark.wallStart;
+        long cpu = (mark.cpuStart >= 0) ? cpuTime() - mark.cpuStart : -1;
+        return new StartupReport.Timing(name, Thread.currentThread().getName(), wall, cpu);
+    }
+
+    private long cpuTime() {
+        return cpuTimeEnabled ? threadBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    static class Mark {
+
+        private long wallStart;
+        private long cpuStart;
+
+        Mark(long wallStart, long cpuStart) {
+            this.wallStart = wallStart;
+            this.cpuStart = cpuStart;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Timings recorded while preparing Polyguice: one entry per startup phase and
+ * one per component initialization callback. Both wall-clock and CPU time of
+ * the executing thread are recorded. CPU time is reported as <tt>-1</tt> if the
+ * JVM does not support thread CPU time measurement.
+ * <p>
+ *
+ * Phases may nest; the injector creation phase, for example, includes binding
+ * of components as Guice configures the Polyguice module.
+ * <p>
+ *
+ * Singletons started in the background are created after the prepare phase has
+ * ended. Their timings, and that of the background phase, are added as they
+ * complete; the report is incomplete until then.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class StartupReport {
+
+    public static final String PHASE_SCAN       = "scan";
+    public static final String PHASE_AUTOBIND   = "autobind";
+    public static final String PHASE_INJECTOR   = "createInjector";
+    public static final String PHASE_PRELOAD    = "preloadSingletons";
+    public static final String PHASE_PREPARE    = "prepare";
+    public static final String PHASE_BACKGROUND = "backgroundSingletons";
+
+    private List<Timing> phases;
+    private List<Timing> components;
+    private boolean      complete;
+
+    StartupReport(List<Timing> phases, List<Timing> components, boolean complete) {
+        this.phases = Collections.unmodifiableList(new ArrayList<>(phases));
+        this.components = Collections.unmodifiableList(new ArrayList<>(components));
+        this.complete = complete;
+    }
+
+/**
+ * @return	<tt>true</tt> if preparation has ended and no singletons are still
+ *          being created in the background.
+ */
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public List<Timing> getPhases() {
+        return phases;
+    }
+
+    public Timing getPhase(String name) {
+        for(Timing phase : phases) {
+            if(phase.getName().equals(name)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    public List<Timing> getComponents() {
+        return components;
+    }
+
+/**
+ * Retrieves the components whose initialization took the longest wall-clock
+ * time, slowest first.
+ * <p>
+ *
+ * @param	count maximum number of components to return.
+ * @return	the slowest components.
+ */
+
+    public List<Timing> getSlowestComponents(int count) {
+        List<Timing> sorted = new ArrayList<>(components);
+        Collections.sort(sorted, new Comparator<Timing>() {
+            @Override
+            public int compare(Timing t1, Timing t2) {
+                return Long.compare(t2.getWallNanos(), t1.getWallNanos());
+            }
+        });
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+/**
+ * Renders this report as a JSON document.
+ * <p>
+ *
+ * @return	the JSON representation of this report.
+ */
+
+    public String toJson() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("{\"complete\":").append(complete);
+        buffer.append(",\"phases\":");
+        appendTimings(buffer, phases);
+        buffer.append(",\"components\":");
+        appendTimings(buffer, components);
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static void appendTimings(StringBuilder buffer, List<Timing> timings) {
+        buffer.append('[');
+        for(int i = 0; i < timings.size(); i++) {
+            Timing timing = timings.get(i);
+            if(i > 0) {
+                buffer.append(',');
+            }
+            buffer.append("{\"name\":");
+            appendString(buffer, timing.getName());
+            buffer.append(",\"wallNanos\":").append(timing.getWallNanos());
+            buffer.append(",\"cpuNanos\":").append(timing.getCpuNanos());
+            buffer.append(",\"thread\":");
+            appendString(buffer, timing.getThread());
+            buffer.append('}');
+        }
+        buffer.append(']');
+    }
+
+    private static void appendString(StringBuilder buffer, String value) {
+        buffer.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch(ch) {
+            case '"':
+                buffer.append("\\\"");
+                break;
+            case '\\':
+                buffer.append("\\\\");
+                break;
+            case '\n':
+                buffer.append("\\n");
+                break;
+            case '\r':
+                buffer.append("\\r");
+                break;
+            case '\t':
+                buffer.append("\\t");
+                break;
+            default:
+                if(ch < 0x20) {
+                    buffer.append(String.format("\\u%04x", (int) ch));
+                }
+                else {
+                    buffer.append(ch);
+                }
+            }
+        }
+        buffer.append('"');
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+/**
+ * Timing of a single startup phase or component initialization.
+ */
+
+    public static class Timing {
+
+        private String name;
+        private String thread;
+        private long   wallNanos;
+        private long   cpuNanos;
+
+        Timing(String name, String thread, long wallNanos, long cpuNanos) {
+            this.name = name;
+            this.thread = thread;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+        }
+
+/**
+ * @return	the phase name, or the component class name.
+ */
+
+        public String getName() {
+            return name;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": wall=" + (wallNanos / 1000) + "us, cpu=" + (cpuNanos / 1000) + "us";
+        }
+    }
+}
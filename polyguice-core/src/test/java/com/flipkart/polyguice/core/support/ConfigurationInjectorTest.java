@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.Configuration;
+import com.flipkart.polyguice.core.ConfigurationProvider;
+
+/**
+ * Injects configuration into several instances of a class, checking that
+ * immutable values are memoized while mutable ones are never shared.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ConfigurationInjectorTest {
+
+    private CountingProvider      provider;
+    private ConfigurationInjector confInject;
+
+    @Before
+    public void setUp() {
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("timeout", "30");
+        Map<String, Object> values = new HashMap<>();
+        values.put("app.name", "sample");
+        values.put("app.port", 8080L);
+        values.put("app.hosts", Arrays.asList("alpha", "beta"));
+        values.put("app.props", props);
+        provider = new CountingProvider(values);
+        confInject = new ConfigurationInjector();
+        confInject.register(provider);
+    }
+
+    @Test
+    public void testMutableValuesAreNotShared() {
+        Settings first = new Settings();
+        Settings second = new Settings();
+        confInject.injectComponent(first);
+        confInject.injectComponent(second);
+        Assert.assertArrayEquals(new String[] {"alpha", "beta"}, second.hosts);
+        Assert.assertNotSame(first.hosts, second.hosts);
+        Assert.assertNotSame(first.props, second.props);
+
+        first.hosts[0] = "gamma";
+        first.props.setProperty("timeout", "0");
+        first.props.setProperty("extra", "1");
+        Assert.assertEquals("alpha", second.hosts[0]);
+        Assert.assertEquals("30", second.props.getProperty("timeout"));
+        Assert.assertNull(second.props.getProperty("extra"));
+
+        Settings third = new Settings();
+        confInject.injectComponent(third);
+        Assert.assertEquals("alpha", third.hosts[0]);
+        Assert.assertEquals("30", third.props.getProperty("timeout"));
+    }
+
+    @Test
+    public void testImmutableValuesAreMemoized() {
+        for(int i = 0; i < 3; i++) {
+            Settings settings = new Settings();
+            confInject.injectComponent(settings);
+            Assert.assertEquals("sample", settings.name);
+            Assert.assertEquals(8080, settings.port);
+        }
+        Assert.assertEquals(1, provider.count("app.name"));
+        Assert.assertEquals(1, provider.count("app.port"));
+        Assert.assertTrue(provider.count("app.hosts") >= 3);
+
+        confInject.invalidate(null);
+        confInject.injectComponent(new Settings());
+        Assert.assertEquals(2, provider.count("app.port"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    public static class Settings {
+
+        @Configuration("app.name")
+        private String name;
+
+        @Configuration("app.port")
+        private int port;
+
+        @Configuration("app.hosts")
+        private String[] hosts;
+
+        @Configuration("app.props")
+        private Properties props;
+    }
+
+    private static class CountingProvider implements ConfigurationProvider {
+
+        private Map<String, Object>  values;
+        private Map<String, Integer> counts;
+
+        CountingProvider(Map<String, Object> values) {
+            this.values = values;
+            counts = new HashMap<>();
+        }
+
+        public synchronized int count(String path) {
+            Integer count = counts.get(path);
+            return (count != null) ? count : 0;
+        }
+
+        @Override
+        public boolean contains(String path) {
+            return values.containsKey(path);
+        }
+
+        @Override
+        public synchronized Object getValue(String path, Class<?> type) {
+            counts.put(path, count(path) + 1);
+            return ConverterRegistry.getDefault().convert(values.get(path), type);
+        }
+    }
+}
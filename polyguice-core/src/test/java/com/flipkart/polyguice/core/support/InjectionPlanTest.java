@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.Configuration;
+import com.flipkart.polyguice.core.External;
+import com.flipkart.polyguice.core.Reloadable;
+
+/**
+ * Builds injection plans for sample classes and checks that the injectors
+ * build a plan only once per class and reuse it for all instances.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class InjectionPlanTest {
+
+    @Test
+    public void testBuild() {
+        InjectionPlan plan = InjectionPlan.build(Settings.class, Configuration.class);
+        Assert.assertFalse(plan.isReloadable());
+        Map<String, InjectionPlan.Member> members = byName(plan);
+        Assert.assertEquals(members.keySet().toString(), 6, members.size());
+
+        InjectionPlan.Member name = members.get("name");
+        Assert.assertTrue(name.isField());
+        Assert.assertTrue(name.isInjectable());
+        Assert.assertEquals("app.name", name.getKey());
+        Assert.assertEquals(String.class, name.getType());
+        Assert.assertFalse(name.isRequired());
+
+        InjectionPlan.Member port = members.get("port");
+        Assert.assertEquals("app.port", port.getKey());
+        Assert.assertEquals(int.class, port.getType());
+        Assert.assertTrue(port.isRequired());
+
+        InjectionPlan.Member timeout = members.get("setTimeout");
+        Assert.assertFalse(timeout.isField());
+        Assert.assertTrue(timeout.isInjectable());
+        Assert.assertEquals(long.class, timeout.getType());
+        Assert.assertEquals(Settings.class.getName(), timeout.getDeclaringClassName());
+
+        Assert.assertFalse("unnamed field", members.get("unnamed").isInjectable());
+        Assert.assertFalse("two parameters", members.get("setRange").isInjectable());
+        Assert.assertFalse("return type", members.get("setLimit").isInjectable());
+        Assert.assertNull(members.get("ignored"));
+    }
+
+    @Test
+    public void testInheritedMembers() {
+        InjectionPlan plan = InjectionPlan.build(DerivedSettings.class, Configuration.class);
+        Assert.assertTrue(plan.isReloadable());
+        Map<String, InjectionPlan.Member> members = byName(plan);
+        Assert.assertTrue("own field", members.containsKey("region"));
+        Assert.assertTrue("inherited public method", members.containsKey("setTimeout"));
+        Assert.assertFalse("inherited field", members.containsKey("name"));
+
+        Assert.assertTrue(InjectionPlan.build(Object.class, Configuration.class).isEmpty());
+        Assert.assertTrue(InjectionPlan.build(Settings.class, External.class).isEmpty());
+    }
+
+    @Test
+    public void testPlansAreShared() throws Exception {
+        final ConfigurationInjector confInject = new ConfigurationInjector();
+        InjectionPlan plan = confInject.getPlan(Settings.class);
+        Assert.assertSame(plan, confInject.getPlan(Settings.class));
+        Assert.assertNotSame(plan, confInject.getPlan(DerivedSettings.class));
+        Assert.assertTrue(confInject.hasInjections(Settings.class));
+        Assert.assertFalse(confInject.hasInjections(String.class));
+
+        ExternalsInjector externInject = new ExternalsInjector();
+        Assert.assertSame(externInject.getPlan(Client.class), externInject.getPlan(Client.class));
+
+        final ConfigurationInjector fresh = new ConfigurationInjector();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<InjectionPlan>> futures = new ArrayList<>();
+            for(int i = 0; i < 16; i++) {
+                futures.add(executor.submit(new Callable<InjectionPlan>() {
+                    @Override
+                    public InjectionPlan call() {
+                        return fresh.getPlan(Settings.class);
+                    }
+                }));
+            }
+            InjectionPlan first = futures.get(0).get();
+            for(Future<InjectionPlan> future : futures) {
+                Assert.assertSame(first, future.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testExternalsInjectedThroughPlan() {
+        ExternalsInjector externInject = new ExternalsInjector();
+        Object endpoint = new Object();
+        externInject.register("endpoint", endpoint);
+        externInject.register("retries", "3");
+
+        Client first = new Client();
+        Client second = new Client();
+        externInject.injectComponent(first);
+        externInject.injectComponent(second);
+        Assert.assertSame(endpoint, first.endpoint);
+        Assert.assertSame(endpoint, second.endpoint);
+        Assert.assertEquals("3", second.retries);
+        Assert.assertTrue(externInject.hasInjections(Client.class));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingRequiredExternal() {
+        new ExternalsInjector().injectComponent(new Client());
+    }
+
+    @Test
+    public void testInjectConvertsToMemberType() throws Exception {
+        Map<String, InjectionPlan.Member> members = byName(InjectionPlan.build(Counter.class, Configuration.class));
+        Counter counter = new Counter();
+        members.get("count").inject(counter, 42L);
+        Assert.assertEquals(42, counter.count);
+        members.get("count").inject(counter, "7");
+        Assert.assertEquals(7, counter.count);
+        members.get("setRatio").inject(counter, 3);
+        Assert.assertEquals(Double.valueOf(3.0), counter.ratio);
+        members.get("label").inject(counter, null);
+        Assert.assertNull(counter.label);
+        members.get("total").inject(null, 5);
+        Assert.assertEquals(5L, Counter.total);
+
+        assertRejected(members.get("count"), counter, 1L << 40);
+        assertRejected(members.get("count"), counter, "many");
+        assertRejected(members.get("count"), counter, null);
+        Assert.assertEquals(7, counter.count);
+    }
+
+    @Test
+    public void testSetterExceptionsAreWrapped() throws Exception {
+        Map<String, InjectionPlan.Member> members = byName(InjectionPlan.build(Counter.class, Configuration.class));
+        try {
+            members.get("setFailing").inject(new Counter(), "x");
+            Assert.fail("exception not propagated");
+        }
+        catch(InvocationTargetException exep) {
+            Assert.assertTrue(exep.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static void assertRejected(InjectionPlan.Member member, Object target, Object value) throws Exception {
+        try {
+            member.inject(target, value);
+            Assert.fail("injected " + value + " into " + member.getName());
+        }
+        catch(IllegalArgumentException exep) {
+            //NOOP, expected
+        }
+    }
+
+    private static Map<String, InjectionPlan.Member> byName(InjectionPlan plan) {
+        Map<String, InjectionPlan.Member> result = new HashMap<>();
+        for(InjectionPlan.Member member : plan.getMembers()) {
+            result.put(member.getName(), member);
+        }
+        return result;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    public static class Settings {
+
+        @Configuration("app.name")
+        private String name;
+
+        @Configuration(name = "app.port", required = true)
+        private int port;
+
+        @Configuration
+        private String unnamed;
+
+        private String ignored;
+
+        @Configuration("app.timeout")
+        public void setTimeout(long timeout) {
+        }
+
+        @Configuration("app.range")
+        public void setRange(int from, int to) {
+        }
+
+        @Configuration("app.limit")
+        public int setLimit(int limit) {
+            return limit;
+        }
+    }
+
+    @Reloadable
+    public static class DerivedSettings extends Settings {
+
+        @Configuration("app.region")
+        private String region;
+    }
+
+    public static class Counter {
+
+        @Configuration("counter.total")
+        private static long total;
+
+        @Configuration("counter.count")
+        private int count;
+
+        @Configuration("counter.label")
+        private String label = "unset";
+
+        private Double ratio;
+
+        @Configuration("counter.ratio")
+        public void setRatio(Double ratio) {
+            this.ratio = ratio;
+        }
+
+        @Configuration("counter.failing")
+        public void setFailing(String value) {
+            throw new IllegalStateException(value);
+        }
+    }
+
+    public static class Client {
+
+        @External(value = "endpoint", required = true)
+        private Object endpoint;
+
+        private String retries;
+
+        @External("retries")
+        public void setRetries(String retries) {
+            this.retries = retries;
+        }
+    }
+}
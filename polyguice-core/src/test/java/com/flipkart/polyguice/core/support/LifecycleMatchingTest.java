@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.ComponentContext;
+import com.flipkart.polyguice.core.support.lifecycle.Audited;
+import com.flipkart.polyguice.core.support.lifecycle.AuditedService;
+import com.flipkart.polyguice.core.support.lifecycle.Callbacks;
+
+/**
+ * Prepares Polyguice with component processors restricted by
+ * {@link com.flipkart.polyguice.core.AppliesTo}, checking that each processor
+ * sees only the components it applies to, and that components without any
+ * lifecycle handling are left alone.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class LifecycleMatchingTest {
+
+    private Polyguice        polyguice;
+    private ComponentContext ctxt;
+
+    @Before
+    public void setUp() {
+        polyguice = new Polyguice().scanPackage(AuditedService.class.getPackage().getName()).prepare();
+        ctxt = polyguice.getComponentContext();
+        Callbacks.EVENTS.clear();
+    }
+
+    @After
+    public void tearDown() {
+        polyguice.stop();
+    }
+
+    @Test
+    public void testAppliesToType() {
+        Assert.assertNotNull(ctxt.getInstance("auditedService", Audited.class));
+        Assert.assertEquals(Arrays.asList(
+                "audit:afterInjection:AuditedService",
+                "audit:beforeInitialization:AuditedService",
+                "service:initialize:AuditedService",
+                "audit:afterInitialization:AuditedService"), Callbacks.EVENTS);
+    }
+
+    @Test
+    public void testAppliesToAnnotation() {
+        Assert.assertNotNull(ctxt.getInstance("trackedService"));
+        Assert.assertEquals(Arrays.asList(
+                "track:afterInjection:TrackedService",
+                "track:beforeInitialization:TrackedService",
+                "service:initialize:TrackedService",
+                "track:afterInitialization:TrackedService"), Callbacks.EVENTS);
+    }
+
+    @Test
+    public void testBothProcessorsApply() {
+        Assert.assertNotNull(ctxt.getInstance("auditedTrackedService", Audited.class));
+        List<String> events = new ArrayList<>(Callbacks.EVENTS);
+        Assert.assertEquals(events.toString(), 2, events.size());
+        Assert.assertTrue(events.contains("audit:afterInjection:AuditedTrackedService"));
+        Assert.assertTrue(events.contains("track:afterInjection:AuditedTrackedService"));
+    }
+
+    @Test
+    public void testUnmanagedType() {
+        Assert.assertNotNull(ctxt.getInstance("plainService"));
+        Assert.assertTrue(Callbacks.EVENTS.isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Converts numbers between types, checking that integral targets only accept
+ * values they can represent exactly.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class NumberConversionTest {
+
+    private ConverterRegistry registry = new ConverterRegistry();
+
+    @Test
+    public void testExactConversions() {
+        Assert.assertEquals(3, registry.convert("3", int.class));
+        Assert.assertEquals(3, registry.convert("3.0", Integer.class));
+        Assert.assertEquals(1000, registry.convert("1e3", int.class));
+        Assert.assertEquals(-255, registry.convert("-0xff", int.class));
+        Assert.assertEquals((byte) 127, registry.convert(127L, byte.class));
+        Assert.assertEquals((byte) -128, registry.convert("-128", byte.class));
+        Assert.assertEquals((short) 7, registry.convert(7.0, short.class));
+        Assert.assertEquals(Long.MAX_VALUE, registry.convert("9223372036854775807", long.class));
+        Assert.assertEquals(Long.MIN_VALUE, registry.convert(new BigDecimal(Long.MIN_VALUE), long.class));
+        Assert.assertEquals(BigInteger.TEN, registry.convert(10.0, BigInteger.class));
+        Assert.assertEquals(new BigDecimal("2.5"), registry.convert(2.5, BigDecimal.class));
+    }
+
+    @Test
+    public void testInexactIntegralConversions() {
+        Assert.assertNull(registry.convert("3.7", int.class));
+        Assert.assertNull(registry.convert(3.7, Integer.class));
+        Assert.assertNull(registry.convert(300, byte.class));
+        Assert.assertNull(registry.convert("300", Byte.class));
+        Assert.assertNull(registry.convert(40000, short.class));
+        Assert.assertNull(registry.convert(1L << 40, int.class));
+        Assert.assertNull(registry.convert("9223372036854775808", long.class));
+        Assert.assertNull(registry.convert(1e19, long.class));
+        Assert.assertNull(registry.convert(Double.NaN, long.class));
+        Assert.assertNull(registry.convert(Double.POSITIVE_INFINITY, int.class));
+        Assert.assertNull(registry.convert(0.5, BigInteger.class));
+    }
+
+    @Test
+    public void testFloatingPointConversions() {
+        Assert.assertEquals(3.7f, registry.convert("3.7", float.class));
+        Assert.assertEquals(0.1, registry.convert("0.1", Double.class));
+        Assert.assertEquals((float) (1L << 40), registry.convert(1L << 40, float.class));
+        Assert.assertEquals(0.1f, registry.convert(0.1, float.class));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.Bindable;
+import com.flipkart.polyguice.core.Component;
+
+/**
+ * Scans the test packages and checks that only the requested packages and
+ * classpath roots contribute to the resulting index.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class PackageScannerTest {
+
+    private static final String[] PACKAGES = {Shape.class.getPackage().getName()};
+
+    @Test
+    public void testAnnotatedAndSubTypes() {
+        ScanIndex index = new PackageScanner().scan(PACKAGES);
+
+        Set<Class<?>> components = index.getTypesAnnotatedWith(Component.class);
+        Assert.assertTrue(components.contains(Canvas.class));
+        Assert.assertTrue(components.contains(Circle.class));
+        Assert.assertTrue(components.contains(Square.class));
+        Assert.assertTrue(components.contains(Triangle.class));
+
+        Assert.assertTrue(index.getTypesAnnotatedWith(Bindable.class).contains(Shape.class));
+        Set<Class<? extends Shape>> shapes = index.getSubTypesOf(Shape.class);
+        Assert.assertTrue(shapes.contains(NonPointyShape.class));
+        Assert.assertTrue(shapes.contains(Circle.class));
+        Assert.assertTrue(shapes.contains(Square.class));
+        Assert.assertTrue(shapes.contains(Triangle.class));
+        Assert.assertFalse(shapes.contains(Canvas.class));
+    }
+
+    @Test
+    public void testOnlyRequestedPackages() {
+        ScanIndex index = new PackageScanner().scan(PACKAGES);
+        assertInPackages(index.getAnnotatedIndex());
+        assertInPackages(index.getSubTypeIndex());
+
+        String[] other = {"org.junit.rules"};
+        Set<Class<?>> components = new PackageScanner().scan(other).getTypesAnnotatedWith(Component.class);
+        Assert.assertTrue(components.isEmpty());
+    }
+
+    @Test
+    public void testExcludedRoots() {
+        String root = new File(Shape.class.getProtectionDomain().getCodeSource().getLocation().getPath())
+                .toURI().toString();
+        ScanIndex index = new PackageScanner().scan(PACKAGES, Collections.singleton(ComponentIndex.toRoot(root)));
+        Assert.assertFalse(index.getTypesAnnotatedWith(Component.class).contains(Canvas.class));
+        Assert.assertTrue(index.getSubTypesOf(Shape.class).isEmpty());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static void assertInPackages(Map<String, Set<String>> index) {
+        for(Set<String> names : index.values()) {
+            for(String name : names) {
+                Assert.assertTrue(name, ScanIndex.inPackages(name, PACKAGES));
+            }
+        }
+    }
+}
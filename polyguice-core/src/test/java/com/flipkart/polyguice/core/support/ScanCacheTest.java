@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.flipkart.polyguice.core.Component;
+
+/**
+ * Writes and reads back scan results through the persistent scan cache,
+ * checking that a change to the scanned classpath roots invalidates them.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class ScanCacheTest {
+
+    private static final String[] PACKAGES = {"com.example.app"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File      rootDir;
+    private File      cacheDir;
+    private List<URL> urls;
+    private ScanCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        rootDir = folder.newFolder("classes");
+        cacheDir = new File(folder.getRoot(), "cache");
+        write(new File(rootDir, "com/example/app/Main.class"), 10);
+        urls = Collections.singletonList(rootDir.toURI().toURL());
+        cache = new ScanCache(cacheDir);
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        byte[] fprint = cache.fingerprint(PACKAGES, urls);
+        Assert.assertNotNull(fprint);
+        Assert.assertNull(cache.load(PACKAGES, fprint));
+
+        cache.store(PACKAGES, fprint, sampleIndex());
+        ScanIndex loaded = cache.load(PACKAGES, fprint);
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals(sampleIndex().getAnnotatedIndex(), loaded.getAnnotatedIndex());
+        Assert.assertEquals(sampleIndex().getSubTypeIndex(), loaded.getSubTypeIndex());
+        Assert.assertNull(cache.load(new String[] {"com.example.other"}, fprint));
+    }
+
+    @Test
+    public void testFingerprint() throws IOException {
+        byte[] fprint = cache.fingerprint(PACKAGES, urls);
+        Assert.assertArrayEquals(fprint, cache.fingerprint(PACKAGES, urls));
+        Assert.assertArrayEquals(fprint, cache.fingerprint(new String[] {"com.example.app"}, urls));
+        Assert.assertFalse(Arrays.equals(fprint, cache.fingerprint(new String[] {"com.example"}, urls)));
+
+        write(new File(rootDir, "com/example/other/Other.class"), 5);
+        Assert.assertArrayEquals("change outside the packages", fprint, cache.fingerprint(PACKAGES, urls));
+
+        write(new File(rootDir, "com/example/app/Main.class"), 20);
+        Assert.assertFalse("modified class", Arrays.equals(fprint, cache.fingerprint(PACKAGES, urls)));
+
+        fprint = cache.fingerprint(PACKAGES, urls);
+        write(new File(rootDir, "com/example/app/sub/Added.class"), 1);
+        Assert.assertFalse("added class", Arrays.equals(fprint, cache.fingerprint(PACKAGES, urls)));
+
+        URL missing = new File(folder.getRoot(), "missing.jar").toURI().toURL();
+        Assert.assertNull(cache.fingerprint(PACKAGES, Collections.singletonList(missing)));
+        Assert.assertNull(cache.fingerprint(PACKAGES, Collections.singletonList(new URL("http://localhost/app.jar"))));
+    }
+
+    @Test
+    public void testJarFingerprint() throws IOException {
+        File jar = new File(folder.getRoot(), "app.jar");
+        write(jar, 100);
+        List<URL> jarUrls = Collections.singletonList(new URL("jar:" + jar.toURI() + "!/"));
+        byte[] fprint = cache.fingerprint(PACKAGES, jarUrls);
+        Assert.assertNotNull(fprint);
+        Assert.assertArrayEquals(fprint, cache.fingerprint(PACKAGES,
+                Collections.singletonList(jar.toURI().toURL())));
+
+        write(jar, 101);
+        Assert.assertFalse(Arrays.equals(fprint, cache.fingerprint(PACKAGES, jarUrls)));
+    }
+
+    @Test
+    public void testStaleCacheIsMissed() throws IOException {
+        byte[] fprint = cache.fingerprint(PACKAGES, urls);
+        cache.store(PACKAGES, fprint, sampleIndex());
+
+        write(new File(rootDir, "com/example/app/Main.class"), 30);
+        byte[] changed = cache.fingerprint(PACKAGES, urls);
+        Assert.assertNull(cache.load(PACKAGES, changed));
+        Assert.assertNotNull(cache.load(PACKAGES, fprint));
+    }
+
+    @Test
+    public void testRewriteReplacesFile() throws IOException {
+        byte[] fprint = cache.fingerprint(PACKAGES, urls);
+        cache.store(PACKAGES, fprint, sampleIndex());
+
+        write(new File(rootDir, "com/example/app/Main.class"), 40);
+        byte[] changed = cache.fingerprint(PACKAGES, urls);
+        ScanIndex empty = new ScanIndex(new HashMap<String, Set<String>>(), new HashMap<String, Set<String>>());
+        cache.store(PACKAGES, changed, empty);
+
+        String[] files = cacheDir.list();
+        Assert.assertEquals("temporary files left behind: " + Arrays.toString(files), 1, files.length);
+        Assert.assertNull(cache.load(PACKAGES, fprint));
+        ScanIndex loaded = cache.load(PACKAGES, changed);
+        Assert.assertNotNull(loaded);
+        Assert.assertTrue(loaded.getAnnotatedIndex().isEmpty());
+    }
+
+    @Test
+    public void testCorruptFileIsMissed() throws IOException {
+        byte[] fprint = cache.fingerprint(PACKAGES, urls);
+        cache.store(PACKAGES, fprint, sampleIndex());
+        File file = cacheDir.listFiles()[0];
+
+        byte[] head = Arrays.copyOf(Files.readAllBytes(file.toPath()), 40);
+        Files.write(file.toPath(), head);
+        Assert.assertNull(cache.load(PACKAGES, fprint));
+
+        write(file, 64);
+        Assert.assertNull(cache.load(PACKAGES, fprint));
+    }
+
+    @Test
+    public void testScannerUsesCache() {
+        String[] pkgNames = {Shape.class.getPackage().getName()};
+        File scanCacheDir = new File(folder.getRoot(), "scan");
+        ScanIndex first = new PackageScanner(scanCacheDir).scan(pkgNames);
+        Assert.assertEquals(1, scanCacheDir.list().length);
+
+        ScanIndex second = new PackageScanner(scanCacheDir).scan(pkgNames);
+        Assert.assertEquals(first.getAnnotatedIndex(), second.getAnnotatedIndex());
+        Assert.assertEquals(first.getSubTypeIndex(), second.getSubTypeIndex());
+        Assert.assertTrue(second.getTypesAnnotatedWith(Component.class).contains(Canvas.class));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static ScanIndex sampleIndex() {
+        Map<String, Set<String>> annotated = new HashMap<>();
+        annotated.put(Component.class.getName(), names("com.example.app.Main", "com.example.app.Helper"));
+        Map<String, Set<String>> subTypes = new HashMap<>();
+        subTypes.put("java.lang.Object", names("com.example.app.Main"));
+        subTypes.put("com.example.app.Main", names("com.example.app.Main$Inner"));
+        return new ScanIndex(annotated, subTypes);
+    }
+
+    private static Set<String> names(String... values) {
+        return new LinkedHashSet<>(Arrays.asList(values));
+    }
+
+    private static void write(File file, int length) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.Configuration;
+import com.flipkart.polyguice.core.ConfigurationProvider;
+import com.flipkart.polyguice.core.ConfigurationSection;
+import com.flipkart.polyguice.core.TimeSpan;
+
+/**
+ * Creates configuration section proxies and checks their values, the defaults
+ * of missing values, required members and refreshes on change.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class SectionHandlerTest {
+
+    private Map<String, Object>   values;
+    private ConfigurationInjector confInject;
+
+    @Before
+    public void setUp() {
+        values = new HashMap<>();
+        values.put("db.max", "20");
+        values.put("db.idle", "5m");
+        values.put("db.url", "jdbc:h2:mem");
+        values.put("dbx.max", "99");
+        confInject = new ConfigurationInjector();
+        confInject.register(new MapProvider(values));
+    }
+
+    @Test
+    public void testProxyValues() {
+        DbSection section = confInject.createSection(DbSection.class);
+        Assert.assertTrue(Proxy.isProxyClass(section.getClass()));
+        Assert.assertEquals(20, section.max());
+        Assert.assertEquals(300000L, section.idle().toMillis());
+        Assert.assertEquals("jdbc:h2:mem", section.jdbcUrl());
+        Assert.assertSame(section.idle(), section.idle());
+    }
+
+    @Test
+    public void testMissingValuesUseDefaults() {
+        values.remove("db.max");
+        values.put("db.idle", "not a duration");
+        DbSection section = confInject.createSection(DbSection.class);
+        Assert.assertEquals(0, section.max());
+        Assert.assertNull(section.idle());
+        Assert.assertFalse(section.readOnly());
+        Assert.assertNull(section.name());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingRequiredValue() {
+        values.remove("db.url");
+        confInject.createSection(DbSection.class);
+    }
+
+    @Test
+    public void testRefresh() {
+        DbSection section = confInject.createSection(DbSection.class);
+        values.put("db.max", "40");
+        confInject.refreshSections(Collections.singleton("dbx.max"));
+        Assert.assertEquals("change outside the prefix", 20, section.max());
+
+        confInject.refreshSections(Collections.singleton("db.max"));
+        Assert.assertEquals(40, section.max());
+
+        values.put("db.max", "60");
+        confInject.refreshSections(null);
+        Assert.assertEquals(60, section.max());
+
+        values.put("db.max", "80");
+        values.remove("db.url");
+        confInject.refreshSections(Collections.singleton("db.url"));
+        Assert.assertEquals("required value missing", 60, section.max());
+        Assert.assertEquals("jdbc:h2:mem", section.jdbcUrl());
+    }
+
+    @Test
+    public void testIsAffected() {
+        SectionHandler handler = new SectionHandler(DbSection.class);
+        Assert.assertTrue(handler.isAffected(null));
+        Assert.assertTrue(handler.isAffected(Collections.singleton("db.max")));
+        Assert.assertFalse(handler.isAffected(Collections.singleton("db")));
+        Assert.assertFalse(handler.isAffected(Collections.singleton("dbx.max")));
+        Assert.assertFalse(handler.isAffected(Collections.<String>emptySet()));
+    }
+
+    @Test
+    public void testObjectMethods() {
+        DbSection section = confInject.createSection(DbSection.class);
+        DbSection other = confInject.createSection(DbSection.class);
+        Assert.assertEquals(section, section);
+        Assert.assertNotEquals(section, other);
+        Assert.assertEquals(System.identityHashCode(section), section.hashCode());
+        Assert.assertEquals("DbSection[db]", section.toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnknownMethod() throws Exception {
+        SectionHandler handler = new SectionHandler(DbSection.class);
+        handler.setValues(new Object[handler.size()]);
+        handler.invoke(null, Runnable.class.getMethod("run"), null);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMethodWithParameters() {
+        new SectionHandler(BadSection.class);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNotASection() {
+        new SectionHandler(Runnable.class);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    @ConfigurationSection("db")
+    public interface DbSection {
+
+        int max();
+
+        TimeSpan idle();
+
+        @Configuration(value = "url", required = true)
+        String jdbcUrl();
+
+        boolean readOnly();
+
+        String name();
+    }
+
+    @ConfigurationSection("db")
+    public interface BadSection {
+
+        int max(int fallback);
+    }
+
+    private static class MapProvider implements ConfigurationProvider {
+
+        private Map<String, Object> values;
+
+        MapProvider(Map<String, Object> values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean contains(String path) {
+            return values.containsKey(path);
+        }
+
+        @Override
+        public Object getValue(String path, Class<?> type) {
+            return ConverterRegistry.getDefault().convert(values.get(path), type);
+        }
+    }
+}
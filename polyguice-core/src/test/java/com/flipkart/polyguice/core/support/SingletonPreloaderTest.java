@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.StartupMode;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+
+/**
+ * Preloads singletons of a plain Guice injector in parallel, checking that
+ * dependencies are loaded first, that cycles fall back to sequential loading
+ * and that a failure is reported.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class SingletonPreloaderTest {
+
+    private static final List<String> EVENTS = Collections.synchronizedList(new ArrayList<String>());
+
+    private static CyclicBarrier barrier;
+
+    private Injector injector;
+
+    @Before
+    public void setUp() {
+        EVENTS.clear();
+        barrier = new CyclicBarrier(2);
+        injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(Config.class);
+                bind(Repository.class);
+                bind(Service.class);
+                bind(Left.class).to(LeftImpl.class);
+                bind(Right.class).to(RightImpl.class);
+                bind(First.class);
+                bind(Second.class);
+                bind(Broken.class);
+                bind(NeedsBroken.class);
+            }
+        });
+    }
+
+    @Test
+    public void testDependenciesLoadFirst() {
+        Object[] loaded = preload(4, Service.class, Repository.class, Config.class);
+        Assert.assertNotNull(loaded);
+        Assert.assertTrue(loaded[0] instanceof Service);
+        Assert.assertTrue(loaded[1] instanceof Repository);
+        Assert.assertTrue(loaded[2] instanceof Config);
+        Assert.assertEquals(Arrays.asList("Config", "Repository", "Service"), EVENTS);
+        Assert.assertSame(loaded[1], ((Service) loaded[0]).repo);
+        Assert.assertSame(injector.getInstance(Service.class), loaded[0]);
+    }
+
+    @Test
+    public void testIndependentLoadInParallel() {
+        Object[] loaded = preload(2, First.class, Second.class);
+        Assert.assertNotNull("singletons were not loaded concurrently", loaded);
+        Assert.assertTrue(EVENTS.contains("First") && EVENTS.contains("Second"));
+    }
+
+    @Test
+    public void testCycleFallsBack() {
+        Object[] loaded = preload(2, Left.class, Right.class, Config.class);
+        Assert.assertNotNull(loaded);
+        Assert.assertTrue(loaded[0] instanceof Left);
+        Assert.assertTrue(loaded[1] instanceof Right);
+        Assert.assertSame(loaded[1], ((LeftImpl) loaded[0]).right);
+        Assert.assertTrue(EVENTS.contains("Left") && EVENTS.contains("Right"));
+        Assert.assertEquals("Config", EVENTS.get(0));
+    }
+
+    @Test
+    public void testFailureIsReported() {
+        Assert.assertNull(preload(2, NeedsBroken.class, Broken.class, Config.class));
+        Assert.assertFalse("dependent loaded after a failure", EVENTS.contains("NeedsBroken"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private Object[] preload(int threads, Class<?>... types) {
+        List<SingletonKey> keys = new ArrayList<>();
+        for(Class<?> type : types) {
+            keys.add(new SingletonKey(type, null, StartupMode.EAGER));
+        }
+        DefaultComponentContext ctxt = new DefaultComponentContext(injector, new ReadinessTracker());
+        return new SingletonPreloader(injector, ctxt, threads).preload(keys);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    @Singleton
+    static class Config {
+
+        Config() {
+            EVENTS.add("Config");
+        }
+    }
+
+    @Singleton
+    static class Repository {
+
+        @Inject
+        Repository(Config config) {
+            EVENTS.add("Repository");
+        }
+    }
+
+    @Singleton
+    static class Service {
+
+        private Repository repo;
+
+        @Inject
+        Service(Repository repo) {
+            this.repo = repo;
+            EVENTS.add("Service");
+        }
+    }
+
+    interface Left {
+    }
+
+    interface Right {
+    }
+
+    @Singleton
+    static class LeftImpl implements Left {
+
+        private Right right;
+
+        @Inject
+        LeftImpl(Right right) {
+            this.right = right;
+            EVENTS.add("Left");
+        }
+    }
+
+    @Singleton
+    static class RightImpl implements Right {
+
+        @Inject
+        RightImpl(Left left) {
+            EVENTS.add("Right");
+        }
+    }
+
+/**
+ * Neither of these can be created until both are being created, which only
+ * succeeds if they are loaded concurrently.
+ */
+
+    @Singleton
+    static class First {
+
+        First() throws InterruptedException, BrokenBarrierException, TimeoutException {
+            barrier.await(10, TimeUnit.SECONDS);
+            EVENTS.add("First");
+        }
+    }
+
+    @Singleton
+    static class Second {
+
+        Second() throws InterruptedException, BrokenBarrierException, TimeoutException {
+            barrier.await(10, TimeUnit.SECONDS);
+            EVENTS.add("Second");
+        }
+    }
+
+    @Singleton
+    static class Broken {
+
+        Broken() {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    @Singleton
+    static class NeedsBroken {
+
+        @Inject
+        NeedsBroken(Broken broken) {
+            EVENTS.add("NeedsBroken");
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.StartupAwareComponentContext;
+import com.flipkart.polyguice.core.support.startup.LazyReport;
+import com.flipkart.polyguice.core.support.startup.WarmedCache;
+
+/**
+ * Prepares Polyguice with lazy and background singletons, checking when they
+ * are created and how readiness is reported, including when a background
+ * singleton fails.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class StartupModeTest {
+
+    private static final String PACKAGE = LazyReport.class.getPackage().getName();
+
+    private Polyguice polyguice;
+
+    @Before
+    public void setUp() {
+        LazyReport.CREATED.set(0);
+        LazyReport.DISPOSED.set(0);
+    }
+
+    @After
+    public void tearDown() {
+        WarmedCache.gate = null;
+        WarmedCache.fail = false;
+        if(polyguice != null) {
+            polyguice.stop();
+        }
+    }
+
+    @Test
+    public void testLazySingleton() {
+        polyguice = new Polyguice().scanPackage(PACKAGE).prepare();
+        Assert.assertEquals("created while preparing", 0, LazyReport.CREATED.get());
+
+        Object report = polyguice.getComponentContext().getInstance("lazyReport");
+        Assert.assertTrue(report instanceof LazyReport);
+        Assert.assertEquals(1, LazyReport.CREATED.get());
+        Assert.assertSame(report, polyguice.getComponentContext().getInstance("lazyReport"));
+        Assert.assertEquals(1, LazyReport.CREATED.get());
+
+        polyguice.stop();
+        polyguice = null;
+        Assert.assertEquals("lazy singleton not disposed", 1, LazyReport.DISPOSED.get());
+    }
+
+    @Test
+    public void testUnusedLazySingletonIsNotDisposed() {
+        polyguice = new Polyguice().scanPackage(PACKAGE).prepare();
+        polyguice.stop();
+        polyguice = null;
+        Assert.assertEquals(0, LazyReport.CREATED.get());
+        Assert.assertEquals(0, LazyReport.DISPOSED.get());
+    }
+
+    @Test
+    public void testBackgroundSingleton() throws Exception {
+        WarmedCache.gate = new CountDownLatch(1);
+        polyguice = new Polyguice();
+        Assert.assertFalse(polyguice.isReady());
+        Assert.assertFalse(polyguice.awaitReady(1, TimeUnit.MILLISECONDS));
+
+        polyguice.scanPackage(PACKAGE).prepare();
+        StartupAwareComponentContext ctxt = (StartupAwareComponentContext) polyguice.getComponentContext();
+        Assert.assertFalse(polyguice.isReady());
+        Assert.assertFalse(ctxt.isReady());
+        Assert.assertFalse(polyguice.awaitReady(50, TimeUnit.MILLISECONDS));
+
+        WarmedCache.gate.countDown();
+        Assert.assertTrue(polyguice.awaitReady(10, TimeUnit.SECONDS));
+        Assert.assertTrue(polyguice.isReady());
+        Assert.assertTrue(ctxt.awaitReady(0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(ctxt.isReady());
+        WarmedCache cache = (WarmedCache) ctxt.getInstance("warmedCache");
+        Assert.assertTrue(cache.isWarm());
+    }
+
+    @Test
+    public void testBackgroundFailure() throws Exception {
+        WarmedCache.fail = true;
+        polyguice = new Polyguice().scanPackage(PACKAGE).prepare();
+        Assert.assertTrue("prepare must not wait for background singletons", polyguice.isPrepared());
+        Assert.assertFalse(polyguice.awaitReady(10, TimeUnit.SECONDS));
+        Assert.assertFalse(polyguice.isReady());
+        Assert.assertTrue(polyguice.getStartupReport().isComplete());
+    }
+
+    @Test
+    public void testReadinessTracker() throws Exception {
+        ReadinessTracker tracker = new ReadinessTracker();
+        Assert.assertFalse(tracker.isReady());
+        Assert.assertFalse(tracker.await(1, TimeUnit.MILLISECONDS));
+        tracker.complete(true);
+        Assert.assertTrue(tracker.isReady());
+        Assert.assertTrue(tracker.await(0, TimeUnit.MILLISECONDS));
+
+        tracker = new ReadinessTracker();
+        tracker.complete(false);
+        Assert.assertFalse(tracker.isReady());
+        Assert.assertFalse(tracker.await(1, TimeUnit.SECONDS));
+    }
+}
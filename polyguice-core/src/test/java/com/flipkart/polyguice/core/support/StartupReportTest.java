@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.flipkart.polyguice.core.support.startup.SlowService;
+import com.flipkart.polyguice.core.support.startup.WarmedCache;
+
+/**
+ * Prepares Polyguice and checks the phase and component timings in its startup
+ * report, including those of singletons created in the background.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class StartupReportTest {
+
+    private static final String PACKAGE = SlowService.class.getPackage().getName();
+
+    private Polyguice polyguice;
+
+    @After
+    public void tearDown() {
+        WarmedCache.gate = null;
+        if(polyguice != null) {
+            polyguice.stop();
+        }
+    }
+
+    @Test
+    public void testPhasesAndComponents() throws Exception {
+        polyguice = new Polyguice().scanPackage(PACKAGE).prepare();
+        Assert.assertTrue(polyguice.awaitReady(10, TimeUnit.SECONDS));
+        StartupReport report = polyguice.getStartupReport();
+        Assert.assertTrue(report.isComplete());
+
+        String[] phases = {StartupReport.PHASE_SCAN, StartupReport.PHASE_AUTOBIND, StartupReport.PHASE_INJECTOR,
+                StartupReport.PHASE_PRELOAD, StartupReport.PHASE_PREPARE, StartupReport.PHASE_BACKGROUND};
+        for(String phase : phases) {
+            Assert.assertNotNull("missing phase " + phase, report.getPhase(phase));
+        }
+        StartupReport.Timing prepare = report.getPhase(StartupReport.PHASE_PREPARE);
+        Assert.assertTrue(prepare.getWallNanos() >= report.getPhase(StartupReport.PHASE_INJECTOR).getWallNanos());
+        Assert.assertEquals(Thread.currentThread().getName(), prepare.getThread());
+        Assert.assertEquals("polyguice-background", report.getPhase(StartupReport.PHASE_BACKGROUND).getThread());
+
+        StartupReport.Timing slow = component(report, SlowService.class);
+        Assert.assertNotNull(slow);
+        Assert.assertTrue(slow.getWallNanos() >= TimeUnit.MILLISECONDS.toNanos(SlowService.INIT_MILLIS));
+        Assert.assertSame(slow, report.getSlowestComponents(1).get(0));
+        StartupReport.Timing warm = component(report, WarmedCache.class);
+        Assert.assertNotNull("background singleton missing", warm);
+        Assert.assertEquals("polyguice-background", warm.getThread());
+    }
+
+    @Test
+    public void testIncompleteWhileBackgroundRuns() throws Exception {
+        WarmedCache.gate = new CountDownLatch(1);
+        polyguice = new Polyguice().scanPackage(PACKAGE).prepare();
+        StartupReport report = polyguice.getStartupReport();
+        Assert.assertFalse(report.isComplete());
+        Assert.assertNotNull(report.getPhase(StartupReport.PHASE_PREPARE));
+        Assert.assertNull(report.getPhase(StartupReport.PHASE_BACKGROUND));
+        Assert.assertNull(component(report, WarmedCache.class));
+        Assert.assertTrue(report.toJson().startsWith("{\"complete\":false,"));
+
+        WarmedCache.gate.countDown();
+        Assert.assertTrue(polyguice.awaitReady(10, TimeUnit.SECONDS));
+        report = polyguice.getStartupReport();
+        Assert.assertTrue(report.isComplete());
+        Assert.assertNotNull(report.getPhase(StartupReport.PHASE_BACKGROUND));
+        Assert.assertNotNull(component(report, WarmedCache.class));
+    }
+
+    @Test
+    public void testSlowestComponents() {
+        StartupReport.Timing fast = new StartupReport.Timing("fast", "main", 10, 5);
+        StartupReport.Timing slow = new StartupReport.Timing("slow", "main", 30, 20);
+        StartupReport.Timing medium = new StartupReport.Timing("medium", "main", 20, -1);
+        StartupReport report = new StartupReport(Collections.<StartupReport.Timing>emptyList(),
+                Arrays.asList(fast, slow, medium), true);
+
+        Assert.assertEquals(Arrays.asList(slow, medium), report.getSlowestComponents(2));
+        Assert.assertEquals(Arrays.asList(slow, medium, fast), report.getSlowestComponents(5));
+        Assert.assertEquals(Arrays.asList(fast, slow, medium), report.getComponents());
+        Assert.assertNull(report.getPhase("scan"));
+    }
+
+    @Test
+    public void testJson() {
+        List<StartupReport.Timing> phases = Arrays.asList(new StartupReport.Timing("scan", "main", 1500, 1000));
+        List<StartupReport.Timing> components = Arrays.asList(
+                new StartupReport.Timing("a\"b\\c\n\u0001", "worker\t1", 7, -1));
+        StartupReport report = new StartupReport(phases, components, true);
+        Assert.assertEquals("{\"complete\":true,"
+                + "\"phases\":[{\"name\":\"scan\",\"wallNanos\":1500,\"cpuNanos\":1000,\"thread\":\"main\"}],"
+                + "\"components\":[{\"name\":\"a\\\"b\\\\c\\n\\u0001\",\"wallNanos\":7,\"cpuNanos\":-1,"
+                + "\"thread\":\"worker\\t1\"}]}", report.toJson());
+
+        report = new StartupReport(Collections.<StartupReport.Timing>emptyList(),
+                Collections.<StartupReport.Timing>emptyList(), false);
+        Assert.assertEquals("{\"complete\":false,\"phases\":[],\"components\":[]}", report.toString());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private static StartupReport.Timing component(StartupReport report, Class<?> type) {
+        for(StartupReport.Timing timing : report.getComponents()) {
+            if(timing.getName().equals(type.getName())) {
+                return timing;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support.lifecycle;
+
+import com.flipkart.polyguice.core.AppliesTo;
+import com.flipkart.polyguice.core.ComponentProcessor;
+
+/**
+ * @author indroneel.das
+ */
+
+@AppliesTo(Audited.class)
+public class AuditProcessor implements ComponentProcessor {
+
+    @Override
+    public void afterInjection(Object component) {
+        Callbacks.record("audit", "afterInjection", component);
+    }
+
+    @Override
+    public void beforeInitialization(Object component) {
+        Callbacks.record("audit", "beforeInitialization", component);
+    }
+
+    @Override
+    public void afterInitialization(Object component) {
+        Callbacks.record("audit", "afterInitialization", component);
+    }
+}
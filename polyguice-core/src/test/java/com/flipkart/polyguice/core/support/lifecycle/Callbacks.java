@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support.lifecycle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the callbacks made by the sample component processors, as
+ * <tt>processor:callback:component</tt>.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public final class Callbacks {
+
+    public static final List<String> EVENTS = Collections.synchronizedList(new ArrayList<String>());
+
+    private Callbacks() {
+        //NOOP
+    }
+
+    static void record(String processor, String callback, Object component) {
+        EVENTS.add(processor + ":" + callback + ":" + component.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support.startup;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.flipkart.polyguice.core.Component;
+import com.flipkart.polyguice.core.Disposable;
+import com.flipkart.polyguice.core.Initializable;
+import com.flipkart.polyguice.core.StartupMode;
+import com.google.inject.Singleton;
+
+/**
+ * A singleton that is created only when first looked up.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+@Singleton
+@Component(value = "lazyReport", startup = StartupMode.LAZY)
+public class LazyReport implements Initializable, Disposable {
+
+    public static final AtomicInteger CREATED  = new AtomicInteger();
+    public static final AtomicInteger DISPOSED = new AtomicInteger();
+
+    @Override
+    public void initialize() {
+        CREATED.incrementAndGet();
+    }
+
+    @Override
+    public void dispose() {
+        DISPOSED.incrementAndGet();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support.startup;
+
+import com.flipkart.polyguice.core.Component;
+import com.flipkart.polyguice.core.Initializable;
+import com.google.inject.Singleton;
+
+/**
+ * @author indroneel.das
+ */
+
+@Singleton
+@Component("slowService")
+public class SlowService implements Initializable {
+
+    public static final long INIT_MILLIS = 20;
+
+    @Override
+    public void initialize() {
+        try {
+            Thread.sleep(INIT_MILLIS);
+        }
+        catch(InterruptedException exep) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.core.support.startup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.flipkart.polyguice.core.Component;
+import com.flipkart.polyguice.core.Initializable;
+import com.flipkart.polyguice.core.StartupMode;
+import com.google.inject.Singleton;
+
+/**
+ * A singleton that is warmed up in the background. Tests may hold its
+ * initialization until a gate is opened, or make it fail.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+@Singleton
+@Component(value = "warmedCache", startup = StartupMode.BACKGROUND)
+public class WarmedCache implements Initializable {
+
+    public static volatile CountDownLatch gate;
+    public static volatile boolean        fail;
+
+    private volatile boolean warm;
+
+    @Override
+    public void initialize() {
+        CountDownLatch latch = gate;
+        if(latch != null) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException exep) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if(fail) {
+            throw new IllegalStateException("warm-up failed");
+        }
+        warm = true;
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+}
@@ -18,55 +18,115 @@ package com.flipkart.polyguice.dropwiz;
 
 import io.dropwizard.Configuration;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.flipkart.polyguice.core.ConfigurationProvider;
+import com.flipkart.polyguice.core.BulkConfigurationProvider;
+import com.flipkart.polyguice.core.support.ConverterRegistry;
 
 /**
- * @author indroneel.das
+ * Provides configuration values from a Dropwizard {@link Configuration} tree,
+ * addressed by dotted paths of {@link JsonProperty} names.
+ * <p>
+ *
+ * The accessors of each configuration class, including those inherited from
+ * superclasses, are resolved once into method handles. On first use, the whole
+ * tree is flattened into an immutable index from path to value, so that every
+ * lookup is a single hash probe; a path that is not in the index is not in the
+ * tree. The indexed paths are also kept sorted, so that a subtree is a
+ * contiguous range found by binary search.
+ * <p>
+ *
+ * An object that is reachable from itself is indexed only down to the first
+ * repetition, and the index reflects the tree as it was on first use.
+ * <p>
  *
+ * @author indroneel.das
  */
 
-public class DropConfigProvider implements ConfigurationProvider {
+public class DropConfigProvider implements BulkConfigurationProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DropConfigProvider.class);
 
-    private Configuration dwConfig;
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<Map<String, MethodHandle>> ACCESSORS = new ClassValue<Map<String, MethodHandle>>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return buildAccessors(type);
+        }
+    };
+
+    private Configuration  dwConfig;
+    private volatile Index index;
 
     public DropConfigProvider(Configuration config) {
         dwConfig = config;
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of interface BulkConfigurationProvider
+
+    @Override
+    public Map<String, Object> getSubtree(String prefix) {
+        Index idx = getIndex();
+        Map<String, Object> subtree = new LinkedHashMap<>();
+        int start = Arrays.binarySearch(idx.paths, prefix);
+        if(start < 0) {
+            start = -(start + 1);
+        }
+        for(int i = start; i < idx.paths.length; i++) {
+            String path = idx.paths[i];
+            if(!path.startsWith(prefix)) {
+                break;
+            }
+            if(path.length() == prefix.length() || prefix.isEmpty()
+                    || path.charAt(prefix.length()) == '.') {
+                subtree.put(path, idx.values.get(path));
+            }
+        }
+        return subtree;
+    }
+
+    @Override
+    public Map<String, Object> getValues(Map<String, Class<?>> paths) {
+        Map<String, Object> values = new HashMap<>();
+        for(Map.Entry<String, Class<?>> entry : paths.entrySet()) {
+            Object value = getValue(entry.getKey(), entry.getValue());
+            if(value != null) {
+                values.put(entry.getKey(), value);
+            }
+        }
+        return values;
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Methods of interface ConfigurationProvider
 
     @Override
     public boolean contains(String path) {
         LOGGER.debug("checking for configuration {}", path);
-        try {
-            return (getValueRecursive(path, dwConfig) != null);
-        }
-        catch (Exception exep) {
-            //NOOP
-        }
-        return false;
+        return (lookup(path) != null);
     }
 
     @Override
     public Object getValue(String path, Class<?> type) {
-        Object value = null;
-        try {
-            value = getValueRecursive(path, dwConfig);
-        }
-        catch (Exception exep) {
-            return null;
-        }
+        Object value = lookup(path);
         if(value == null) {
             return null;
         }
@@ -74,116 +134,160 @@ public class DropConfigProvider implements ConfigurationProvider {
         if(type.isAssignableFrom(value.getClass())) {
             return value;
         }
-        return null;
+        return ConverterRegistry.getDefault().convert(value, type);
     }
 
     ////////////////////////////////////////////////////////////////////////////
     // Helper methods
 
-    private Object getValueRecursive(String path, Object inst) throws Exception {
-        String[] parts = path.split("\\.", 2);
-        Object value = getValueFromFields(parts[0], inst.getClass(), inst);
-        if(value == null) {
-            value = getValueFromMethods(parts[0], inst.getClass(), inst);
+    private Object lookup(String path) {
+        return getIndex().values.get(path);
+    }
+
+    private Index getIndex() {
+        Index result = index;
+        if(result == null) {
+            synchronized(this) {
+                result = index;
+                if(result == null) {
+                    long start = System.nanoTime();
+                    Map<String, Object> entries = new HashMap<>();
+                    flatten("", dwConfig, entries, Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+                    result = new Index(entries);
+                    index = result;
+                    LOGGER.debug("indexed {} configuration paths in {} us", entries.size(),
+                            (System.nanoTime() - start) / 1000);
+                }
+            }
         }
-        if(value != null) {
-            if(parts.length > 1) {
-                return getValueRecursive(parts[1], value);
+        return result;
+    }
+
+    private static void flatten(String prefix, Object inst, Map<String, Object> entries, Set<Object> visiting) {
+        if(!visiting.add(inst)) {
+            return;
+        }
+        for(Map.Entry<String, MethodHandle> entry : ACCESSORS.get(inst.getClass()).entrySet()) {
+            Object value;
+            try {
+                value = (Object) entry.getValue().invokeExact(inst);
+            }
+            catch(Throwable exep) {
+                LOGGER.debug("unable to read configuration {}{}: {}", prefix, entry.getKey(), exep.toString());
+                continue;
+            }
+            if(value == null) {
+                continue;
             }
-            else {
-                return value;
+            String path = prefix + entry.getKey();
+            entries.put(path, value);
+            if(!ACCESSORS.get(value.getClass()).isEmpty()) {
+                flatten(path + ".", value, entries, visiting);
             }
         }
-        return null;
+        visiting.remove(inst);
     }
 
-    private Object getValueFromFields(String path, Class<?> type, Object inst) throws Exception {
-        Field[] fields = type.getDeclaredFields();
-        for(Field field : fields) {
-            JsonProperty ann = field.getAnnotation(JsonProperty.class);
-            if(ann != null) {
-                String annName = ann.value();
-                if(StringUtils.isBlank(annName)) {
-                    annName = ann.defaultValue();
+/**
+ * Collects the accessors of the given class and its superclasses, keyed by
+ * property name. Fields take precedence over methods, and subclass members
+ * over those of superclasses.
+ */
+
+    private static Map<String, MethodHandle> buildAccessors(Class<?> type) {
+        Map<String, MethodHandle> accessors = new HashMap<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for(Class<?> cls = type; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            for(Field field : cls.getDeclaredFields()) {
+                JsonProperty ann = field.getAnnotation(JsonProperty.class);
+                if(ann == null) {
+                    continue;
                 }
-                if(StringUtils.isBlank(annName)) {
-                    annName = field.getName();
+                String name = getPropertyName(ann, field.getName());
+                if(accessors.containsKey(name)) {
+                    continue;
                 }
-                if(StringUtils.equals(path, annName)) {
-                    boolean accessible = field.isAccessible();
-                    if(!accessible) {
-                        field.setAccessible(true);
-                    }
-                    Object value = field.get(inst);
-                    if(!accessible) {
-                        field.setAccessible(false);
-                    }
-                    return value;
+                try {
+                    field.setAccessible(true);
+                    accessors.put(name, lookup.unreflectGetter(field).asType(GETTER_TYPE));
+                }
+                catch(IllegalAccessException | RuntimeException exep) {
+                    LOGGER.debug("field {}#{} not accessible: {}", cls.getName(), field.getName(), exep.toString());
                 }
             }
-        }
-        return null;
-    }
-
-    private Object getValueFromMethods(String path, Class<?> type, Object inst) throws Exception {
-        Method[] methods = type.getDeclaredMethods();
-        for(Method method : methods) {
-            JsonProperty ann = method.getAnnotation(JsonProperty.class);
-            if(ann != null) {
-                String annName = ann.value();
-                if(StringUtils.isBlank(annName)) {
-                    annName = ann.defaultValue();
+            for(Method method : cls.getDeclaredMethods()) {
+                JsonProperty ann = method.getAnnotation(JsonProperty.class);
+                if(ann == null || method.getParameterTypes().length > 0
+                        || method.getReturnType().equals(Void.TYPE)) {
+                    continue;
+                }
+                String name = getPropertyName(ann, getNameFromMethod(method));
+                if(name == null || accessors.containsKey(name)) {
+                    continue;
                 }
-                if(StringUtils.isBlank(annName)) {
-                    annName = getNameFromMethod(method);
+                try {
+                    method.setAccessible(true);
+                    accessors.put(name, lookup.unreflect(method).asType(GETTER_TYPE));
                 }
-                if(StringUtils.equals(path, annName)) {
-                    boolean accessible = method.isAccessible();
-                    if(!accessible) {
-                        method.setAccessible(true);
-                    }
-                    Object value = method.invoke(inst);
-                    if(!accessible) {
-                        method.setAccessible(false);
-                    }
-                    return value;
+                catch(IllegalAccessException | RuntimeException exep) {
+                    LOGGER.debug("method {}#{} not accessible: {}", cls.getName(), method.getName(), exep.toString());
                 }
             }
         }
-        return null;
+        return Collections.unmodifiableMap(accessors);
     }
 
-    private String getNameFromMethod(Method method) {
-        if(method.getParameterCount() > 0) {
-            return null;
+    private static String getPropertyName(JsonProperty ann, String memberName) {
+        String annName = ann.value();
+        if(StringUtils.isBlank(annName)) {
+            annName = ann.defaultValue();
         }
-        if(method.getReturnType().equals(Void.TYPE)) {
-            return null;
+        if(StringUtils.isBlank(annName)) {
+            annName = memberName;
         }
+        return annName;
+    }
 
+    private static String getNameFromMethod(Method method) {
         String mthdName = method.getName();
+        boolean isBoolean = method.getReturnType().equals(Boolean.class)
+                || method.getReturnType().equals(Boolean.TYPE);
         if(mthdName.startsWith("get")) {
-            if(mthdName.length() <= 3) {
-                return null;
-            }
-            if(method.getReturnType().equals(Boolean.class) || method.getReturnType().equals(Boolean.TYPE)) {
+            if(mthdName.length() <= 3 || isBoolean) {
                 return null;
             }
-            StringBuffer buffer = new StringBuffer(StringUtils.removeStart(mthdName, "get"));
+            StringBuilder buffer = new StringBuilder(mthdName.substring(3));
             buffer.setCharAt(0, Character.toLowerCase(buffer.charAt(0)));
             return buffer.toString();
         }
-        else if(!mthdName.startsWith("is")) {
-            if(mthdName.length() <= 2) {
+        else if(mthdName.startsWith("is")) {
+            if(mthdName.length() <= 2 || !isBoolean) {
                 return null;
             }
-            if(!method.getReturnType().equals(Boolean.class) && !method.getReturnType().equals(Boolean.TYPE)) {
-                return null;
-            }
-            StringBuffer buffer = new StringBuffer(StringUtils.removeStart(mthdName, "is"));
+            StringBuilder buffer = new StringBuilder(mthdName.substring(2));
             buffer.setCharAt(0, Character.toLowerCase(buffer.charAt(0)));
             return buffer.toString();
         }
         return null;
     }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+/**
+ * Immutable index of the configuration tree: values by path, and all paths in
+ * sorted order.
+ */
+
+    private static class Index {
+
+        private Map<String, Object> values;
+        private String[]            paths;
+
+        Index(Map<String, Object> entries) {
+            values = Collections.unmodifiableMap(entries);
+            paths = entries.keySet().toArray(new String[entries.size()]);
+            Arrays.sort(paths);
+        }
+    }
 }
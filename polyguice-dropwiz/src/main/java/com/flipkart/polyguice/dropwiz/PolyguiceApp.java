@@ -17,13 +17,12 @@
 package com.flipkart.polyguice.dropwiz;
 
 import com.flipkart.polyguice.core.support.Polyguice;
-import com.flipkart.polyguice.core.support.ReflectionsHelper;
+import com.flipkart.polyguice.core.support.ScanIndex;
 import io.dropwizard.Application;
 import io.dropwizard.Configuration;
 import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.setup.Environment;
 import org.apache.commons.lang3.StringUtils;
-import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,9 +81,13 @@ public class PolyguiceApp<T extends Configuration> extends Application<T> {
 
         DropConfigProvider dcp = new DropConfigProvider(config);
         polyguice.registerConfigurationProvider(dcp);
+        for(String pkgName : scanPkgNames) {
+            polyguice.indexPackage(pkgName);
+        }
         polyguice.prepare();
 
-        Set<Class<?>> resTypes = findResourceTypes();
+        ScanIndex scanIndex = polyguice.getScanIndex();
+        Set<Class<?>> resTypes = findResourceTypes(scanIndex);
         LOGGER.debug("found potential resources: {}", resTypes);
         for(Class<?> cls : resTypes) {
             try {
@@ -103,7 +106,7 @@ public class PolyguiceApp<T extends Configuration> extends Application<T> {
             }
         }
 
-        List<Class<?>> servletTypes = findServletTypes();
+        List<Class<?>> servletTypes = findServletTypes(scanIndex);
         LOGGER.debug("found potential servlets: {}", servletTypes);
         for(Class<?> type : servletTypes) {
             registerServlet(type, env);
@@ -131,16 +134,12 @@ public class PolyguiceApp<T extends Configuration> extends Application<T> {
     ////////////////////////////////////////////////////////////////////////////
     // Helper methods
 
-    private Set<Class<?>> findResourceTypes() {
-        ReflectionsHelper.registerUrlTypes();
-        Reflections reflections = new Reflections(scanPkgNames.toArray());
-        return reflections.getTypesAnnotatedWith(Resource.class);
+    private Set<Class<?>> findResourceTypes(ScanIndex scanIndex) {
+        return scanIndex.getTypesAnnotatedWith(Resource.class, pkgNamesArray());
     }
 
-    private List<Class<?>> findServletTypes() {
-        ReflectionsHelper.registerUrlTypes();
-        Reflections reflections = new Reflections(scanPkgNames.toArray());
-        Set<Class<?>> types = reflections.getTypesAnnotatedWith(WebServlet.class);
+    private List<Class<?>> findServletTypes(ScanIndex scanIndex) {
+        Set<Class<?>> types = scanIndex.getTypesAnnotatedWith(WebServlet.class, pkgNamesArray());
         List<Class<?>> result = new ArrayList<>();
         for(Class<?> type : types) {
             if(Servlet.class.isAssignableFrom(type)) {
@@ -150,6 +149,10 @@ public class PolyguiceApp<T extends Configuration> extends Application<T> {
         return result;
     }
 
+    private String[] pkgNamesArray() {
+        return scanPkgNames.toArray(new String[scanPkgNames.size()]);
+    }
+
     private Object createResource(Class<?> cls, T config, Environment env)
             throws InstantiationException, IllegalAccessException,
             IllegalArgumentException, InvocationTargetException {
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.dropwiz;
+
+import io.dropwizard.Configuration;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Reads values from a sample Dropwizard configuration tree through its
+ * flattened index, including inherited, renamed and nested properties.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class DropConfigProviderTest {
+
+    private SampleConfig       config;
+    private DropConfigProvider provider;
+
+    @Before
+    public void setUp() {
+        config = new SampleConfig();
+        provider = new DropConfigProvider(config);
+    }
+
+    @Test
+    public void testLookups() {
+        Assert.assertTrue(provider.contains("name"));
+        Assert.assertEquals("sample", provider.getValue("name", String.class));
+        Assert.assertEquals(8080, provider.getValue("port", int.class));
+        Assert.assertEquals("8080", provider.getValue("port", String.class));
+        Assert.assertEquals(Boolean.TRUE, provider.getValue("secure", Boolean.class));
+        Assert.assertEquals(16L, provider.getValue("database.pool.max-size", long.class));
+        Assert.assertEquals("jdbc:h2:mem", provider.getValue("database.url", String.class));
+        Assert.assertSame(config.database, provider.getValue("database", Object.class));
+        Assert.assertTrue("inherited property", provider.contains("server"));
+        Assert.assertTrue(provider.contains("logging.level"));
+    }
+
+    @Test
+    public void testMissesAreDefinitive() {
+        Assert.assertFalse(provider.contains("missing"));
+        Assert.assertNull(provider.getValue("missing", String.class));
+        Assert.assertFalse("null value", provider.contains("database.password"));
+        Assert.assertFalse("not a property", provider.contains("database.pool.maxSize"));
+        Assert.assertFalse(provider.contains("database.url.length"));
+        Assert.assertFalse(provider.contains(""));
+        Assert.assertNull("not convertible", provider.getValue("name", Integer.class));
+
+        Assert.assertTrue(provider.contains("loop.next"));
+        Assert.assertFalse("cycle", provider.contains("loop.next.next"));
+    }
+
+    @Test
+    public void testIndexIsBuiltOnce() {
+        Assert.assertEquals("sample", provider.getValue("name", String.class));
+        config.name = "changed";
+        config.database.url = "jdbc:h2:file";
+        Assert.assertEquals("sample", provider.getValue("name", String.class));
+        Assert.assertEquals("jdbc:h2:mem", provider.getValue("database.url", String.class));
+    }
+
+    @Test
+    public void testSubtree() {
+        Map<String, Object> subtree = provider.getSubtree("database");
+        Assert.assertEquals(subtree.keySet().toString(), 4, subtree.size());
+        Assert.assertSame(config.database, subtree.get("database"));
+        Assert.assertEquals("jdbc:h2:mem", subtree.get("database.url"));
+        Assert.assertTrue(subtree.containsKey("database.pool"));
+        Assert.assertEquals(16, subtree.get("database.pool.max-size"));
+        Assert.assertFalse("sibling with the same prefix", subtree.containsKey("databaseBackup"));
+
+        Assert.assertEquals(1, provider.getSubtree("database.pool.max-size").size());
+        Assert.assertTrue(provider.getSubtree("data").isEmpty());
+        Assert.assertTrue(provider.getSubtree("missing").isEmpty());
+        Assert.assertTrue(provider.getSubtree("").containsKey("name"));
+        Assert.assertTrue(provider.getSubtree("").containsKey("databaseBackup.url"));
+    }
+
+    @Test
+    public void testValues() {
+        Map<String, Class<?>> paths = new LinkedHashMap<>();
+        paths.put("name", String.class);
+        paths.put("port", long.class);
+        paths.put("missing", String.class);
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("name", "sample");
+        expected.put("port", 8080L);
+        Assert.assertEquals(expected, provider.getValues(paths));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+
+    public static class SampleConfig extends Configuration {
+
+        @JsonProperty
+        private String name = "sample";
+
+        @JsonProperty
+        private Database database = new Database("jdbc:h2:mem");
+
+        @JsonProperty
+        private Database databaseBackup = new Database("jdbc:h2:backup");
+
+        @JsonProperty
+        private Node loop = new Node();
+
+        @JsonProperty
+        public int getPort() {
+            return 8080;
+        }
+
+        @JsonProperty
+        public boolean isSecure() {
+            return true;
+        }
+    }
+
+    public static class Database {
+
+        @JsonProperty
+        private String url;
+
+        @JsonProperty
+        private String password;
+
+        @JsonProperty
+        private Pool pool = new Pool();
+
+        Database(String url) {
+            this.url = url;
+        }
+    }
+
+    public static class Pool {
+
+        @JsonProperty("max-size")
+        private int maxSize = 16;
+    }
+
+    public static class Node {
+
+        private Node next = this;
+
+        @JsonProperty
+        public Node getNext() {
+            return next;
+        }
+    }
+}
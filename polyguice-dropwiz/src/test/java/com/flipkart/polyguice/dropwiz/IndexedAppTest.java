@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.dropwiz;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.setup.Environment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.flipkart.polyguice.core.support.ComponentIndex;
+import com.flipkart.polyguice.core.support.Polyguice;
+import com.flipkart.polyguice.dropwiz.sample.GreetingResource;
+
+/**
+ * Runs a {@link PolyguiceApp} with the compile-time component index that the
+ * indexer writes for the test classes, and checks that resources and servlets
+ * are registered as they are after a classpath scan.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class IndexedAppTest {
+
+    @Test
+    public void testResourcesAndServletsFromIndex() throws Exception {
+        Assert.assertNotNull("component index not on the test classpath",
+                ComponentIndex.load(getClass().getClassLoader()));
+
+        Environment env = new Environment("test", Jackson.newObjectMapper(), null,
+                new MetricRegistry(), getClass().getClassLoader());
+        String pkgName = GreetingResource.class.getPackage().getName();
+        Polyguice polyguice = new Polyguice().scanPackage(pkgName);
+        PolyguiceApp<Configuration> app = new PolyguiceApp<>();
+        app.setPolyguice(polyguice).scanPackage(pkgName);
+        app.run(new Configuration(), env);
+        try {
+            GreetingResource resource = null;
+            for(Object singleton : env.jersey().getResourceConfig().getSingletons()) {
+                if(singleton instanceof GreetingResource) {
+                    resource = (GreetingResource) singleton;
+                }
+            }
+            Assert.assertNotNull("resource not registered", resource);
+            Assert.assertEquals("hello world", resource.get());
+            Assert.assertNotNull("servlet not registered",
+                    env.getApplicationContext().getServletHandler().getServlet("ping"));
+        }
+        finally {
+            polyguice.stop();
+        }
+    }
+}
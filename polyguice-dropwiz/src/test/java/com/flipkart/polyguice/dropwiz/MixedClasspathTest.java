@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.dropwiz;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.flipkart.polyguice.core.ComponentContext;
+import com.flipkart.polyguice.core.support.ComponentIndex;
+import com.flipkart.polyguice.core.support.Polyguice;
+import com.flipkart.polyguice.dropwiz.sample.Greeter;
+import com.flipkart.polyguice.dropwiz.sample.LoudGreeter;
+import com.flipkart.polyguice.dropwiz.sample.PoliteGreeter;
+import com.flipkart.polyguice.dropwiz.sample.PoliteGreeterBase;
+
+/**
+ * Prepares Polyguice on a classpath where only some roots carry a component
+ * index, and checks that the components of the other roots are still found by
+ * scanning them.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+public class MixedClasspathTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnindexedRootIsScanned() throws Exception {
+        String pkgName = Greeter.class.getPackage().getName();
+        File classesDir = folder.newFolder("classes");
+        compile(classesDir, pkgName, "Farewell",
+                "@com.flipkart.polyguice.core.Component(\"farewell\")\n"
+              + "public class Farewell {\n"
+              + "}\n");
+        Assert.assertFalse(new File(classesDir, ComponentIndex.LOCATION).exists());
+
+        Thread thread = Thread.currentThread();
+        ClassLoader oldLoader = thread.getContextClassLoader();
+        URLClassLoader loader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()},
+                getClass().getClassLoader());
+        thread.setContextClassLoader(loader);
+        Polyguice polyguice = null;
+        try {
+            ComponentIndex compIndex = ComponentIndex.load(loader);
+            Assert.assertNotNull("component index not on the test classpath", compIndex);
+            Assert.assertFalse(compIndex.getRoots().contains(ComponentIndex.toRoot(classesDir.toURI().toString())));
+
+            polyguice = new Polyguice().scanPackage(pkgName).prepare();
+            ComponentContext ctxt = polyguice.getComponentContext();
+            Assert.assertNotNull("indexed component missing", ctxt.getInstance("greeter"));
+            Object farewell = ctxt.getInstance("farewell");
+            Assert.assertNotNull("scanned component missing", farewell);
+            Assert.assertSame(loader, farewell.getClass().getClassLoader());
+        }
+        finally {
+            if(polyguice != null) {
+                polyguice.stop();
+            }
+            thread.setContextClassLoader(oldLoader);
+            loader.close();
+        }
+    }
+
+    @Test
+    public void testSubTypesAreBound() throws Exception {
+        String pkgName = Greeter.class.getPackage().getName();
+        File classesDir = folder.newFolder("classes");
+        compile(classesDir, pkgName, "Shouter",
+                "public class Shouter extends LoudGreeter {\n"
+              + "}\n");
+
+        Thread thread = Thread.currentThread();
+        ClassLoader oldLoader = thread.getContextClassLoader();
+        URLClassLoader loader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()},
+                getClass().getClassLoader());
+        thread.setContextClassLoader(loader);
+        Polyguice polyguice = null;
+        try {
+            ComponentIndex compIndex = ComponentIndex.load(loader);
+            Assert.assertNotNull("component index not on the test classpath", compIndex);
+            Assert.assertTrue(compIndex.getSubTypes().get(Greeter.class.getName())
+                    .contains(LoudGreeter.class.getName()));
+            Assert.assertTrue(compIndex.getSubTypes().get(PoliteGreeterBase.class.getName())
+                    .contains(PoliteGreeter.class.getName()));
+
+            polyguice = new Polyguice().scanPackage(pkgName).prepare();
+            ComponentContext ctxt = polyguice.getComponentContext();
+            Assert.assertTrue(ctxt.getInstance("greeter") instanceof Greeter);
+            Assert.assertTrue(ctxt.getInstance(LoudGreeter.class.getName()) instanceof LoudGreeter);
+            Assert.assertTrue(ctxt.getInstance(PoliteGreeter.class.getName()) instanceof PoliteGreeter);
+            Assert.assertNull(ctxt.getInstance(PoliteGreeterBase.class.getName()));
+            Object shouter = ctxt.getInstance(pkgName + ".Shouter");
+            Assert.assertNotNull("scanned sub-type missing", shouter);
+            Assert.assertSame(loader, shouter.getClass().getClassLoader());
+        }
+        finally {
+            if(polyguice != null) {
+                polyguice.stop();
+            }
+            thread.setContextClassLoader(oldLoader);
+            loader.close();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private void compile(File outDir, String pkgName, String clsName, String body) throws IOException {
+        File srcFile = new File(folder.newFolder("src"), clsName + ".java");
+        Writer out = new FileWriter(srcFile);
+        try {
+            out.write("package " + pkgName + ";\n\n" + body);
+        }
+        finally {
+            out.close();
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("no system java compiler", compiler);
+        int status = compiler.run(null, null, null, Arrays.asList("-proc:none", "-nowarn",
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", outDir.getPath(), srcFile.getPath()).toArray(new String[0]));
+        Assert.assertEquals("compilation failed", 0, status);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.dropwiz.sample;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+import com.flipkart.polyguice.dropwiz.Resource;
+import com.google.inject.Inject;
+
+/**
+ * @author indroneel.das
+ *
+ */
+
+@Resource
+@Path("/greeting")
+public class GreetingResource {
+
+    @Inject
+    private Greeter greeter;
+
+    @GET
+    public String get() {
+        return greeter.greet("world");
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.flipkart.polyguice.indexer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.flipkart.polyguice.core.Bindable;
+import com.flipkart.polyguice.core.Component;
+import com.flipkart.polyguice.core.ComponentProcessor;
+import com.flipkart.polyguice.core.ConfigurationSection;
+import com.flipkart.polyguice.core.support.ComponentIndex;
+
+/**
+ * Annotation processor that writes a {@link ComponentIndex} for all components,
+ * component processors, bindable interfaces, configuration section interfaces
+ * and other types with class-retained annotations compiled in the current
+ * module. Classes that extend a component class, possibly one from another
+ * module, are recorded as its sub-types.
+ * Adding this artifact to the compile classpath (or annotation processor path)
+ * is sufficient to enable it.
+ * <p>
+ *
+ * Entries written by an earlier compilation are retained for types that are not
+ * part of the current compilation but still exist, so that incremental builds
+ * produce a complete index.
+ * <p>
+ *
+ * @author indroneel.das
+ */
+
+@SupportedAnnotationTypes("*")
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    private static final Set<String> OWN_ANNOTATIONS = new HashSet<>(Arrays.asList(Component.class.getName(),
+            Bindable.class.getName(), ConfigurationSection.class.getName()));
+
+    private Elements            elemUtils;
+    private Types               typeUtils;
+    private TypeMirror          procType;
+    private Map<String, String> entries;
+    private Set<String>         seenTypes;
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Methods of base class AbstractProcessor
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        elemUtils = env.getElementUtils();
+        typeUtils = env.getTypeUtils();
+        TypeElement procElem = elemUtils.getTypeElement(ComponentProcessor.class.getName());
+        procType = (procElem != null) ? typeUtils.erasure(procElem.asType()) : null;
+        entries = new TreeMap<>();
+        seenTypes = new HashSet<>();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if(roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+        for(Element elem : roundEnv.getRootElements()) {
+            if(elem instanceof TypeElement) {
+                collect((TypeElement) elem);
+            }
+        }
+        return false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helper methods
+
+    private void collect(TypeElement type) {
+        String clsName = elemUtils.getBinaryName(type).toString();
+        seenTypes.add(clsName);
+
+        Component ann = type.getAnnotation(Component.class);
+        if(ann != null && type.getKind() == ElementKind.CLASS) {
+            String name = null;
+            if(ann.value().trim().length() > 0) {
+                name = ann.value();
+            }
+            else if(ann.name().trim().length() > 0) {
+                name = ann.name();
+            }
+            ComponentIndex.ComponentEntry entry = new ComponentIndex.ComponentEntry(clsName, name, ann.namedOnly());
+            entries.put(ComponentIndex.TYPE_COMPONENT + "\t" + clsName, entry.toString());
+        }
+        else if(type.getKind() == ElementKind.CLASS) {
+            TypeElement superType = superclassOf(type);
+            if(superType != null && extendsComponent(superType)) {
+                entries.put(ComponentIndex.TYPE_SUBTYPE + "\t" + clsName, ComponentIndex.TYPE_SUBTYPE + "\t"
+                        + clsName + "\t" + elemUtils.getBinaryName(superType));
+            }
+        }
+
+        if(procType != null && type.getKind() == ElementKind.CLASS
+                && !type.getModifiers().contains(Modifier.ABSTRACT)
+                && typeUtils.isAssignable(typeUtils.erasure(type.asType()), procType)) {
+            entries.put(ComponentIndex.TYPE_PROCESSOR + "\t" + clsName,
+                    ComponentIndex.TYPE_PROCESSOR + "\t" + clsName);
+        }
+
+        if(type.getKind() == ElementKind.INTERFACE && type.getAnnotation(Bindable.class) != null) {
+            entries.put(ComponentIndex.TYPE_BINDABLE + "\t" + clsName,
+                    ComponentIndex.TYPE_BINDABLE + "\t" + clsName);
+        }
+
+        if(type.getKind() == ElementKind.INTERFACE && type.getAnnotation(ConfigurationSection.class) != null) {
+            entries.put(ComponentIndex.TYPE_SECTION + "\t" + clsName,
+                    ComponentIndex.TYPE_SECTION + "\t" + clsName);
+        }
+
+        for(AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            TypeElement annType = (TypeElement) mirror.getAnnotationType().asElement();
+            String annName = elemUtils.getBinaryName(annType).toString();
+            Retention retention = annType.getAnnotation(Retention.class);
+            if(OWN_ANNOTATIONS.contains(annName)
+                    || (retention != null && retention.value() == RetentionPolicy.SOURCE)) {
+                continue;
+            }
+            String line = ComponentIndex.TYPE_ANNOTATED + "\t" + clsName + "\t" + annName;
+            entries.put(line, line);
+        }
+
+        for(Element child : type.getEnclosedElements()) {
+            if(child instanceof TypeElement) {
+                collect((TypeElement) child);
+            }
+        }
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superType = type.getSuperclass();
+        if(superType.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) typeUtils.asElement(superType);
+    }
+
+/**
+ * @return	<tt>true</tt> if the class or one of its superclasses is annotated
+ *          with {@link Component}.
+ */
+
+    private boolean extendsComponent(TypeElement type) {
+        for(TypeElement elem = type; elem != null; elem = superclassOf(elem)) {
+            if(elem.getAnnotation(Component.class) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void mergePrevious(Filer filer) {
+        try {
+            FileObject prev = filer.getResource(StandardLocation.CLASS_OUTPUT, "", ComponentIndex.LOCATION);
+            Reader in = prev.openReader(true);
+            try {
+                BufferedReader reader = new BufferedReader(in);
+                String line;
+                while((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+                    if(line.startsWith("#") || parts.length < 2 || seenTypes.contains(parts[1])) {
+                        continue;
+                    }
+                    if(elemUtils.getTypeElement(parts[1].replace('$', '.')) != null) {
+                        String key = parts[0].equals(ComponentIndex.TYPE_ANNOTATED) ? line : parts[0] + "\t" + parts[1];
+                        entries.put(key, line);
+                    }
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch(IOException | IllegalArgumentException exep) {
+            //NOOP, no index from an earlier compilation
+        }
+    }
+
+    private void writeIndex() {
+        Filer filer = processingEnv.getFiler();
+        mergePrevious(filer);
+        if(entries.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject out = filer.createResource(StandardLocation.CLASS_OUTPUT, "", ComponentIndex.LOCATION);
+            Writer writer = out.openWriter();
+            try {
+                writer.write("# generated by polyguice-indexer\n");
+                for(String line : entries.values()) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch(IOException exep) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "unable to write " + ComponentIndex.LOCATION + ": " + exep.getMessage());
+        }
+    }
+}